@@ -0,0 +1,86 @@
+package com.typesafe.conductr.clientlib.akka
+
+import java.security.MessageDigest
+
+import akka.stream.scaladsl.Flow
+import akka.stream.stage.{ GraphStageLogic, GraphStageWithMaterializedValue, InHandler, OutHandler }
+import akka.stream.{ Attributes, FlowShape, Inlet, Outlet }
+import akka.util.ByteString
+import com.typesafe.conductr.clientlib.scala.models.{ BundleDigestMismatch, Digest }
+import com.typesafe.conductr.lib.scala.ConductrTypeOps._
+
+import scala.concurrent.{ Future, Promise }
+
+/**
+ * Computes the SHA-256 digest of bundle and config files while their bytes are being transferred, so that they are
+ * verified without reading them a second time.
+ */
+private[akka] object BundleDigest {
+
+  private val FileNameDigest = """-(\p{XDigit}{64})\.zip$""".r
+
+  /**
+   * The digest within the name of a bundle or config file, if any.
+   */
+  def fromFileName(fileName: String): Option[Digest] =
+    FileNameDigest.findFirstMatchIn(fileName).map(_.group(1).toLowerCase)
+
+  /**
+   * Passes the bytes of a file through while computing their digest, which is materialized once the bytes have been
+   * passed through. Should the name of the file contain a digest then the flow fails with a [[BundleDigestMismatch]]
+   * instead of completing if the digest of the bytes differs, as does the materialized digest.
+   */
+  def flow(fileName: String): Flow[ByteString, ByteString, Future[Digest]] =
+    Flow.fromGraph(new DigestStage(fileName, fromFileName(fileName)))
+
+  private final class DigestStage(fileName: String, expected: Option[Digest])
+      extends GraphStageWithMaterializedValue[FlowShape[ByteString, ByteString], Future[Digest]] {
+
+    val in = Inlet[ByteString]("BundleDigest.in")
+    val out = Outlet[ByteString]("BundleDigest.out")
+
+    override val shape = FlowShape(in, out)
+
+    override def createLogicAndMaterializedValue(inheritedAttributes: Attributes): (GraphStageLogic, Future[Digest]) = {
+      val digest = Promise[Digest]()
+
+      val logic = new GraphStageLogic(shape) with InHandler with OutHandler {
+        private val sha256 = MessageDigest.getInstance("SHA-256")
+
+        override def onPush(): Unit = {
+          val bytes = grab(in)
+          bytes.asByteBuffers.foreach(sha256.update)
+          push(out, bytes)
+        }
+
+        override def onPull(): Unit =
+          pull(in)
+
+        override def onUpstreamFinish(): Unit = {
+          val actual = sha256.digest().toHex
+          expected match {
+            case Some(v) if v != actual =>
+              val error = BundleDigestMismatch(fileName, v, actual)
+              digest.failure(error)
+              failStage(error)
+            case _ =>
+              digest.success(actual)
+              completeStage()
+          }
+        }
+
+        override def onUpstreamFailure(error: Throwable): Unit = {
+          digest.tryFailure(error)
+          failStage(error)
+        }
+
+        override def postStop(): Unit =
+          digest.tryFailure(new IllegalStateException(s"The transfer of file $fileName has been cancelled"))
+
+        setHandlers(in, out, this)
+      }
+
+      logic -> digest.future
+    }
+  }
+}
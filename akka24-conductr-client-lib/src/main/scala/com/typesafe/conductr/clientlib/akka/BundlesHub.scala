@@ -0,0 +1,134 @@
+package com.typesafe.conductr.clientlib.akka
+
+import akka.NotUsed
+import akka.stream.{ ActorMaterializer, KillSwitches, UniqueKillSwitch }
+import akka.stream.scaladsl.{ Keep, Sink, Source }
+import com.typesafe.conductr.clientlib.akka.models.{ BundlesIndex, BundlesUpdate }
+
+import scala.concurrent.duration.FiniteDuration
+import scala.concurrent.{ Future, Promise }
+import scala.util.{ Failure, Try }
+
+/**
+ * Shares one connection to the bundle state of ConductR among any number of waiters, each waiting for the bundle
+ * state to satisfy a predicate of its own. The connection is established when the first waiter registers and is
+ * shut down once no waiter remains, so that waiting on any number of bundles at once requires a single
+ * `/bundles/events` stream and a single retrieval of the bundles for each burst of events.
+ *
+ * @param updates the source of the bundle state, being materialized for each connection
+ * @param onIdle called when the connection has been shut down given that no waiter remains
+ */
+private[akka] final class BundlesHub(updates: () => Source[BundlesUpdate, NotUsed], onIdle: () => Unit)(implicit mat: ActorMaterializer) {
+
+  private final class Waiter(val predicate: BundlesIndex => Boolean) {
+    val promise = Promise[BundlesIndex]()
+  }
+
+  private var waiters = Set.empty[Waiter]
+  private var connection = Option.empty[UniqueKillSwitch]
+  private var generation = 0L
+  private var latest = Option.empty[BundlesIndex]
+
+  /**
+   * Wait for the bundle state to satisfy the predicate. The returned future fails with
+   * [[BundlesConnector.TimeoutException]] if the predicate is not satisfied within the timeout.
+   */
+  def await(predicate: BundlesIndex => Boolean, timeout: FiniteDuration): Future[BundlesIndex] = {
+    import mat.executionContext
+
+    val waiter = new Waiter(predicate)
+    val satisfied = synchronized {
+      val satisfied = latest.filter(predicate)
+      if (satisfied.isEmpty) {
+        waiters += waiter
+        if (connection.isEmpty) connect()
+      }
+      satisfied
+    }
+
+    satisfied match {
+      case Some(bundles) =>
+        Future.successful(bundles)
+      case None =>
+        val timer = mat.system.scheduler.scheduleOnce(timeout)(expire(waiter))
+        waiter.promise.future.onComplete(_ => timer.cancel())
+        waiter.promise.future
+    }
+  }
+
+  /** The number of waiters registered. */
+  def size: Int =
+    synchronized(waiters.size)
+
+  /** Whether the connection to the bundle state is established. */
+  def isConnected: Boolean =
+    synchronized(connection.isDefined)
+
+  private def connect(): Unit = {
+    import mat.executionContext
+
+    generation += 1
+    val connectionGeneration = generation
+    val (killSwitch, done) = updates()
+      .viaMat(KillSwitches.single)(Keep.right)
+      .toMat(Sink.foreach(update => onUpdate(connectionGeneration, update.bundles)))(Keep.both)
+      .run()
+    connection = Some(killSwitch)
+    done.onComplete(onTerminated(connectionGeneration, _))
+  }
+
+  private def onUpdate(connectionGeneration: Long, bundles: BundlesIndex): Unit = {
+    val satisfied = synchronized {
+      if (connectionGeneration == generation) {
+        latest = Some(bundles)
+        val (satisfied, remaining) = waiters.partition(_.predicate(bundles))
+        waiters = remaining
+        satisfied
+      } else
+        Set.empty[Waiter]
+    }
+    satisfied.foreach(_.promise.trySuccess(bundles))
+    disconnectIfIdle()
+  }
+
+  private def expire(waiter: Waiter): Unit = {
+    synchronized(waiters -= waiter)
+    waiter.promise.tryFailure(BundlesConnector.TimeoutException)
+    disconnectIfIdle()
+  }
+
+  private def onTerminated(connectionGeneration: Long, outcome: Try[_]): Unit = {
+    val failed = synchronized {
+      if (connectionGeneration == generation && connection.isDefined) {
+        val failed = waiters
+        waiters = Set.empty
+        connection = None
+        latest = None
+        Some(failed)
+      } else
+        None
+    }
+    failed.foreach { waiters =>
+      val error = outcome match {
+        case Failure(e) => e
+        case _          => new IllegalStateException("The connection to the bundle state has been closed")
+      }
+      waiters.foreach(_.promise.tryFailure(error))
+      onIdle()
+    }
+  }
+
+  private def disconnectIfIdle(): Unit = {
+    val disconnected = synchronized {
+      if (waiters.isEmpty && connection.isDefined) {
+        connection.foreach(_.shutdown())
+        connection = None
+        latest = None
+        generation += 1
+        true
+      } else
+        false
+    }
+    if (disconnected) onIdle()
+  }
+}
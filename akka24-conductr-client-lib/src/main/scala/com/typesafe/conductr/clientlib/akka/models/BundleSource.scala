@@ -0,0 +1,18 @@
+package com.typesafe.conductr.clientlib.akka.models
+
+import akka.stream.scaladsl.Source
+import akka.util.ByteString
+
+/**
+ * Represents the bundle file to be loaded into ConductR
+ * @param fileName the name of the file
+ * @param data the stream of data bytes of the file
+ */
+final case class BundleSource(fileName: String, data: Source[ByteString, Any])
+
+/**
+ * Represents the bundle configuration file to be loaded into ConductR
+ * @param fileName the name of the file
+ * @param data the stream of data bytes of the file
+ */
+final case class BundleConfigurationSource(fileName: String, data: Source[ByteString, Any])
@@ -0,0 +1,124 @@
+package com.typesafe.conductr.clientlib.akka.models
+
+import com.typesafe.conductr.clientlib.scala.models.{ Member, MembersInfoSuccess, UniqueAddress, UnreachableMember }
+
+import scala.collection.immutable
+
+/**
+ * The cluster membership as published by the [[com.typesafe.conductr.clientlib.akka.MembersConnector]], being every
+ * member along with the changes from the membership published before it. The first membership published holds every
+ * member as having been added, and every unreachable member as having become unreachable.
+ */
+final case class MembersUpdate(members: MembersIndex, changes: immutable.Seq[MemberChange])
+
+/**
+ * A change of a single member between two states.
+ */
+sealed trait MemberChange {
+  def node: UniqueAddress
+}
+
+final case class MemberAdded(member: Member) extends MemberChange {
+  override def node: UniqueAddress = member.node
+}
+
+final case class MemberRemoved(member: Member) extends MemberChange {
+  override def node: UniqueAddress = member.node
+}
+
+/** The status or roles of the member have changed, e.g. from `Joining` to `Up`. */
+final case class MemberChanged(previous: Member, current: Member) extends MemberChange {
+  override def node: UniqueAddress = current.node
+}
+
+/** The member has been detected as unreachable, or is now observed as such by other members. */
+final case class MemberUnreachable(unreachable: UnreachableMember) extends MemberChange {
+  override def node: UniqueAddress = unreachable.node
+}
+
+/** The member is no longer detected as unreachable by any member. */
+final case class MemberReachable(node: UniqueAddress) extends MemberChange
+
+object MembersIndex {
+  val empty: MembersIndex = new MembersIndex(None, Vector.empty, Map.empty, Map.empty)
+}
+
+/**
+ * The members in the order that ConductR returned them, indexed by their address, along with the members being
+ * unreachable.
+ *
+ * @param selfNode the member of ConductR that has been asked for the membership, if any has been asked yet
+ */
+final class MembersIndex private (
+    val selfNode: Option[UniqueAddress],
+    val members: immutable.Seq[Member],
+    byNode: Map[UniqueAddress, Member],
+    private val unreachableByNode: Map[UniqueAddress, UnreachableMember]
+) {
+
+  def get(node: UniqueAddress): Option[Member] =
+    byNode.get(node)
+
+  def unreachable: immutable.Seq[UnreachableMember] =
+    unreachableByNode.values.toVector
+
+  def isUnreachable(node: UniqueAddress): Boolean =
+    unreachableByNode.contains(node)
+
+  def size: Int =
+    members.size
+
+  /**
+   * Returns the index of the membership given along with its changes from the membership of this index. Members that
+   * have not changed retain their instance from this index.
+   */
+  def update(info: MembersInfoSuccess): (MembersIndex, immutable.Seq[MemberChange]) = {
+    val changes = Vector.newBuilder[MemberChange]
+    val membersBuilder = Vector.newBuilder[Member]
+    var newByNode = Map.empty[UniqueAddress, Member]
+
+    info.members.foreach { member =>
+      val retained = byNode.get(member.node) match {
+        case None =>
+          changes += MemberAdded(member)
+          member
+        case Some(previous) if previous == member =>
+          previous
+        case Some(previous) =>
+          changes += MemberChanged(previous, member)
+          member
+      }
+      membersBuilder += retained
+      newByNode += retained.node -> retained
+    }
+
+    members.foreach { member =>
+      if (!newByNode.contains(member.node))
+        changes += MemberRemoved(member)
+    }
+
+    val newUnreachableByNode = info.unreachable.map(u => u.node -> u).toMap
+    newUnreachableByNode.values.foreach { unreachable =>
+      if (!unreachableByNode.get(unreachable.node).exists(_.observedBy.toSet == unreachable.observedBy.toSet))
+        changes += MemberUnreachable(unreachable)
+    }
+    unreachableByNode.keys.foreach { node =>
+      if (!newUnreachableByNode.contains(node))
+        changes += MemberReachable(node)
+    }
+
+    new MembersIndex(Some(info.selfNode), membersBuilder.result(), newByNode, newUnreachableByNode) -> changes.result()
+  }
+
+  override def equals(other: Any): Boolean =
+    other match {
+      case that: MembersIndex => members == that.members && unreachableByNode == that.unreachableByNode
+      case _                  => false
+    }
+
+  override def hashCode: Int =
+    (members, unreachableByNode).hashCode
+
+  override def toString: String =
+    s"MembersIndex($members, $unreachable)"
+}
@@ -0,0 +1,106 @@
+package com.typesafe.conductr.clientlib.akka
+
+import java.util.concurrent.atomic.AtomicInteger
+
+import akka.NotUsed
+import akka.actor.ActorRef
+import akka.stream.{ ActorMaterializer, OverflowStrategy }
+import akka.stream.scaladsl.Source
+import akka.testkit.TestProbe
+import com.typesafe.conductr.clientlib.akka.TestData._
+import com.typesafe.conductr.clientlib.akka.models.{ BundlesIndex, BundlesUpdate }
+import com.typesafe.conductr.clientlib.scala.models.Bundle
+import com.typesafe.conductr.lib.AkkaUnitTest
+
+import scala.collection.immutable.Seq
+import scala.concurrent.Await
+import scala.concurrent.duration._
+
+class BundlesHubSpec extends AkkaUnitTest("BundlesHubSpec") {
+
+  implicit val mat = ActorMaterializer()
+
+  "The BundlesHub" should {
+    "share one connection among its waiters" in {
+      val f = testFixture()
+      import f._
+
+      val frontendInstalled = hub.await(_.get(BundleFrontend.bundleId).isDefined, timeout.duration)
+      val backendInstalled = hub.await(_.get(BundleBackend.bundleId).isDefined, timeout.duration)
+      val connection = connections.expectMsgType[ActorRef]
+      connects.get shouldBe 1
+      hub.size shouldBe 2
+
+      connection ! update(BundleFrontend)
+      Await.result(frontendInstalled, timeout.duration).get(BundleFrontend.bundleId) shouldBe Some(BundleFrontend)
+      hub.size shouldBe 1
+      hub.isConnected shouldBe true
+
+      connection ! update(BundleFrontend, BundleBackend)
+      Await.result(backendInstalled, timeout.duration).get(BundleBackend.bundleId) shouldBe Some(BundleBackend)
+      connects.get shouldBe 1
+    }
+
+    "disconnect once no waiter remains and connect again for a new waiter" in {
+      val f = testFixture()
+      import f._
+
+      val installed = hub.await(_.get(BundleFrontend.bundleId).isDefined, timeout.duration)
+      connections.expectMsgType[ActorRef] ! update(BundleFrontend)
+      Await.result(installed, timeout.duration)
+      idles.expectMsg(())
+      hub.isConnected shouldBe false
+
+      val reinstalled = hub.await(_.get(BundleFrontend.bundleId).isDefined, timeout.duration)
+      connections.expectMsgType[ActorRef] ! update(BundleFrontend)
+      Await.result(reinstalled, timeout.duration)
+      connects.get shouldBe 2
+    }
+
+    "satisfy a waiter with the latest state while connected" in {
+      val f = testFixture()
+      import f._
+
+      val backendInstalled = hub.await(_.get(BundleBackend.bundleId).isDefined, timeout.duration)
+      connections.expectMsgType[ActorRef] ! update(BundleFrontend)
+      Await.result(hub.await(_.get(BundleFrontend.bundleId).isDefined, timeout.duration), timeout.duration)
+
+      hub.await(_.get(BundleFrontend.bundleId).isDefined, timeout.duration).isCompleted shouldBe true
+      backendInstalled.isCompleted shouldBe false
+      connects.get shouldBe 1
+    }
+
+    "fail a waiter whose predicate is not satisfied in time" in {
+      val f = testFixture()
+      import f._
+
+      val installed = hub.await(_.get(BundleFrontend.bundleId).isDefined, 100.millis)
+      connections.expectMsgType[ActorRef]
+      intercept[RuntimeException](Await.result(installed, timeout.duration)) shouldBe BundlesConnector.TimeoutException
+      idles.expectMsg(())
+      hub.size shouldBe 0
+    }
+  }
+
+  private def update(bundles: Bundle*): BundlesUpdate = {
+    val (index, changes) = BundlesIndex.empty.update(bundles.toList)
+    BundlesUpdate(index, changes)
+  }
+
+  private def testFixture() = new {
+    val connects = new AtomicInteger()
+    val connections = TestProbe()
+    val idles = TestProbe()
+
+    val hub = new BundlesHub(
+      () => {
+        connects.incrementAndGet()
+        Source.actorRef[BundlesUpdate](16, OverflowStrategy.fail).mapMaterializedValue { ref =>
+          connections.ref ! ref
+          NotUsed
+        }
+      },
+      () => idles.ref ! (())
+    )
+  }
+}
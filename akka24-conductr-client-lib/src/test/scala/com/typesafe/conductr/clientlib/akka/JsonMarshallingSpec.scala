@@ -1,10 +1,15 @@
 package com.typesafe.conductr.clientlib.akka
 
+import akka.stream.ActorMaterializer
+import akka.stream.scaladsl.{ Sink, Source }
+import akka.util.ByteString
 import com.typesafe.conductr.clientlib.scala.models.Bundle
-import com.typesafe.conductr.lib.UnitTest
+import com.typesafe.conductr.lib.AkkaUnitTest
 import play.api.libs.json.Json
 
-class JsonMarshallingSpec extends UnitTest {
+import scala.concurrent.Await
+
+class JsonMarshallingSpec extends AkkaUnitTest("JsonMarshallingSpec") {
   "unmarshalling bundle" should {
     import JsonMarshalling._
     import TestData._
@@ -20,4 +25,34 @@ class JsonMarshallingSpec extends UnitTest {
           }
       }
   }
+
+  "decoding a stream of bundles" should {
+    import JsonMarshalling._
+    import TestData._
+
+    implicit val mat = ActorMaterializer()
+
+    val json = ByteString(s"[\n  $BundleWithServicesAndRequestAclJson,\n  $BundleWithTagsJson\n]")
+
+    "decode each bundle of an array arriving in chunks" in {
+      val chunks = Source(json.grouped(7).toList)
+      val result = Await.result(chunks.via(jsonArrayElements[Bundle]()).runWith(Sink.seq), timeout.duration)
+      result shouldBe Seq(BundleWithServicesAndRequestAcl, BundleWithTags)
+    }
+
+    "decode an empty array" in {
+      val result = Await.result(Source.single(ByteString("[ ]")).via(jsonArrayElements[Bundle]()).runWith(Sink.seq), timeout.duration)
+      result shouldBe Seq.empty
+    }
+
+    "fail when a bundle is larger than allowed" in {
+      val result = Source.single(json).via(jsonArrayElements[Bundle](maxElementLength = 64)).runWith(Sink.seq)
+      an[Exception] should be thrownBy Await.result(result, timeout.duration)
+    }
+
+    "fail when an element is not a bundle" in {
+      val result = Source.single(ByteString("""[{"bundleId": 1}]""")).via(jsonArrayElements[Bundle]()).runWith(Sink.seq)
+      an[IllegalArgumentException] should be thrownBy Await.result(result, timeout.duration)
+    }
+  }
 }
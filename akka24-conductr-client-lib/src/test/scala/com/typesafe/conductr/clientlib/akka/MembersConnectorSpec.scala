@@ -0,0 +1,197 @@
+package com.typesafe.conductr.clientlib.akka
+
+import java.net.URL
+
+import akka.http.scaladsl.Http
+import akka.http.scaladsl.marshalling.Marshal
+import akka.http.scaladsl.model.{ ContentTypes, HttpEntity, HttpResponse }
+import akka.http.scaladsl.server.Directives._
+import akka.http.scaladsl.client.RequestBuilding._
+import akka.pattern._
+import akka.stream.ActorMaterializer
+import akka.stream.scaladsl.{ Sink, Source }
+import akka.testkit.TestProbe
+import com.typesafe.conductr.clientlib.akka.TestData._
+import com.typesafe.conductr.clientlib.akka.models.{ MemberAdded, MemberReachable, MemberRemoved, MemberUnreachable, MembersUpdate }
+import com.typesafe.conductr.lib.AkkaUnitTest
+import de.heikoseeberger.akkasse.{ ServerSentEvent, EventStreamMarshalling }
+import scala.concurrent.duration._
+import scala.collection.immutable._
+
+import scala.concurrent.Await
+
+class MembersConnectorSpec extends AkkaUnitTest {
+  "should emit the membership retrieved on the initial connection and subsequent membership changes" in {
+    val f = testFixture("127.0.0.1", 6672)
+    import f._
+
+    val membersStreamMonitor = TestProbe()
+
+    Source.single(Get("/v2/members/events") -> Get("/v2/members"))
+      .via(MembersConnector.connect(serverAddress))
+      .runForeach(membersStreamMonitor.ref ! _)
+
+    // Initial membership should be emitted as every member having been added
+    getMembers.expectMsg(GetMembers)
+    getMembers.reply(MembersInfoAsJson)
+
+    val initial = membersStreamMonitor.expectMsgType[MembersUpdate]
+    initial.members.members shouldBe Seq(MemberUp, MemberDown)
+    initial.members.selfNode shouldBe Some(MemberUpUniqueAddress)
+    initial.members.isUnreachable(MemberDownUniqueAddress) shouldBe true
+    initial.changes shouldBe Seq(MemberAdded(MemberUp), MemberAdded(MemberDown), MemberUnreachable(MembersInfo.unreachable.head))
+
+    // Member Events should be requested
+    getMembersEvents.expectMsg(GetMembersEvents)
+    getMembersEvents.reply(
+      Source.tick(
+        initialDelay = 100.millis,
+        interval = 800.millis,
+        tick = Seq(
+          ServerSentEvent(MemberDownAddress.toString, "memberRemoved"),
+          ServerSentEvent.Heartbeat,
+          ServerSentEvent.Heartbeat,
+          ServerSentEvent.Heartbeat,
+          ServerSentEvent.Heartbeat
+        )
+      ).mapConcat(identity)
+    )
+
+    // Simulate the membership having been retrieved after connecting to the events, yet unchanged
+    getMembers.expectMsg(GetMembers)
+    getMembers.reply(MembersInfoAsJson)
+
+    membersStreamMonitor.expectNoMsg(500.millis)
+
+    // Simulate the member being down having been removed
+    getMembers.expectMsg(GetMembers)
+    getMembers.reply(MemberUpOnlyAsJson)
+
+    val removed = membersStreamMonitor.expectMsgType[MembersUpdate]
+    removed.members.members shouldBe Seq(MemberUp)
+    removed.changes shouldBe Seq(MemberRemoved(MemberDown), MemberReachable(MemberDownUniqueAddress))
+  }
+
+  "should retrieve the membership again once reconnected to the member events" in {
+    val f = testFixture("127.0.0.1", 6673)
+    import f._
+
+    val membersStreamMonitor = TestProbe()
+
+    Source.single(Get("/v2/members/events") -> Get("/v2/members"))
+      .via(MembersConnector.connect(serverAddress))
+      .runForeach(membersStreamMonitor.ref ! _)
+
+    getMembers.expectMsg(GetMembers)
+    getMembers.reply(MembersInfoAsJson)
+    membersStreamMonitor.expectMsgType[MembersUpdate]
+
+    // The member events connection is closed straight away
+    getMembersEvents.expectMsg(GetMembersEvents)
+    getMembersEvents.reply(Source.empty[ServerSentEvent])
+    getMembers.expectMsg(GetMembers)
+    getMembers.reply(MembersInfoAsJson)
+
+    // A change missed while disconnected is emitted once reconnected
+    getMembersEvents.expectMsg(GetMembersEvents)
+    getMembersEvents.reply(Source.maybe[ServerSentEvent])
+    getMembers.expectMsg(GetMembers)
+    getMembers.reply(MemberUpOnlyAsJson)
+
+    membersStreamMonitor.expectMsgType[MembersUpdate].changes shouldBe
+      Seq(MemberRemoved(MemberDown), MemberReachable(MemberDownUniqueAddress))
+  }
+
+  "should retrieve the membership at least every max event burst delay while events keep arriving" in {
+    val f = testFixture("127.0.0.1", 6674)
+    import f._
+
+    Source.single(Get("/v2/members/events") -> Get("/v2/members"))
+      .via(MembersConnector.connect(serverAddress, maxEventBurstDelay = 1.second, minRefreshInterval = 200.millis))
+      .runWith(Sink.ignore)
+
+    getMembers.expectMsg(GetMembers)
+    getMembers.reply(MembersInfoAsJson)
+
+    // An event every 100 milliseconds, so that the quiet period of 500 milliseconds never elapses
+    getMembersEvents.expectMsg(GetMembersEvents)
+    getMembersEvents.reply(
+      Source.tick(100.millis, 100.millis, ServerSentEvent(MemberDownAddress.toString, "memberUnreachable"))
+    )
+
+    // Membership is retrieved again once connected to the events
+    getMembers.expectMsg(GetMembers)
+    getMembers.reply(MembersInfoAsJson)
+
+    getMembers.expectMsg(3.seconds, GetMembers)
+    getMembers.reply(MembersInfoAsJson)
+
+    // And again whilst the events continue
+    getMembers.expectMsg(3.seconds, GetMembers)
+    getMembers.reply(MembersInfoAsJson)
+  }
+
+  case object GetMembersEvents
+  case object GetMembers
+
+  val MemberUpOnlyAsJson =
+    s"""
+       |{
+       |  "selfNode": {
+       |    "address": "$MemberUpAddress",
+       |    "uid": $MemberUpUid
+       |  },
+       |  "members": [
+       |    {
+       |      "node": {
+       |        "address": "$MemberUpAddress",
+       |        "uid": $MemberUpUid
+       |      },
+       |      "status": "Up",
+       |      "roles": [
+       |        "frontend"
+       |      ]
+       |    }
+       |  ],
+       |  "unreachable": []
+       |}
+     """.stripMargin
+
+  def testFixture(serverHost: String, serverPort: Int) = new {
+    implicit val dispatcher = system.dispatcher
+    implicit val materializer = ActorMaterializer()
+
+    val getMembersEvents = TestProbe()
+    val getMembers = TestProbe()
+
+    // format: OFF
+    val route = pathPrefix("v2" / "members") {
+      path("events") {
+        get {
+          complete {
+            import EventStreamMarshalling._
+            getMembersEvents.ref.ask(GetMembersEvents)
+              .mapTo[Source[ServerSentEvent, _]]
+              .map(Marshal(_).to[HttpResponse])
+          }
+        }
+      } ~
+      get {
+        complete {
+          getMembers.ref.ask(GetMembers)
+            .mapTo[String]
+            .map { json =>
+              HttpResponse(entity = HttpEntity(ContentTypes.`application/json`, json))
+            }
+        }
+      }
+    }
+    // format: ON
+
+    val serverAddress = new URL(s"http://$serverHost:$serverPort")
+    Await.ready(
+      Http().bindAndHandle(route, serverHost, serverPort),
+      timeout.duration
+    )
+  }
+}
@@ -0,0 +1,44 @@
+package com.typesafe.conductr.clientlib.akka.models
+
+import com.typesafe.conductr.clientlib.akka.TestData._
+import com.typesafe.conductr.clientlib.scala.models.UnreachableMember
+import com.typesafe.conductr.lib.UnitTest
+
+import scala.collection.immutable.Seq
+
+class MembersIndexSpec extends UnitTest {
+
+  "MembersIndex" should {
+    "index the members by their address" in {
+      val (index, _) = MembersIndex.empty.update(MembersInfo)
+      index.members shouldBe Seq(MemberUp, MemberDown)
+      index.get(MemberDownUniqueAddress) shouldBe Some(MemberDown)
+      index.isUnreachable(MemberDownUniqueAddress) shouldBe true
+      index.isUnreachable(MemberUpUniqueAddress) shouldBe false
+    }
+
+    "describe every member as added and every unreachable member as unreachable when updating an empty index" in {
+      MembersIndex.empty.update(MembersInfo)._2 shouldBe
+        Seq(MemberAdded(MemberUp), MemberAdded(MemberDown), MemberUnreachable(MembersInfo.unreachable.head))
+    }
+
+    "describe no changes when the membership is unchanged" in {
+      val (index, _) = MembersIndex.empty.update(MembersInfo)
+      index.update(MembersInfo.copy()) shouldBe index -> Seq.empty
+    }
+
+    "describe the members whose status has changed" in {
+      val (index, _) = MembersIndex.empty.update(MembersInfo)
+      val exiting = MemberUp.copy(status = "Exiting")
+      index.update(MembersInfo.copy(members = Seq(exiting, MemberDown)))._2 shouldBe Seq(MemberChanged(MemberUp, exiting))
+    }
+
+    "describe the members being observed as unreachable by other members, and becoming reachable again" in {
+      val (index, _) = MembersIndex.empty.update(MembersInfo)
+      val observed = UnreachableMember(MemberDownUniqueAddress, Seq(MemberUpUniqueAddress, MemberDownUniqueAddress))
+      val (observedIndex, observedChanges) = index.update(MembersInfo.copy(unreachable = Seq(observed)))
+      observedChanges shouldBe Seq(MemberUnreachable(observed))
+      observedIndex.update(MembersInfo.copy(unreachable = Seq.empty))._2 shouldBe Seq(MemberReachable(MemberDownUniqueAddress))
+    }
+  }
+}
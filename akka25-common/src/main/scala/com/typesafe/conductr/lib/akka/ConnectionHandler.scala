@@ -1,17 +1,21 @@
 package com.typesafe.conductr.lib.akka
 
+import java.util.concurrent.atomic.AtomicBoolean
+
 import akka.actor._
 import akka.http.scaladsl.client.RequestBuilding._
 import akka.http.scaladsl.model._
 import akka.http.scaladsl.{ Http, HttpExt }
 import akka.http.scaladsl.model.headers.{ RawHeader, Host, `User-Agent` }
+import akka.http.scaladsl.settings.ConnectionPoolSettings
 import akka.stream.ActorMaterializer
 import akka.stream.scaladsl.{ Sink, Source }
-import com.typesafe.conductr.lib.HttpPayload
-import com.typesafe.conductr.lib.scala.{ AbstractConnectionContext, AbstractConnectionHandler }
+import com.typesafe.conductr.lib.{ HttpPayload, Instrumentation }
+import com.typesafe.conductr.lib.scala.{ AbstractConnectionContext, AbstractConnectionHandler, CallingThreadExecutionContext }
 
 import scala.concurrent.Future
 import scala.collection.JavaConverters._
+import scala.util.Failure
 
 object ConnectionContext {
   def apply()(implicit context: ActorRefFactory): ConnectionContext = {
@@ -22,6 +26,22 @@ object ConnectionContext {
   def apply(httpExt: HttpExt, actorMaterializer: ActorMaterializer)(implicit context: ActorRefFactory): ConnectionContext =
     new ConnectionContext(httpExt, actorMaterializer, context)
 
+  /**
+   * A connection context whose requests are routed through a shared host connection pool of the HTTP extension
+   * rather than each being made over a new connection.
+   */
+  def apply(httpExt: HttpExt, actorMaterializer: ActorMaterializer, connectionPoolSettings: ConnectionPoolSettings)(implicit context: ActorRefFactory): ConnectionContext =
+    new ConnectionContext(httpExt, actorMaterializer, context, Some(connectionPoolSettings))
+
+  /**
+   * A connection context whose requests are routed through a shared host connection pool configured by
+   * `akka.http.host-connection-pool`.
+   */
+  def pooled()(implicit context: ActorRefFactory): ConnectionContext = {
+    val system = actorSystemOf(context)
+    apply(Http(system), ActorMaterializer.create(system), ConnectionPoolSettings(system))
+  }
+
   /** JAVA API */
   def create(context: ActorRefFactory): ConnectionContext =
     apply()(context)
@@ -30,6 +50,14 @@ object ConnectionContext {
   def create(httpExt: HttpExt, actorMaterializer: ActorMaterializer, context: ActorRefFactory): ConnectionContext =
     apply(httpExt, actorMaterializer)(context)
 
+  /** JAVA API */
+  def create(httpExt: HttpExt, actorMaterializer: ActorMaterializer, connectionPoolSettings: ConnectionPoolSettings, context: ActorRefFactory): ConnectionContext =
+    apply(httpExt, actorMaterializer, connectionPoolSettings)(context)
+
+  /** JAVA API */
+  def createPooled(context: ActorRefFactory): ConnectionContext =
+    pooled()(context)
+
   private def actorSystemOf(context: ActorRefFactory): ActorSystem = {
     val system = context match {
       case s: ExtendedActorSystem => s
@@ -42,17 +70,30 @@ object ConnectionContext {
   }
 }
 
+/**
+ * When `connectionPoolSettings` are provided then requests are routed through the host connection pool of
+ * `httpExt` that corresponds to those settings, including their max-connections and pipelining-limit. Otherwise a
+ * new connection is established for each request.
+ */
 class ConnectionContext(
-  val httpExt: HttpExt,
-  implicit val actorMaterializer: ActorMaterializer,
-  implicit val context: ActorRefFactory
-) extends AbstractConnectionContext
+    val httpExt: HttpExt,
+    implicit val actorMaterializer: ActorMaterializer,
+    implicit val context: ActorRefFactory,
+    val connectionPoolSettings: Option[ConnectionPoolSettings] = None
+) extends AbstractConnectionContext {
+
+  /**
+   * A copy of this connection context that routes its requests through a host connection pool with the given settings.
+   */
+  def withConnectionPool(connectionPoolSettings: ConnectionPoolSettings): ConnectionContext =
+    new ConnectionContext(httpExt, actorMaterializer, context, Some(connectionPoolSettings))
+}
 
 /**
  * Mix this trait into your Actor if you need an implicit
  * ConnectionContext in scope.
  *
- * Subclass may override `httpExt` and `actorMaterializer` to define custom
+ * Subclass may override `httpExt`, `actorMaterializer` and `connectionPoolSettings` to define custom
  * values for the `ConnectionContext`.
  */
 trait ImplicitConnectionContext { this: Actor =>
@@ -63,7 +104,11 @@ trait ImplicitConnectionContext { this: Actor =>
   def actorMaterializer: ActorMaterializer =
     ActorMaterializer.create(context)
 
-  final implicit val cc: ConnectionContext = ConnectionContext(httpExt, actorMaterializer)
+  def connectionPoolSettings: Option[ConnectionPoolSettings] =
+    None
+
+  final implicit val cc: ConnectionContext =
+    new ConnectionContext(httpExt, actorMaterializer, context, connectionPoolSettings)
 }
 
 /**
@@ -76,42 +121,100 @@ class ConnectionHandler extends AbstractConnectionHandler {
 
   override def withConnectedRequest[T](payload: Option[HttpPayload])(handler: (Int, Map[String, Option[String]]) => Option[T])(implicit cc: CC): Future[Option[T]] = {
     payload.fold[Future[Option[T]]](Future.successful(None)) { p =>
-      val connection = createConnection(p)
       val request = createRequest(p)
-
-      Source.fromFuture(request)
-        .via(connection)
-        .map { response =>
-          handler(
-            response.status.intValue(),
-            response.headers.foldLeft(Map.empty[String, Option[String]]) {
-              case (m, header) => m.updated(header.name(), Some(header.value()))
+      val timer = new RequestTimer(p)
+
+      val result = cc.connectionPoolSettings match {
+        case Some(settings) =>
+          import cc.actorMaterializer.executionContext
+          request
+            .flatMap(cc.httpExt.singleRequest(_, settings = settings)(cc.actorMaterializer))
+            .map { response =>
+              timer.completed(response)
+              // The pooled connection is only available to other requests once the entity has been consumed
+              response.discardEntityBytes()(cc.actorMaterializer)
+              handler(response.status.intValue(), headersOf(response))
             }
-          )
-        }
-        .runWith(Sink.head)(cc.actorMaterializer)
+
+        case None =>
+          Source.fromFuture(request)
+            .via(createConnection(p))
+            .map(timer.completed)
+            .map(response => handler(response.status.intValue(), headersOf(response)))
+            .runWith(Sink.head)(cc.actorMaterializer)
+      }
+      timer.failedWith(result)
     }
   }
 
   // TODO: Refactor this so that the body is part of `HttpPayload`. As a body type use [[org.reactivestreams.Publisher<T>]].
   def withConnectedRequest[T](payload: HttpPayload, body: Option[Future[RequestEntity]] = None)(handler: (Int, Map[String, Option[String]], ResponseEntity) => Future[T])(implicit cc: CC): Future[T] = {
-    val connection = createConnection(payload)
     val request = createRequest(payload, body)
+    val timer = new RequestTimer(payload)
 
+    val result = cc.connectionPoolSettings match {
+      case Some(settings) =>
+        import cc.actorMaterializer.executionContext
+        request
+          .flatMap(cc.httpExt.singleRequest(_, settings = settings)(cc.actorMaterializer))
+          .flatMap(response => handler(timer.completed(response).status.intValue(), headersOf(response), response.entity))
+
+      case None =>
+        withConnection(request, timer)(handler)
+    }
+    timer.failedWith(result)
+  }
+
+  /**
+   * Make a request whose response is expected to be a long running stream, such as server sent events. The request
+   * is always made over a connection of its own so that a connection of the pool is not held by the stream.
+   */
+  def withStreamingRequest[T](payload: HttpPayload)(handler: (Int, Map[String, Option[String]], ResponseEntity) => Future[T])(implicit cc: CC): Future[T] = {
+    val timer = new RequestTimer(payload)
+    timer.failedWith(withConnection(createRequest(payload), timer)(handler))
+  }
+
+  private def withConnection[T](request: Future[HttpRequest], timer: RequestTimer)(handler: (Int, Map[String, Option[String]], ResponseEntity) => Future[T])(implicit cc: CC): Future[T] =
     Source.fromFuture(request)
-      .via(connection)
-      .mapAsync(1) { response =>
-        handler(
+      .via(createConnection(timer.payload))
+      .map(timer.completed)
+      .mapAsync(1)(response => handler(response.status.intValue(), headersOf(response), response.entity))
+      .runWith(Sink.head)(cc.actorMaterializer)
+
+  /*
+   * Records the outcome of a request with the instrumentation in use. A request is complete once its response has
+   * been received; a failure thereafter is one of handling the response and is not recorded.
+   */
+  private final class RequestTimer(val payload: HttpPayload) {
+    private val startNanos = System.nanoTime()
+    private val recorded = new AtomicBoolean(false)
+
+    def completed(response: HttpResponse): HttpResponse = {
+      if (recorded.compareAndSet(false, true))
+        Instrumentation.get.requestCompleted(
+          payload,
           response.status.intValue(),
-          response.headers.foldLeft(Map.empty[String, Option[String]]) {
-            case (m, header) => m.updated(header.name(), Some(header.value()))
-          },
-          response.entity
+          response.entity.contentLengthOption.getOrElse(-1L),
+          System.nanoTime() - startNanos
         )
-      }
-      .runWith(Sink.head)(cc.actorMaterializer)
+      response
+    }
+
+    def failedWith[T](result: Future[T]): Future[T] = {
+      result.onComplete {
+        case Failure(e) if recorded.compareAndSet(false, true) =>
+          Instrumentation.get.requestFailed(payload, e, System.nanoTime() - startNanos)
+        case _ =>
+      }(CallingThreadExecutionContext)
+      result
+    }
   }
 
+  private def headersOf(response: HttpResponse): Map[String, Option[String]] =
+    response.headers.foldLeft(Map.empty[String, Option[String]]) {
+      case (m, header) => m.updated(header.name(), Some(header.value()))
+    }
+
   private def createConnection(payload: HttpPayload)(implicit cc: CC) =
     cc.httpExt.outgoingConnection(payload.getUrl.getHost, payload.getUrl.getPort)
 
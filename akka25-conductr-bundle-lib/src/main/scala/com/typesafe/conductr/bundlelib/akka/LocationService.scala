@@ -1,12 +1,14 @@
 package com.typesafe.conductr.bundlelib.akka
 
 import java.net.URI
+import java.util.{ Map => JMap }
 
 import com.typesafe.conductr.lib.akka._
 import com.typesafe.conductr.bundlelib.scala.{ CacheLike, AbstractLocationService }
 
 import akka.japi.{ Option => JOption }
 
+import scala.collection.JavaConverters._
 import scala.concurrent.ExecutionContext.Implicits
 import scala.concurrent.Future
 import scala.language.reflectiveCalls
@@ -36,4 +38,10 @@ class LocationService(handler: ConnectionHandler) extends AbstractLocationServic
     import Implicits.global
     lookup(serviceName, fallback, cache)(cc).map(JOption.fromScalaOption)
   }
+
+  /** JAVA API */
+  def lookupAllWithContext(services: JMap[String, URI], cache: CacheLike, parallelism: Int, cc: CC): Future[JMap[String, URI]] = {
+    import Implicits.global
+    lookupAll(services.asScala.toMap, cache, parallelism)(cc).map(_.asJava)
+  }
 }
@@ -10,18 +10,20 @@ import java.net.URL
 
 import akka.{ NotUsed, Done }
 import akka.actor.{ ActorRefFactory, ActorRef, FSM, Props }
-import akka.http.scaladsl.unmarshalling.Unmarshal
 import akka.http.scaladsl.Http
 import akka.http.scaladsl.model.{ HttpRequest, HttpResponse }
+import akka.http.scaladsl.settings.ConnectionPoolSettings
 import akka.stream.ActorMaterializer
-import akka.stream.actor.ActorPublisher
-import akka.stream.scaladsl.{ Source, Flow }
+import akka.stream.actor.{ ActorPublisher, ActorPublisherMessage }
+import akka.stream.scaladsl.{ Source, Sink, Flow }
+import com.typesafe.conductr.clientlib.akka.models.{ BundlesIndex, BundlesUpdate }
 import com.typesafe.conductr.clientlib.scala.models.Bundle
+import com.typesafe.conductr.lib.Instrumentation
 import akka.http.scaladsl.model.sse.ServerSentEvent
 import de.heikoseeberger.akkasse.pattern.Streams
 
 import scala.concurrent.duration._
-import scala.concurrent.{ ExecutionContext, Future }
+import scala.concurrent.ExecutionContext
 import scala.util.control.NonFatal
 import scala.util.{ Failure, Try }
 
@@ -46,9 +48,17 @@ object BundlesConnector {
    * @param conductrAddress the ConductR Control Protocol base URL
    * @param stopAfter the timeout waiting for the stream to complete.
    * @param expectingEventBurstTimeout the expected amount of time of which SSE event burst from `/bundles/events` will
-   *                                   take place. Once event burst is over, the latest bundle state will be obtained
-   *                                   from `/bundles/events`
+   *                                   take place. Once no event has been received for this long the event burst is
+   *                                   over, and the latest bundle state will be obtained from `/bundles`
    * @param reconnectInterval the amount of time to wait to reconnect to `/bundles/events` when disconnected.
+   * @param connectionPoolSettings when provided, the requests to `/bundles` are routed through the host connection
+   *                               pool with these settings instead of each being made over a new connection. The
+   *                               `/bundles/events` stream always has a connection of its own.
+   * @param maxEventBurstDelay the longest time that the bundle state is left unrefreshed once an event has been
+   *                           received, however long the event burst continues. The latency of observing a change
+   *                           is thereby bounded by this delay and `minRefreshInterval` under any rate of events.
+   * @param minRefreshInterval the least time between two retrievals of the bundle state, protecting ConductR from
+   *                           being asked for its bundles repeatedly when event bursts are short and frequent.
    * @param system the actor system which is used to build [[BundlesConnector]]
    * @return the flow graph of `Flow[(HttpRequest, HttpRequest), Seq[Bundle], NotUsed]`.
    */
@@ -56,14 +66,41 @@ object BundlesConnector {
     conductrAddress: URL,
     stopAfter: Option[FiniteDuration] = None,
     expectingEventBurstTimeout: FiniteDuration = 500.millis,
-    reconnectInterval: FiniteDuration = 500.millis
+    reconnectInterval: FiniteDuration = 500.millis,
+    connectionPoolSettings: Option[ConnectionPoolSettings] = None,
+    maxEventBurstDelay: FiniteDuration = 5.seconds,
+    minRefreshInterval: FiniteDuration = 500.millis
   )(implicit system: ActorRefFactory): Flow[(HttpRequest, HttpRequest), Seq[Bundle], NotUsed] =
+    connectUpdates(conductrAddress, stopAfter, expectingEventBurstTimeout, reconnectInterval, connectionPoolSettings, maxEventBurstDelay, minRefreshInterval)
+      .map(_.bundles.bundles)
+
+  /**
+   * As [[connect]], but emits a [[BundlesUpdate]] for each change of the bundle state. Each update holds the bundles
+   * indexed by their id along with the bundles that have been added or removed, or whose executions, installations
+   * or other attributes have changed since the previous update. The first update holds every bundle as added.
+   *
+   * The bundle state obtained after each event burst is compared with the previous one bundle by bundle, so that
+   * consumers may act on the changes alone rather than scanning every bundle. An update is published only when
+   * there is demand; changes received in the meantime are published together once there is.
+   *
+   * @see [[connect]]
+   * @return the flow graph of `Flow[(HttpRequest, HttpRequest), BundlesUpdate, NotUsed]`.
+   */
+  def connectUpdates(
+    conductrAddress: URL,
+    stopAfter: Option[FiniteDuration] = None,
+    expectingEventBurstTimeout: FiniteDuration = 500.millis,
+    reconnectInterval: FiniteDuration = 500.millis,
+    connectionPoolSettings: Option[ConnectionPoolSettings] = None,
+    maxEventBurstDelay: FiniteDuration = 5.seconds,
+    minRefreshInterval: FiniteDuration = 500.millis
+  )(implicit system: ActorRefFactory): Flow[(HttpRequest, HttpRequest), BundlesUpdate, NotUsed] =
     Flow[(HttpRequest, HttpRequest)].flatMapConcat {
       case (getBundlesEventsRequest, getBundlesRequest) =>
-        Source.actorPublisher(props(conductrAddress, getBundlesEventsRequest, getBundlesRequest, stopAfter, expectingEventBurstTimeout, reconnectInterval))
+        Source.actorPublisher(props(conductrAddress, getBundlesEventsRequest, getBundlesRequest, stopAfter, expectingEventBurstTimeout, reconnectInterval, connectionPoolSettings, maxEventBurstDelay, minRefreshInterval))
     }
 
-  private type Connection = Flow[HttpRequest, HttpResponse, Future[Http.OutgoingConnection]]
+  private type Connection = Flow[HttpRequest, HttpResponse, Any]
 
   sealed trait Message
 
@@ -88,16 +125,19 @@ object BundlesConnector {
     getBundlesRequest: HttpRequest,
     stopAfter: Option[FiniteDuration] = None,
     expectingEventBurstTimeout: FiniteDuration = 500.millis,
-    reconnectInterval: FiniteDuration = 500.millis
+    reconnectInterval: FiniteDuration = 500.millis,
+    connectionPoolSettings: Option[ConnectionPoolSettings] = None,
+    maxEventBurstDelay: FiniteDuration = 5.seconds,
+    minRefreshInterval: FiniteDuration = 500.millis
   ): Props =
-    Props(new BundlesConnector(conductrAddress, getBundlesEventsRequest, getBundlesRequest, stopAfter, expectingEventBurstTimeout, reconnectInterval))
+    Props(new BundlesConnector(conductrAddress, getBundlesEventsRequest, getBundlesRequest, stopAfter, expectingEventBurstTimeout, reconnectInterval, connectionPoolSettings, maxEventBurstDelay, minRefreshInterval))
 
   private def getBundles(connector: ActorRef, connection: Connection, request: HttpRequest)(implicit ec: ExecutionContext, mat: ActorMaterializer): Unit = {
     import JsonMarshalling._
     Source
       .single(request)
       .via(connection)
-      .mapAsync(1)(Unmarshal(_).to[Seq[Bundle]])
+      .mapAsync(1)(response => jsonArraySource[Bundle](response.entity).runWith(Sink.seq))
       .runForeach(connector ! GetBundlesSuccess(_))
       .recover {
         case NonFatal(e) => connector ! GetBundlesError(e)
@@ -130,6 +170,12 @@ object BundlesConnector {
  * Connects to the `/bundles` endpoint of ConductR and publishes the bundles from ConductR when updates from
  * the /bundles/events` SSE are available.
  *
+ * Events are coalesced into bursts so that the bundle state is retrieved once for many events. A burst is over when
+ * no event has been received for `expectingEventBurstTimeout`, or once `maxEventBurstDelay` has elapsed since the
+ * first event not yet reflected by the bundle state, whichever is sooner. Retrievals are at least
+ * `minRefreshInterval` apart. The number of events of each burst and the time taken to observe them are reported to
+ * the [[Instrumentation]] in use.
+ *
  * If `stopAfter` is specified, [[BundlesConnector]] will terminate with [[TimeoutException]] if the bundles stream
  * is not completed within the duration specified by `stopAfter`.
  *
@@ -141,32 +187,39 @@ class BundlesConnector(
     getBundlesEventsRequest: HttpRequest,
     getBundlesRequest: HttpRequest,
     stopAfter: Option[FiniteDuration],
-    expectingEventBurstTimeout: FiniteDuration,
-    reconnectInterval: FiniteDuration
-) extends FSM[BundlesConnector.State, Seq[Bundle]] with ActorPublisher[Seq[Bundle]] {
+    protected val expectingEventBurstTimeout: FiniteDuration,
+    reconnectInterval: FiniteDuration,
+    connectionPoolSettings: Option[ConnectionPoolSettings],
+    protected val maxEventBurstDelay: FiniteDuration,
+    protected val minRefreshInterval: FiniteDuration
+) extends FSM[BundlesConnector.State, BundlesIndex] with ActorPublisher[BundlesUpdate] with EventBursts {
 
   private implicit val mat = ActorMaterializer()
 
   import BundlesConnector._
+  import EventBursts.EventBurstOver
   import context.dispatcher
   import context.system
 
-  startWith(Initializing, Seq.empty)
+  // The latest bundles received while there was no demand to publish them
+  private var pendingBundles = Option.empty[Seq[Bundle]]
+
+  startWith(Initializing, BundlesIndex.empty)
 
   stopAfter.foreach(context.system.scheduler.scheduleOnce(_, self, BundlesConnector.TimeoutException))
 
   when(Initializing, reconnectInterval) {
     case Event(GetBundles, _) =>
-      log.debug("Retrieving bundle info")
-      getBundles(self, createBundlesConnection(conductrAddress), getBundlesRequest)
+      refresh()
       stay()
 
-    case Event(GetBundlesSuccess(newBundles), _) =>
+    case Event(GetBundlesSuccess(newBundles), bundles) =>
       log.debug("Received bundles from ConductR: {}", newBundles)
       if (totalDemand > 0) {
-        onNext(newBundles)
+        val (newIndex, changes) = bundles.update(newBundles)
+        onNext(BundlesUpdate(newIndex, changes))
         self ! ConsumeBundlesEvents
-        goto(ExpectingEvent).using(newBundles)
+        goto(ExpectingEvent).using(newIndex)
       } else {
         self ! GetBundles
         stay()
@@ -180,26 +233,28 @@ class BundlesConnector(
 
   when(ExpectingEvent) {
     case Event(ServerSentEvent(data, Some(_), _, _), _) =>
+      eventReceived(firstOfBurst = true)
       goto(ExpectingEventBurst)
 
     case Event(GetBundles, _) =>
-      log.debug("Retrieving bundle info")
-      getBundles(self, createBundlesConnection(conductrAddress), getBundlesRequest)
+      refresh()
       stay()
 
     case Event(GetBundlesError(e), _) =>
       log.error(e, "Retrieval of bundle info failed. Trying again shortly.")
+      refreshFailed()
       context.system.scheduler.scheduleOnce(reconnectInterval, self, GetBundles)
       stay()
   }
 
-  when(ExpectingEventBurst, expectingEventBurstTimeout) {
+  when(ExpectingEventBurst) {
     case Event(ServerSentEvent(data, Some(_), _, _), _) =>
+      eventReceived(firstOfBurst = false)
       stay()
 
-    case Event(StateTimeout, _) =>
-      log.debug("Event burst over - getting info on bundles")
-      self ! GetBundles
+    case Event(EventBurstOver, _) =>
+      val events = eventBurstOver(GetBundles)
+      log.debug("Event burst of {} events over - getting info on bundles", events)
       goto(ExpectingEvent)
 
     case Event(GetBundles, _) =>
@@ -208,6 +263,7 @@ class BundlesConnector(
 
     case Event(GetBundlesError(e), _) =>
       log.debug("Ignoring retrieval of bundle info failed while waiting for event burst. {}", e)
+      refreshFailed()
       stay()
   }
 
@@ -225,18 +281,33 @@ class BundlesConnector(
         case Failure(reason) => log.error(reason, "Bundles events connection closed")
         case _               => log.debug("Bundles events connection closed")
       }
+      // The bundle state is retrieved once the connection has been established again
+      cancelEventBurst()
       context.system.scheduler.scheduleOnce(reconnectInterval, self, ConsumeBundlesEvents)
       goto(ExpectingEvent)
 
-    case Event(GetBundlesSuccess(newBundles), bundles) if newBundles != bundles =>
-      log.debug("Received changed bundles from ConductR: {}", newBundles)
-      if (totalDemand > 0)
-        onNext(newBundles)
-
-      stay().using(newBundles)
+    case Event(GetBundlesSuccess(newBundles), bundles) =>
+      refreshSucceeded().foreach {
+        case (events, latencyNanos) => Instrumentation.get.bundlesRefreshed(events, latencyNanos)
+      }
+      pendingBundles = None
+      val (newIndex, changes) = bundles.update(newBundles)
+      if (changes.isEmpty) {
+        log.debug("Received unchanged bundles from ConductR: {}", newBundles)
+        stay()
+      } else if (totalDemand > 0) {
+        log.debug("Received changed bundles from ConductR: {}", changes)
+        onNext(BundlesUpdate(newIndex, changes))
+        stay().using(newIndex)
+      } else {
+        log.debug("Received changed bundles from ConductR while there is no demand: {}", changes)
+        pendingBundles = Some(newBundles)
+        stay()
+      }
 
-    case Event(GetBundlesSuccess(newBundles), _) =>
-      log.debug("Received unchanged bundles from ConductR: {}", newBundles)
+    case Event(ActorPublisherMessage.Request(_), _) =>
+      pendingBundles.foreach(self ! GetBundlesSuccess(_))
+      pendingBundles = None
       stay()
 
     case Event(v @ BundlesConnector.TimeoutException, _) =>
@@ -248,9 +319,23 @@ class BundlesConnector(
 
   self ! GetBundles
 
-  protected def createBundlesConnection(conductrAddress: URL) = {
+  private def refresh(): Unit = {
+    log.debug("Retrieving bundle info")
+    refreshStarted()
+    getBundles(self, createBundlesConnection(conductrAddress), getBundlesRequest)
+  }
+
+  protected def createBundlesConnection(conductrAddress: URL): Connection = {
     val (host, port) = conductrHostAndPort(conductrAddress)
-    Http().outgoingConnection(host, port)
+    connectionPoolSettings match {
+      case Some(settings) =>
+        Flow[HttpRequest]
+          .map(_ -> NotUsed)
+          .via(Http().cachedHostConnectionPool[NotUsed](host, port, settings))
+          .map(_._1.get)
+      case None =>
+        Http().outgoingConnection(host, port)
+    }
   }
 
   protected def createBundlesEventsConnection(conductrAddress: URL) = {
@@ -1,10 +1,11 @@
 package com.typesafe.conductr.clientlib.akka
 
-import java.io._
+import java.io.InputStream
 import java.net.{ URI, URL }
-import java.nio.file.Paths
-import java.util.zip.ZipInputStream
+import java.nio.file.{ Path, Paths }
+import java.util.zip.ZipFile
 
+import akka.NotUsed
 import akka.http.scaladsl.marshalling.Marshal
 import akka.http.scaladsl.model.HttpEntity.IndefiniteLength
 import akka.http.scaladsl.model._
@@ -12,19 +13,25 @@ import akka.http.scaladsl.model.headers.CacheDirectives.`no-cache`
 import akka.http.scaladsl.model.headers.`Cache-Control`
 import akka.http.scaladsl.unmarshalling.{ PredefinedFromEntityUnmarshallers, Unmarshal }
 import akka.http.scaladsl.unmarshalling.sse.EventStreamUnmarshalling
-import akka.stream.scaladsl.{ FileIO, Sink, Source }
+import akka.stream.{ KillSwitches, UniqueKillSwitch }
+import akka.stream.scaladsl.{ FileIO, Flow, Keep, Sink, Source }
 import akka.util.ByteString
+import com.typesafe.conductr.bundlelib.scala.CacheLike
 import com.typesafe.conductr.lib.HttpPayload
 import com.typesafe.conductr.lib.akka.{ ConnectionContext, ConnectionHandler }
 import com.typesafe.conductr.clientlib.akka.models._
 import com.typesafe.conductr.clientlib.scala.models._
-import com.typesafe.conductr.clientlib.scala.{ AbstractControlClient, withCloseable, withZipInputStream }
+import com.typesafe.conductr.clientlib.scala.{ AbstractControlClient, withCloseable }
 import com.typesafe.config.ConfigFactory
 import akka.http.scaladsl.model.sse.ServerSentEvent
 import org.reactivestreams.{ Subscriber, Publisher }
 import play.api.libs.json.{ Json, Reads }
+import scala.collection.JavaConverters._
+import scala.collection.mutable
 import scala.concurrent.duration._
-import scala.concurrent.{ Future, blocking }
+import scala.concurrent.{ Future, Promise, blocking }
+import scala.util.{ Failure, Success, Try }
+import scala.util.control.NonFatal
 
 /**
  * Factory to retrieve the ConductR control client instance.
@@ -39,6 +46,12 @@ object ControlClient {
   /** JAVA API **/
   def create(conductrAddress: URL): ControlClient =
     ControlClient(conductrAddress)
+
+  /**
+   * Fails a followed stream of log entries when more entries have been written since the last retrieval than can be
+   * retrieved at once, so that entries would otherwise be skipped.
+   */
+  final case class FollowWindowExceeded(message: String) extends RuntimeException(message)
 }
 
 /**
@@ -60,14 +73,37 @@ class ControlClient(handler: ConnectionHandler, conductrAddress: URL, apiVersion
   private final val DefaultEventsCount = 10
   private final val DefaultLogsCount = 10
   private final val DefaultScale = 1
+  private final val DefaultParallelism = 4
+  private final val FileChunkSize = 64 * 1024
+  private final val FollowCount = 100
+  private final val MaxFollowCount = 1600
+  private final val BundleIdPattern = "[0-9a-fA-F]+(-[0-9a-fA-F]*)?"
+
+  // The bundle state shared by those waiting on it, per connection context
+  private val bundlesHubs = mutable.Map.empty[ConnectionContext, BundlesHub]
 
   /**
    * @see [[AbstractControlClient.getBundlesInfo()]]
    * @param cc implicit connection context
    * @return the bundles
    */
-  override def getBundlesInfo()(implicit cc: ConnectionContext): Future[Seq[Bundle]] =
+  override def getBundlesInfo()(implicit cc: ConnectionContext): Future[Seq[Bundle]] = timed("getBundlesInfo") {
     handler.withConnectedRequest(Payload.bundlesInfo)(handleAsSeq[Bundle])
+  }
+
+  /**
+   * Retrieve information of all bundles as a stream, each bundle being decoded as it arrives, so that the memory
+   * required does not grow with the number of bundles. The bundles are requested when this method is called; the
+   * returned source is to be run once only and should be run to completion so that the connection is released.
+   *
+   * @see [[getBundlesInfo()]]
+   * @param cc implicit connection context
+   * @return the bundles, or no bundles if the request has been failed
+   */
+  def streamBundlesInfo()(implicit cc: ConnectionContext): Source[Bundle, NotUsed] =
+    Source.fromFuture(timed("streamBundlesInfo") {
+      handler.withConnectedRequest(Payload.bundlesInfo)(handleAsSource[Bundle]((_, _) => Future.successful(Source.empty)))
+    }).flatMapConcat(identity)
 
   /**
    * @see [[AbstractControlClient.getBundle()]]
@@ -81,44 +117,119 @@ class ControlClient(handler: ConnectionHandler, conductrAddress: URL, apiVersion
    *         - BundleGetFailure if the get bundle request has been failed. This object contains the HTTP status code and error message.
    */
   override def getBundle(bundleId: BundleId, bundleData: Subscriber[Array[Byte]], configData: Subscriber[Array[Byte]])(implicit cc: ConnectionContext): Future[BundleGetResult] =
+    getBundle(bundleId, toByteArraySink(bundleData), toByteArraySink(configData))
+
+  /**
+   * Retrieves the bundle into sinks of byte strings, being the chunks of the response body as received.
+   * The future completes once the bundle file has been found in the response, i.e. before its data has been
+   * streamed into the sink. Should the digest of the data differ from the digest within the file name then the
+   * data stream fails with a [[BundleDigestMismatch]].
+   *
+   * @param bundleId An existing bundle identifier, a shortened version of it (min 7 characters) or
+   *                 a non-ambiguous name given to the bundle during loading.
+   * @param bundleData A sink to which the bundle data will be streamed into.
+   * @param configData A sink to which the config data will be streamed into.
+   * @param cc implicit connection context
+   * @return The result as a Future[BundleGetResult]. BundleGetResult is a sealed trait and can be either:
+   *         - BundleGetSuccess if the get bundle request has been succeeded. This object contains the bundle id, bundle file, and optionally the config file.
+   *         - BundleGetFailure if the get bundle request has been failed. This object contains the HTTP status code and error message.
+   */
+  def getBundle(bundleId: BundleId, bundleData: Sink[ByteString, Any], configData: Sink[ByteString, Any])(implicit cc: ConnectionContext): Future[BundleGetResult] = timed("getBundle") {
+    import cc.actorMaterializer
+
+    def streamTo(sink: Sink[ByteString, Any])(data: Source[ByteString, Any]): Future[Option[Digest]] = {
+      data.runWith(sink)
+      Future.successful(None)
+    }
+
+    bundleGet(bundleId)(
+      streamTo(bundleData),
+      config => streamTo(configData)(config.getOrElse(Source.empty)),
+      error => Source.failed[ByteString](error).alsoTo(configData).runWith(bundleData)
+    ).map(_.result)(cc.actorMaterializer.executionContext)
+  }
+
+  /**
+   * Retrieves the bundle into files, writing the chunks of the response body as received. The configuration file
+   * is only written if the bundle has a configuration. The future completes once the files have been written, or
+   * fails with a [[BundleDigestMismatch]] should the digest of a file differ from the digest within its name.
+   *
+   * @param bundleId An existing bundle identifier, a shortened version of it (min 7 characters) or
+   *                 a non-ambiguous name given to the bundle during loading.
+   * @param bundleFile The file to which the bundle data will be written.
+   * @param configFile The file to which the config data will be written.
+   * @param cc implicit connection context
+   * @return The result as a Future[BundleGetResult]. BundleGetResult is a sealed trait and can be either:
+   *         - BundleGetSuccess if the get bundle request has been succeeded. This object contains the bundle id, bundle file, and optionally the config file.
+   *         - BundleGetFailure if the get bundle request has been failed. This object contains the HTTP status code and error message.
+   */
+  def getBundle(bundleId: BundleId, bundleFile: Path, configFile: Path)(implicit cc: ConnectionContext): Future[BundleGetResult] =
+    getBundleWithDigests(bundleId, bundleFile, configFile).map(_.result)(cc.actorMaterializer.executionContext)
+
+  /**
+   * As per retrieving the bundle into files only that the result is provided along with the SHA-256 digests of the
+   * files, as computed while they were written.
+   *
+   * @param bundleId An existing bundle identifier, a shortened version of it (min 7 characters) or
+   *                 a non-ambiguous name given to the bundle during loading.
+   * @param bundleFile The file to which the bundle data will be written.
+   * @param configFile The file to which the config data will be written.
+   * @param cc implicit connection context
+   * @return The result as a Future[BundleGetResultWithDigests], holding the digests of the files written should
+   *         the result be a BundleGetSuccess.
+   */
+  def getBundleWithDigests(bundleId: BundleId, bundleFile: Path, configFile: Path)(implicit cc: ConnectionContext): Future[BundleGetResultWithDigests] = timed("getBundle") {
+    import cc.actorMaterializer
+    import cc.actorMaterializer.executionContext
+
+    def writeTo(file: Path)(data: Source[ByteString, Future[Digest]]): Future[Option[Digest]] = {
+      val (digest, written) = data.toMat(FileIO.toPath(file))(Keep.both).run()
+      for {
+        digest <- digest
+        result <- written
+        _ <- Future.fromTry(result.status)
+      } yield Some(digest)
+    }
+
+    bundleGet(bundleId)(
+      writeTo(bundleFile),
+      _.fold(Future.successful(Option.empty[Digest]))(writeTo(configFile)),
+      _ => ()
+    )
+  }
+
+  private def bundleGet(bundleId: BundleId)(
+    bundleData: Source[ByteString, Future[Digest]] => Future[Option[Digest]],
+    configData: Option[Source[ByteString, Future[Digest]]] => Future[Option[Digest]],
+    dataFailed: Throwable => Unit
+  )(implicit cc: ConnectionContext): Future[BundleGetResultWithDigests] =
     handler.withConnectedRequest(Payload.getBundle(bundleId)) { (responseCode, responseHeader, responseEntity) =>
       import cc.actorMaterializer
       import cc.actorMaterializer.executionContext
 
-      def bundleGet: Future[BundleGetResult] = {
+      def bundleGet: Future[BundleGetResultWithDigests] = {
 
-        def bundleFileFromResponse(bundleParts: Seq[(String, Multipart.FormData.BodyPart)]): String =
+        def fileData(fileName: String, bodyPart: Multipart.FormData.BodyPart): Source[ByteString, Future[Digest]] =
+          bodyPart.entity.dataBytes.viaMat(BundleDigest.flow(fileName))(Keep.right)
+
+        def bundleFileFromResponse(bundleParts: Seq[(String, Multipart.FormData.BodyPart)]): (String, Future[Option[Digest]]) =
           bundleParts match {
             case Seq((fileName, bodyPart)) if bodyPart.name == "bundle" =>
-              bodyPart.entity.dataBytes
-                .map(_.toArray)
-                .runWith(Sink.fromSubscriber(bundleData))
-
-              fileName
+              fileName -> bundleData(fileData(fileName, bodyPart))
 
             case _ =>
               val error = InvalidBundleGetResponseBody("Unable to find bundle file in the response body")
-
-              Source.failed[Array[Byte]](error)
-                .alsoTo(Sink.fromSubscriber(configData))
-                .runWith(Sink.fromSubscriber(bundleData))
-
+              dataFailed(error)
               throw error
           }
 
-        def configFileFromResponse(configParts: Seq[(String, Multipart.FormData.BodyPart)]): Option[String] =
+        def configFileFromResponse(configParts: Seq[(String, Multipart.FormData.BodyPart)]): (Option[String], Future[Option[Digest]]) =
           configParts.find(_._2.name == "configuration") match {
             case Some((fileName, configPart)) =>
-              configPart.entity.dataBytes
-                .map(_.toArray)
-                .runWith(Sink.fromSubscriber(configData))
-
-              Some(fileName)
+              Some(fileName) -> configData(Some(fileData(fileName, configPart)))
 
             case _ =>
-              Source.empty[Array[Byte]]
-                .runWith(Sink.fromSubscriber(configData))
-              None
+              None -> configData(None)
           }
 
         for {
@@ -133,26 +244,25 @@ class ControlClient(handler: ConnectionHandler, conductrAddress: URL, apiVersion
             .runWith(Sink.head)
 
           (bundleParts, otherParts) = bundleAndOthers
-          bundleFileName = bundleFileFromResponse(bundleParts)
+          (bundleFileName, bundleDataDone) = bundleFileFromResponse(bundleParts)
 
           configAndOthers <- otherParts.prefixAndTail(1).runWith(Sink.head)
           (configParts, remaining) = configAndOthers
-          configFileName = configFileFromResponse(configParts)
+          (configFileName, configDataDone) = configFileFromResponse(configParts)
 
           _ <- remaining.map(_._2.entity.dataBytes.runWith(Sink.ignore)).runWith(Sink.ignore)
-        } yield BundleGetSuccess(bundleId, bundleFileName, configFileName)
+          bundleDigest <- bundleDataDone
+          configDigest <- configDataDone
+        } yield BundleGetResultWithDigests(BundleGetSuccess(bundleId, bundleFileName, configFileName), bundleDigest, configDigest)
       }
 
-      def bundleGetFailure: Future[BundleGetFailure] = {
+      def bundleGetFailure: Future[BundleGetResultWithDigests] = {
         implicit val unmarshaller = PredefinedFromEntityUnmarshallers.stringUnmarshaller
         for {
           httpErrorMessage <- Unmarshal(responseEntity).to[String]
         } yield {
-          Source.failed[Array[Byte]](new RuntimeException(s"HTTP Failure when getting bundle - http code [$responseCode] - message [$httpErrorMessage]"))
-            .alsoTo(Sink.fromSubscriber(configData))
-            .runWith(Sink.fromSubscriber(bundleData))
-
-          BundleGetFailure(responseCode, httpErrorMessage)
+          dataFailed(new RuntimeException(s"HTTP Failure when getting bundle - http code [$responseCode] - message [$httpErrorMessage]"))
+          BundleGetResultWithDigests(BundleGetFailure(responseCode, httpErrorMessage), None, None)
         }
       }
 
@@ -192,7 +302,7 @@ class ControlClient(handler: ConnectionHandler, conductrAddress: URL, apiVersion
    *         - BundleDescriptorGetConfigSuccess if the bundle descriptor retrieval is successful. This object contains the actual bundle descriptor.
    *         - BundleDescriptorGetFailure if http request failed. The object contains the HTTP status code and error message.
    */
-  def getBundleDescriptorConfig(bundleId: BundleId)(implicit cc: CC): Future[BundleGetDescriptorConfigResult] =
+  def getBundleDescriptorConfig(bundleId: BundleId)(implicit cc: CC): Future[BundleGetDescriptorConfigResult] = timed("getBundleDescriptorConfig") {
     handler.withConnectedRequest(Payload.getBundleDescriptor(bundleId)) { (responseCode, responseHeader, responseEntity) =>
       import cc.actorMaterializer
       import cc.actorMaterializer.executionContext
@@ -216,6 +326,7 @@ class ControlClient(handler: ConnectionHandler, conductrAddress: URL, apiVersion
       }
       ResponseHandler.withHttpFailure(responseCode)(bundleGetDescriptor, bundleGetDescriptorFailure)
     }
+  }
 
   /**
    * @see [[AbstractControlClient.loadBundle()]]
@@ -232,24 +343,44 @@ class ControlClient(handler: ConnectionHandler, conductrAddress: URL, apiVersion
    *         - BundleRequestFailure if the loading request has been failed. This object contains the HTTP status code and error message.
    */
   @deprecated("To be replaced with loadBundle with files supplied via reactive stream publishers", since = "1.4.11")
-  override def loadBundle(bundle: URI, config: Option[URI] = None)(implicit cc: ConnectionContext): Future[BundleRequestResult] = {
-    def filename(uri: URI): String =
-      Paths.get(uri.getPath).getFileName.toString
+  override def loadBundle(bundle: URI, config: Option[URI] = None)(implicit cc: ConnectionContext): Future[BundleRequestResult] =
+    loadBundle(Paths.get(bundle.getPath), config.map(v => Paths.get(v.getPath)))
 
-    def filePublisher(uri: URI): Publisher[Array[Byte]] =
-      toByteArrayPublisher(FileIO.fromPath(Paths.get(uri.getPath)))
+  /**
+   * Loads the bundle from files, streaming the chunks read from each file into the request body as they are.
+   * @param bundle The file that is the bundle.
+   *               The filename is important with its hex digest string and is required to be consistent
+   *               with the SHA-256 hash of the bundle’s contents.
+   *               Any inconsistency between the hashes will result in the load being rejected.
+   * @param config Similar in form to the bundle, only that is the file that describes the configuration.
+   *               Again any inconsistency between the hex digest string in the filename, and the SHA-256 digest
+   *               of the actual contents will result in the load being rejected.
+   * @param cc implicit connection context
+   * @return The result as a Future[BundleRequestResult]. BundleRequestResult is a sealed trait and can be either:
+   *         - BundleRequestSuccess if the loading request has been succeeded. This object contains the request and bundle id
+   *         - BundleRequestFailure if the loading request has been failed. This object contains the HTTP status code and error message.
+   */
+  def loadBundle(bundle: Path, config: Option[Path])(implicit cc: ConnectionContext): Future[BundleRequestResult] = {
+    import cc.context.dispatcher
 
-    val tmpDir = new File(System.getProperty("java.io.tmpdir"))
+    def filename(path: Path): String =
+      path.getFileName.toString
 
-    val bundleConf = extractZipEntry("bundle.conf", bundle, tmpDir).get
-    val bundleConfOverlay = config.flatMap(extractZipEntry("bundle.conf", _, tmpDir))
+    def fileSource(path: Path): Source[ByteString, Any] =
+      FileIO.fromPath(path, FileChunkSize)
 
-    val bundleConfData = filePublisher(bundleConf)
-    val bundleConfOverlayData = bundleConfOverlay.map(filePublisher)
-    val bundleData = BundleFile(filename(bundle), filePublisher(bundle))
-    val configData = config.map(v => BundleConfigurationFile(filename(v), filePublisher(v)))
+    val bundleConfs = Future {
+      val bundleConf = readZipEntry("bundle.conf", bundle)
+        .getOrElse(throw new IllegalArgumentException(s"Unable to find bundle.conf in the bundle file [$bundle]"))
+      bundleConf -> config.flatMap(readZipEntry("bundle.conf", _))
+    }
 
-    loadBundle(bundleConfData, bundleConfOverlayData, bundleData, configData)
+    bundleConfs.flatMap {
+      case (bundleConf, bundleConfOverlay) =>
+        val bundleData = BundleSource(filename(bundle), fileSource(bundle))
+        val configData = config.map(v => BundleConfigurationSource(filename(v), fileSource(v)))
+        loadBundle(Source.single(bundleConf), bundleConfOverlay.map(Source.single), bundleData, configData)
+    }
   }
 
   /**
@@ -268,33 +399,93 @@ class ControlClient(handler: ConnectionHandler, conductrAddress: URL, apiVersion
    *         - BundleRequestSuccess if the loading request has been succeeded. This object contains the request and bundle id
    *         - BundleRequestFailure if the loading request has been failed. This object contains the HTTP status code and error message.
    */
-  override def loadBundle(bundleConf: Publisher[Array[Byte]], bundleConfOverlay: Option[Publisher[Array[Byte]]], bundle: BundleFile, config: Option[BundleConfigurationFile])(implicit cc: ConnectionContext): Future[BundleRequestResult] = {
+  override def loadBundle(bundleConf: Publisher[Array[Byte]], bundleConfOverlay: Option[Publisher[Array[Byte]]], bundle: BundleFile, config: Option[BundleConfigurationFile])(implicit cc: ConnectionContext): Future[BundleRequestResult] =
+    loadBundle(
+      toByteStringSource(bundleConf),
+      bundleConfOverlay.map(toByteStringSource),
+      BundleSource(bundle.fileName, toByteStringSource(bundle.data)),
+      config.map(c => BundleConfigurationSource(c.fileName, toByteStringSource(c.data)))
+    )
+
+  /**
+   * Loads the bundle from sources of byte strings, streaming them into the request body as they are. The digests of
+   * the bundle and config files are computed along the way; should either differ from the digest within the file
+   * name then the future fails with a [[BundleDigestMismatch]].
+   * @param bundleConf bundle.conf contained within the `bundle` file.
+   * @param bundleConfOverlay bundle.conf override contained within the `config` file.
+   * @param bundle The file that is the bundle.
+   *               The filename is important with its hex digest string and is required to be consistent
+   *               with the SHA-256 hash of the bundle’s contents.
+   *               Any inconsistency between the hashes will result in the load being rejected.
+   * @param config Similar in form to the bundle, only that is the file that describes the configuration.
+   *               Again any inconsistency between the hex digest string in the filename, and the SHA-256 digest
+   *               of the actual contents will result in the load being rejected.
+   * @param cc implicit connection context
+   * @return The result as a Future[BundleRequestResult]. BundleRequestResult is a sealed trait and can be either:
+   *         - BundleRequestSuccess if the loading request has been succeeded. This object contains the request and bundle id
+   *         - BundleRequestFailure if the loading request has been failed. This object contains the HTTP status code and error message.
+   */
+  def loadBundle(bundleConf: Source[ByteString, Any], bundleConfOverlay: Option[Source[ByteString, Any]], bundle: BundleSource, config: Option[BundleConfigurationSource])(implicit cc: ConnectionContext): Future[BundleRequestResult] =
+    loadBundleWithDigest(bundleConf, bundleConfOverlay, bundle, config).map(_.result)(cc.context.dispatcher)
+
+  /**
+   * As per loading the bundle from sources of byte strings only that the result is provided along with the SHA-256
+   * digest of the bundle file, as computed while it was sent.
+   * @param bundleConf bundle.conf contained within the `bundle` file.
+   * @param bundleConfOverlay bundle.conf override contained within the `config` file.
+   * @param bundle The file that is the bundle.
+   * @param config Similar in form to the bundle, only that is the file that describes the configuration.
+   * @param cc implicit connection context
+   * @return The result as a Future[BundleRequestResultWithDigest], holding the digest of the bundle file should the
+   *         result be a BundleRequestSuccess.
+   */
+  def loadBundleWithDigest(bundleConf: Source[ByteString, Any], bundleConfOverlay: Option[Source[ByteString, Any]], bundle: BundleSource, config: Option[BundleConfigurationSource])(implicit cc: ConnectionContext): Future[BundleRequestResultWithDigest] = timed("loadBundle") {
     import cc.actorMaterializer
     import cc.context.dispatcher
 
+    val bundleDigest = Promise[Digest]()
+    val configDigest = Promise[Digest]()
+
     def createRequestBody: Future[RequestEntity] = {
 
-      def fileBodyPart(name: String, filename: String, source: Source[ByteString, _]): Multipart.FormData.BodyPart =
+      def fileBodyPart(name: String, filename: String, source: Source[ByteString, Any]): Multipart.FormData.BodyPart =
         Multipart.FormData.BodyPart(
           name,
           IndefiniteLength(MediaTypes.`application/octet-stream`, source),
           Map("filename" -> filename)
         )
 
-      def toByteStringSource(input: Publisher[Array[Byte]]): Source[ByteString, _] =
-        Source.fromPublisher(input).map(ByteString(_))
+      def digested(fileName: String, source: Source[ByteString, Any], digest: Promise[Digest]): Source[ByteString, Any] =
+        source
+          .viaMat(BundleDigest.flow(fileName))(Keep.right)
+          .mapMaterializedValue(digest.tryCompleteWith(_))
 
-      val bundleConfBodyPart = fileBodyPart("bundleConf", "bundle.conf", toByteStringSource(bundleConf))
-      val bundleConfOverlayBodyPart = bundleConfOverlay.map(overlay => fileBodyPart("bundleConfOverlay", "bundle.conf", toByteStringSource(overlay)))
-      val bundleFileBodyPart = fileBodyPart("bundle", bundle.fileName, toByteStringSource(bundle.data))
-      val configFileBodyPart = config.map(c => fileBodyPart("configuration", c.fileName, toByteStringSource(c.data)))
+      val bundleConfBodyPart = fileBodyPart("bundleConf", "bundle.conf", bundleConf)
+      val bundleConfOverlayBodyPart = bundleConfOverlay.map(overlay => fileBodyPart("bundleConfOverlay", "bundle.conf", overlay))
+      val bundleFileBodyPart = fileBodyPart("bundle", bundle.fileName, digested(bundle.fileName, bundle.data, bundleDigest))
+      val configFileBodyPart = config.map(c => fileBodyPart("configuration", c.fileName, digested(c.fileName, c.data, configDigest)))
 
       val bodyParts = List(Some(bundleConfBodyPart), bundleConfOverlayBodyPart, Some(bundleFileBodyPart), configFileBodyPart).flatten
       val result = Marshal(Multipart.FormData(Source(bodyParts))).to[RequestEntity]
       result
     }
 
+    // A file whose digest differs from its name fails the request body, whatever the outcome of the request
+    def digestMismatch: Option[BundleDigestMismatch] =
+      (bundleDigest.future.value ++ configDigest.future.value).collectFirst {
+        case Failure(e: BundleDigestMismatch) => e
+      }
+
     handler.withConnectedRequest(Payload.loadBundle, Some(createRequestBody))(handleAsHttpFailure[BundleRequestResult, BundleRequestSuccess, BundleRequestFailure])
+      .recoverWith {
+        case NonFatal(e) => Future.failed(digestMismatch.getOrElse(e))
+      }
+      .flatMap {
+        case v: BundleRequestSuccess =>
+          Future.successful(BundleRequestResultWithDigest(v, bundleDigest.future.value.flatMap(_.toOption)))
+        case v =>
+          digestMismatch.fold(Future.successful(BundleRequestResultWithDigest(v, None)))(Future.failed)
+      }
   }
 
   /**
@@ -312,28 +503,20 @@ class ControlClient(handler: ConnectionHandler, conductrAddress: URL, apiVersion
    *         - BundleRequestFailure if the loading request has been failed. This object contains the HTTP status code and error message.
    */
   def loadBundleComplete(bundleConf: Publisher[Array[Byte]], bundleConfOverlay: Option[Publisher[Array[Byte]]], bundle: BundleFile, config: Option[BundleConfigurationFile], completeTimeout: FiniteDuration = 30.seconds)(implicit cc: ConnectionContext): Future[BundleRequestResult] = {
-    import cc.context
     import cc.context.dispatcher
-    import cc.actorMaterializer
 
     loadBundle(bundleConf, bundleConfOverlay, bundle, config).flatMap {
       case v @ BundleRequestSuccess(_, bundleIdActual) =>
-        def isInstalled(bundles: Seq[Bundle]): Boolean =
-          bundles.filter(_.bundleId == bundleIdActual).exists(_.bundleInstallations.nonEmpty)
-
-        for {
-          bundlesEventsRequest <- handler.createRequest(Payload.bundlesEvents(Set.empty))
-          bundlesRequest <- handler.createRequest(Payload.bundlesInfo)
-          result <- Source.single(bundlesEventsRequest -> bundlesRequest)
-            .via(BundlesConnector.connect(conductrAddress, stopAfter = Some(completeTimeout)))
-            .filter(isInstalled)
-            .runWith(Sink.head)
-            .map(_ => v)
-            .recoverWith {
-              case BundlesConnector.TimeoutException =>
-                Future.failed(BundleRequestTimedOut(s"Timed out waiting for bundle [$bundleIdActual] to be installed in $completeTimeout"))
-            }
-        } yield result
+        def isInstalled(bundles: BundlesIndex): Boolean =
+          bundles.get(bundleIdActual).exists(_.bundleInstallations.nonEmpty)
+
+        bundlesHub
+          .await(isInstalled, completeTimeout)
+          .map(_ => v)
+          .recoverWith {
+            case BundlesConnector.TimeoutException =>
+              Future.failed(BundleRequestTimedOut(s"Timed out waiting for bundle [$bundleIdActual] to be installed in $completeTimeout"))
+          }
 
       case v: BundleRequestFailure =>
         Future.successful(v)
@@ -353,8 +536,9 @@ class ControlClient(handler: ConnectionHandler, conductrAddress: URL, apiVersion
    *         - BundleRequestSuccess if the scaling request has been succeeded. This object contains the request and bundle id
    *         - BundleRequestFailure if the scaling request has been failed. This object contains the HTTP status code and error message.
    */
-  override def runBundle(bundleId: BundleId, scale: Option[Int] = None, affinity: Option[String] = None)(implicit cc: ConnectionContext): Future[BundleRequestResult] =
+  override def runBundle(bundleId: BundleId, scale: Option[Int] = None, affinity: Option[String] = None)(implicit cc: ConnectionContext): Future[BundleRequestResult] = timed("runBundle") {
     handler.withConnectedRequest(Payload.runBundle(bundleId, scale.getOrElse(DefaultScale), affinity))(handleAsHttpFailure[BundleRequestResult, BundleRequestSuccess, BundleRequestFailure])
+  }
 
   /**
    * @see [[AbstractControlClient.runBundleComplete()]]
@@ -370,37 +554,18 @@ class ControlClient(handler: ConnectionHandler, conductrAddress: URL, apiVersion
    *         - BundleRequestFailure if the scaling request has been failed. This object contains the HTTP status code and error message.
    */
   def runBundleComplete(bundleId: BundleId, scale: Option[Int] = None, affinity: Option[String] = None, completeTimeout: FiniteDuration = 30.seconds)(implicit cc: ConnectionContext): Future[BundleRequestResult] = {
-    import cc.context
     import cc.context.dispatcher
-    import cc.actorMaterializer
 
     runBundle(bundleId, scale, affinity).flatMap {
       case v @ BundleRequestSuccess(_, bundleIdActual) =>
-        val requiredScale = scale.getOrElse(1)
-
-        def runningBundlesCount(bundles: Seq[Bundle]): Int =
-          bundles
-            .filter(_.bundleId == bundleIdActual)
-            .map(_.bundleExecutions.count(_.isStarted))
-            .sum
-
-        def isDesiredScaleAchieved(bundles: Seq[Bundle]) =
-          runningBundlesCount(bundles) >= requiredScale
-
-        for {
-          bundlesEventsRequest <- handler.createRequest(Payload.bundlesEvents(Set.empty))
-          bundlesRequest <- handler.createRequest(Payload.bundlesInfo)
-          result <- Source.single(bundlesEventsRequest -> bundlesRequest)
-            .via(BundlesConnector.connect(conductrAddress, stopAfter = Some(completeTimeout)))
-            .filter(isDesiredScaleAchieved)
-            .runWith(Sink.head)
-            .map(_ => v)
-            .recoverWith {
-              case BundlesConnector.TimeoutException =>
-                val errorMessage = s"Timed out waiting for bundle [$bundleIdActual] to be scaled to ${scale.getOrElse(1)} instance in $completeTimeout"
-                Future.failed(BundleRequestTimedOut(errorMessage))
-            }
-        } yield result
+        bundlesHub
+          .await(isScaled(bundleIdActual, scale.getOrElse(DefaultScale)), completeTimeout)
+          .map(_ => v)
+          .recoverWith {
+            case BundlesConnector.TimeoutException =>
+              val errorMessage = s"Timed out waiting for bundle [$bundleIdActual] to be scaled to ${scale.getOrElse(1)} instance in $completeTimeout"
+              Future.failed(BundleRequestTimedOut(errorMessage))
+          }
 
       case v: BundleRequestFailure =>
         Future.successful(v)
@@ -428,8 +593,71 @@ class ControlClient(handler: ConnectionHandler, conductrAddress: URL, apiVersion
    *         - BundleUnloadSuccess if the unloading request has been succeeded. This object contains the request id
    *         - BundleUnloadFailure if the unloading request has been failed. This object contains the HTTP status code and error message.
    */
-  override def unloadBundle(bundleId: BundleId)(implicit cc: ConnectionContext): Future[BundleRequestResult] =
+  override def unloadBundle(bundleId: BundleId)(implicit cc: ConnectionContext): Future[BundleRequestResult] = timed("unloadBundle") {
     handler.withConnectedRequest(Payload.unloadBundle(bundleId))(handleAsHttpFailure[BundleRequestResult, BundleRequestSuccess, BundleRequestFailure])
+  }
+
+  /**
+   * @see [[AbstractControlClient.runBundles()]]
+   */
+  override def runBundles(bundles: Seq[(BundleId, Option[Int])], parallelism: Int = DefaultParallelism)(implicit cc: ConnectionContext): Future[Seq[Try[BundleRequestResult]]] =
+    bulkRequest(bundles, parallelism) {
+      case (bundleId, scale) => runBundle(bundleId, scale)
+    }
+
+  /**
+   * @see [[AbstractControlClient.runBundlesComplete()]]
+   */
+  override def runBundlesComplete(bundles: Seq[(BundleId, Option[Int])], parallelism: Int = DefaultParallelism, completeTimeout: FiniteDuration = 30.seconds)(implicit cc: ConnectionContext): Future[Seq[Try[BundleRequestResult]]] = {
+    import cc.context.dispatcher
+
+    runBundles(bundles, parallelism).flatMap { results =>
+      awaitBulkRequest(bundles.map(_._2.getOrElse(DefaultScale)), results, completeTimeout)(
+        (scale, bundleId) => isScaled(bundleId, scale),
+        (scale, bundleId) => s"Timed out waiting for bundle [$bundleId] to be scaled to $scale instance in $completeTimeout"
+      )
+    }
+  }
+
+  /**
+   * @see [[AbstractControlClient.stopBundles()]]
+   */
+  override def stopBundles(bundleIds: Seq[BundleId], parallelism: Int = DefaultParallelism)(implicit cc: ConnectionContext): Future[Seq[Try[BundleRequestResult]]] =
+    bulkRequest(bundleIds, parallelism)(stopBundle)
+
+  /**
+   * @see [[AbstractControlClient.stopBundlesComplete()]]
+   */
+  override def stopBundlesComplete(bundleIds: Seq[BundleId], parallelism: Int = DefaultParallelism, completeTimeout: FiniteDuration = 30.seconds)(implicit cc: ConnectionContext): Future[Seq[Try[BundleRequestResult]]] = {
+    import cc.context.dispatcher
+
+    stopBundles(bundleIds, parallelism).flatMap { results =>
+      awaitBulkRequest(bundleIds, results, completeTimeout)(
+        (_, bundleId) => bundles => bundles.get(bundleId).forall(!_.bundleExecutions.exists(_.isStarted)),
+        (_, bundleId) => s"Timed out waiting for bundle [$bundleId] to be stopped in $completeTimeout"
+      )
+    }
+  }
+
+  /**
+   * @see [[AbstractControlClient.unloadBundles()]]
+   */
+  override def unloadBundles(bundleIds: Seq[BundleId], parallelism: Int = DefaultParallelism)(implicit cc: ConnectionContext): Future[Seq[Try[BundleRequestResult]]] =
+    bulkRequest(bundleIds, parallelism)(unloadBundle)
+
+  /**
+   * @see [[AbstractControlClient.unloadBundlesComplete()]]
+   */
+  override def unloadBundlesComplete(bundleIds: Seq[BundleId], parallelism: Int = DefaultParallelism, completeTimeout: FiniteDuration = 30.seconds)(implicit cc: ConnectionContext): Future[Seq[Try[BundleRequestResult]]] = {
+    import cc.context.dispatcher
+
+    unloadBundles(bundleIds, parallelism).flatMap { results =>
+      awaitBulkRequest(bundleIds, results, completeTimeout)(
+        (_, bundleId) => bundles => bundles.get(bundleId).isEmpty,
+        (_, bundleId) => s"Timed out waiting for bundle [$bundleId] to be unloaded in $completeTimeout"
+      )
+    }
+  }
 
   /**
    * Returns a stream of all bundle events. Each event is represented by a [[ServerSentEvent]].
@@ -440,8 +668,35 @@ class ControlClient(handler: ConnectionHandler, conductrAddress: URL, apiVersion
    * @return The stream as a [[Source]] wrapped inside a [[scala.concurrent.Future]]
    */
   // TODO: Create an abstract method in [[AbstractControlClient]] to support this method for additional non Akka 2.3 flavors
-  def streamBundlesEvents(events: Set[String] = Set.empty)(implicit cc: CC): Future[EventStreamResult] =
-    handler.withConnectedRequest(Payload.bundlesEvents(events))(handleAsEventStream)
+  def streamBundlesEvents(events: Set[String] = Set.empty)(implicit cc: CC): Future[EventStreamResult] = timed("streamBundlesEvents") {
+    handler.withStreamingRequest(Payload.bundlesEvents(events))(handleAsEventStream)
+  }
+
+  /**
+   * Evict the locations of services from a cache as soon as the bundles providing them change, so that lookups
+   * follow bundles being stopped or rescheduled without waiting for cached locations to expire. The bundle state is
+   * followed with the [[BundlesConnector]] until the returned kill switch is shut down.
+   *
+   * @see [[LocationCacheInvalidator]]
+   * @param cache the cache that service locations are evicted from
+   * @param cc implicit connection context
+   * @return the kill switch that stops the invalidation, wrapped inside a [[scala.concurrent.Future]]
+   */
+  def invalidateLocationCache(cache: CacheLike)(implicit cc: ConnectionContext): Future[UniqueKillSwitch] = {
+    import cc.context
+    import cc.context.dispatcher
+    import cc.actorMaterializer
+
+    for {
+      bundlesEventsRequest <- handler.createRequest(Payload.bundlesEvents(Set.empty))
+      bundlesRequest <- handler.createRequest(Payload.bundlesInfo)
+    } yield Source.single(bundlesEventsRequest -> bundlesRequest)
+      .via(BundlesConnector.connectUpdates(conductrAddress, connectionPoolSettings = cc.connectionPoolSettings))
+      .via(LocationCacheInvalidator.updatesFlow(cache))
+      .viaMat(KillSwitches.single)(Keep.right)
+      .to(Sink.ignore)
+      .run()
+  }
 
   /**
    * @see [[AbstractControlClient.getBundleEvents()]]
@@ -453,8 +708,50 @@ class ControlClient(handler: ConnectionHandler, conductrAddress: URL, apiVersion
    *         - BundleEventsSuccess if the request has been succeeded. This object contains the requested events.
    *         - BundleEventsFailure if the request has been failed. This object contains the HTTP status code and error message.
    */
-  override def getBundleEvents(bundleId: BundleId, count: Option[Int] = None)(implicit cc: ConnectionContext): Future[BundleEventsResult] =
-    handler.withConnectedRequest(Payload.bundleEvents(bundleId, count.getOrElse(DefaultEventsCount)))(handleAsHttpFailure[BundleEventsResult, BundleEventsSuccess, BundleEventsFailure])
+  override def getBundleEvents(bundleId: BundleId, count: Option[Int] = None)(implicit cc: ConnectionContext): Future[BundleEventsResult] = timed("getBundleEvents") {
+    handler.withConnectedRequest(Payload.bundleEvents(bundleId, count.getOrElse(DefaultEventsCount)))(handleAsArray[BundleEvent, BundleEventsResult, BundleEventsFailure](BundleEventsSuccess))
+  }
+
+  /**
+   * Retrieve the events of a given bundle as a stream, each event being decoded as it arrives. The returned source
+   * is to be run once only and should be run to completion so that the connection is released.
+   *
+   * @see [[getBundleEvents()]]
+   * @param bundleId An existing bundle identifier, a shortened version of it (min 7 characters) or
+   *                 a non-ambiguous name given to the bundle during loading.
+   * @param count The number of events to return. Defaults to 10.
+   * @param cc implicit connection context
+   * @return the events. The source fails if the request has been failed.
+   */
+  def streamBundleEvents(bundleId: BundleId, count: Option[Int] = None)(implicit cc: ConnectionContext): Source[BundleEvent, NotUsed] =
+    Source.fromFuture(timed("streamBundleEvents") {
+      handler.withConnectedRequest(Payload.bundleEvents(bundleId, count.getOrElse(DefaultEventsCount)))(
+        handleAsSource[BundleEvent](failedSource[BundleEvent, BundleEventsFailure]("bundle events"))
+      )
+    }).flatMapConcat(identity)
+
+  /**
+   * Follow the events of a given bundle, starting with its latest events and then emitting each event as it occurs.
+   * The events of the bundle are retrieved again whenever ConductR signals a change of the state of that bundle on
+   * `/bundles/events`, and at least every `pollInterval`. Only the events not yet emitted are emitted, in the order
+   * of their timestamp, and the stream reconnects to `/bundles/events` when disconnected, resuming from the last
+   * event emitted. Events are retrieved no faster than they are consumed.
+   *
+   * The latest 100 events are retrieved each time. Should none of them have been emitted already, more are
+   * retrieved, up to the latest 1600. The stream fails with [[ControlClient.FollowWindowExceeded]] when even those
+   * do not reach back to the last event emitted, as events would otherwise be skipped.
+   *
+   * @see [[getBundleEvents()]]
+   * @param bundleId An existing bundle identifier, a shortened version of it (min 7 characters) or
+   *                 a non-ambiguous name given to the bundle during loading.
+   * @param count The number of latest events to start with. Defaults to 10.
+   * @param pollInterval the longest time between two retrievals of the events
+   * @param reconnectInterval the amount of time to wait to reconnect to `/bundles/events` when disconnected
+   * @param cc implicit connection context
+   * @return the events, never completing. The source fails if the retrieval of the events has been failed.
+   */
+  def followBundleEvents(bundleId: BundleId, count: Option[Int] = None, pollInterval: FiniteDuration = 10.seconds, reconnectInterval: FiniteDuration = 500.millis)(implicit cc: ConnectionContext): Source[BundleEvent, NotUsed] =
+    follow(bundleId, count.getOrElse(DefaultEventsCount), pollInterval, reconnectInterval)(n => streamBundleEvents(bundleId, Some(n)))
 
   /**
    * @see [[AbstractControlClient.getBundleLogs()]]
@@ -466,16 +763,61 @@ class ControlClient(handler: ConnectionHandler, conductrAddress: URL, apiVersion
    *         - BundleLogsSuccess if the request has been succeeded. This object contains the requested log messages.
    *         - BundleLogsFailure if the request has been failed. This object contains the HTTP status code and error message.
    */
-  override def getBundleLogs(bundleId: BundleId, count: Option[Int] = None)(implicit cc: ConnectionContext): Future[BundleLogsResult] =
-    handler.withConnectedRequest(Payload.bundleLogs(bundleId, count.getOrElse(DefaultLogsCount)))(handleAsHttpFailure[BundleLogsResult, BundleLogsSuccess, BundleLogsFailure])
+  override def getBundleLogs(bundleId: BundleId, count: Option[Int] = None)(implicit cc: ConnectionContext): Future[BundleLogsResult] = timed("getBundleLogs") {
+    handler.withConnectedRequest(Payload.bundleLogs(bundleId, count.getOrElse(DefaultLogsCount)))(handleAsArray[BundleLog, BundleLogsResult, BundleLogsFailure](BundleLogsSuccess))
+  }
+
+  /**
+   * Retrieve the log messages of a given bundle as a stream, each log message being decoded as it arrives. The
+   * returned source is to be run once only and should be run to completion so that the connection is released.
+   *
+   * @see [[getBundleLogs()]]
+   * @param bundleId An existing bundle identifier, a shortened version of it (min 7 characters) or
+   *                 a non-ambiguous name given to the bundle during loading.
+   * @param count The number of log messages to return. Defaults to 10.
+   * @param cc implicit connection context
+   * @return the log messages. The source fails if the request has been failed.
+   */
+  def streamBundleLogs(bundleId: BundleId, count: Option[Int] = None)(implicit cc: ConnectionContext): Source[BundleLog, NotUsed] =
+    Source.fromFuture(timed("streamBundleLogs") {
+      handler.withConnectedRequest(Payload.bundleLogs(bundleId, count.getOrElse(DefaultLogsCount)))(
+        handleAsSource[BundleLog](failedSource[BundleLog, BundleLogsFailure]("bundle logs"))
+      )
+    }).flatMapConcat(identity)
+
+  /**
+   * Follow the log messages of a given bundle, starting with its latest log messages and then emitting each log
+   * message as it is written. As log messages are written without ConductR signalling so, they are retrieved again
+   * every `pollInterval` as well as whenever ConductR signals a change of the state of that bundle on
+   * `/bundles/events`. Only the log messages not yet emitted are emitted, in the order of their timestamp, and the
+   * stream reconnects to `/bundles/events` when disconnected, resuming from the last log message emitted. Log
+   * messages are retrieved no faster than they are consumed.
+   *
+   * The latest 100 log messages are retrieved each time. Should none of them have been emitted already, more are
+   * retrieved, up to the latest 1600. The stream fails with [[ControlClient.FollowWindowExceeded]] when even those
+   * do not reach back to the last log message emitted, as log messages would otherwise be skipped. A bundle logging
+   * faster than that is better followed with a shorter `pollInterval`.
+   *
+   * @see [[getBundleLogs()]]
+   * @param bundleId An existing bundle identifier, a shortened version of it (min 7 characters) or
+   *                 a non-ambiguous name given to the bundle during loading.
+   * @param count The number of latest log messages to start with. Defaults to 10.
+   * @param pollInterval the longest time between two retrievals of the log messages
+   * @param reconnectInterval the amount of time to wait to reconnect to `/bundles/events` when disconnected
+   * @param cc implicit connection context
+   * @return the log messages, never completing. The source fails if the retrieval of the log messages has been failed.
+   */
+  def followBundleLogs(bundleId: BundleId, count: Option[Int] = None, pollInterval: FiniteDuration = 1.second, reconnectInterval: FiniteDuration = 500.millis)(implicit cc: ConnectionContext): Source[BundleLog, NotUsed] =
+    follow(bundleId, count.getOrElse(DefaultLogsCount), pollInterval, reconnectInterval)(n => streamBundleLogs(bundleId, Some(n)))
 
   /**
    * @see [[AbstractControlClient.getMembersInfo()]]
    * @param cc implicit connection context
    * @return the current ConductR cluster members.
    */
-  override def getMembersInfo()(implicit cc: ConnectionContext): Future[MembersInfoResult] =
+  override def getMembersInfo()(implicit cc: ConnectionContext): Future[MembersInfoResult] = timed("getMembersInfo") {
     handler.withConnectedRequest(Payload.getMembersInfo)(handleAsHttpFailure[MembersInfoResult, MembersInfoSuccess, MembersInfoFailure])
+  }
 
   /**
    * @see [[AbstractControlClient.getMemberInfo()]]
@@ -483,8 +825,9 @@ class ControlClient(handler: ConnectionHandler, conductrAddress: URL, apiVersion
    * @param cc
    * @return
    */
-  override def getMemberInfo(address: URI)(implicit cc: ConnectionContext): Future[MemberInfoResult] =
+  override def getMemberInfo(address: URI)(implicit cc: ConnectionContext): Future[MemberInfoResult] = timed("getMemberInfo") {
     handler.withConnectedRequest(Payload.getMemberInfo(address))(handleAsHttpFailure[MemberInfoResult, MemberInfoSuccess, MemberInfoFailure])
+  }
 
   /**
    * Returns a stream of all member events. Each event is represented by a [[akka.http.scaladsl.model.sse.ServerSentEvent]].
@@ -493,8 +836,31 @@ class ControlClient(handler: ConnectionHandler, conductrAddress: URL, apiVersion
    * @param cc implicit connection context
    * @return The stream as a [[Source]] wrapped inside a [[scala.concurrent.Future]]
    */
-  def streamMembersEvents()(implicit cc: ConnectionContext): Future[EventStreamResult] =
-    handler.withConnectedRequest(Payload.membersEvents)(handleAsEventStream)
+  def streamMembersEvents()(implicit cc: ConnectionContext): Future[EventStreamResult] = timed("streamMembersEvents") {
+    handler.withStreamingRequest(Payload.membersEvents)(handleAsEventStream)
+  }
+
+  /**
+   * Follow the membership of the ConductR cluster with the [[MembersConnector]], emitting an update holding every
+   * member whenever a member joins, leaves, changes its status, or becomes unreachable or reachable again. The
+   * membership is retrieved once for each burst of member events, and the connection to the member events is
+   * established again should it be closed. The returned source is to be run once only.
+   *
+   * @param cc implicit connection context
+   * @return the membership, starting with the current one and never completing
+   */
+  def streamMembersUpdates()(implicit cc: ConnectionContext): Source[MembersUpdate, NotUsed] = {
+    import cc.context
+    import cc.context.dispatcher
+
+    val requests = for {
+      membersEventsRequest <- handler.createRequest(Payload.membersEvents)
+      membersRequest <- handler.createRequest(Payload.getMembersInfo)
+    } yield membersEventsRequest -> membersRequest
+
+    Source.fromFuture(requests)
+      .via(MembersConnector.connect(conductrAddress, connectionPoolSettings = cc.connectionPoolSettings))
+  }
 
   /**
    * @see [[com.typesafe.conductr.clientlib.scala.AbstractControlClient.joinMember()]]
@@ -503,7 +869,7 @@ class ControlClient(handler: ConnectionHandler, conductrAddress: URL, apiVersion
    * @return true if the request has been succeeded.
    *         false if the request has been failed.
    */
-  override def joinMember(joinTo: URI)(implicit cc: ConnectionContext): Future[Boolean] = {
+  override def joinMember(joinTo: URI)(implicit cc: ConnectionContext): Future[Boolean] = timed("joinMember") {
     import cc.actorMaterializer.executionContext
     val body = Marshal(FormData(Map("joinTo" -> joinTo.toString))).to[RequestEntity]
     handler.withConnectedRequest(Payload.joinMember, Some(body))(handleAsBoolean)
@@ -516,7 +882,7 @@ class ControlClient(handler: ConnectionHandler, conductrAddress: URL, apiVersion
    * @return true if the request has been succeeded.
    *         false if the request has been failed.
    */
-  override def downMember(address: URI)(implicit cc: ConnectionContext): Future[Boolean] = {
+  override def downMember(address: URI)(implicit cc: ConnectionContext): Future[Boolean] = timed("downMember") {
     import cc.actorMaterializer.executionContext
     val body = Marshal(FormData(Map("operation" -> "down"))).to[RequestEntity]
     handler.withConnectedRequest(Payload.downMember(address), Some(body))(handleAsBoolean)
@@ -529,8 +895,108 @@ class ControlClient(handler: ConnectionHandler, conductrAddress: URL, apiVersion
    * @return true if the request has been succeeded.
    *         false if the request has been failed.
    */
-  override def leaveMember(address: URI)(implicit cc: ConnectionContext): Future[Boolean] =
+  override def leaveMember(address: URI)(implicit cc: ConnectionContext): Future[Boolean] = timed("leaveMember") {
     handler.withConnectedRequest(Payload.leaveMember(address))(handleAsBoolean)
+  }
+
+  /**
+   * The bundle state shared by all of those waiting on it with the given connection context. A hub is removed once
+   * no one is waiting on it.
+   */
+  private[akka] def bundlesHub(implicit cc: ConnectionContext): BundlesHub =
+    bundlesHubs.synchronized {
+      bundlesHubs.getOrElseUpdate(cc, new BundlesHub(() => bundlesUpdates, () => removeBundlesHub(cc))(cc.actorMaterializer))
+    }
+
+  private def removeBundlesHub(cc: ConnectionContext): Unit =
+    bundlesHubs.synchronized {
+      bundlesHubs.get(cc).filter(_.size == 0).foreach(_ => bundlesHubs.remove(cc))
+    }
+
+  private def bundlesUpdates(implicit cc: ConnectionContext): Source[BundlesUpdate, NotUsed] = {
+    import cc.context
+    import cc.context.dispatcher
+
+    val requests = for {
+      bundlesEventsRequest <- handler.createRequest(Payload.bundlesEvents(Set.empty))
+      bundlesRequest <- handler.createRequest(Payload.bundlesInfo)
+    } yield bundlesEventsRequest -> bundlesRequest
+
+    Source.fromFuture(requests)
+      .via(BundlesConnector.connectUpdates(conductrAddress, connectionPoolSettings = cc.connectionPoolSettings))
+  }
+
+  /*
+   * Entries are retrieved once at first, and then again for each signal of the followed bundle changing or of the poll
+   * interval elapsing. Signals arriving while an earlier retrieval is in progress or not yet consumed are coalesced,
+   * and the cursor drops whatever has been delivered by an earlier retrieval. A retrieval that does not reach back to
+   * the cursor is made again with twice as many entries, up to MaxFollowCount or `count` if greater. Each connection to `/bundles/events`
+   * signals once when established so that whatever occurred while disconnected is retrieved.
+   */
+  private def follow[E <: LogEntry](bundleId: BundleId, count: Int, pollInterval: FiniteDuration, reconnectInterval: FiniteDuration)(entries: Int => Source[E, NotUsed])(implicit cc: ConnectionContext): Source[E, NotUsed] = {
+    import cc.actorMaterializer
+    import cc.actorMaterializer.executionContext
+
+    val bundleChanged: Source[Unit, NotUsed] =
+      Source.repeat(()).flatMapConcat { _ =>
+        Source.fromFuture(streamBundlesEvents().zip(isFollowed(bundleId)))
+          .flatMapConcat {
+            case (EventStreamSuccess(events), followed) =>
+              Source.single(()) ++ events.collect { case ServerSentEvent(data, Some(_), _, _) if followed(data) => () }
+            case (_: EventStreamFailure, _) =>
+              Source.empty
+          }
+          .recoverWithRetries(1, { case NonFatal(_) => Source.empty })
+          .concat(Source.single(()).initialDelay(reconnectInterval).drop(1))
+      }
+
+    val signals =
+      bundleChanged
+        .merge(Source.tick(pollInterval, pollInterval, ()))
+        .conflate((_, _) => ())
+        .map(_ => math.max(count, FollowCount))
+
+    val maxCount = math.max(count, MaxFollowCount)
+
+    // The cursor is created for each materialization, and is only accessed by one retrieval at a time
+    Source.single(()).flatMapConcat { _ =>
+      var cursor = FollowCursor.empty[E]
+
+      def retrieve(n: Int): Future[Seq[E]] =
+        entries(n).runWith(Sink.seq).flatMap { retrieved =>
+          if (cursor.reaches(retrieved, n)) {
+            val (unseen, advanced) = cursor.advance(retrieved)
+            cursor = advanced
+            Future.successful(unseen)
+          } else if (n < maxCount)
+            retrieve(math.min(n * 2, maxCount))
+          else
+            Future.failed(ControlClient.FollowWindowExceeded(
+              s"More than $maxCount entries of bundle $bundleId have been written since the last retrieval"
+            ))
+        }
+
+      (Source.single(count) ++ signals)
+        .mapAsync(1)(retrieve)
+        .mapConcat(_.toList)
+    }
+  }
+
+  /*
+   * The signals of `/bundles/events` carry the id of the bundle that has changed. A bundle followed by its name is
+   * resolved to the ids of the bundles having that name as each connection to `/bundles/events` is established.
+   */
+  private def isFollowed(bundleId: BundleId)(implicit cc: ConnectionContext): Future[String => Boolean] = {
+    import cc.actorMaterializer.executionContext
+
+    if (bundleId.matches(BundleIdPattern))
+      Future.successful(_.startsWith(bundleId))
+    else
+      getBundlesInfo().map { bundles =>
+        val bundleIds = bundles.collect { case bundle if bundle.attributes.bundleName == bundleId => bundle.bundleId }.toSet
+        bundleIds.contains
+      }
+  }
 
   /**
    * Akka 2.3 Response handler object
@@ -552,6 +1018,44 @@ class ControlClient(handler: ConnectionHandler, conductrAddress: URL, apiVersion
     val membersEvents: HttpPayload = createPayload("GET", s"$Prefix/members/events")
   }
 
+  private def isScaled(bundleId: BundleId, scale: Int)(bundles: BundlesIndex): Boolean =
+    bundles.get(bundleId).fold(0)(_.bundleExecutions.count(_.isStarted)) >= scale
+
+  private def bulkRequest[A](items: Seq[A], parallelism: Int)(request: A => Future[BundleRequestResult])(implicit cc: ConnectionContext): Future[Seq[Try[BundleRequestResult]]] = {
+    import cc.actorMaterializer
+    import cc.context.dispatcher
+
+    Source(items.toList)
+      .mapAsync(parallelism) { item =>
+        request(item)
+          .map(Success(_))
+          .recover { case NonFatal(e) => Failure(e) }
+      }
+      .runWith(Sink.seq)
+  }
+
+  // Every successful request waits on the same bundle state, and so on the one connection to it
+  private def awaitBulkRequest[A](items: Seq[A], results: Seq[Try[BundleRequestResult]], completeTimeout: FiniteDuration)(
+    isComplete: (A, BundleId) => BundlesIndex => Boolean,
+    timedOut: (A, BundleId) => String
+  )(implicit cc: ConnectionContext): Future[Seq[Try[BundleRequestResult]]] = {
+    import cc.context.dispatcher
+
+    Future.sequence(items.zip(results).map {
+      case (item, Success(v @ BundleRequestSuccess(_, bundleIdActual))) =>
+        bundlesHub
+          .await(isComplete(item, bundleIdActual), completeTimeout)
+          .map(_ => Success(v))
+          .recover {
+            case BundlesConnector.TimeoutException => Failure(BundleRequestTimedOut(timedOut(item, bundleIdActual)))
+            case NonFatal(e)                       => Failure(e)
+          }
+
+      case (_, result) =>
+        Future.successful(result)
+    })
+  }
+
   /**
    * Handle response with custom scala object, e.g. BundleRequestResult, BundleRequestSuccess, BundleRequestFailure
    */
@@ -565,6 +1069,41 @@ class ControlClient(handler: ConnectionHandler, conductrAddress: URL, apiVersion
     ResponseHandler.withHttpFailure(code)(onSuccess, onFailure)
   }
 
+  /**
+   * Handle a response whose body is a JSON array with a custom scala object, e.g. BundleEventsResult, by decoding the
+   * elements of the array as they are streamed.
+   */
+  private def handleAsArray[E, T, F <: T](success: Seq[E] => T)(implicit cc: ConnectionContext, reads: Reads[E], readsFailure: Reads[F]): (Int, Map[String, Option[String]], ResponseEntity) => Future[T] = {
+    import cc.actorMaterializer
+    import cc.actorMaterializer.executionContext
+
+    (code, headers, body) => {
+      def onSuccess: Future[T] = jsonArraySource[E](body).runWith(Sink.seq).map(success)
+      def onFailure: Future[F] = toHttpFailure[F](code, body)
+
+      ResponseHandler.withHttpFailure(code)(onSuccess, onFailure)
+    }
+  }
+
+  /**
+   * Handle a response whose body is a JSON array as a `Source` of its elements.
+   */
+  private def handleAsSource[E](onFailure: (Int, ResponseEntity) => Future[Source[E, NotUsed]])(implicit cc: ConnectionContext, reads: Reads[E]): (Int, Map[String, Option[String]], ResponseEntity) => Future[Source[E, NotUsed]] =
+    (code, headers, body) =>
+      ResponseHandler.withHttpFailure(code)(
+        Future.successful(jsonArraySource[E](body).mapMaterializedValue(_ => NotUsed)),
+        onFailure(code, body)
+      )
+
+  private def failedSource[E, F <: HttpFailure](description: String)(implicit cc: ConnectionContext, readsFailure: Reads[F]): (Int, ResponseEntity) => Future[Source[E, NotUsed]] = {
+    import cc.actorMaterializer.executionContext
+
+    (code, body) =>
+      toHttpFailure[F](code, body).map { failure =>
+        Source.failed[E](new RuntimeException(s"HTTP Failure when getting $description - http code [${failure.code}] - message [${failure.error}]"))
+      }
+  }
+
   private def toHttpFailure[F](code: Int, body: ResponseEntity)(implicit cc: ConnectionContext, readsFailure: Reads[F]): Future[F] = {
     import cc.actorMaterializer
     import cc.actorMaterializer.executionContext
@@ -590,7 +1129,7 @@ class ControlClient(handler: ConnectionHandler, conductrAddress: URL, apiVersion
     import cc.actorMaterializer.executionContext
 
     def onSuccess: Future[Seq[T]] =
-      Unmarshal(body).to[Seq[T]]
+      jsonArraySource[T](body).runWith(Sink.seq)
     def onFailure: Future[Seq[T]] =
       Future.successful(Seq.empty)
 
@@ -620,48 +1159,36 @@ class ControlClient(handler: ConnectionHandler, conductrAddress: URL, apiVersion
     ResponseHandler.withHttpFailure(code)(onSuccess, onFailure)
   }
 
-  private def absolute(uri: URI): URI =
-    if (uri.isAbsolute) uri
-    else new URI("file", uri.getUserInfo, uri.getHost, uri.getPort, uri.getPath, uri.getQuery, uri.getFragment)
-
   private def filename(path: String): String =
     path.split('/').lastOption.getOrElse("")
 
-  private def toByteArrayPublisher(input: Source[ByteString, _])(implicit cc: ConnectionContext): Publisher[Array[Byte]] = {
-    import cc.actorMaterializer
-    input.map(_.toArray).runWith(Sink.asPublisher(fanout = false))
-  }
-
-  // TODO: Use Akka stream to extract and read the zip file.
-  //       In the current Akka streams version 2.0.1 there is no utility to extract a zip file and iterate over
-  //       the files inside of the zip file. Therefore a blocking solution inspired by sbt.IO is used.
-  private def extractZipEntry(entryName: String, from: URI, destDir: File): Option[URI] = {
-    def stream(in: InputStream, target: File, bufferSize: Int = 8192) = {
-      withCloseable(new BufferedOutputStream(new FileOutputStream(target, false))) { out =>
-        val buffer = new Array[Byte](bufferSize)
-        def read() {
-          val byteCount = in.read(buffer)
-          if (byteCount >= 0) {
-            out.write(buffer, 0, byteCount)
-            read()
-          }
+  private def toByteArraySink(output: Subscriber[Array[Byte]]): Sink[ByteString, NotUsed] =
+    Flow[ByteString].map(_.toArray).to(Sink.fromSubscriber(output))
+
+  private def toByteStringSource(input: Publisher[Array[Byte]]): Source[ByteString, NotUsed] =
+    Source.fromPublisher(input).map(ByteString(_))
+
+  // Locates the entry by way of the zip file's central directory, so that only the entry itself is read
+  private def readZipEntry(entryName: String, from: Path): Option[ByteString] = {
+    def read(in: InputStream, bufferSize: Int = 8192): ByteString = {
+      val bytes = ByteString.newBuilder
+      val buffer = new Array[Byte](bufferSize)
+      def readBuffer() {
+        val byteCount = in.read(buffer)
+        if (byteCount >= 0) {
+          bytes.putBytes(buffer, 0, byteCount)
+          readBuffer()
         }
-        read()
       }
+      readBuffer()
+      bytes.result()
     }
 
     blocking {
-      val zipFile = new File(absolute(from).getPath)
-      withZipInputStream(new ZipInputStream(new BufferedInputStream(new FileInputStream(zipFile)))) { in =>
-        Stream
-          .continually(in.getNextEntry)
-          .takeWhile(_ != null)
-          .find(currentEntry => filename(currentEntry.getName) == entryName)
-          .map { entry =>
-            val target = new File(destDir, entryName)
-            stream(in, target)
-            target.toURI
-          }
+      withCloseable(new ZipFile(from.toFile)) { zipFile =>
+        zipFile.entries.asScala
+          .find(entry => !entry.isDirectory && filename(entry.getName) == entryName)
+          .map(entry => withCloseable(zipFile.getInputStream(entry))(read(_)))
       }
     }
   }
@@ -0,0 +1,106 @@
+package com.typesafe.conductr.clientlib.akka
+
+import akka.actor.FSM
+
+import scala.concurrent.duration._
+
+private[akka] object EventBursts {
+  case object EventBurstOver
+
+  private final val QuietPeriodTimer = "quiet-period"
+  private final val MaxDelayTimer = "max-delay"
+  private final val RefreshTimer = "refresh"
+}
+
+/**
+ * The coalescing of the events of an SSE stream into bursts, shared by the connectors that retrieve a state once for
+ * many of the events announcing its changes. A burst is over when no event has been received for
+ * `expectingEventBurstTimeout`, or once `maxEventBurstDelay` has elapsed since the first event not yet reflected by
+ * a retrieval, whichever is sooner. Retrievals are at least `minRefreshInterval` apart. The latency of observing a
+ * change is thereby bounded under any rate of events.
+ *
+ * The connector is to call [[eventReceived]] for each event, send itself the refresh message upon
+ * [[EventBursts.EventBurstOver]] through [[eventBurstOver]], and report each retrieval through [[refreshStarted]]
+ * and either [[refreshSucceeded]] or [[refreshFailed]].
+ */
+private[akka] trait EventBursts { this: FSM[_, _] =>
+
+  import EventBursts._
+
+  protected def expectingEventBurstTimeout: FiniteDuration
+  protected def maxEventBurstDelay: FiniteDuration
+  protected def minRefreshInterval: FiniteDuration
+
+  // The events not yet reflected by a retrieval, and when the first of them was received
+  private var pendingEvents = 0
+  private var pendingSince = Option.empty[Long]
+
+  // The events reflected by the retrieval in flight, and when the first of them was received
+  private var refreshingEvents = 0
+  private var refreshingSince = Option.empty[Long]
+
+  private var lastRefresh = Option.empty[Long]
+
+  /**
+   * Count an event and (re)start the quiet period. The max delay is started by the first event of a burst.
+   */
+  protected def eventReceived(firstOfBurst: Boolean): Unit = {
+    val now = System.nanoTime()
+    pendingEvents += 1
+    if (pendingSince.isEmpty) pendingSince = Some(now)
+    setTimer(QuietPeriodTimer, EventBurstOver, expectingEventBurstTimeout)
+    if (firstOfBurst) {
+      val sincePending = (now - pendingSince.get).nanos
+      setTimer(MaxDelayTimer, EventBurstOver, (maxEventBurstDelay - sincePending).max(Duration.Zero))
+    }
+  }
+
+  /**
+   * End the burst, sending `refresh` to self once the minimum refresh interval has elapsed since the last retrieval.
+   *
+   * @return the number of events of the burst
+   */
+  protected def eventBurstOver(refresh: Any): Int = {
+    cancelEventBurst()
+    val sinceRefresh = lastRefresh.fold(minRefreshInterval)(t => (System.nanoTime() - t).nanos)
+    if (sinceRefresh >= minRefreshInterval)
+      self ! refresh
+    else
+      setTimer(RefreshTimer, refresh, minRefreshInterval - sinceRefresh)
+    pendingEvents
+  }
+
+  /** Stop waiting for the burst to be over, as when the events stream has been disconnected. */
+  protected def cancelEventBurst(): Unit = {
+    cancelTimer(QuietPeriodTimer)
+    cancelTimer(MaxDelayTimer)
+  }
+
+  protected def refreshStarted(): Unit = {
+    cancelTimer(RefreshTimer)
+    refreshingEvents += pendingEvents
+    refreshingSince = refreshingSince.orElse(pendingSince)
+    pendingEvents = 0
+    pendingSince = None
+    lastRefresh = Some(System.nanoTime())
+  }
+
+  /**
+   * @return the number of events reflected by the retrieval, and the nanoseconds since the first of them was
+   *         received, if any
+   */
+  protected def refreshSucceeded(): Option[(Int, Long)] = {
+    val refreshed = refreshingSince.map(since => refreshingEvents -> (System.nanoTime() - since))
+    refreshingEvents = 0
+    refreshingSince = None
+    refreshed
+  }
+
+  // The events of a failed retrieval remain to be reflected by the next one
+  protected def refreshFailed(): Unit = {
+    pendingEvents += refreshingEvents
+    pendingSince = (refreshingSince ++ pendingSince).reduceOption(_ min _)
+    refreshingEvents = 0
+    refreshingSince = None
+  }
+}
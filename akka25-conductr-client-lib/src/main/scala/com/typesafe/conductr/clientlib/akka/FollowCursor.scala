@@ -0,0 +1,52 @@
+package com.typesafe.conductr.clientlib.akka
+
+import java.util.Date
+
+import com.typesafe.conductr.clientlib.scala.models.LogEntry
+
+/**
+ * The position reached when following the log entries of a bundle, so that entries which are retrieved again by
+ * overlapping requests are not delivered twice. Entries are ordered by their timestamp; as several entries may share
+ * a timestamp, those delivered with the latest timestamp are remembered along with it.
+ *
+ * @param last the timestamp of the latest entry delivered, if any
+ * @param seenAtLast the entries delivered having the `last` timestamp
+ */
+private[akka] final case class FollowCursor[E <: LogEntry](last: Option[Date], seenAtLast: Set[E]) {
+
+  /**
+   * Whether the entries retrieved reach back to those delivered, so that no entry can have been written in between.
+   * This is so when nothing has been delivered, when fewer entries than requested were retrieved, or when an entry
+   * retrieved is older than or one of those delivered.
+   *
+   * @param entries the latest entries retrieved
+   * @param count the number of entries requested
+   */
+  def reaches(entries: Seq[E], count: Int): Boolean =
+    last.forall { timestamp =>
+      entries.size < count || entries.exists(entry => entry.timestamp.before(timestamp) || seenAtLast.contains(entry))
+    }
+
+  /**
+   * The entries not yet delivered out of those retrieved, in the order of their timestamp, along with the cursor
+   * having advanced past them.
+   */
+  def advance(entries: Seq[E]): (Seq[E], FollowCursor[E]) = {
+    def isUnseen(entry: E): Boolean =
+      last.forall { timestamp =>
+        entry.timestamp.after(timestamp) || entry.timestamp == timestamp && !seenAtLast.contains(entry)
+      }
+
+    val unseen = entries.sortBy(_.timestamp.getTime).filter(isUnseen)
+    unseen.lastOption.fold(unseen -> this) { latest =>
+      val timestamp = latest.timestamp
+      val seen = if (last.contains(timestamp)) seenAtLast else Set.empty[E]
+      unseen -> FollowCursor(Some(timestamp), seen ++ unseen.filter(_.timestamp == timestamp))
+    }
+  }
+}
+
+private[akka] object FollowCursor {
+  def empty[E <: LogEntry]: FollowCursor[E] =
+    FollowCursor(None, Set.empty)
+}
@@ -4,10 +4,13 @@ import java.net.URI
 import java.text.SimpleDateFormat
 import java.util.{ TimeZone, Date, UUID }
 
+import akka.NotUsed
 import akka.http.scaladsl.marshalling._
-import akka.http.scaladsl.model.MediaTypes
+import akka.http.scaladsl.model.{ HttpEntity, MediaTypes }
 import akka.http.scaladsl.unmarshalling._
 import akka.stream.ActorMaterializer
+import akka.stream.scaladsl.{ Flow, JsonFraming, Source }
+import akka.util.ByteString
 import com.typesafe.conductr.clientlib.akka.models.EventStreamFailure
 import com.typesafe.conductr.clientlib.scala.models._
 import com.typesafe.conductr.lib.scala.ConductrTypeOps
@@ -31,6 +34,45 @@ object JsonMarshalling {
       }
     }
 
+  /** The maximum length in bytes of a single element of a JSON array that is decoded as a stream. */
+  final val MaxArrayElementLength = 4 * 1024 * 1024
+
+  /**
+   * Decodes the elements of a JSON array one at a time as its bytes arrive. Only the element being decoded is held in
+   * memory, so that the memory required to decode an array such as that of the bundles does not grow with its size.
+   * The elements are expected to be JSON objects.
+   */
+  def jsonArrayElements[A](maxElementLength: Int = MaxArrayElementLength)(implicit reads: Reads[A]): Flow[ByteString, A, NotUsed] =
+    JsonFraming.objectScanner(maxElementLength).map { bytes =>
+      reads.reads(Json.parse(bytes.iterator.asInputStream)) match {
+        case JsSuccess(o, _) => o
+        case JsError(errors) =>
+          throw new IllegalArgumentException(s"Json can not be converted to an object. Json: ${bytes.utf8String}, Errors: $errors")
+      }
+    }
+
+  /**
+   * The elements of the JSON array of an application/json entity, decoded as the entity is streamed. An entity that
+   * is already held in memory is decoded as a whole given that its elements are found faster that way.
+   * @see [[jsonArrayElements]]
+   */
+  def jsonArraySource[A](entity: HttpEntity, maxElementLength: Int = MaxArrayElementLength)(implicit reads: Reads[A]): Source[A, Any] =
+    if (entity.contentType.mediaType != MediaTypes.`application/json`)
+      Source.failed(Unmarshaller.UnsupportedContentTypeException(MediaTypes.`application/json`))
+    else
+      entity match {
+        case HttpEntity.Strict(_, data) =>
+          Source.single(data).mapConcat { bytes =>
+            Json.parse(bytes.iterator.asInputStream).validate[List[A]] match {
+              case JsSuccess(o, _) => o
+              case JsError(errors) =>
+                throw new IllegalArgumentException(s"Json can not be converted to an object. Json: ${bytes.utf8String}, Errors: $errors")
+            }
+          }
+        case _ =>
+          entity.dataBytes.via(jsonArrayElements[A](maxElementLength))
+      }
+
   /** Marshaller depending on a Play JSON `Writes`, composed with a standard string marshaller for application/json. */
   implicit def tem[A](implicit writer: Writes[A]): ToEntityMarshaller[A] = {
     val stringMarshaller = PredefinedToEntityMarshallers.stringMarshaller(MediaTypes.`application/json`)
@@ -0,0 +1,85 @@
+package com.typesafe.conductr.clientlib.akka
+
+import akka.NotUsed
+import akka.stream.scaladsl.Flow
+import com.typesafe.conductr.bundlelib.scala.CacheLike
+import com.typesafe.conductr.clientlib.akka.models._
+import com.typesafe.conductr.clientlib.scala.models.Bundle
+
+import scala.collection.immutable
+
+/**
+ * Evicts service locations from a [[CacheLike]] as soon as the bundles that provide them change, rather than
+ * having them remain until their max age has elapsed.
+ *
+ * The bundle state is expected to be that emitted by the [[BundlesConnector]]. Whenever the executions of a bundle
+ * change, including the bundle being started, stopped, rescheduled or unloaded, the service names declared by the
+ * bundle's endpoints are removed from the cache. The next lookup of these services then obtains their current
+ * location from the service locator.
+ */
+object LocationCacheInvalidator {
+
+  /**
+   * Returns a flow that evicts service names from the cache as the bundle state changes. The service names
+   * evicted for each change of state are emitted; changes that do not concern any service are not emitted.
+   *
+   * The first bundle state received is taken as the initial state and nothing is evicted for it.
+   *
+   * @param cache the cache to evict service locations from
+   * @return the flow graph of `Flow[Seq[Bundle], Set[String], NotUsed]`
+   */
+  def flow(cache: CacheLike): Flow[Seq[Bundle], Set[String], NotUsed] =
+    Flow[Seq[Bundle]]
+      .statefulMapConcat { () =>
+        var previous = Option.empty[BundlesIndex]
+
+        { bundles =>
+          val (current, changes) = previous.getOrElse(BundlesIndex.empty).update(bundles)
+          val evicted = if (previous.isDefined) evictChanged(cache, changes) else Nil
+          previous = Some(current)
+          evicted
+        }
+      }
+
+  /**
+   * As [[flow]], but for the updates emitted by [[BundlesConnector.connectUpdates]], so that only the bundles that
+   * have changed are considered for each update.
+   *
+   * @param cache the cache to evict service locations from
+   * @return the flow graph of `Flow[BundlesUpdate, Set[String], NotUsed]`
+   */
+  def updatesFlow(cache: CacheLike): Flow[BundlesUpdate, Set[String], NotUsed] =
+    Flow[BundlesUpdate]
+      .drop(1)
+      .mapConcat(update => evictChanged(cache, update.changes))
+
+  private def evictChanged(cache: CacheLike, changes: immutable.Seq[BundleChange]): List[Set[String]] = {
+    val serviceNames = changedServiceNames(changes)
+    serviceNames.foreach(evict(cache, _))
+    if (serviceNames.nonEmpty) List(serviceNames) else Nil
+  }
+
+  /**
+   * The service names of the bundles that have been added or removed, or whose executions have changed.
+   */
+  private[akka] def changedServiceNames(changes: immutable.Seq[BundleChange]): Set[String] =
+    changes.flatMap {
+      case BundleAdded(bundle)                        => serviceNames(bundle)
+      case BundleRemoved(bundle)                      => serviceNames(bundle)
+      case BundleExecutionsChanged(previous, current) => serviceNames(previous) ++ serviceNames(current)
+      case _                                          => Set.empty[String]
+    }(collection.breakOut)
+
+  private def serviceNames(bundle: Bundle): Set[String] =
+    bundle.bundleConfig.fold(Set.empty[String])(_.endpoints.values.flatMap(_.serviceName).toSet)
+
+  /*
+   * Lookups are performed with or without a leading slash on the service name, and the cache is keyed on the
+   * name as given to the lookup, so both forms are evicted.
+   */
+  private def evict(cache: CacheLike, serviceName: String): Unit = {
+    val name = serviceName.stripPrefix("/")
+    cache.remove(name)
+    cache.remove("/" + name)
+  }
+}
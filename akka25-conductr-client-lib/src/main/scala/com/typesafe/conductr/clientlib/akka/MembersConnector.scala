@@ -0,0 +1,298 @@
+package com.typesafe.conductr.clientlib.akka
+
+import java.net.URL
+
+import akka.{ NotUsed, Done }
+import akka.actor.{ ActorRefFactory, ActorRef, FSM, Props }
+import akka.http.scaladsl.Http
+import akka.http.scaladsl.model.{ HttpRequest, HttpResponse }
+import akka.http.scaladsl.settings.ConnectionPoolSettings
+import akka.http.scaladsl.unmarshalling.Unmarshal
+import akka.stream.ActorMaterializer
+import akka.stream.actor.{ ActorPublisher, ActorPublisherMessage }
+import akka.stream.scaladsl.{ Source, Flow }
+import com.typesafe.conductr.clientlib.akka.models.{ MembersIndex, MembersUpdate }
+import com.typesafe.conductr.clientlib.scala.models.MembersInfoSuccess
+import akka.http.scaladsl.model.sse.ServerSentEvent
+import de.heikoseeberger.akkasse.pattern.Streams
+
+import scala.concurrent.duration._
+import scala.concurrent.ExecutionContext
+import scala.util.control.NonFatal
+import scala.util.{ Failure, Try }
+
+object MembersConnector {
+
+  /**
+   * Client API which provides a nicer interface to the [[MembersConnector]] actor.
+   *
+   * Returns a flow graph of `Flow[(HttpRequest, HttpRequest), MembersUpdate, NotUsed]`.
+   *
+   * The input is a tuple of [[HttpRequest]]:
+   * - The first element of the tuple is the HTTP request for ConductR Members Events endpoint.
+   * - The second element of the tuple is the HTTP request for ConductR Members endpoint.
+   *
+   * A [[MembersUpdate]] will be emitted whenever the membership of the ConductR cluster changes, holding every member
+   * along with the members that have joined, left, changed their status, or become unreachable or reachable again.
+   * The change detection is derived from having Member SSE propagated by ConductR Members Events endpoint, and an
+   * updated membership being recognized by the [[MembersConnector]] actor.
+   *
+   * @param conductrAddress the ConductR Control Protocol base URL
+   * @param expectingEventBurstTimeout the expected amount of time of which SSE event burst from `/members/events` will
+   *                                   take place. Once no event has been received for this long the event burst is
+   *                                   over, and the latest membership will be obtained from `/members`
+   * @param reconnectInterval the amount of time to wait to reconnect to `/members/events` when disconnected.
+   * @param connectionPoolSettings when provided, the requests to `/members` are routed through the host connection
+   *                               pool with these settings instead of each being made over a new connection. The
+   *                               `/members/events` stream always has a connection of its own.
+   * @param maxEventBurstDelay the longest time that the membership is left unrefreshed once an event has been
+   *                           received, however long the event burst continues. The latency of observing a change
+   *                           is thereby bounded by this delay and `minRefreshInterval` under any rate of events.
+   * @param minRefreshInterval the least time between two retrievals of the membership, protecting ConductR from
+   *                           being asked for its members repeatedly when event bursts are short and frequent.
+   * @param system the actor system which is used to build [[MembersConnector]]
+   * @return the flow graph of `Flow[(HttpRequest, HttpRequest), MembersUpdate, NotUsed]`.
+   */
+  def connect(
+    conductrAddress: URL,
+    expectingEventBurstTimeout: FiniteDuration = 500.millis,
+    reconnectInterval: FiniteDuration = 500.millis,
+    connectionPoolSettings: Option[ConnectionPoolSettings] = None,
+    maxEventBurstDelay: FiniteDuration = 5.seconds,
+    minRefreshInterval: FiniteDuration = 500.millis
+  )(implicit system: ActorRefFactory): Flow[(HttpRequest, HttpRequest), MembersUpdate, NotUsed] =
+    Flow[(HttpRequest, HttpRequest)].flatMapConcat {
+      case (getMembersEventsRequest, getMembersRequest) =>
+        Source.actorPublisher(props(conductrAddress, getMembersEventsRequest, getMembersRequest, expectingEventBurstTimeout, reconnectInterval, connectionPoolSettings, maxEventBurstDelay, minRefreshInterval))
+    }
+
+  private type Connection = Flow[HttpRequest, HttpResponse, Any]
+
+  sealed trait Message
+
+  private case object ConsumeMembersEvents extends Message
+  private case class ConsumeMembersEventsOutcome(outcome: Try[Done]) extends Message
+
+  private case object GetMembers extends Message
+  private case class GetMembersSuccess(members: MembersInfoSuccess) extends Message
+  private case class GetMembersError(error: Throwable) extends Message
+
+  sealed trait State
+
+  private object Initializing extends State
+  private object ExpectingEvent extends State
+  private object ExpectingEventBurst extends State
+
+  private def props(
+    conductrAddress: URL,
+    getMembersEventsRequest: HttpRequest,
+    getMembersRequest: HttpRequest,
+    expectingEventBurstTimeout: FiniteDuration,
+    reconnectInterval: FiniteDuration,
+    connectionPoolSettings: Option[ConnectionPoolSettings],
+    maxEventBurstDelay: FiniteDuration,
+    minRefreshInterval: FiniteDuration
+  ): Props =
+    Props(new MembersConnector(conductrAddress, getMembersEventsRequest, getMembersRequest, expectingEventBurstTimeout, reconnectInterval, connectionPoolSettings, maxEventBurstDelay, minRefreshInterval))
+
+  private def getMembers(connector: ActorRef, connection: Connection, request: HttpRequest)(implicit ec: ExecutionContext, mat: ActorMaterializer): Unit = {
+    import JsonMarshalling._
+    Source
+      .single(request)
+      .via(connection)
+      .mapAsync(1)(response => Unmarshal(response.entity).to[MembersInfoSuccess])
+      .runForeach(connector ! GetMembersSuccess(_))
+      .recover {
+        case NonFatal(e) => connector ! GetMembersError(e)
+      }
+  }
+
+  /*
+   * As with the bundles, the membership is retrieved only once the connection to the events stream is established,
+   * so that no event is missed between retrieving the membership and being connected.
+   */
+  private def consumeMembersEvents(connector: ActorRef, connection: Connection, request: HttpRequest)(implicit ec: ExecutionContext, mat: ActorMaterializer): Unit =
+    Source
+      .single(request)
+      .via(connection)
+      .via(
+        Streams.sseFlow(
+          Streams.onSuccess(_ => connector ! GetMembers),
+          outcome => connector ! ConsumeMembersEventsOutcome(outcome)
+        )
+      )
+      .runForeach(connector ! _)
+
+}
+
+/**
+ * Connects to the `/members` endpoint of ConductR and publishes the membership of the ConductR cluster when updates
+ * from the `/members/events` SSE are available. The membership obtained is compared with the one previously
+ * published, and an update is published only if a member has changed.
+ *
+ * Events are coalesced into bursts so that the membership is retrieved once for many events. A burst is over when no
+ * event has been received for `expectingEventBurstTimeout`, or once `maxEventBurstDelay` has elapsed since the first
+ * event not yet reflected by the membership, whichever is sooner. Retrievals are at least `minRefreshInterval` apart.
+ * Should the connection to `/members/events` be closed then
+ * it is established again after `reconnectInterval`, and the membership is retrieved again once it has been.
+ *
+ * Upon startup, [[MembersConnector]] will obtain the membership from the `/members` endpoint, and publish it before
+ * proceeding to connect to the `/members/events` endpoint of ConductR.
+ */
+class MembersConnector(
+    conductrAddress: URL,
+    getMembersEventsRequest: HttpRequest,
+    getMembersRequest: HttpRequest,
+    protected val expectingEventBurstTimeout: FiniteDuration,
+    reconnectInterval: FiniteDuration,
+    connectionPoolSettings: Option[ConnectionPoolSettings],
+    protected val maxEventBurstDelay: FiniteDuration,
+    protected val minRefreshInterval: FiniteDuration
+) extends FSM[MembersConnector.State, MembersIndex] with ActorPublisher[MembersUpdate] with EventBursts {
+
+  private implicit val mat = ActorMaterializer()
+
+  import MembersConnector._
+  import EventBursts.EventBurstOver
+  import context.dispatcher
+  import context.system
+
+  // The latest membership received while there was no demand to publish it
+  private var pendingMembers = Option.empty[MembersInfoSuccess]
+
+  startWith(Initializing, MembersIndex.empty)
+
+  when(Initializing, reconnectInterval) {
+    case Event(GetMembers, _) =>
+      refresh()
+      stay()
+
+    case Event(GetMembersSuccess(newMembers), members) =>
+      log.debug("Received members from ConductR: {}", newMembers)
+      if (totalDemand > 0) {
+        val (newIndex, changes) = members.update(newMembers)
+        onNext(MembersUpdate(newIndex, changes))
+        self ! ConsumeMembersEvents
+        goto(ExpectingEvent).using(newIndex)
+      } else {
+        self ! GetMembers
+        stay()
+      }
+
+    case Event(StateTimeout, _) =>
+      log.debug("Timed out getting members from ConductR - retrying")
+      self ! GetMembers
+      stay()
+  }
+
+  when(ExpectingEvent) {
+    case Event(ServerSentEvent(_, Some(_), _, _), _) =>
+      eventReceived(firstOfBurst = true)
+      goto(ExpectingEventBurst)
+
+    case Event(GetMembers, _) =>
+      refresh()
+      stay()
+
+    case Event(GetMembersError(e), _) =>
+      log.error(e, "Retrieval of members failed. Trying again shortly.")
+      refreshFailed()
+      context.system.scheduler.scheduleOnce(reconnectInterval, self, GetMembers)
+      stay()
+  }
+
+  when(ExpectingEventBurst) {
+    case Event(ServerSentEvent(_, Some(_), _, _), _) =>
+      eventReceived(firstOfBurst = false)
+      stay()
+
+    case Event(EventBurstOver, _) =>
+      val events = eventBurstOver(GetMembers)
+      log.debug("Event burst of {} events over - getting members", events)
+      goto(ExpectingEvent)
+
+    case Event(GetMembers, _) =>
+      log.debug("Ignoring request to retrieve members while waiting for event burst")
+      stay()
+
+    case Event(GetMembersError(e), _) =>
+      log.debug("Ignoring retrieval of members failed while waiting for event burst. {}", e)
+      refreshFailed()
+      stay()
+  }
+
+  whenUnhandled {
+    case Event(ServerSentEvent("", None, _, _), _) =>
+      stay()
+
+    case Event(ConsumeMembersEvents, _) =>
+      log.debug("Consuming members events")
+      consumeMembersEvents(self, createMembersEventsConnection(conductrAddress), getMembersEventsRequest)
+      stay()
+
+    case Event(ConsumeMembersEventsOutcome(outcome), _) =>
+      outcome match {
+        case Failure(reason) => log.error(reason, "Members events connection closed")
+        case _               => log.debug("Members events connection closed")
+      }
+      // The membership is retrieved once the connection has been established again
+      cancelEventBurst()
+      context.system.scheduler.scheduleOnce(reconnectInterval, self, ConsumeMembersEvents)
+      goto(ExpectingEvent)
+
+    case Event(GetMembersSuccess(newMembers), members) =>
+      refreshSucceeded()
+      pendingMembers = None
+      val (newIndex, changes) = members.update(newMembers)
+      if (changes.isEmpty) {
+        log.debug("Received unchanged members from ConductR: {}", newMembers)
+        stay()
+      } else if (totalDemand > 0) {
+        log.debug("Received changed members from ConductR: {}", changes)
+        onNext(MembersUpdate(newIndex, changes))
+        stay().using(newIndex)
+      } else {
+        log.debug("Received changed members from ConductR while there is no demand: {}", changes)
+        pendingMembers = Some(newMembers)
+        stay()
+      }
+
+    case Event(ActorPublisherMessage.Request(_), _) =>
+      pendingMembers.foreach(self ! GetMembersSuccess(_))
+      pendingMembers = None
+      stay()
+  }
+
+  initialize()
+
+  self ! GetMembers
+
+  private def refresh(): Unit = {
+    log.debug("Retrieving members")
+    refreshStarted()
+    getMembers(self, createMembersConnection(conductrAddress), getMembersRequest)
+  }
+
+  protected def createMembersConnection(conductrAddress: URL): Connection = {
+    val (host, port) = conductrHostAndPort(conductrAddress)
+    connectionPoolSettings match {
+      case Some(settings) =>
+        Flow[HttpRequest]
+          .map(_ -> NotUsed)
+          .via(Http().cachedHostConnectionPool[NotUsed](host, port, settings))
+          .map(_._1.get)
+      case None =>
+        Http().outgoingConnection(host, port)
+    }
+  }
+
+  protected def createMembersEventsConnection(conductrAddress: URL) = {
+    val (host, port) = conductrHostAndPort(conductrAddress)
+    Http().outgoingConnection(host, port)
+  }
+
+  protected def conductrHostAndPort(conductrAddress: URL): (String, Int) = {
+    val port = if (conductrAddress.getPort != -1) conductrAddress.getPort else conductrAddress.getDefaultPort
+    conductrAddress.getHost -> port
+  }
+}
@@ -0,0 +1,116 @@
+package com.typesafe.conductr.clientlib.akka.models
+
+import com.typesafe.conductr.clientlib.scala.models.{ Bundle, BundleId }
+
+import scala.collection.immutable
+
+/**
+ * The bundle state as published by the [[com.typesafe.conductr.clientlib.akka.BundlesConnector]], being every bundle
+ * along with the changes from the state published before it. The first state published holds every bundle as having
+ * been added.
+ */
+final case class BundlesUpdate(bundles: BundlesIndex, changes: immutable.Seq[BundleChange])
+
+/**
+ * A change of a single bundle between two states. A bundle whose executions and installations have both changed is
+ * described by a change of each.
+ */
+sealed trait BundleChange {
+  def bundleId: BundleId
+}
+
+final case class BundleAdded(bundle: Bundle) extends BundleChange {
+  override def bundleId: BundleId = bundle.bundleId
+}
+
+final case class BundleRemoved(bundle: Bundle) extends BundleChange {
+  override def bundleId: BundleId = bundle.bundleId
+}
+
+/** The bundle has been started, stopped or rescheduled. */
+final case class BundleExecutionsChanged(previous: Bundle, current: Bundle) extends BundleChange {
+  override def bundleId: BundleId = current.bundleId
+}
+
+/** The bundle has been installed on, or removed from, a member of the cluster. */
+final case class BundleInstallationsChanged(previous: Bundle, current: Bundle) extends BundleChange {
+  override def bundleId: BundleId = current.bundleId
+}
+
+/** Anything else about the bundle has changed, such as its scale or whether it has an error. */
+final case class BundleChanged(previous: Bundle, current: Bundle) extends BundleChange {
+  override def bundleId: BundleId = current.bundleId
+}
+
+object BundlesIndex {
+  val empty: BundlesIndex = new BundlesIndex(Vector.empty, Map.empty)
+}
+
+/**
+ * The bundles in the order that ConductR returned them, indexed by their id.
+ */
+final class BundlesIndex private (val bundles: immutable.Seq[Bundle], byId: Map[BundleId, Bundle]) {
+
+  def get(bundleId: BundleId): Option[Bundle] =
+    byId.get(bundleId)
+
+  def size: Int =
+    bundles.size
+
+  /**
+   * Returns the index of the bundles given along with their changes from the bundles of this index. Bundles that
+   * have not changed retain their instance from this index.
+   */
+  def update(newBundles: Seq[Bundle]): (BundlesIndex, immutable.Seq[BundleChange]) = {
+    val changes = Vector.newBuilder[BundleChange]
+    val bundlesBuilder = Vector.newBuilder[Bundle]
+    var newById = Map.empty[BundleId, Bundle]
+
+    newBundles.foreach { bundle =>
+      val retained = byId.get(bundle.bundleId) match {
+        case None =>
+          changes += BundleAdded(bundle)
+          bundle
+        case Some(previous) if previous == bundle =>
+          previous
+        case Some(previous) =>
+          changes ++= changesOf(previous, bundle)
+          bundle
+      }
+      bundlesBuilder += retained
+      newById += retained.bundleId -> retained
+    }
+
+    bundles.foreach { bundle =>
+      if (!newById.contains(bundle.bundleId))
+        changes += BundleRemoved(bundle)
+    }
+
+    new BundlesIndex(bundlesBuilder.result(), newById) -> changes.result()
+  }
+
+  private def changesOf(previous: Bundle, current: Bundle): immutable.Seq[BundleChange] = {
+    val executionsChanged = previous.bundleExecutions.toSet != current.bundleExecutions.toSet
+    val installationsChanged = previous.bundleInstallations.toSet != current.bundleInstallations.toSet
+    val otherwiseChanged =
+      previous.copy(bundleExecutions = current.bundleExecutions, bundleInstallations = current.bundleInstallations) != current
+
+    Vector(
+      if (executionsChanged) Some(BundleExecutionsChanged(previous, current)) else None,
+      if (installationsChanged) Some(BundleInstallationsChanged(previous, current)) else None,
+      if (otherwiseChanged) Some(BundleChanged(previous, current)) else None
+    ).flatten
+  }
+
+  override def equals(other: Any): Boolean =
+    other match {
+      case that: BundlesIndex => bundles == that.bundles
+      case _                  => false
+    }
+
+  override def hashCode: Int =
+    bundles.hashCode
+
+  override def toString: String =
+    s"BundlesIndex($bundles)"
+}
@@ -0,0 +1,56 @@
+package com.typesafe.conductr.clientlib.akka
+
+import akka.stream.ActorMaterializer
+import akka.stream.scaladsl.{ Keep, Sink, Source }
+import akka.util.ByteString
+import com.typesafe.conductr.clientlib.scala.models.BundleDigestMismatch
+import com.typesafe.conductr.lib.AkkaUnitTest
+
+import scala.concurrent.Await
+
+class BundleDigestSpec extends AkkaUnitTest("BundleDigestSpec") {
+
+  implicit val mat = ActorMaterializer()
+
+  val Data = Seq(ByteString("bundle "), ByteString("zip "), ByteString("file"))
+  val DataDigest = ControlClientSpec.sha256("bundle zip file".getBytes)
+
+  "The bundle digest" should {
+    "be found within the name of a bundle file" in {
+      BundleDigest.fromFileName(TestData.BundleFileName) shouldBe Some(TestData.BundleFrontend.bundleId)
+      BundleDigest.fromFileName("bundle-1.zip") shouldBe None
+    }
+
+    "be computed while passing the bytes through" in {
+      val (digest, bytes) = Source(Data.toList)
+        .viaMat(BundleDigest.flow("bundle-1.zip"))(Keep.right)
+        .toMat(Sink.fold(ByteString.empty)(_ ++ _))(Keep.both)
+        .run()
+
+      Await.result(bytes, timeout.duration) shouldBe ByteString("bundle zip file")
+      Await.result(digest, timeout.duration) shouldBe DataDigest
+    }
+
+    "be verified against the digest within the name of the file" in {
+      val fileName = s"bundle-1-$DataDigest.zip"
+      val digest = Source(Data.toList)
+        .viaMat(BundleDigest.flow(fileName))(Keep.right)
+        .to(Sink.ignore)
+        .run()
+
+      Await.result(digest, timeout.duration) shouldBe DataDigest
+    }
+
+    "fail the stream should it differ from the digest within the name of the file" in {
+      val fileName = s"bundle-1-${"0" * 64}.zip"
+      val (digest, done) = Source(Data.toList)
+        .viaMat(BundleDigest.flow(fileName))(Keep.right)
+        .toMat(Sink.ignore)(Keep.both)
+        .run()
+
+      val expectedError = BundleDigestMismatch(fileName, "0" * 64, DataDigest)
+      intercept[BundleDigestMismatch](Await.result(done, timeout.duration)) shouldBe expectedError
+      intercept[BundleDigestMismatch](Await.result(digest, timeout.duration)) shouldBe expectedError
+    }
+  }
+}
@@ -8,13 +8,15 @@ import akka.http.scaladsl.marshalling.Marshal
 import akka.http.scaladsl.model.{ ContentTypes, HttpEntity, HttpResponse }
 import akka.http.scaladsl.server.Directives._
 import akka.http.scaladsl.client.RequestBuilding._
+import akka.http.scaladsl.settings.ConnectionPoolSettings
 import akka.pattern._
 import akka.stream.ActorMaterializer
 import akka.stream.scaladsl.{ Sink, Source }
 import akka.testkit.TestActor.AutoPilot
 import akka.testkit.{ TestActor, TestProbe }
 import com.typesafe.conductr.clientlib.akka.TestData._
-import com.typesafe.conductr.lib.AkkaUnitTest
+import com.typesafe.conductr.clientlib.akka.models.{ BundleAdded, BundleExecutionsChanged, BundleRemoved, BundlesUpdate }
+import com.typesafe.conductr.lib.{ AkkaUnitTest, Instrumentation }
 import akka.http.scaladsl.model.sse.ServerSentEvent
 import akka.http.scaladsl.marshalling.sse.EventStreamMarshalling
 import scala.concurrent.duration._
@@ -74,6 +76,99 @@ class BundlesConnectorSpec extends AkkaUnitTest {
     bundleStreamMonitor.expectNoMsg(500.millis)
   }
 
+  "should emit the changes of the bundles as updates" in {
+    val f = testFixture("127.0.0.1", 6670)
+    import f._
+
+    val bundleStreamMonitor = TestProbe()
+
+    Source.single(Get("/v2/bundles/events") -> Get("/v2/bundles"))
+      .via(BundlesConnector.connectUpdates(serverAddress))
+      .runForeach(bundleStreamMonitor.ref ! _)
+
+    // Initial bundle state should be emitted as every bundle having been added
+    getBundles.expectMsg(ControlClientSpec.GetBundles)
+    getBundles.reply(s"[${TestData.BundleBackendAsJson}, ${TestData.BundleFrontendAsJson}]")
+
+    val initial = bundleStreamMonitor.expectMsgType[BundlesUpdate]
+    initial.bundles.bundles shouldBe Seq(TestData.BundleBackend, TestData.BundleFrontend)
+    initial.changes shouldBe Seq(BundleAdded(TestData.BundleBackend), BundleAdded(TestData.BundleFrontend))
+
+    // Bundle Events should be requested
+    getBundleEvents.expectMsg(ControlClientSpec.GetBundleEvents)
+    getBundleEvents.reply(
+      Source.tick(
+        initialDelay = 100.millis,
+        interval = 800.millis,
+        tick = Seq(
+          ServerSentEvent(s"${BundleFrontend.bundleId}", "bundleExecutionRemoved"),
+          ServerSentEvent.heartbeat,
+          ServerSentEvent.heartbeat,
+          ServerSentEvent.heartbeat,
+          ServerSentEvent.heartbeat
+        )
+      ).mapConcat(identity)
+    )
+
+    // Simulate the frontend having been stopped
+    getBundles.expectMsg(ControlClientSpec.GetBundles)
+    getBundles.reply(s"[${TestData.BundleBackendAsJson}, ${TestData.BundleFrontendNoExecutionAsJson}]")
+
+    val stopped = bundleStreamMonitor.expectMsgType[BundlesUpdate]
+    stopped.bundles.get(BundleFrontend.bundleId).map(_.bundleExecutions.exists(_.isStarted)) shouldBe Some(false)
+    stopped.changes.map(_.bundleId) shouldBe Seq(BundleFrontend.bundleId)
+    stopped.changes.head shouldBe a[BundleExecutionsChanged]
+
+    // Simulate the frontend having been unloaded
+    getBundles.expectMsg(ControlClientSpec.GetBundles)
+    getBundles.reply(s"[${TestData.BundleBackendAsJson}]")
+
+    bundleStreamMonitor.expectMsgType[BundlesUpdate].changes shouldBe
+      Seq(BundleRemoved(stopped.bundles.get(BundleFrontend.bundleId).get))
+  }
+
+  "should refresh the bundles within the maximum delay while events keep arriving" in {
+    val f = testFixture("127.0.0.1", 6671)
+    import f._
+
+    val refreshes = TestProbe()
+    Instrumentation.set(new Instrumentation {
+      override def bundlesRefreshed(events: Int, lagNanos: Long): Unit =
+        refreshes.ref ! (events -> lagNanos)
+    })
+
+    try {
+      Source.single(Get("/v2/bundles/events") -> Get("/v2/bundles"))
+        .via(BundlesConnector.connect(serverAddress, maxEventBurstDelay = 1.second, minRefreshInterval = 200.millis))
+        .runWith(Sink.ignore)
+
+      getBundles.expectMsg(ControlClientSpec.GetBundles)
+      getBundles.reply(s"[${TestData.BundleBackendAsJson}]")
+
+      // An event every 100 milliseconds, so that the quiet period of 500 milliseconds never elapses
+      getBundleEvents.expectMsg(ControlClientSpec.GetBundleEvents)
+      getBundleEvents.reply(
+        Source.tick(100.millis, 100.millis, ServerSentEvent(s"${BundleFrontend.bundleId}", "bundleExecutionAdded"))
+      )
+
+      // Bundle state is retrieved again once connected to the events
+      getBundles.expectMsg(ControlClientSpec.GetBundles)
+      getBundles.reply(s"[${TestData.BundleBackendAsJson}]")
+
+      getBundles.expectMsg(3.seconds, ControlClientSpec.GetBundles)
+      getBundles.reply(s"[${TestData.BundleBackendAsJson}]")
+
+      val (events, lagNanos) = refreshes.expectMsgType[(Int, Long)]
+      events should be > 1
+      lagNanos.nanos should be < 3.seconds
+
+      // And again whilst the events continue
+      getBundles.expectMsg(3.seconds, ControlClientSpec.GetBundles)
+      getBundles.reply(s"[${TestData.BundleBackendAsJson}]")
+    } finally
+      Instrumentation.set(null)
+  }
+
   "should fail with timeout error if source does not complete within specified timeout" in {
     val f = testFixture("127.0.0.1", 6668)
     import f._
@@ -112,6 +207,45 @@ class BundlesConnectorSpec extends AkkaUnitTest {
     error shouldBe BundlesConnector.TimeoutException
   }
 
+  "should emit bundles when the bundles requests are routed through a connection pool" in {
+    val f = testFixture("127.0.0.1", 6669)
+    import f._
+
+    val bundleStreamMonitor = TestProbe()
+
+    Source.single(Get("/v2/bundles/events") -> Get("/v2/bundles"))
+      .via(BundlesConnector.connect(serverAddress, connectionPoolSettings = Some(ConnectionPoolSettings(system))))
+      .runForeach(bundleStreamMonitor.ref ! _)
+
+    // Initial bundle state should be emitted
+    getBundles.expectMsg(ControlClientSpec.GetBundles)
+    getBundles.reply(s"[${TestData.BundleBackendAsJson}]")
+
+    bundleStreamMonitor.expectMsg(Seq(TestData.BundleBackend))
+
+    // Bundle Events should be requested
+    getBundleEvents.expectMsg(ControlClientSpec.GetBundleEvents)
+    getBundleEvents.reply(
+      Source.tick(
+        initialDelay = 100.millis,
+        interval = 800.millis,
+        tick = Seq(
+          ServerSentEvent(s"${BundleFrontend.bundleId}", "bundleInstallationAdded"),
+          ServerSentEvent.heartbeat,
+          ServerSentEvent.heartbeat,
+          ServerSentEvent.heartbeat,
+          ServerSentEvent.heartbeat
+        )
+      ).mapConcat(identity)
+    )
+
+    // Simulate changes within bundle state
+    getBundles.expectMsg(ControlClientSpec.GetBundles)
+    getBundles.reply(s"[${TestData.BundleBackendAsJson}, ${TestData.BundleFrontendAsJson}]")
+
+    bundleStreamMonitor.expectMsg(Seq(TestData.BundleBackend, TestData.BundleFrontend))
+  }
+
   def testFixture(serverHost: String, serverPort: Int) = new {
     implicit val dispatcher = system.dispatcher
     implicit val materializer = ActorMaterializer()
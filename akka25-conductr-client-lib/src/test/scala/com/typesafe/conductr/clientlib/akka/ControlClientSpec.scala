@@ -1,6 +1,9 @@
 package com.typesafe.conductr.clientlib.akka
 
 import java.io.File
+import java.nio.file.{ Files, Paths }
+import java.security.MessageDigest
+import java.util.zip.{ ZipEntry, ZipOutputStream }
 import java.net.URL
 
 import akka.actor.ActorDSL._
@@ -11,9 +14,10 @@ import akka.http.scaladsl.model.HttpEntity.IndefiniteLength
 import akka.http.scaladsl.server.Directives
 import akka.http.scaladsl.Http
 import akka.http.scaladsl.server.Route
+import akka.http.scaladsl.settings.ConnectionPoolSettings
 import akka.http.scaladsl.unmarshalling.Unmarshal
 import akka.pattern._
-import akka.stream.ActorMaterializer
+import akka.stream.{ ActorMaterializer, KillSwitches }
 import akka.stream.actor.ActorPublisher
 import akka.stream.scaladsl.{ FileIO, Flow, Keep, Sink, Source }
 import akka.testkit.TestActor.AutoPilot
@@ -21,8 +25,9 @@ import akka.testkit.TestProbe
 import akka.util.{ ByteString, Timeout }
 import com.typesafe.conductr.lib.AkkaUnitTestWithFixture
 import com.typesafe.conductr.lib.akka.ConnectionContext
-import com.typesafe.conductr.clientlib.akka.models.{ EventStreamFailure, EventStreamSuccess }
+import com.typesafe.conductr.clientlib.akka.models.{ BundleConfigurationSource, BundleSource, EventStreamFailure, EventStreamSuccess }
 import com.typesafe.conductr.clientlib.scala.models._
+import com.typesafe.conductr.clientlib.scala.withCloseable
 
 import akka.http.scaladsl.model.sse.ServerSentEvent
 import akka.http.scaladsl.marshalling.sse.EventStreamMarshalling
@@ -112,6 +117,14 @@ object ControlClientSpec {
 
   case object GetBundleEvents
   case object GetBundles
+  final case class GetBundleLogs(count: Int)
+
+  def logsAsJson(logs: (String, String)*): String =
+    logs
+      .map {
+        case (timestamp, message) => s"""{ "timestamp": "$timestamp", "host": "78a1db1ae29a", "message": "$message" }"""
+      }
+      .mkString("[", ",", "]")
 
   def writeToFile(file: File, text: String)(implicit mat: ActorMaterializer, timeout: Timeout): Unit =
     Await.result(
@@ -136,6 +149,9 @@ object ControlClientSpec {
 
   def toByteArrayPublisher(input: String)(implicit mat: ActorMaterializer): Publisher[Array[Byte]] =
     Source.single(input).map(_.getBytes).runWith(Sink.asPublisher(fanout = false))
+
+  def sha256(bytes: Array[Byte]): String =
+    MessageDigest.getInstance("SHA-256").digest(bytes).map(byte => f"$byte%02x").mkString
 }
 
 class ControlClientSpec extends AkkaUnitTestWithFixture("ControlClientSpec") with Inside {
@@ -290,6 +306,83 @@ class ControlClientSpec extends AkkaUnitTestWithFixture("ControlClientSpec") wit
       }
     }
 
+    "get bundle into files" in { f =>
+      val sys = systemFixture(f)
+      import sys._
+
+      val bundleFile = File.createTempFile("bundle-1", ".zip")
+      ControlClientSpec.writeToFile(bundleFile, "bundle zip file")
+
+      // format: OFF
+      val route =
+        pathPrefix(ApiVersion / "bundles" / Segment) { bundleId =>
+          get {
+            accept(MediaTypes.`multipart/form-data`) {
+              complete {
+                Marshal(
+                  Multipart.FormData(
+                    Multipart.FormData.BodyPart(
+                      "bundle",
+                      IndefiniteLength(MediaTypes.`application/octet-stream`, FileIO.fromPath(bundleFile.toPath)),
+                      Map("filename" -> bundleFile.getName)
+                    )
+                  )
+                ).to[HttpResponse]
+              }
+            }
+          }
+        }
+      // format: ON
+
+      val bundleTarget = Files.createTempDirectory("bundle").resolve("bundle.zip")
+      val configTarget = Files.createTempDirectory("config").resolve("config.zip")
+
+      withServer(route) {
+        val result = Await.result(ControlClient(HostUrl).getBundleWithDigests("vis", bundleTarget, configTarget), timeout.duration)
+        result shouldBe BundleGetResultWithDigests(BundleGetSuccess("vis", bundleFile.getName, None), Some(ControlClientSpec.sha256("bundle zip file".getBytes)), None)
+        new String(Files.readAllBytes(bundleTarget)) shouldBe "bundle zip file"
+        Files.exists(configTarget) shouldBe false
+      }
+    }
+
+    "fail to get bundle into files whose digest differs from the digest within its name" in { f =>
+      val sys = systemFixture(f)
+      import sys._
+
+      val bundleFileName = s"bundle-1-${"0" * 64}.zip"
+
+      // format: OFF
+      val route =
+        pathPrefix(ApiVersion / "bundles" / Segment) { bundleId =>
+          get {
+            accept(MediaTypes.`multipart/form-data`) {
+              complete {
+                Marshal(
+                  Multipart.FormData(
+                    Multipart.FormData.BodyPart(
+                      "bundle",
+                      IndefiniteLength(MediaTypes.`application/octet-stream`, Source.single(ByteString("bundle zip file"))),
+                      Map("filename" -> bundleFileName)
+                    )
+                  )
+                ).to[HttpResponse]
+              }
+            }
+          }
+        }
+      // format: ON
+
+      val bundleTarget = Files.createTempDirectory("bundle").resolve(bundleFileName)
+      val configTarget = Files.createTempDirectory("config").resolve("config.zip")
+
+      withServer(route) {
+        val error = intercept[BundleDigestMismatch] {
+          Await.result(ControlClient(HostUrl).getBundle("vis", bundleTarget, configTarget), timeout.duration)
+        }
+        error shouldBe BundleDigestMismatch(bundleFileName, "0" * 64, ControlClientSpec.sha256("bundle zip file".getBytes))
+      }
+    }
+
     "get bundle returning a failure result when encountering invalid response" in { f =>
       val sys = systemFixture(f)
       import sys._
@@ -543,6 +636,99 @@ class ControlClientSpec extends AkkaUnitTestWithFixture("ControlClientSpec") wit
       }
     }
 
+    "load a valid bundle from files" in { f =>
+      val sys = systemFixture(f)
+      import sys._
+
+      val bodyPartsMonitor = TestProbe()
+
+      // format: OFF
+      val route =
+        pathPrefix(ApiVersion / "bundles") {
+          post {
+            extractRequest { request =>
+              complete {
+              for {
+                formData <- Unmarshal(request.entity).to[Multipart.FormData]
+                bodyParts <- formData.parts.mapAsync(1)(part => part.entity.dataBytes.runFold(ByteString.empty)(_ ++ _).map(part.name -> _)).runWith(Sink.seq)
+              } yield {
+                bodyPartsMonitor.ref ! bodyParts
+                HttpResponse(entity = HttpEntity(ContentTypes.`application/json`,
+                  s"""
+                     |{
+                     |  "requestId": "$RequestId",
+                     |  "bundleId": "${BundleFrontend.bundleId}"
+                     |}
+                  """.stripMargin)
+                )
+              }
+            }
+            }
+          }
+        }
+      // format: ON
+
+      withServer(route) {
+        val bundle = Paths.get(BundleUri)
+        val request = ControlClient(HostUrl).loadBundle(bundle, None)
+        Await.result(request, timeout.duration * 2) shouldBe BundleRequestSuccess(RequestId, BundleFrontend.bundleId)
+
+        val bodyParts = bodyPartsMonitor.expectMsgType[Seq[(String, ByteString)]]
+        bodyParts.map(_._1) shouldBe Seq("bundleConf", "bundle")
+        bodyParts(0)._2.utf8String should include("version              = \"1.0.0\"")
+        bodyParts(1)._2 shouldBe ByteString(Files.readAllBytes(bundle))
+      }
+    }
+
+    "fail to load a bundle whose digest differs from the digest within its name" in { f =>
+      val sys = systemFixture(f)
+      import sys._
+
+      // format: OFF
+      val route =
+        pathPrefix(ApiVersion / "bundles") {
+          post {
+            extractRequest { request =>
+              complete {
+                request.entity.dataBytes.runWith(Sink.ignore).map { _ =>
+                  HttpResponse(StatusCodes.BadRequest, entity = HttpEntity("Digest mismatch"))
+                }
+              }
+            }
+          }
+        }
+      // format: ON
+
+      withServer(route) {
+        val bundleFileName = s"bundle-1-${"0" * 64}.zip"
+        val request = ControlClient(HostUrl).loadBundle(
+          bundleConf = Source.single(ByteString("bundle.conf")),
+          bundleConfOverlay = None,
+          bundle = BundleSource(bundleFileName, Source.single(ByteString("bundle zip file"))),
+          config = None
+        )
+        intercept[BundleDigestMismatch] {
+          Await.result(request, timeout.duration)
+        }.fileName shouldBe bundleFileName
+      }
+    }
+
+    "fail to load a bundle file without a bundle.conf" in { f =>
+      val sys = systemFixture(f)
+      import sys._
+
+      val bundle = Files.createTempFile("bundle-1", ".zip")
+      withCloseable(new ZipOutputStream(Files.newOutputStream(bundle))) { out =>
+        out.putNextEntry(new ZipEntry("bundle-1/start"))
+        out.write("#!/bin/sh".getBytes)
+        out.closeEntry()
+      }
+
+      intercept[IllegalArgumentException] {
+        Await.result(ControlClient(HostUrl).loadBundle(bundle, None), timeout.duration)
+      }
+    }
+
     "load a valid bundle + config overlay + configuration" in { f =>
       val sys = systemFixture(f)
       import sys._
@@ -576,13 +762,14 @@ class ControlClientSpec extends AkkaUnitTestWithFixture("ControlClientSpec") wit
       // format: ON
 
       withServer(route) {
-        val request = ControlClient(HostUrl).loadBundle(
-          bundleConf = ControlClientSpec.toByteArrayPublisher("bundle.conf"),
-          bundleConfOverlay = Some(ControlClientSpec.toByteArrayPublisher("bundle.conf overlay")),
-          bundle = BundleFile("bundle-1.zip", ControlClientSpec.toByteArrayPublisher("bundle zip file")),
-          config = Some(BundleConfigurationFile("config-1.zip", ControlClientSpec.toByteArrayPublisher("config zip file")))
+        val request = ControlClient(HostUrl).loadBundleWithDigest(
+          bundleConf = Source.single(ByteString("bundle.conf")),
+          bundleConfOverlay = Some(Source.single(ByteString("bundle.conf overlay"))),
+          bundle = BundleSource("bundle-1.zip", Source.single(ByteString("bundle zip file"))),
+          config = Some(BundleConfigurationSource("config-1.zip", Source.single(ByteString("config zip file"))))
         )
-        Await.result(request, timeout.duration * 2) shouldBe BundleRequestSuccess(RequestId, BundleFrontend.bundleId)
+        Await.result(request, timeout.duration * 2) shouldBe
+          BundleRequestResultWithDigest(BundleRequestSuccess(RequestId, BundleFrontend.bundleId), Some(ControlClientSpec.sha256("bundle zip file".getBytes)))
 
         bodyPartsMonitor.expectMsg(Seq(
           ("bundleConf", "bundle.conf"),
@@ -849,6 +1036,68 @@ class ControlClientSpec extends AkkaUnitTestWithFixture("ControlClientSpec") wit
       }
     }
 
+    "retrieve information of all bundles using a pooled connection context" in { f =>
+      val sys = systemFixture(f)
+      import sys._
+
+      // format: OFF
+      val route =
+        pathPrefix(ApiVersion / "bundles") {
+          get {
+            complete {
+              HttpResponse(entity = HttpEntity(ContentTypes.`application/json`,
+                s"""
+                   |[
+                   |  $BundleFrontendAsJson,
+                   |  $BundleBackendAsJson
+                   |]
+                """.stripMargin)
+              )
+            }
+          }
+        }
+      // format: ON
+
+      withServer(route) {
+        val pooledCc = cc.withConnectionPool(ConnectionPoolSettings(system))
+        for (_ <- 1 to 3)
+          Await.result(ControlClient(HostUrl).getBundlesInfo()(pooledCc), timeout.duration) shouldBe Seq(BundleFrontend, BundleBackend)
+      }
+    }
+
+    "run a bundle using a pooled connection context" in { f =>
+      val sys = systemFixture(f)
+      import sys._
+
+      // format: OFF
+      val route =
+        pathPrefix(ApiVersion / "bundles") {
+          path(Segment) { bundleId =>
+            put {
+              parameter('scale.as[Int]) { scale =>
+                complete {
+                  HttpResponse(entity = HttpEntity(ContentTypes.`application/json`,
+                    s"""
+                       |{
+                       |  "requestId": "$RequestId",
+                       |  "bundleId": "${BundleFrontend.bundleId}"
+                       |}
+                   """.stripMargin)
+                  )
+                }
+              }
+            }
+          }
+        }
+      // format: ON
+
+      withServer(route) {
+        val pooledCc = cc.withConnectionPool(ConnectionPoolSettings(system))
+        for (_ <- 1 to 3)
+          Await.result(ControlClient(HostUrl).runBundle(BundleFrontend.bundleId)(pooledCc), timeout.duration) shouldBe BundleRequestSuccess(RequestId, BundleFrontend.bundleId)
+      }
+    }
+
     "run a bundle which completes when desired bundle scale is achieved" in { f =>
       val sys = systemFixture(f)
       import sys._
@@ -934,13 +1183,17 @@ class ControlClientSpec extends AkkaUnitTestWithFixture("ControlClientSpec") wit
       }
     }
 
-    "run a bundle which times out waiting for desired bundle scale to be achieved" in { f =>
+    "run bundles concurrently which share one connection to the bundle state" in { f =>
       val sys = systemFixture(f)
       import sys._
 
       val getBundleEvents = TestProbe()
       val getBundles = TestProbe()
 
+      val OtherBundleId = "0" * 64
+      val OtherBundleAsJson = BundleFrontendAsJson.replace(BundleFrontend.bundleId, OtherBundleId)
+      val OtherBundleNoExecutionAsJson = BundleFrontendNoExecutionAsJson.replace(BundleFrontend.bundleId, OtherBundleId)
+
       // format: OFF
       val route =
         pathPrefix(ApiVersion / "bundles") {
@@ -971,7 +1224,7 @@ class ControlClientSpec extends AkkaUnitTestWithFixture("ControlClientSpec") wit
                     s"""
                        |{
                        |  "requestId": "$RequestId",
-                       |  "bundleId": "${BundleFrontend.bundleId}"
+                       |  "bundleId": "$bundleId"
                        |}
                    """.stripMargin)
                   )
@@ -983,25 +1236,22 @@ class ControlClientSpec extends AkkaUnitTestWithFixture("ControlClientSpec") wit
       // format: ON
 
       withServer(route) {
-        val request = ControlClient(HostUrl).runBundleComplete(BundleFrontend.bundleId, completeTimeout = timeout.duration / 2)
+        val client = ControlClient(HostUrl)
+        val frontendRequest = client.runBundleComplete(BundleFrontend.bundleId)
+        val otherRequest = client.runBundleComplete(OtherBundleId)
 
-        // Simulate bundle desired scale never achieved
-        getBundles.setAutoPilot(new AutoPilot {
-          override def run(sender: ActorRef, msg: Any): AutoPilot = {
-            msg shouldBe ControlClientSpec.GetBundles
-            sender ! s"[$BundleFrontendNoExecutionAsJson]"
-            keepRunning
-          }
-        })
+        // Simulate no bundle running
+        getBundles.expectMsg(ControlClientSpec.GetBundles)
+        getBundles.reply(s"[$BundleFrontendNoExecutionAsJson, $OtherBundleNoExecutionAsJson]")
 
-        // Bundle Events should be requested
+        // Bundle Events should be requested once for both requests
         getBundleEvents.expectMsg(ControlClientSpec.GetBundleEvents)
         getBundleEvents.reply(
           Source.tick(
             initialDelay = 100.millis,
             interval = 800.millis,
             tick = Seq(
-              ServerSentEvent(s"${BundleFrontend.bundleId}", "bundleExecutionAdded"),
+              ServerSentEvent(OtherBundleId, "bundleExecutionAdded"),
               ServerSentEvent.heartbeat,
               ServerSentEvent.heartbeat,
               ServerSentEvent.heartbeat,
@@ -1010,43 +1260,50 @@ class ControlClientSpec extends AkkaUnitTestWithFixture("ControlClientSpec") wit
           ).mapConcat(identity)
         )
 
-        intercept[BundleRequestTimedOut] {
-          Await.result(request, timeout.duration)
-        }
+        // Simulate the other bundle running
+        getBundles.expectMsg(ControlClientSpec.GetBundles)
+        getBundles.reply(s"[$BundleFrontendNoExecutionAsJson, $OtherBundleAsJson]")
+        Await.result(otherRequest, timeout.duration) shouldBe BundleRequestSuccess(RequestId, OtherBundleId)
+        frontendRequest.isCompleted shouldBe false
+
+        // And then simulate the frontend running
+        getBundles.expectMsg(ControlClientSpec.GetBundles)
+        getBundles.reply(s"[$BundleFrontendAsJson, $OtherBundleAsJson]")
+        Await.result(frontendRequest, timeout.duration) shouldBe BundleRequestSuccess(RequestId, BundleFrontend.bundleId)
+
+        getBundleEvents.expectNoMsg(500.millis)
       }
     }
 
-    "handle error when running a bundle" in { f =>
+    "run a bundle which times out waiting for desired bundle scale to be achieved" in { f =>
       val sys = systemFixture(f)
       import sys._
 
-      val errorMessage = s"Specified Bundle ID/name: '${BundleFrontend.bundleId}' resulted in multiple Bundle IDs: 'ab37fd, 23bf8a'"
+      val getBundleEvents = TestProbe()
+      val getBundles = TestProbe()
 
       // format: OFF
       val route =
         pathPrefix(ApiVersion / "bundles") {
-          path(Segment) { bundleId =>
-            put {
-              parameter('scale.as[Int]) { scale =>
-                complete(StatusCodes.MultipleChoices, errorMessage)
+          path("events") {
+            get {
+              complete {
+                import EventStreamMarshalling._
+                getBundleEvents.ref.ask(ControlClientSpec.GetBundleEvents)
+                  .mapTo[Source[ServerSentEvent, _]]
+                  .map(Marshal(_).to[HttpResponse])
               }
             }
-          }
-        }
-      // format: ON
-
-      withServer(route) {
-        Await.result(ControlClient(HostUrl).runBundle(BundleFrontend.bundleId), timeout.duration) shouldBe BundleRequestFailure(300, errorMessage)
-      }
-    }
-
-    "stop a bundle" in { f =>
-      val sys = systemFixture(f)
-      import sys._
-
-      // format: OFF
-      val route =
-        pathPrefix(ApiVersion / "bundles") {
+          } ~
+          get {
+            complete {
+              getBundles.ref.ask(ControlClientSpec.GetBundles)
+                .mapTo[String]
+                .map { json =>
+                  HttpResponse(entity = HttpEntity(ContentTypes.`application/json`, json))
+                }
+            }
+          } ~
           path(Segment) { bundleId =>
             put {
               parameter('scale.as[Int]) { scale =>
@@ -1067,8 +1324,149 @@ class ControlClientSpec extends AkkaUnitTestWithFixture("ControlClientSpec") wit
       // format: ON
 
       withServer(route) {
-        Await.result(ControlClient(HostUrl).stopBundle(BundleFrontend.bundleId), timeout.duration) shouldBe BundleRequestSuccess(RequestId, BundleFrontend.bundleId)
-      }
+        val request = ControlClient(HostUrl).runBundleComplete(BundleFrontend.bundleId, completeTimeout = timeout.duration / 2)
+
+        // Simulate bundle desired scale never achieved
+        getBundles.setAutoPilot(new AutoPilot {
+          override def run(sender: ActorRef, msg: Any): AutoPilot = {
+            msg shouldBe ControlClientSpec.GetBundles
+            sender ! s"[$BundleFrontendNoExecutionAsJson]"
+            keepRunning
+          }
+        })
+
+        // Bundle Events should be requested
+        getBundleEvents.expectMsg(ControlClientSpec.GetBundleEvents)
+        getBundleEvents.reply(
+          Source.tick(
+            initialDelay = 100.millis,
+            interval = 800.millis,
+            tick = Seq(
+              ServerSentEvent(s"${BundleFrontend.bundleId}", "bundleExecutionAdded"),
+              ServerSentEvent.heartbeat,
+              ServerSentEvent.heartbeat,
+              ServerSentEvent.heartbeat,
+              ServerSentEvent.heartbeat
+            )
+          ).mapConcat(identity)
+        )
+
+        intercept[BundleRequestTimedOut] {
+          Await.result(request, timeout.duration)
+        }
+      }
+    }
+
+    "handle error when running a bundle" in { f =>
+      val sys = systemFixture(f)
+      import sys._
+
+      val errorMessage = s"Specified Bundle ID/name: '${BundleFrontend.bundleId}' resulted in multiple Bundle IDs: 'ab37fd, 23bf8a'"
+
+      // format: OFF
+      val route =
+        pathPrefix(ApiVersion / "bundles") {
+          path(Segment) { bundleId =>
+            put {
+              parameter('scale.as[Int]) { scale =>
+                complete(StatusCodes.MultipleChoices, errorMessage)
+              }
+            }
+          }
+        }
+      // format: ON
+
+      withServer(route) {
+        Await.result(ControlClient(HostUrl).runBundle(BundleFrontend.bundleId), timeout.duration) shouldBe BundleRequestFailure(300, errorMessage)
+      }
+    }
+
+    "run bundles with bounded parallelism reporting the result of each in order" in { f =>
+      val sys = systemFixture(f)
+      import sys._
+
+      val BundleIds = (1 to 6).map(n => n.toString * 64)
+      val errorMessage = s"No bundle found by the specified Bundle ID/name: '${BundleIds(2)}'"
+
+      var inFlight = 0
+      var maxInFlight = 0
+      val lock = new Object
+
+      // format: OFF
+      val route =
+        pathPrefix(ApiVersion / "bundles") {
+          path(Segment) { bundleId =>
+            put {
+              parameter('scale.as[Int]) { scale =>
+                complete {
+                  lock.synchronized {
+                    inFlight += 1
+                    maxInFlight = math.max(maxInFlight, inFlight)
+                  }
+                  akka.pattern.after(100.millis, system.scheduler) {
+                    lock.synchronized(inFlight -= 1)
+                    Future.successful(
+                      if (bundleId == BundleIds(2))
+                        HttpResponse(StatusCodes.NotFound, entity = errorMessage)
+                      else
+                        HttpResponse(entity = HttpEntity(ContentTypes.`application/json`,
+                          s"""
+                             |{
+                             |  "requestId": "$RequestId",
+                             |  "bundleId": "$bundleId"
+                             |}
+                         """.stripMargin)
+                        )
+                    )
+                  }
+                }
+              }
+            }
+          }
+        }
+      // format: ON
+
+      withServer(route) {
+        val results = Await.result(ControlClient(HostUrl).runBundles(BundleIds.map(_ -> Some(2)), parallelism = 2), timeout.duration)
+        results shouldBe BundleIds.map { bundleId =>
+          if (bundleId == BundleIds(2))
+            Success(BundleRequestFailure(404, errorMessage))
+          else
+            Success(BundleRequestSuccess(RequestId, bundleId))
+        }
+        lock.synchronized(maxInFlight) should (be > 0 and be <= 2)
+      }
+    }
+
+    "stop a bundle" in { f =>
+      val sys = systemFixture(f)
+      import sys._
+
+      // format: OFF
+      val route =
+        pathPrefix(ApiVersion / "bundles") {
+          path(Segment) { bundleId =>
+            put {
+              parameter('scale.as[Int]) { scale =>
+                complete {
+                  HttpResponse(entity = HttpEntity(ContentTypes.`application/json`,
+                    s"""
+                       |{
+                       |  "requestId": "$RequestId",
+                       |  "bundleId": "${BundleFrontend.bundleId}"
+                       |}
+                   """.stripMargin)
+                  )
+                }
+              }
+            }
+          }
+        }
+      // format: ON
+
+      withServer(route) {
+        Await.result(ControlClient(HostUrl).stopBundle(BundleFrontend.bundleId), timeout.duration) shouldBe BundleRequestSuccess(RequestId, BundleFrontend.bundleId)
+      }
     }
 
     "handle error when stopping a bundle" in { f =>
@@ -1146,6 +1544,90 @@ class ControlClientSpec extends AkkaUnitTestWithFixture("ControlClientSpec") wit
       }
     }
 
+    "unload bundles which complete once the bundles are unloaded sharing one connection to the bundle state" in { f =>
+      val sys = systemFixture(f)
+      import sys._
+
+      val getBundleEvents = TestProbe()
+      val getBundles = TestProbe()
+
+      val OtherBundleId = "0" * 64
+      val OtherBundleNoExecutionAsJson = BundleFrontendNoExecutionAsJson.replace(BundleFrontend.bundleId, OtherBundleId)
+
+      // format: OFF
+      val route =
+        pathPrefix(ApiVersion / "bundles") {
+          path("events") {
+            get {
+              complete {
+                import EventStreamMarshalling._
+                getBundleEvents.ref.ask(ControlClientSpec.GetBundleEvents)
+                  .mapTo[Source[ServerSentEvent, _]]
+                  .map(Marshal(_).to[HttpResponse])
+              }
+            }
+          } ~
+          get {
+            complete {
+              getBundles.ref.ask(ControlClientSpec.GetBundles)
+                .mapTo[String]
+                .map { json =>
+                  HttpResponse(entity = HttpEntity(ContentTypes.`application/json`, json))
+                }
+            }
+          } ~
+          path(Segment) { bundleId =>
+            delete {
+              complete {
+                HttpResponse(entity = HttpEntity(ContentTypes.`application/json`,
+                  s"""
+                     |{
+                     |  "requestId": "$RequestId",
+                     |  "bundleId": "$bundleId"
+                     |}
+                 """.stripMargin)
+                )
+              }
+            }
+          }
+        }
+      // format: ON
+
+      withServer(route) {
+        val request = ControlClient(HostUrl).unloadBundlesComplete(Seq(BundleFrontend.bundleId, OtherBundleId))
+
+        // Simulate both bundles still being loaded
+        getBundles.expectMsg(ControlClientSpec.GetBundles)
+        getBundles.reply(s"[$BundleFrontendNoExecutionAsJson, $OtherBundleNoExecutionAsJson]")
+
+        // Bundle Events should be requested once for both bundles
+        getBundleEvents.expectMsg(ControlClientSpec.GetBundleEvents)
+        getBundleEvents.reply(
+          Source.tick(
+            initialDelay = 100.millis,
+            interval = 800.millis,
+            tick = Seq(
+              ServerSentEvent(OtherBundleId, "bundleInstallationRemoved"),
+              ServerSentEvent.heartbeat,
+              ServerSentEvent.heartbeat,
+              ServerSentEvent.heartbeat,
+              ServerSentEvent.heartbeat
+            )
+          ).mapConcat(identity)
+        )
+
+        // Simulate both bundles being unloaded
+        getBundles.expectMsg(ControlClientSpec.GetBundles)
+        getBundles.reply("[]")
+        Await.result(request, timeout.duration) shouldBe Seq(
+          Success(BundleRequestSuccess(RequestId, BundleFrontend.bundleId)),
+          Success(BundleRequestSuccess(RequestId, OtherBundleId))
+        )
+
+        getBundleEvents.expectNoMsg(500.millis)
+      }
+    }
+
     "stream events of all bundles" in { f =>
       val sys = systemFixture(f)
       import sys._
@@ -1248,6 +1730,333 @@ class ControlClientSpec extends AkkaUnitTestWithFixture("ControlClientSpec") wit
       }
     }
 
+    "stream information of all bundles" in { f =>
+      val sys = systemFixture(f)
+      import sys._
+
+      val bundles = ByteString(s"[$BundleFrontendAsJson,$BundleBackendAsJson]")
+
+      // format: OFF
+      val route =
+        pathPrefix(ApiVersion / "bundles") {
+          get {
+            complete {
+              HttpResponse(entity = HttpEntity.Chunked.fromData(ContentTypes.`application/json`,
+                Source(bundles.grouped(16).toList)))
+            }
+          }
+        }
+      // format: ON
+
+      withServer(route) {
+        Await.result(ControlClient(HostUrl).streamBundlesInfo().runWith(Sink.seq), timeout.duration) shouldBe Seq(BundleFrontend, BundleBackend)
+      }
+    }
+
+    "stream no bundles when retrieving information of all bundles has been failed" in { f =>
+      val sys = systemFixture(f)
+      import sys._
+
+      // format: OFF
+      val route =
+        pathPrefix(ApiVersion / "bundles") {
+          get {
+            complete {
+              HttpResponse(StatusCodes.InternalServerError, entity = HttpEntity(ContentTypes.`application/json`, "\"test error\""))
+            }
+          }
+        }
+      // format: ON
+
+      withServer(route) {
+        Await.result(ControlClient(HostUrl).streamBundlesInfo().runWith(Sink.seq), timeout.duration) shouldBe Seq.empty
+      }
+    }
+
+    "stream events of a bundle" in { f =>
+      val sys = systemFixture(f)
+      import sys._
+
+      // format: OFF
+      val route =
+        pathPrefix(ApiVersion / "bundles") {
+          path(Segment / "events") { bundleId =>
+            get {
+              parameter("count".as[Int].?) { count =>
+                complete {
+                  HttpResponse(entity = HttpEntity(ContentTypes.`application/json`, BundleEventsAsJson))
+                }
+              }
+            }
+          }
+        }
+      // format: ON
+
+      withServer(route) {
+        Await.result(ControlClient(HostUrl).streamBundleEvents(BundleFrontend.bundleId).runWith(Sink.seq), timeout.duration) shouldBe BundleEvents
+      }
+    }
+
+    "stream logs of a bundle" in { f =>
+      val sys = systemFixture(f)
+      import sys._
+
+      // format: OFF
+      val route =
+        pathPrefix(ApiVersion / "bundles") {
+          path(Segment / "logs") { bundleId =>
+            get {
+              parameter("count".as[Int].?) { count =>
+                complete {
+                  HttpResponse(entity = HttpEntity(ContentTypes.`application/json`, BundleLogsAsJson))
+                }
+              }
+            }
+          }
+        }
+      // format: ON
+
+      withServer(route) {
+        Await.result(ControlClient(HostUrl).streamBundleLogs(BundleFrontend.bundleId).runWith(Sink.seq), timeout.duration) shouldBe BundleLogs
+      }
+    }
+
+    "follow logs of a bundle emitting each log message once across reconnects" in { f =>
+      val sys = systemFixture(f)
+      import sys._
+
+      val getBundleEvents = TestProbe()
+      val getBundleLogs = TestProbe()
+      val logs = TestProbe()
+
+      val First = "2016-01-12T16:08:19.549Z" -> "first"
+      val Second = "2016-01-12T16:08:21.104Z" -> "second"
+      val Third = "2016-01-12T16:08:21.104Z" -> "third"
+      val Fourth = "2016-01-12T16:08:22.000Z" -> "fourth"
+
+      // format: OFF
+      val route =
+        pathPrefix(ApiVersion / "bundles") {
+          path("events") {
+            get {
+              complete {
+                import EventStreamMarshalling._
+                getBundleEvents.ref.ask(ControlClientSpec.GetBundleEvents)
+                  .mapTo[Source[ServerSentEvent, _]]
+                  .map(Marshal(_).to[HttpResponse])
+              }
+            }
+          } ~
+          path(Segment / "logs") { bundleId =>
+            get {
+              parameter("count".as[Int]) { count =>
+                complete {
+                  getBundleLogs.ref.ask(ControlClientSpec.GetBundleLogs(count))
+                    .mapTo[String]
+                    .map { json =>
+                      HttpResponse(entity = HttpEntity(ContentTypes.`application/json`, json))
+                    }
+                }
+              }
+            }
+          }
+        }
+      // format: ON
+
+      withServer(route) {
+        val following = ControlClient(HostUrl)
+          .followBundleLogs(BundleFrontend.bundleId, count = Some(2), pollInterval = 1.hour)
+          .map(_.message)
+          .viaMat(KillSwitches.single)(Keep.right)
+          .to(Sink.actorRef(logs.ref, "completed"))
+          .run()
+
+        // The latest log messages to start with
+        getBundleLogs.expectMsg(ControlClientSpec.GetBundleLogs(2))
+        getBundleLogs.reply(ControlClientSpec.logsAsJson(First, Second))
+        logs.expectMsg("first")
+        logs.expectMsg("second")
+
+        // Being connected to the bundle events, and then disconnected after one event
+        getBundleEvents.expectMsg(ControlClientSpec.GetBundleEvents)
+        getBundleEvents.reply(Source.single(ServerSentEvent(BundleFrontend.bundleId, "bundleExecutionAdded")).initialDelay(500.millis))
+        getBundleLogs.expectMsg(ControlClientSpec.GetBundleLogs(100))
+        getBundleLogs.reply(ControlClientSpec.logsAsJson(First, Second, Third))
+        logs.expectMsg("third")
+        getBundleLogs.expectMsg(ControlClientSpec.GetBundleLogs(100))
+        getBundleLogs.reply(ControlClientSpec.logsAsJson(First, Second, Third))
+        logs.expectNoMsg(500.millis)
+
+        // Reconnecting to resume from the last log message emitted
+        getBundleEvents.expectMsg(ControlClientSpec.GetBundleEvents)
+        getBundleEvents.reply(Source.maybe[ServerSentEvent])
+        getBundleLogs.expectMsg(ControlClientSpec.GetBundleLogs(100))
+        getBundleLogs.reply(ControlClientSpec.logsAsJson(Third, Second, Fourth))
+        logs.expectMsg("fourth")
+        logs.expectNoMsg(500.millis)
+
+        following.shutdown()
+        logs.expectMsg("completed")
+      }
+    }
+
+    "follow logs of a bundle retrieving more log messages when those retrieved do not reach back to the last one emitted" in { f =>
+      val sys = systemFixture(f)
+      import sys._
+
+      val getBundleEvents = TestProbe()
+      val getBundleLogs = TestProbe()
+      val logs = TestProbe()
+
+      val First = "2016-01-12T16:08:19.549Z" -> "first"
+      val Later = (1 to 100).map(n => java.time.Instant.parse(First._1).plusSeconds(n).toString -> s"later-$n")
+
+      // format: OFF
+      val route =
+        pathPrefix(ApiVersion / "bundles") {
+          path("events") {
+            get {
+              complete {
+                import EventStreamMarshalling._
+                getBundleEvents.ref.ask(ControlClientSpec.GetBundleEvents)
+                  .mapTo[Source[ServerSentEvent, _]]
+                  .map(Marshal(_).to[HttpResponse])
+              }
+            }
+          } ~
+          path(Segment / "logs") { bundleId =>
+            get {
+              parameter("count".as[Int]) { count =>
+                complete {
+                  getBundleLogs.ref.ask(ControlClientSpec.GetBundleLogs(count))
+                    .mapTo[String]
+                    .map { json =>
+                      HttpResponse(entity = HttpEntity(ContentTypes.`application/json`, json))
+                    }
+                }
+              }
+            }
+          }
+        }
+      // format: ON
+
+      withServer(route) {
+        val following = ControlClient(HostUrl)
+          .followBundleLogs(BundleFrontend.bundleId, count = Some(1), pollInterval = 1.hour)
+          .map(_.message)
+          .viaMat(KillSwitches.single)(Keep.right)
+          .to(Sink.actorRef(logs.ref, "completed"))
+          .run()
+
+        getBundleLogs.expectMsg(ControlClientSpec.GetBundleLogs(1))
+        getBundleLogs.reply(ControlClientSpec.logsAsJson(First))
+        logs.expectMsg("first")
+
+        // Signals of other bundles are ignored
+        getBundleEvents.expectMsg(ControlClientSpec.GetBundleEvents)
+        getBundleEvents.reply(
+          Source.single(ServerSentEvent("0" * 64, "bundleExecutionAdded")).initialDelay(500.millis).concat(Source.maybe)
+        )
+
+        // None of the latest 100 log messages has been emitted, so more are retrieved
+        getBundleLogs.expectMsg(ControlClientSpec.GetBundleLogs(100))
+        getBundleLogs.reply(ControlClientSpec.logsAsJson(Later: _*))
+        getBundleLogs.expectMsg(ControlClientSpec.GetBundleLogs(200))
+        getBundleLogs.reply(ControlClientSpec.logsAsJson(First +: Later: _*))
+        logs.receiveN(100) shouldBe Later.map(_._2)
+
+        getBundleLogs.expectNoMsg(1.second)
+
+        following.shutdown()
+        logs.expectMsg("completed")
+      }
+    }
+
+    "fail following logs of a bundle when even the most log messages retrieved do not reach back to the last one emitted" in { f =>
+      val sys = systemFixture(f)
+      import sys._
+
+      val getBundleEvents = TestProbe()
+      val getBundleLogs = TestProbe()
+      val logs = TestProbe()
+
+      val First = "2016-01-12T16:08:19.549Z" -> "first"
+      def later(count: Int) = (1 to count).map(n => java.time.Instant.parse(First._1).plusSeconds(n).toString -> s"later-$n")
+
+      // format: OFF
+      val route =
+        pathPrefix(ApiVersion / "bundles") {
+          path("events") {
+            get {
+              complete {
+                import EventStreamMarshalling._
+                getBundleEvents.ref.ask(ControlClientSpec.GetBundleEvents)
+                  .mapTo[Source[ServerSentEvent, _]]
+                  .map(Marshal(_).to[HttpResponse])
+              }
+            }
+          } ~
+          path(Segment / "logs") { bundleId =>
+            get {
+              parameter("count".as[Int]) { count =>
+                complete {
+                  getBundleLogs.ref.ask(ControlClientSpec.GetBundleLogs(count))
+                    .mapTo[String]
+                    .map { json =>
+                      HttpResponse(entity = HttpEntity(ContentTypes.`application/json`, json))
+                    }
+                }
+              }
+            }
+          }
+        }
+      // format: ON
+
+      withServer(route) {
+        ControlClient(HostUrl)
+          .followBundleLogs(BundleFrontend.bundleId, count = Some(1), pollInterval = 1.hour)
+          .map(_.message)
+          .runWith(Sink.actorRef(logs.ref, "completed"))
+
+        getBundleLogs.expectMsg(ControlClientSpec.GetBundleLogs(1))
+        getBundleLogs.reply(ControlClientSpec.logsAsJson(First))
+        logs.expectMsg("first")
+
+        getBundleEvents.expectMsg(ControlClientSpec.GetBundleEvents)
+        getBundleEvents.reply(Source.maybe[ServerSentEvent])
+        for (count <- Seq(100, 200, 400, 800, 1600)) {
+          getBundleLogs.expectMsg(ControlClientSpec.GetBundleLogs(count))
+          getBundleLogs.reply(ControlClientSpec.logsAsJson(later(count): _*))
+        }
+
+        logs.expectMsgType[akka.actor.Status.Failure].cause shouldBe a[ControlClient.FollowWindowExceeded]
+      }
+    }
+
+    "fail the stream of logs of a bundle when the request has been failed" in { f =>
+      val sys = systemFixture(f)
+      import sys._
+
+      // format: OFF
+      val route =
+        pathPrefix(ApiVersion / "bundles") {
+          path(Segment / "logs") { bundleId =>
+            get {
+              complete {
+                HttpResponse(StatusCodes.NotFound, entity = HttpEntity(ContentTypes.`text/plain(UTF-8)`, "test error"))
+              }
+            }
+          }
+        }
+      // format: ON
+
+      withServer(route) {
+        val result = ControlClient(HostUrl).streamBundleLogs(BundleFrontend.bundleId).runWith(Sink.seq)
+        the[RuntimeException] thrownBy Await.result(result, timeout.duration) should have message
+          "HTTP Failure when getting bundle logs - http code [404] - message [test error]"
+      }
+    }
+
     "retrieve information of all members" in { f =>
       val sys = systemFixture(f)
       import sys._
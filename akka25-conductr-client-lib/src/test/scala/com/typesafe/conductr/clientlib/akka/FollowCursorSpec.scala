@@ -0,0 +1,56 @@
+package com.typesafe.conductr.clientlib.akka
+
+import java.util.Date
+
+import com.typesafe.conductr.clientlib.scala.models.BundleLog
+import com.typesafe.conductr.lib.UnitTest
+
+class FollowCursorSpec extends UnitTest {
+
+  def log(timestamp: Long, message: String): BundleLog =
+    BundleLog(new Date(timestamp), "78a1db1ae29a", message)
+
+  "FollowCursor" should {
+    "deliver every entry in the order of their timestamp when nothing has been delivered" in {
+      val (unseen, cursor) = FollowCursor.empty[BundleLog].advance(Seq(log(2, "b"), log(1, "a")))
+      unseen shouldBe Seq(log(1, "a"), log(2, "b"))
+      cursor shouldBe FollowCursor(Some(new Date(2)), Set(log(2, "b")))
+    }
+
+    "deliver only the entries later than those delivered" in {
+      val (_, cursor) = FollowCursor.empty[BundleLog].advance(Seq(log(1, "a"), log(2, "b")))
+      cursor.advance(Seq(log(1, "a"), log(2, "b"), log(3, "c")))._1 shouldBe Seq(log(3, "c"))
+    }
+
+    "deliver the entries sharing the latest timestamp delivered which have not been delivered" in {
+      val (_, cursor) = FollowCursor.empty[BundleLog].advance(Seq(log(1, "a"), log(2, "b")))
+      val (unseen, advanced) = cursor.advance(Seq(log(2, "b"), log(2, "c")))
+      unseen shouldBe Seq(log(2, "c"))
+      advanced shouldBe FollowCursor(Some(new Date(2)), Set(log(2, "b"), log(2, "c")))
+    }
+
+    "remain unchanged when every entry has been delivered" in {
+      val (_, cursor) = FollowCursor.empty[BundleLog].advance(Seq(log(1, "a"), log(2, "b")))
+      cursor.advance(Seq(log(2, "b"))) shouldBe Seq.empty -> cursor
+      cursor.advance(Seq.empty) shouldBe Seq.empty -> cursor
+    }
+
+    "reach back to the entries delivered when an entry retrieved is older than or one of those delivered" in {
+      val (_, cursor) = FollowCursor.empty[BundleLog].advance(Seq(log(1, "a"), log(2, "b")))
+      cursor.reaches(Seq(log(1, "a"), log(3, "c")), 2) shouldBe true
+      cursor.reaches(Seq(log(2, "b"), log(3, "c")), 2) shouldBe true
+    }
+
+    "reach back to the entries delivered when fewer entries than requested were retrieved" in {
+      val (_, cursor) = FollowCursor.empty[BundleLog].advance(Seq(log(1, "a")))
+      cursor.reaches(Seq(log(2, "b")), 2) shouldBe true
+      FollowCursor.empty[BundleLog].reaches(Seq(log(1, "a")), 1) shouldBe true
+    }
+
+    "not reach back to the entries delivered when every entry retrieved is later than those delivered" in {
+      val (_, cursor) = FollowCursor.empty[BundleLog].advance(Seq(log(1, "a"), log(2, "b")))
+      cursor.reaches(Seq(log(3, "c"), log(4, "d")), 2) shouldBe false
+      cursor.reaches(Seq(log(2, "c"), log(3, "d")), 2) shouldBe false
+    }
+  }
+}
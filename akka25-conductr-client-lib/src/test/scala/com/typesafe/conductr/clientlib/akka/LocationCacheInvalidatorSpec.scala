@@ -0,0 +1,86 @@
+package com.typesafe.conductr.clientlib.akka
+
+import java.net.URI
+
+import akka.stream.ActorMaterializer
+import akka.stream.scaladsl.{ Sink, Source }
+import com.typesafe.conductr.bundlelib.scala.LocationCache
+import com.typesafe.conductr.clientlib.akka.TestData._
+import com.typesafe.conductr.clientlib.akka.models.{ BundlesIndex, BundlesUpdate }
+import com.typesafe.conductr.clientlib.scala.models.Bundle
+import com.typesafe.conductr.lib.AkkaUnitTest
+
+import scala.collection.immutable.Seq
+import scala.concurrent.duration._
+import scala.concurrent.{ Await, Future }
+
+class LocationCacheInvalidatorSpec extends AkkaUnitTest("LocationCacheInvalidatorSpec") {
+
+  implicit val mat = ActorMaterializer()
+
+  val WebsterUri = new URI("http://127.0.0.1:9011/webster")
+
+  "The LocationCacheInvalidator" should {
+    "not evict anything for the initial bundle state" in {
+      val cache = cacheWithWebster()
+      invalidate(cache, Seq(BundleFrontend, BundleBackend)) shouldBe Seq.empty
+      cache.remove("webster") should not be empty
+    }
+
+    "evict the services of a bundle whose executions have changed" in {
+      val cache = cacheWithWebster()
+      val stopped = BundleFrontend.copy(bundleExecutions = Iterable.empty)
+      invalidate(cache, Seq(BundleFrontend, BundleBackend), Seq(stopped, BundleBackend)) shouldBe Seq(Set("webster"))
+      cache.remove("webster") shouldBe empty
+    }
+
+    "evict the services of a bundle that has been unloaded" in {
+      val cache = cacheWithWebster()
+      invalidate(cache, Seq(BundleFrontend, BundleBackend), Seq(BundleBackend)) shouldBe Seq(Set("webster"))
+      cache.remove("webster") shouldBe empty
+    }
+
+    "evict service names that were looked up with a leading slash" in {
+      val cache = LocationCache()
+      cache.getOrElseUpdate("/webster")(Future.successful(Some(WebsterUri -> Some(10.seconds))))
+      invalidate(cache, Seq.empty, Seq(BundleFrontend)) shouldBe Seq(Set("webster"))
+      cache.remove("/webster") shouldBe empty
+    }
+
+    "not evict anything when the bundles have changed other than their executions" in {
+      val cache = cacheWithWebster()
+      val scaled = BundleFrontend.copy(bundleScale = None)
+      invalidate(cache, Seq(BundleFrontend, BundleBackend), Seq(scaled, BundleBackend), Seq(scaled)) shouldBe Seq.empty
+      cache.remove("webster") should not be empty
+    }
+
+    "evict the services of the bundles changed by an update" in {
+      val cache = cacheWithWebster()
+      val (initial, added) = BundlesIndex.empty.update(Seq(BundleFrontend, BundleBackend))
+      val stopped = BundleFrontend.copy(bundleExecutions = Iterable.empty)
+      val (current, changed) = initial.update(Seq(stopped, BundleBackend))
+      val result = Await.result(
+        Source(List(BundlesUpdate(initial, added), BundlesUpdate(current, changed)))
+          .via(LocationCacheInvalidator.updatesFlow(cache))
+          .runWith(Sink.seq),
+        timeout.duration
+      )
+      result shouldBe Seq(Set("webster"))
+      cache.remove("webster") shouldBe empty
+    }
+  }
+
+  private def cacheWithWebster(): LocationCache = {
+    val cache = LocationCache()
+    Await.result(cache.getOrElseUpdate("webster")(Future.successful(Some(WebsterUri -> Some(10.seconds)))), timeout.duration)
+    cache
+  }
+
+  private def invalidate(cache: LocationCache, states: Seq[Bundle]*): Seq[Set[String]] =
+    Await.result(
+      Source(states.toList)
+        .via(LocationCacheInvalidator.flow(cache))
+        .runWith(Sink.seq),
+      timeout.duration
+    )
+}
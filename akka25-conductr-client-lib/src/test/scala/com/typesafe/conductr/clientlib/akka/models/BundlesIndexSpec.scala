@@ -0,0 +1,52 @@
+package com.typesafe.conductr.clientlib.akka.models
+
+import com.typesafe.conductr.clientlib.akka.TestData._
+import com.typesafe.conductr.lib.UnitTest
+
+import scala.collection.immutable.Seq
+
+class BundlesIndexSpec extends UnitTest {
+
+  "BundlesIndex" should {
+    "index the bundles by their id" in {
+      val (index, _) = BundlesIndex.empty.update(Seq(BundleFrontend, BundleBackend))
+      index.bundles shouldBe Seq(BundleFrontend, BundleBackend)
+      index.get(BundleBackend.bundleId) shouldBe Some(BundleBackend)
+      index.get("unknown") shouldBe None
+    }
+
+    "describe every bundle as added when updating an empty index" in {
+      BundlesIndex.empty.update(Seq(BundleFrontend, BundleBackend))._2 shouldBe
+        Seq(BundleAdded(BundleFrontend), BundleAdded(BundleBackend))
+    }
+
+    "describe no changes when the bundles are unchanged" in {
+      val (index, _) = BundlesIndex.empty.update(Seq(BundleFrontend, BundleBackend))
+      index.update(Seq(BundleFrontend.copy(), BundleBackend.copy())) shouldBe index -> Seq.empty
+    }
+
+    "retain the instances of bundles that are unchanged" in {
+      val (index, _) = BundlesIndex.empty.update(Seq(BundleFrontend, BundleBackend))
+      val (updated, _) = index.update(Seq(BundleFrontend.copy(), BundleBackend.copy()))
+      updated.get(BundleFrontend.bundleId).get should be theSameInstanceAs BundleFrontend
+    }
+
+    "describe the bundles removed" in {
+      val (index, _) = BundlesIndex.empty.update(Seq(BundleFrontend, BundleBackend))
+      index.update(Seq(BundleBackend))._2 shouldBe Seq(BundleRemoved(BundleFrontend))
+    }
+
+    "describe the bundles whose executions and installations have changed" in {
+      val (index, _) = BundlesIndex.empty.update(Seq(BundleFrontend, BundleBackend))
+      val stopped = BundleFrontend.copy(bundleExecutions = Seq.empty, bundleInstallations = Seq.empty)
+      index.update(Seq(stopped, BundleBackend))._2 shouldBe
+        Seq(BundleExecutionsChanged(BundleFrontend, stopped), BundleInstallationsChanged(BundleFrontend, stopped))
+    }
+
+    "describe the bundles that have otherwise changed" in {
+      val (index, _) = BundlesIndex.empty.update(Seq(BundleFrontend, BundleBackend))
+      val failed = BundleBackend.copy(hasError = !BundleBackend.hasError)
+      index.update(Seq(BundleFrontend, failed))._2 shouldBe Seq(BundleChanged(BundleBackend, failed))
+    }
+  }
+}
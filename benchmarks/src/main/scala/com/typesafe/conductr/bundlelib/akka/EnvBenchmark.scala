@@ -0,0 +1,25 @@
+package com.typesafe.conductr.bundlelib.akka
+
+import java.util.concurrent.TimeUnit
+
+import com.typesafe.config.Config
+import org.openjdk.jmh.annotations._
+
+/**
+ * The formation of the Akka cluster configuration from the environment that ConductR provides, as declared by the
+ * build of this project.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Array(Mode.AverageTime))
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+class EnvBenchmark {
+
+  private val systemName = Env.mkSystemName("application")
+
+  @Benchmark
+  def asConfig: Config =
+    Env.asConfig(systemName)
+}
@@ -0,0 +1,77 @@
+package com.typesafe.conductr.bundlelib.java
+
+import java.net.URI
+import java.time.Duration
+import java.util.Optional
+import java.util.concurrent.{ CompletableFuture, CompletionStage, ThreadLocalRandom, TimeUnit }
+import java.util.function.Supplier
+
+import com.typesafe.conductr.lib.java.Tuple
+import org.openjdk.jmh.annotations._
+
+/**
+ * Lookups through a cache where a proportion of the service names are held by the cache and the remainder are
+ * not, the latter being looked up each time as their location has no max age.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Array(Mode.Throughput))
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+class LocationCacheBenchmark {
+
+  @Param(Array("1.0", "0.9", "0.5"))
+  var hitRatio: Double = _
+
+  private val HotServices = 64
+  private val hotNames = Array.tabulate(HotServices)(n => s"hot-$n")
+  private val coldNames = Array.tabulate(HotServices)(n => s"cold-$n")
+
+  private val location = new URI("http://127.0.0.1:9000")
+  private val hot = supplier(Optional.of(Duration.ofHours(1)))
+  private val cold = supplier(Optional.empty[Duration])
+
+  private var cache: LocationCache = _
+
+  @Setup
+  def setup(): Unit =
+    cache = new LocationCache()
+
+  @Benchmark
+  @Threads(1)
+  def getOrElseUpdate1: CompletionStage[Optional[URI]] =
+    getOrElseUpdate()
+
+  @Benchmark
+  @Threads(4)
+  def getOrElseUpdate4: CompletionStage[Optional[URI]] =
+    getOrElseUpdate()
+
+  @Benchmark
+  @Threads(16)
+  def getOrElseUpdate16: CompletionStage[Optional[URI]] =
+    getOrElseUpdate()
+
+  @Benchmark
+  @Threads(64)
+  def getOrElseUpdate64: CompletionStage[Optional[URI]] =
+    getOrElseUpdate()
+
+  private def getOrElseUpdate(): CompletionStage[Optional[URI]] = {
+    val random = ThreadLocalRandom.current
+    val n = random.nextInt(HotServices)
+    if (random.nextDouble() < hitRatio)
+      cache.getOrElseUpdate(hotNames(n), hot)
+    else
+      cache.getOrElseUpdate(coldNames(n), cold)
+  }
+
+  private def supplier(maxAge: Optional[Duration]): Supplier[CompletionStage[Optional[Tuple[URI, Optional[Duration]]]]] = {
+    val result: CompletionStage[Optional[Tuple[URI, Optional[Duration]]]] =
+      CompletableFuture.completedFuture(Optional.of(new Tuple(location, maxAge)))
+    new Supplier[CompletionStage[Optional[Tuple[URI, Optional[Duration]]]]] {
+      override def get(): CompletionStage[Optional[Tuple[URI, Optional[Duration]]]] = result
+    }
+  }
+}
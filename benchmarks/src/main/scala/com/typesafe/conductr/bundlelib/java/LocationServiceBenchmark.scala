@@ -0,0 +1,50 @@
+package com.typesafe.conductr.bundlelib.java
+
+import java.net.URI
+import java.time.Duration
+import java.util.concurrent.{ CompletableFuture, CompletionStage, TimeUnit }
+import java.util.function.Supplier
+import java.util.{ HashMap, Map => JMap, Optional }
+
+import com.typesafe.conductr.lib.java.Tuple
+import org.openjdk.jmh.annotations._
+
+/**
+ * The handling of the service locator's response to a lookup, being the parsing of its Location and Cache-Control
+ * headers, and the lookup of a location held by a cache. Run with `-prof gc` to observe the allocations of each;
+ * a lookup served from the cache should allocate nothing.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Array(Mode.AverageTime))
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+class LocationServiceBenchmark {
+
+  private val headers: JMap[String, Optional[String]] = {
+    val headers = new HashMap[String, Optional[String]]
+    headers.put("Location", Optional.of("http://10.0.1.10:9000/someservice"))
+    headers.put("Cache-Control", Optional.of("private, max-age=60"))
+    headers
+  }
+
+  private val location = new URI("http://10.0.1.10:9000/someservice")
+  private val fallback = new URI("http://127.0.0.1:9000/someservice")
+  private val cache = new LocationCache()
+
+  @Setup
+  def setup(): Unit =
+    cache.getOrElseUpdate("someservice", new Supplier[CompletionStage[Optional[Tuple[URI, Optional[Duration]]]]] {
+      override def get(): CompletionStage[Optional[Tuple[URI, Optional[Duration]]]] =
+        CompletableFuture.completedFuture(Optional.of(new Tuple(location, Optional.of(Duration.ofHours(1)))))
+    })
+
+  @Benchmark
+  def handleLookup: Optional[Tuple[URI, Optional[Duration]]] =
+    LocationService.handleLookup(307, headers)
+
+  @Benchmark
+  def lookupCached: CompletionStage[Optional[URI]] =
+    LocationService.lookup("someservice", fallback, cache)
+}
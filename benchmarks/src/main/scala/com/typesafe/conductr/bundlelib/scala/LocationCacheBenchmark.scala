@@ -0,0 +1,68 @@
+package com.typesafe.conductr.bundlelib.scala
+
+import java.net.{ URI => JavaURI }
+import java.util.concurrent.{ ThreadLocalRandom, TimeUnit }
+
+import org.openjdk.jmh.annotations._
+
+import scala.concurrent.Future
+import scala.concurrent.duration._
+
+/**
+ * Lookups through a cache where a proportion of the service names are held by the cache and the remainder are
+ * not, the latter being looked up each time as their location has no max age.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Array(Mode.Throughput))
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+class LocationCacheBenchmark {
+
+  @Param(Array("1.0", "0.9", "0.5"))
+  var hitRatio: Double = _
+
+  private val HotServices = 64
+  private val hotNames = Array.tabulate(HotServices)(n => s"hot-$n")
+  private val coldNames = Array.tabulate(HotServices)(n => s"cold-$n")
+
+  private val location = new JavaURI("http://127.0.0.1:9000")
+  private val hot = Future.successful(Some(location -> Some(1.hour)))
+  private val cold = Future.successful(Some(location -> None))
+
+  private var cache: LocationCache = _
+
+  @Setup
+  def setup(): Unit =
+    cache = LocationCache()
+
+  @Benchmark
+  @Threads(1)
+  def getOrElseUpdate1: Future[Option[JavaURI]] =
+    getOrElseUpdate()
+
+  @Benchmark
+  @Threads(4)
+  def getOrElseUpdate4: Future[Option[JavaURI]] =
+    getOrElseUpdate()
+
+  @Benchmark
+  @Threads(16)
+  def getOrElseUpdate16: Future[Option[JavaURI]] =
+    getOrElseUpdate()
+
+  @Benchmark
+  @Threads(64)
+  def getOrElseUpdate64: Future[Option[JavaURI]] =
+    getOrElseUpdate()
+
+  private def getOrElseUpdate(): Future[Option[JavaURI]] = {
+    val random = ThreadLocalRandom.current
+    val n = random.nextInt(HotServices)
+    if (random.nextDouble() < hitRatio)
+      cache.getOrElseUpdate(hotNames(n))(hot)
+    else
+      cache.getOrElseUpdate(coldNames(n))(cold)
+  }
+}
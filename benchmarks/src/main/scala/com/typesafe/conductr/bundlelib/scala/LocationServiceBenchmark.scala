@@ -0,0 +1,36 @@
+package com.typesafe.conductr.bundlelib.scala
+
+import java.net.{ URI => JavaURI }
+import java.util.concurrent.TimeUnit
+
+import com.typesafe.conductr.lib.scala.ConnectionHandler
+import org.openjdk.jmh.annotations._
+
+import scala.concurrent.duration.FiniteDuration
+
+/**
+ * The handling of the service locator's response to a lookup, being the parsing of its Location and Cache-Control
+ * headers.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Array(Mode.AverageTime))
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+class LocationServiceBenchmark {
+
+  private object locationService extends LocationService(new ConnectionHandler) {
+    def handle(responseCode: Int, headers: Map[String, Option[String]]): Option[(JavaURI, Option[FiniteDuration])] =
+      handleLookup(responseCode, headers)
+  }
+
+  private val headers = Map(
+    "Location" -> Some("http://10.0.1.10:9000/someservice"),
+    "Cache-Control" -> Some("private, max-age=60")
+  )
+
+  @Benchmark
+  def handleLookup: Option[(JavaURI, Option[FiniteDuration])] =
+    locationService.handle(307, headers)
+}
@@ -0,0 +1,113 @@
+package com.typesafe.conductr.clientlib.akka
+
+import java.util.concurrent.TimeUnit
+
+import akka.actor.ActorSystem
+import akka.http.scaladsl.model.{ ContentTypes, HttpEntity }
+import akka.http.scaladsl.unmarshalling.Unmarshal
+import akka.stream.ActorMaterializer
+import akka.stream.scaladsl.{ Sink, Source }
+import com.typesafe.conductr.clientlib.scala.models.Bundle
+import org.openjdk.jmh.annotations._
+
+import scala.concurrent.{ Await, ExecutionContext }
+import scala.concurrent.duration._
+
+/**
+ * The decoding of the response to a request for the bundles, which is what the control client and the
+ * [[BundlesConnector]] do each time that the bundle state changes, both as a whole document and as a stream of
+ * bundles arriving in chunks.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Array(Mode.AverageTime))
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+class JsonMarshallingBenchmark {
+
+  import JsonMarshalling._
+
+  @Param(Array("10", "1000", "10000"))
+  var bundles: Int = _
+
+  private var system: ActorSystem = _
+  private implicit var mat: ActorMaterializer = _
+  private implicit var ec: ExecutionContext = _
+  private var entity: HttpEntity.Strict = _
+  private var chunkedEntity: HttpEntity.Chunked = _
+
+  @Setup
+  def setup(): Unit = {
+    system = ActorSystem("JsonMarshallingBenchmark")
+    mat = ActorMaterializer()(system)
+    ec = system.dispatcher
+    entity = HttpEntity(ContentTypes.`application/json`, (1 to bundles).map(bundle).mkString("[", ",", "]"))
+    chunkedEntity = HttpEntity.Chunked.fromData(ContentTypes.`application/json`, Source(entity.data.grouped(8192).toList))
+  }
+
+  @TearDown
+  def tearDown(): Unit =
+    Await.result(system.terminate(), 10.seconds)
+
+  @Benchmark
+  def decodeBundles: Seq[Bundle] =
+    Await.result(Unmarshal(entity).to[Seq[Bundle]], 10.seconds)
+
+  @Benchmark
+  def streamBundles: Seq[Bundle] =
+    Await.result(jsonArraySource[Bundle](chunkedEntity).runWith(Sink.seq), 10.seconds)
+
+  // The bundle as described by ConductR's REST API
+  private def bundle(n: Int): String = {
+    val bundleId = f"$n%064x"
+    s"""{
+       |  "bundleId": "$bundleId",
+       |  "bundleDigest": "$bundleId",
+       |  "attributes": {
+       |    "system": "system-$n",
+       |    "nrOfCpus": 1,
+       |    "memory": 1024000,
+       |    "diskSpace": 64000,
+       |    "roles": ["frontend"],
+       |    "bundleName": "bundle-$n",
+       |    "systemVersion": "1",
+       |    "compatibilityVersion": "1"
+       |  },
+       |  "bundleConfig": {
+       |    "endpoints": {
+       |      "web": {
+       |        "bindProtocol": "http",
+       |        "serviceName": "service-$n",
+       |        "services": ["http://:8000/service-$n"]
+       |      }
+       |    }
+       |  },
+       |  "bundleScale": {
+       |    "scale": 1
+       |  },
+       |  "bundleExecutions": [
+       |    {
+       |      "host": "10.0.1.10",
+       |      "endpoints": {
+       |        "web": {
+       |          "bindPort": ${10000 + n % 1000},
+       |          "hostPort": 9000
+       |        }
+       |      },
+       |      "isStarted": true
+       |    }
+       |  ],
+       |  "bundleInstallations": [
+       |    {
+       |      "uniqueAddress": {
+       |        "address": "akka.tcp://conductr@10.0.1.10:9004",
+       |        "uid": 123
+       |      },
+       |      "bundleFile": "file:///tmp/bundle-$n-$bundleId.zip"
+       |    }
+       |  ],
+       |  "hasError": false
+       |}""".stripMargin
+  }
+}
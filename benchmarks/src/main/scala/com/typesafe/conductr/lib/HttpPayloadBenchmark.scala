@@ -0,0 +1,30 @@
+package com.typesafe.conductr.lib
+
+import _root_.java.net.URL
+import _root_.java.util.concurrent.TimeUnit
+
+import org.openjdk.jmh.annotations._
+
+/**
+ * The construction of the payloads that describe each request made to ConductR.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Array(Mode.AverageTime))
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+class HttpPayloadBenchmark {
+
+  private val url = new URL("http://127.0.0.1:9008/services/someservice")
+
+  @Benchmark
+  def create: HttpPayload =
+    new HttpPayload(url, "GET", false)
+
+  @Benchmark
+  def addRequestHeader: HttpPayload =
+    new HttpPayload(url, "GET", false)
+      .addRequestHeader("Accept", "application/json")
+      .addRequestHeader("Cache-Control", "no-cache")
+}
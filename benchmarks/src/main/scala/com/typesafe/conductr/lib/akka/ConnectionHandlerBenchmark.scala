@@ -0,0 +1,67 @@
+package com.typesafe.conductr.lib.akka
+
+import java.net.URL
+import java.util.concurrent.TimeUnit
+
+import akka.actor.ActorSystem
+import akka.http.scaladsl.Http
+import akka.http.scaladsl.model.{ HttpRequest, HttpResponse }
+import akka.http.scaladsl.settings.ConnectionPoolSettings
+import akka.stream.ActorMaterializer
+import com.typesafe.conductr.lib.HttpPayload
+import org.openjdk.jmh.annotations._
+
+import scala.concurrent.Await
+import scala.concurrent.duration._
+
+/**
+ * The requests per second that the Akka connection handler achieves against a local stub server, with a connection
+ * established for each request ("dedicated") and with the requests routed through the host connection pool
+ * ("pooled").
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Array(Mode.Throughput))
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+class ConnectionHandlerBenchmark {
+
+  @Param(Array("dedicated", "pooled"))
+  var mode: String = _
+
+  private var system: ActorSystem = _
+  private var binding: Http.ServerBinding = _
+  private var cc: ConnectionContext = _
+  private var payload: HttpPayload = _
+
+  private val handler = new ConnectionHandler
+
+  @Setup
+  def setup(): Unit = {
+    system = ActorSystem("ConnectionHandlerBenchmark")
+    val mat = ActorMaterializer()(system)
+    binding = Await.result(
+      Http(system).bindAndHandleSync((_: HttpRequest) => HttpResponse(), "127.0.0.1", 0)(mat),
+      10.seconds
+    )
+    val context = ConnectionContext(Http(system), mat)(system)
+    cc = if (mode == "pooled") context.withConnectionPool(ConnectionPoolSettings(system)) else context
+    payload = new HttpPayload(new URL(s"http://127.0.0.1:${binding.localAddress.getPort}/services/someservice"))
+  }
+
+  @TearDown
+  def tearDown(): Unit = {
+    Await.result(binding.unbind(), 10.seconds)
+    Await.result(system.terminate(), 10.seconds)
+  }
+
+  @Benchmark
+  def request: Option[Int] =
+    Await.result(handler.withConnectedRequest(Some(payload))((status, _) => Some(status))(cc), 10.seconds)
+
+  @Benchmark
+  @Threads(8)
+  def concurrentRequests: Option[Int] =
+    request
+}
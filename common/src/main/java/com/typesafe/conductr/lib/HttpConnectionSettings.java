@@ -0,0 +1,60 @@
+package com.typesafe.conductr.lib;
+
+/**
+ * Describes the timeouts of the requests made by an {@link HttpExchange}. Settings are immutable; each of the
+ * "with" methods returns a new copy.
+ *
+ * The default settings may be overridden with the following system properties, both of which are expressed in
+ * milliseconds:
+ *
+ * conductr.lib.http.connect-timeout - the time allowed to establish a connection (default 5000)
+ * conductr.lib.http.read-timeout - the time allowed to wait for data once connected (default 10000)
+ */
+public class HttpConnectionSettings {
+
+    public static final HttpConnectionSettings DEFAULT = new HttpConnectionSettings(
+            Integer.getInteger("conductr.lib.http.connect-timeout", 5000),
+            Integer.getInteger("conductr.lib.http.read-timeout", 10000));
+
+    private final int connectTimeoutMillis;
+    private final int readTimeoutMillis;
+
+    public HttpConnectionSettings(int connectTimeoutMillis, int readTimeoutMillis) {
+        if (connectTimeoutMillis < 0)
+            throw new IllegalArgumentException("connectTimeoutMillis must not be negative: " + connectTimeoutMillis);
+        if (readTimeoutMillis < 0)
+            throw new IllegalArgumentException("readTimeoutMillis must not be negative: " + readTimeoutMillis);
+        this.connectTimeoutMillis = connectTimeoutMillis;
+        this.readTimeoutMillis = readTimeoutMillis;
+    }
+
+    /**
+     * @return the time allowed to establish a connection, 0 meaning no timeout
+     */
+    public int getConnectTimeoutMillis() {
+        return connectTimeoutMillis;
+    }
+
+    /**
+     * @return the time allowed to wait for data once connected, 0 meaning no timeout
+     */
+    public int getReadTimeoutMillis() {
+        return readTimeoutMillis;
+    }
+
+    public HttpConnectionSettings withConnectTimeoutMillis(int connectTimeoutMillis) {
+        return new HttpConnectionSettings(connectTimeoutMillis, readTimeoutMillis);
+    }
+
+    public HttpConnectionSettings withReadTimeoutMillis(int readTimeoutMillis) {
+        return new HttpConnectionSettings(connectTimeoutMillis, readTimeoutMillis);
+    }
+
+    @Override
+    public String toString() {
+        return "HttpConnectionSettings{" +
+                "connectTimeoutMillis=" + connectTimeoutMillis +
+                ", readTimeoutMillis=" + readTimeoutMillis +
+                '}';
+    }
+}
@@ -0,0 +1,107 @@
+package com.typesafe.conductr.lib;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URLConnection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The outcome of performing a request with the JDK's HttpURLConnection. This is what the Java and Scala connection
+ * handlers use to talk to ConductR.
+ *
+ * The response body is read in full and its stream closed rather than the connection being disconnected. The JDK
+ * may then return the connection to its keep-alive cache and reuse it for the next request to the same host, so a
+ * bundle talks to the service locator and the status endpoint over a handful of long-lived connections instead of a
+ * connection per request. The number of connections retained per host is governed by the JDK's
+ * `http.maxConnections` system property, and reuse may be disabled altogether with `http.keepAlive=false`.
+ */
+public class HttpExchange {
+
+    private final int statusCode;
+    private final Map<String, String> headers;
+    private final long contentLength;
+
+    HttpExchange(int statusCode, Map<String, String> headers, long contentLength) {
+        this.statusCode = statusCode;
+        this.headers = Collections.unmodifiableMap(headers);
+        this.contentLength = contentLength;
+    }
+
+    /**
+     * Perform the request described by a payload and consume its response.
+     *
+     * @param payload the request
+     * @param userAgent the value of the User-Agent header to send
+     * @param settings the connect and read timeouts to apply
+     * @return the response's status code and headers
+     * @throws IOException if the request could not be performed
+     */
+    public static HttpExchange execute(HttpPayload payload, String userAgent, HttpConnectionSettings settings) throws IOException {
+        URLConnection urlConnection = payload.getUrl().openConnection();
+        if (!(urlConnection instanceof HttpURLConnection))
+            throw new IOException("Unexpected type of connection " + urlConnection + " for " + payload);
+        HttpURLConnection connection = (HttpURLConnection) urlConnection;
+        connection.setConnectTimeout(settings.getConnectTimeoutMillis());
+        connection.setReadTimeout(settings.getReadTimeoutMillis());
+        connection.setRequestMethod(payload.getRequestMethod());
+        connection.setInstanceFollowRedirects(payload.getFollowRedirects());
+        connection.setRequestProperty("User-Agent", userAgent);
+        for (Map.Entry<String, String> header : payload.getRequestHeaders().entrySet())
+            connection.setRequestProperty(header.getKey(), header.getValue());
+        connection.connect();
+
+        int statusCode;
+        try {
+            statusCode = connection.getResponseCode();
+        } catch (IOException e) {
+            // The connection is in an unknown state and so must not be reused
+            connection.disconnect();
+            throw e;
+        }
+        Map<String, String> headers = new LinkedHashMap<String, String>();
+        for (Map.Entry<String, List<String>> header : connection.getHeaderFields().entrySet())
+            if (header.getKey() != null && !header.getValue().isEmpty())
+                headers.put(header.getKey(), header.getValue().get(header.getValue().size() - 1));
+
+        InputStream body = statusCode >= 400 ? connection.getErrorStream() : connection.getInputStream();
+        return new HttpExchange(statusCode, headers, body != null ? drain(body) : 0);
+    }
+
+    /*
+     * Read the body to its end and close it, which is what allows the JDK to reuse the connection.
+     */
+    private static long drain(InputStream body) throws IOException {
+        long contentLength = 0;
+        try {
+            byte[] buffer = new byte[4096];
+            int read;
+            while ((read = body.read(buffer)) != -1)
+                contentLength += read;
+        } finally {
+            body.close();
+        }
+        return contentLength;
+    }
+
+    public int getStatusCode() {
+        return statusCode;
+    }
+
+    /**
+     * @return the response headers. Where a header is repeated, its last value is retained.
+     */
+    public Map<String, String> getHeaders() {
+        return headers;
+    }
+
+    /**
+     * @return the number of bytes of the response body that were consumed
+     */
+    public long getContentLength() {
+        return contentLength;
+    }
+}
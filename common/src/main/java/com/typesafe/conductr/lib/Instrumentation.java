@@ -0,0 +1,142 @@
+package com.typesafe.conductr.lib;
+
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Receives the measurements taken by the library: the hits and misses of location caches, the outcome and
+ * latency of the requests made to ConductR, the requests rejected for want of a thread to make them on, the time
+ * taken by control client operations, and the bursts of bundle events that the bundle state is refreshed for.
+ *
+ * All of the methods do nothing by default so that an implementation need only override what it is interested in.
+ * Methods are called on the threads that perform the work being measured, and so should return quickly and never
+ * block.
+ *
+ * The instrumentation in use is held globally and may be replaced at any time with {@link #set(Instrumentation)}.
+ * The initial instrumentation is determined by the conductr.lib.instrumentation system property, which may be
+ * either "jmx" for {@link JmxInstrumentation} or the name of a class with a public no-argument constructor. When the
+ * property is not set, or names an instrumentation that cannot be created, measurements are discarded by
+ * {@link #NOOP}.
+ */
+public abstract class Instrumentation {
+
+    /**
+     * Discards all measurements.
+     */
+    public static final Instrumentation NOOP = new Instrumentation() {
+    };
+
+    private static volatile Instrumentation current = initial(System.getProperty("conductr.lib.instrumentation"));
+
+    /**
+     * @return the instrumentation in use
+     */
+    public static Instrumentation get() {
+        return current;
+    }
+
+    /**
+     * Replace the instrumentation in use. Passing null restores {@link #NOOP}.
+     */
+    public static void set(Instrumentation instrumentation) {
+        current = instrumentation != null ? instrumentation : NOOP;
+    }
+
+    /**
+     * A location was served from a cache.
+     */
+    public void cacheHit(String serviceName) {
+    }
+
+    /**
+     * A location was not held by a cache and is being looked up.
+     */
+    public void cacheMiss(String serviceName) {
+    }
+
+    /**
+     * A location was not yet held by a cache, but a lookup was already in flight and its outcome will be shared.
+     */
+    public void cacheCoalesced(String serviceName) {
+    }
+
+    /**
+     * A location was evicted from a cache, either because its time to live has passed or to make room for another.
+     */
+    public void cacheEviction(String serviceName) {
+    }
+
+    /**
+     * A response was received to a request.
+     *
+     * @param payload the request
+     * @param statusCode the status code of the response
+     * @param contentLength the length of the response entity, or -1 if unknown
+     * @param durationNanos the time from the request being issued to the response being received
+     */
+    public void requestCompleted(HttpPayload payload, int statusCode, long contentLength, long durationNanos) {
+    }
+
+    /**
+     * A request failed without a response being received.
+     *
+     * @param payload the request
+     * @param cause the reason for the failure
+     * @param durationNanos the time from the request being issued to its failure
+     */
+    public void requestFailed(HttpPayload payload, Throwable cause, long durationNanos) {
+    }
+
+    /**
+     * A request was not made as the executor that it was to be made on had no room for it.
+     *
+     * @param executor the name of the executor, e.g. "conductr-lib-io"
+     * @param queued the number of requests waiting on the executor at the time
+     */
+    public void requestRejected(String executor, int queued) {
+    }
+
+    /**
+     * A control client operation completed.
+     *
+     * @param operation the name of the operation, being the name of the control client method e.g. "runBundle"
+     * @param success false if the operation failed or ConductR reported a failure
+     * @param durationNanos the time taken by the operation
+     */
+    public void controlOperationCompleted(String operation, boolean success, long durationNanos) {
+    }
+
+    /**
+     * The bundle state of ConductR was retrieved following a burst of bundle events.
+     *
+     * @param events the number of events that the retrieval reflects
+     * @param lagNanos the time from the first of these events being received to the bundle state being retrieved
+     */
+    public void bundlesRefreshed(int events, long lagNanos) {
+    }
+
+    /*
+     * An instrumentation that cannot be created must not stop the class from initialising, and so take the library
+     * down with it. The failure is logged and measurements are discarded instead.
+     */
+    // Package private for testing
+    static Instrumentation initial(String name) {
+        if (name == null || name.length() == 0)
+            return NOOP;
+        try {
+            if (name.equals("jmx"))
+                return JmxInstrumentation.register();
+            return (Instrumentation) Class.forName(name).newInstance();
+        } catch (Exception e) {
+            return failed(name, e);
+        } catch (LinkageError e) {
+            return failed(name, e);
+        }
+    }
+
+    private static Instrumentation failed(String name, Throwable e) {
+        Logger.getLogger(Instrumentation.class.getName()).log(Level.WARNING,
+                "Cannot create the instrumentation " + name + ", so measurements are discarded", e);
+        return NOOP;
+    }
+}
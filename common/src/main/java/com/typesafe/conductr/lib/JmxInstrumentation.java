@@ -0,0 +1,242 @@
+package com.typesafe.conductr.lib;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Instrumentation that accumulates counts and latencies to be read via JMX. Use {@link #register()} to obtain the
+ * instance that is registered with the platform MBean server under {@link #OBJECT_NAME}, and then
+ * {@link Instrumentation#set(Instrumentation)} to have it receive measurements; alternatively set the
+ * conductr.lib.instrumentation system property to "jmx".
+ *
+ * Recording a measurement amounts to incrementing a few atomic counters, and allocates nothing other than when a
+ * status code or control operation is seen for the first time.
+ */
+public class JmxInstrumentation extends Instrumentation implements JmxInstrumentationMXBean {
+
+    public static final String OBJECT_NAME = "com.typesafe.conductr.lib:type=Instrumentation";
+
+    private static JmxInstrumentation registered;
+
+    /**
+     * Obtain the instance registered with the platform MBean server, registering one if there is none.
+     */
+    public static synchronized JmxInstrumentation register() {
+        if (registered == null) {
+            JmxInstrumentation instrumentation = new JmxInstrumentation();
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            try {
+                ObjectName name = new ObjectName(OBJECT_NAME);
+                if (server.isRegistered(name))
+                    server.unregisterMBean(name);
+                server.registerMBean(instrumentation, name);
+            } catch (JMException e) {
+                throw new IllegalStateException("Cannot register " + OBJECT_NAME, e);
+            }
+            registered = instrumentation;
+        }
+        return registered;
+    }
+
+    private final AtomicLong cacheHits = new AtomicLong();
+    private final AtomicLong cacheMisses = new AtomicLong();
+    private final AtomicLong cacheCoalesced = new AtomicLong();
+    private final AtomicLong cacheEvictions = new AtomicLong();
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong requestFailures = new AtomicLong();
+    private final AtomicLong requestRejections = new AtomicLong();
+    private final AtomicLong bytesReceived = new AtomicLong();
+    private final ConcurrentMap<Integer, AtomicLong> statusCodes = new ConcurrentHashMap<Integer, AtomicLong>();
+    private final LatencyHistogram requestLatency = new LatencyHistogram();
+    private final ConcurrentMap<String, LatencyHistogram> controlOperations = new ConcurrentHashMap<String, LatencyHistogram>();
+    private final ConcurrentMap<String, AtomicLong> controlOperationFailures = new ConcurrentHashMap<String, AtomicLong>();
+    private final AtomicLong bundleEvents = new AtomicLong();
+    private final AtomicLong maxBundleEventBurst = new AtomicLong();
+    private final LatencyHistogram bundlesRefreshLag = new LatencyHistogram();
+
+    @Override
+    public void cacheHit(String serviceName) {
+        cacheHits.incrementAndGet();
+    }
+
+    @Override
+    public void cacheMiss(String serviceName) {
+        cacheMisses.incrementAndGet();
+    }
+
+    @Override
+    public void cacheCoalesced(String serviceName) {
+        cacheCoalesced.incrementAndGet();
+    }
+
+    @Override
+    public void cacheEviction(String serviceName) {
+        cacheEvictions.incrementAndGet();
+    }
+
+    @Override
+    public void requestCompleted(HttpPayload payload, int statusCode, long contentLength, long durationNanos) {
+        requests.incrementAndGet();
+        if (contentLength > 0L)
+            bytesReceived.addAndGet(contentLength);
+        counter(statusCodes, statusCode).incrementAndGet();
+        requestLatency.record(durationNanos);
+    }
+
+    @Override
+    public void requestFailed(HttpPayload payload, Throwable cause, long durationNanos) {
+        requests.incrementAndGet();
+        requestFailures.incrementAndGet();
+        requestLatency.record(durationNanos);
+    }
+
+    @Override
+    public void requestRejected(String executor, int queued) {
+        requestRejections.incrementAndGet();
+    }
+
+    @Override
+    public void controlOperationCompleted(String operation, boolean success, long durationNanos) {
+        LatencyHistogram histogram = controlOperations.get(operation);
+        if (histogram == null) {
+            LatencyHistogram newHistogram = new LatencyHistogram();
+            histogram = controlOperations.putIfAbsent(operation, newHistogram);
+            if (histogram == null)
+                histogram = newHistogram;
+        }
+        histogram.record(durationNanos);
+        if (!success)
+            counter(controlOperationFailures, operation).incrementAndGet();
+    }
+
+    @Override
+    public void bundlesRefreshed(int events, long lagNanos) {
+        bundleEvents.addAndGet(events);
+        long max = maxBundleEventBurst.get();
+        while (events > max && !maxBundleEventBurst.compareAndSet(max, events))
+            max = maxBundleEventBurst.get();
+        bundlesRefreshLag.record(lagNanos);
+    }
+
+    @Override
+    public long getCacheHits() {
+        return cacheHits.get();
+    }
+
+    @Override
+    public long getCacheMisses() {
+        return cacheMisses.get();
+    }
+
+    @Override
+    public long getCacheCoalesced() {
+        return cacheCoalesced.get();
+    }
+
+    @Override
+    public long getCacheEvictions() {
+        return cacheEvictions.get();
+    }
+
+    @Override
+    public long getRequests() {
+        return requests.get();
+    }
+
+    @Override
+    public long getRequestFailures() {
+        return requestFailures.get();
+    }
+
+    @Override
+    public long getRequestRejections() {
+        return requestRejections.get();
+    }
+
+    @Override
+    public long getBytesReceived() {
+        return bytesReceived.get();
+    }
+
+    @Override
+    public Map<Integer, Long> getStatusCodes() {
+        return values(statusCodes);
+    }
+
+    @Override
+    public LatencySnapshot getRequestLatency() {
+        return requestLatency.snapshot();
+    }
+
+    @Override
+    public Map<String, LatencySnapshot> getControlOperations() {
+        Map<String, LatencySnapshot> snapshots = new TreeMap<String, LatencySnapshot>();
+        for (Map.Entry<String, LatencyHistogram> e : controlOperations.entrySet())
+            snapshots.put(e.getKey(), e.getValue().snapshot());
+        return snapshots;
+    }
+
+    @Override
+    public Map<String, Long> getControlOperationFailures() {
+        return values(controlOperationFailures);
+    }
+
+    @Override
+    public long getBundleEvents() {
+        return bundleEvents.get();
+    }
+
+    @Override
+    public long getMaxBundleEventBurst() {
+        return maxBundleEventBurst.get();
+    }
+
+    @Override
+    public LatencySnapshot getBundlesRefreshLag() {
+        return bundlesRefreshLag.snapshot();
+    }
+
+    @Override
+    public void reset() {
+        cacheHits.set(0L);
+        cacheMisses.set(0L);
+        cacheCoalesced.set(0L);
+        cacheEvictions.set(0L);
+        requests.set(0L);
+        requestFailures.set(0L);
+        requestRejections.set(0L);
+        bytesReceived.set(0L);
+        statusCodes.clear();
+        requestLatency.reset();
+        controlOperations.clear();
+        controlOperationFailures.clear();
+        bundleEvents.set(0L);
+        maxBundleEventBurst.set(0L);
+        bundlesRefreshLag.reset();
+    }
+
+    private static <K> AtomicLong counter(ConcurrentMap<K, AtomicLong> counters, K key) {
+        AtomicLong counter = counters.get(key);
+        if (counter == null) {
+            AtomicLong newCounter = new AtomicLong();
+            counter = counters.putIfAbsent(key, newCounter);
+            if (counter == null)
+                counter = newCounter;
+        }
+        return counter;
+    }
+
+    private static <K extends Comparable<K>> Map<K, Long> values(ConcurrentMap<K, AtomicLong> counters) {
+        Map<K, Long> values = new TreeMap<K, Long>();
+        for (Map.Entry<K, AtomicLong> e : counters.entrySet())
+            values.put(e.getKey(), e.getValue().get());
+        return values;
+    }
+}
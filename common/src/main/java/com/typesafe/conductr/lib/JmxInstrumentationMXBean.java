@@ -0,0 +1,69 @@
+package com.typesafe.conductr.lib;
+
+import java.util.Map;
+
+/**
+ * The measurements of {@link JmxInstrumentation} as exposed via JMX.
+ */
+public interface JmxInstrumentationMXBean {
+
+    long getCacheHits();
+
+    long getCacheMisses();
+
+    long getCacheCoalesced();
+
+    long getCacheEvictions();
+
+    long getRequests();
+
+    long getRequestFailures();
+
+    /**
+     * @return the number of requests not made as the executor they were to be made on had no room for them
+     */
+    long getRequestRejections();
+
+    /**
+     * @return the total length of the response entities whose length was known
+     */
+    long getBytesReceived();
+
+    /**
+     * @return the number of responses received by status code
+     */
+    Map<Integer, Long> getStatusCodes();
+
+    LatencySnapshot getRequestLatency();
+
+    /**
+     * @return the timings of the control client operations by operation name
+     */
+    Map<String, LatencySnapshot> getControlOperations();
+
+    /**
+     * @return the number of control client operations that failed by operation name
+     */
+    Map<String, Long> getControlOperationFailures();
+
+    /**
+     * @return the number of bundle events that refreshes of the bundle state have reflected
+     */
+    long getBundleEvents();
+
+    /**
+     * @return the largest number of bundle events reflected by a single refresh of the bundle state
+     */
+    long getMaxBundleEventBurst();
+
+    /**
+     * @return the time from a bundle event being received to the bundle state being refreshed for it, the count
+     *         being that of the refreshes
+     */
+    LatencySnapshot getBundlesRefreshLag();
+
+    /**
+     * Set all measurements back to zero.
+     */
+    void reset();
+}
@@ -0,0 +1,74 @@
+package com.typesafe.conductr.lib;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Records durations into buckets of increasing powers of two microseconds, from which the count, mean, maximum and
+ * approximate percentiles are obtained. Recording is lock free and allocates nothing.
+ */
+public final class LatencyHistogram {
+
+    // Bucket n holds durations of less than 2^n microseconds, the last bucket holding all longer durations
+    private static final int BUCKETS = 40;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+    private final AtomicLong totalNanos = new AtomicLong();
+    private final AtomicLong maxNanos = new AtomicLong();
+
+    public void record(long durationNanos) {
+        long nanos = Math.max(durationNanos, 0L);
+        int bucket = Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(nanos / 1000L));
+        buckets.incrementAndGet(bucket);
+        totalNanos.addAndGet(nanos);
+        long max;
+        while ((max = maxNanos.get()) < nanos && !maxNanos.compareAndSet(max, nanos)) {
+            // Retry until the maximum is at least this duration
+        }
+    }
+
+    /**
+     * @return the measurements recorded so far. Recording may continue while the snapshot is taken, so the figures
+     * are approximate.
+     */
+    public LatencySnapshot snapshot() {
+        long[] counts = new long[BUCKETS];
+        long total = 0L;
+        for (int i = 0; i < BUCKETS; ++i) {
+            counts[i] = buckets.get(i);
+            total += counts[i];
+        }
+        long max = maxNanos.get();
+        double meanMillis = total > 0 ? totalNanos.get() / (double) total / 1000000.0 : 0.0;
+        return new LatencySnapshot(
+                total,
+                meanMillis,
+                max / 1000000.0,
+                percentileMillis(counts, total, max, 0.5),
+                percentileMillis(counts, total, max, 0.9),
+                percentileMillis(counts, total, max, 0.99));
+    }
+
+    public void reset() {
+        for (int i = 0; i < BUCKETS; ++i)
+            buckets.set(i, 0L);
+        totalNanos.set(0L);
+        maxNanos.set(0L);
+    }
+
+    /*
+     * The upper bound of the bucket holding the percentile, which is never more than the maximum duration recorded.
+     */
+    private static double percentileMillis(long[] counts, long total, long maxNanos, double percentile) {
+        if (total == 0L)
+            return 0.0;
+        long rank = (long) Math.ceil(total * percentile);
+        long seen = 0L;
+        for (int i = 0; i < BUCKETS - 1; ++i) {
+            seen += counts[i];
+            if (seen >= rank)
+                return Math.min((1L << i) / 1000.0, maxNanos / 1000000.0);
+        }
+        return maxNanos / 1000000.0;
+    }
+}
@@ -0,0 +1,41 @@
+package com.typesafe.conductr.lib;
+
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * The timer that the library schedules the deadlines of its requests with, along with any other delayed action
+ * on a request such as hedging it. Its single daemon thread is started when the timer is first used. Scheduled
+ * actions are expected to return quickly, e.g. by completing a future.
+ */
+public final class RequestTimer {
+
+    private RequestTimer() {
+    }
+
+    /**
+     * @return the timer
+     */
+    public static ScheduledExecutorService get() {
+        return Holder.TIMER;
+    }
+
+    private static final class Holder {
+        static final ScheduledExecutorService TIMER = create();
+
+        private static ScheduledExecutorService create() {
+            ScheduledThreadPoolExecutor timer = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, "conductr-lib-timer");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+            // Deadlines are mostly cancelled, as their requests mostly complete in time
+            timer.setRemoveOnCancelPolicy(true);
+            return timer;
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package com.typesafe.conductr.lib
+
+import _root_.java.net.{ SocketTimeoutException, URL }
+import _root_.java.util.concurrent.atomic.AtomicInteger
+
+import _root_.akka.http.scaladsl.Http
+import _root_.akka.http.scaladsl.model.headers.Location
+import _root_.akka.http.scaladsl.model.{ HttpEntity, HttpRequest, HttpResponse, StatusCodes, Uri }
+import _root_.akka.stream.ActorMaterializer
+import _root_.akka.stream.scaladsl.{ Sink, Source }
+import _root_.akka.util.ByteString
+
+import _root_.scala.collection.JavaConverters._
+import _root_.scala.concurrent.{ Await, Future }
+
+class HttpExchangeSpec extends AkkaUnitTest("HttpExchangeSpec") {
+
+  implicit val mat = ActorMaterializer()
+
+  "An HttpExchange" should {
+    "consume the response so that the connection is reused for subsequent requests to the same host" in {
+      withServer { (url, connections) =>
+        for (_ <- 1 to 10) {
+          val response = HttpExchange.execute(new HttpPayload(new URL(url, "/known")), "test", HttpConnectionSettings.DEFAULT)
+          response.getStatusCode shouldBe 307
+          response.getHeaders.asScala.get("Location") shouldBe Some("http://service_interface:4711/known")
+          response.getContentLength shouldBe "Located".length
+        }
+        connections.get shouldBe 1
+      }
+    }
+
+    "consume a chunked body and reuse the connection" in {
+      withServer { (url, connections) =>
+        HttpExchange.execute(new HttpPayload(new URL(url, "/chunked")), "test", HttpConnectionSettings.DEFAULT).getContentLength shouldBe 6
+        HttpExchange.execute(new HttpPayload(new URL(url, "/chunked")), "test", HttpConnectionSettings.DEFAULT).getContentLength shouldBe 6
+        connections.get shouldBe 1
+      }
+    }
+
+    "consume the body of an error and reuse the connection" in {
+      withServer { (url, connections) =>
+        for (_ <- 1 to 2) {
+          val response = HttpExchange.execute(new HttpPayload(new URL(url, "/unknown")), "test", HttpConnectionSettings.DEFAULT)
+          response.getStatusCode shouldBe 404
+          response.getContentLength shouldBe "Not here".length
+        }
+        connections.get shouldBe 1
+      }
+    }
+
+    "fail a request that exceeds the read timeout" in {
+      withServer { (url, _) =>
+        intercept[SocketTimeoutException] {
+          HttpExchange.execute(new HttpPayload(new URL(url, "/slow")), "test", HttpConnectionSettings.DEFAULT.withReadTimeoutMillis(100))
+        }
+      }
+    }
+  }
+
+  private def withServer(thunk: (URL, AtomicInteger) => Unit): Unit = {
+    import system.dispatcher
+    val connections = new AtomicInteger
+    val handler: HttpRequest => Future[HttpResponse] = {
+      case HttpRequest(_, Uri.Path("/known"), _, _, _) =>
+        Future.successful(
+          HttpResponse(StatusCodes.TemporaryRedirect, List(Location("http://service_interface:4711/known")), HttpEntity("Located"))
+        )
+      case HttpRequest(_, Uri.Path("/chunked"), _, _, _) =>
+        Future.successful(HttpResponse(entity = HttpEntity.Chunked.fromData(
+          HttpEntity.Empty.contentType,
+          Source(List(ByteString("abc"), ByteString("def")))
+        )))
+      case HttpRequest(_, Uri.Path("/slow"), _, _, _) =>
+        _root_.akka.pattern.after(timeout.duration / 2, system.scheduler)(Future.successful(HttpResponse(StatusCodes.OK)))
+      case _ =>
+        Future.successful(HttpResponse(StatusCodes.NotFound, entity = HttpEntity("Not here")))
+    }
+    val binding = Await.result(
+      Http().bind("127.0.0.1", 0)
+        .to(Sink.foreach { connection =>
+          connections.incrementAndGet()
+          connection.handleWithAsyncHandler(handler)
+        })
+        .run(),
+      timeout.duration
+    )
+    try
+      thunk(new URL(s"http://127.0.0.1:${binding.localAddress.getPort}"), connections)
+    finally
+      Await.result(binding.unbind(), timeout.duration)
+  }
+}
@@ -0,0 +1,20 @@
+package com.typesafe.conductr.lib
+
+class InstrumentationSpec extends UnitTest {
+
+  "The initial instrumentation" should {
+    "discard measurements when none is named" in {
+      Instrumentation.initial(null) shouldBe Instrumentation.NOOP
+      Instrumentation.initial("") shouldBe Instrumentation.NOOP
+    }
+
+    "be created from the name of its class" in {
+      Instrumentation.initial(classOf[JmxInstrumentation].getName) shouldBe a[JmxInstrumentation]
+    }
+
+    "discard measurements when the named class cannot be created" in {
+      Instrumentation.initial("com.typesafe.conductr.lib.NoSuchInstrumentation") shouldBe Instrumentation.NOOP
+      Instrumentation.initial(classOf[String].getName) shouldBe Instrumentation.NOOP
+    }
+  }
+}
@@ -0,0 +1,114 @@
+package com.typesafe.conductr.lib
+
+import _root_.java.lang.management.ManagementFactory
+import _root_.java.net.URL
+import _root_.javax.management.ObjectName
+import _root_.scala.collection.JavaConverters._
+
+class JmxInstrumentationSpec extends UnitTest {
+
+  private val payload = new HttpPayload(new URL("http://127.0.0.1/services/known"))
+
+  "A JmxInstrumentation" should {
+    "count cache activity" in {
+      val instrumentation = new JmxInstrumentation
+      instrumentation.cacheMiss("known")
+      instrumentation.cacheCoalesced("known")
+      instrumentation.cacheHit("known")
+      instrumentation.cacheHit("known")
+      instrumentation.cacheEviction("known")
+      instrumentation.getCacheMisses shouldBe 1
+      instrumentation.getCacheCoalesced shouldBe 1
+      instrumentation.getCacheHits shouldBe 2
+      instrumentation.getCacheEvictions shouldBe 1
+    }
+
+    "record requests by status code along with their latency and size" in {
+      val instrumentation = new JmxInstrumentation
+      instrumentation.requestCompleted(payload, 307, 7, 3000000)
+      instrumentation.requestCompleted(payload, 307, -1, 1000000)
+      instrumentation.requestCompleted(payload, 404, 0, 2000000)
+      instrumentation.requestFailed(payload, new RuntimeException("boom"), 5000000)
+      instrumentation.getRequests shouldBe 4
+      instrumentation.getRequestFailures shouldBe 1
+      instrumentation.getBytesReceived shouldBe 7
+      instrumentation.getStatusCodes.asScala shouldBe Map(307 -> 2, 404 -> 1)
+      val latency = instrumentation.getRequestLatency
+      latency.getCount shouldBe 4
+      latency.getMeanMillis shouldBe 2.75
+      latency.getMaxMillis shouldBe 5.0
+    }
+
+    "count the requests rejected by their executor apart from those made" in {
+      val instrumentation = new JmxInstrumentation
+      instrumentation.requestRejected("conductr-lib-io", 1024)
+      instrumentation.requestRejected("conductr-lib-io", 1024)
+      instrumentation.getRequestRejections shouldBe 2
+      instrumentation.getRequests shouldBe 0
+    }
+
+    "record control operations and their failures" in {
+      val instrumentation = new JmxInstrumentation
+      instrumentation.controlOperationCompleted("runBundle", true, 1000000)
+      instrumentation.controlOperationCompleted("runBundle", false, 1000000)
+      instrumentation.controlOperationCompleted("getBundlesInfo", true, 1000000)
+      instrumentation.getControlOperations.asScala.mapValues(_.getCount) shouldBe Map("getBundlesInfo" -> 1, "runBundle" -> 2)
+      instrumentation.getControlOperationFailures.asScala shouldBe Map("runBundle" -> 1)
+    }
+
+    "record the bursts of bundle events that the bundle state is refreshed for" in {
+      val instrumentation = new JmxInstrumentation
+      instrumentation.bundlesRefreshed(3, 600000000)
+      instrumentation.bundlesRefreshed(40, 5000000000L)
+      instrumentation.bundlesRefreshed(1, 500000000)
+      instrumentation.getBundleEvents shouldBe 44
+      instrumentation.getMaxBundleEventBurst shouldBe 40
+      val lag = instrumentation.getBundlesRefreshLag
+      lag.getCount shouldBe 3
+      lag.getMaxMillis shouldBe 5000.0
+    }
+
+    "discard everything recorded when reset" in {
+      val instrumentation = new JmxInstrumentation
+      instrumentation.cacheHit("known")
+      instrumentation.requestCompleted(payload, 200, 10, 1000000)
+      instrumentation.controlOperationCompleted("runBundle", false, 1000000)
+      instrumentation.reset()
+      instrumentation.getCacheHits shouldBe 0
+      instrumentation.getRequests shouldBe 0
+      instrumentation.getStatusCodes.asScala shouldBe empty
+      instrumentation.getRequestLatency.getCount shouldBe 0
+      instrumentation.getControlOperations.asScala shouldBe empty
+    }
+
+    "be readable from the platform MBean server once registered" in {
+      val instrumentation = JmxInstrumentation.register()
+      JmxInstrumentation.register() should be theSameInstanceAs instrumentation
+      instrumentation.reset()
+      instrumentation.cacheMiss("known")
+      val server = ManagementFactory.getPlatformMBeanServer
+      server.getAttribute(new ObjectName(JmxInstrumentation.OBJECT_NAME), "CacheMisses") shouldBe 1L
+    }
+  }
+
+  "A LatencyHistogram" should {
+    "approximate percentiles with the upper bound of their bucket" in {
+      val histogram = new LatencyHistogram
+      (1 to 90).foreach(_ => histogram.record(900000)) // 0.9ms, bucket bound 1.024ms
+      (1 to 10).foreach(_ => histogram.record(50000000)) // 50ms
+      val snapshot = histogram.snapshot()
+      snapshot.getCount shouldBe 100
+      snapshot.getP50Millis shouldBe 1.024
+      snapshot.getP90Millis shouldBe 1.024
+      snapshot.getP99Millis shouldBe 50.0
+      snapshot.getMaxMillis shouldBe 50.0
+    }
+
+    "report zeros when nothing has been recorded" in {
+      val snapshot = new LatencyHistogram().snapshot()
+      snapshot.getCount shouldBe 0
+      snapshot.getMeanMillis shouldBe 0.0
+      snapshot.getP99Millis shouldBe 0.0
+    }
+  }
+}
@@ -10,6 +10,11 @@ import static com.typesafe.conductr.bundlelib.Env.*;
  */
 public class LocationService {
 
+    private static final String MAX_AGE = "max-age=";
+
+    // Enough digits for any sensible max-age while being far from overflowing
+    private static final int MAX_AGE_DIGITS = 10;
+
     protected LocationService() {
     }
 
@@ -55,6 +60,45 @@ public class LocationService {
         return new HttpPayload(locatorUrl);
     }
 
+    /**
+     * Obtain the max-age directive of a Cache-Control header, being the number of seconds that a location returned
+     * by a lookup may be cached for.
+     *
+     * @param cacheControl The value of the Cache-Control header
+     * @return The max-age in seconds, or -1 if there is no valid max-age directive
+     */
+    public static long parseMaxAge(String cacheControl) {
+        int length = cacheControl.length();
+        int i = 0;
+        while (i < length) {
+            // Skip to the start of the next directive
+            while (i < length && isDirectiveEnd(cacheControl.charAt(i)))
+                ++i;
+            if (cacheControl.regionMatches(true, i, MAX_AGE, 0, MAX_AGE.length())) {
+                int start = i + MAX_AGE.length();
+                int end = start;
+                long maxAge = 0L;
+                while (end < length && end - start < MAX_AGE_DIGITS && isDigit(cacheControl.charAt(end))) {
+                    maxAge = maxAge * 10L + (cacheControl.charAt(end) - '0');
+                    ++end;
+                }
+                if (end > start && (end == length || isDirectiveEnd(cacheControl.charAt(end))))
+                    return maxAge;
+            }
+            while (i < length && cacheControl.charAt(i) != ',')
+                ++i;
+        }
+        return -1L;
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static boolean isDirectiveEnd(char c) {
+        return c == ',' || c == ' ' || c == '\t';
+    }
+
     /**
      * A convenience function where the payload url is created when this bundle component
      * is running in the context of ConductR. If it is not then a fallback is returned.
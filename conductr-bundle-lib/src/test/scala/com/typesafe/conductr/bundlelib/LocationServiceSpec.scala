@@ -15,5 +15,21 @@ class LocationServiceSpec extends UnitTest {
       val fallback = new URL("http://127.0.0.1/whatever")
       LocationService.getLookupUrl("/whatever", fallback) shouldBe fallback
     }
+
+    "parse the max-age of a Cache-Control header" in {
+      LocationService.parseMaxAge("max-age=60") shouldBe 60
+      LocationService.parseMaxAge("private, max-age=60") shouldBe 60
+      LocationService.parseMaxAge("private,MAX-AGE=0,no-transform") shouldBe 0
+      LocationService.parseMaxAge("s-maxage=10, max-age=20") shouldBe 20
+    }
+
+    "not find a max-age in a Cache-Control header without a valid one" in {
+      LocationService.parseMaxAge("") shouldBe -1
+      LocationService.parseMaxAge("no-cache") shouldBe -1
+      LocationService.parseMaxAge("s-maxage=10") shouldBe -1
+      LocationService.parseMaxAge("max-age=") shouldBe -1
+      LocationService.parseMaxAge("max-age=6o") shouldBe -1
+      LocationService.parseMaxAge("max-age=99999999999999999999") shouldBe -1
+    }
   }
 }
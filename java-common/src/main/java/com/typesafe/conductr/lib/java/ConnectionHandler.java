@@ -1,16 +1,20 @@
 package com.typesafe.conductr.lib.java;
 
+import com.typesafe.conductr.lib.HttpConnectionSettings;
+import com.typesafe.conductr.lib.HttpExchange;
 import com.typesafe.conductr.lib.HttpPayload;
+import com.typesafe.conductr.lib.Instrumentation;
 
 import java.io.IOException;
 import java.io.UncheckedIOException;
-import java.net.HttpURLConnection;
 import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionStage;
 import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.function.BiFunction;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 import static com.typesafe.conductr.lib.java.ManagedBlocker.*;
@@ -26,37 +30,66 @@ public class ConnectionHandler {
     /**
      * Make a request to a ConductR service given a payload. Returns a future of an option. If there is some response
      * then there will be a result, otherwise empty indicates that this program is not running in the context
-     * of ConductR.
+     * of ConductR. The timeouts of {@link HttpConnectionSettings#DEFAULT} apply.
      */
     public static <T> CompletionStage<Optional<T>> withConnectedRequest(
             Optional<HttpPayload> payload, BiFunction<Integer, Map<String, Optional<String>>, Optional<T>> op, Executor executor) {
+        return withConnectedRequest(payload, op, executor, HttpConnectionSettings.DEFAULT);
+    }
+
+    /**
+     * Make a request to a ConductR service given a payload, applying the given timeouts. Returns a future of an
+     * option. If there is some response then there will be a result, otherwise empty indicates that this program is
+     * not running in the context of ConductR.
+     */
+    public static <T> CompletionStage<Optional<T>> withConnectedRequest(
+            Optional<HttpPayload> payload, BiFunction<Integer, Map<String, Optional<String>>, Optional<T>> op, Executor executor,
+            HttpConnectionSettings settings) {
         return payload
-            .map(p -> CompletableFuture.supplyAsync(() -> {
-                try {
-                    HttpURLConnection connection = (HttpURLConnection) p.getUrl().openConnection();
-                    connection.setRequestMethod(p.getRequestMethod());
-                    connection.setInstanceFollowRedirects(p.getFollowRedirects());
-                    connection.setRequestProperty("User-Agent", USER_AGENT);
-                    p.getRequestHeaders().forEach(connection::setRequestProperty);
-                    blocking(() -> {
-                        try {
-                            connection.connect();
-                        } catch (IOException e) {
-                            throw new UncheckedIOException(e);
-                        }
-                    });
-                    Map<String, Optional<String>> headers =
-                            connection.getHeaderFields()
-                                    .entrySet().stream()
-                                    .collect(Collectors.toMap(Map.Entry::getKey, e -> e.getValue().stream().reduce((a, b) -> b)));
-                    return op.apply(connection.getResponseCode(), headers);
+            .map(p -> supplyAsync(() -> {
+                HttpExchange response = execute(p, settings);
+                Map<String, Optional<String>> headers =
+                        response.getHeaders()
+                                .entrySet().stream()
+                                .collect(Collectors.toMap(Map.Entry::getKey, e -> Optional.of(e.getValue())));
+                return op.apply(response.getStatusCode(), headers);
+            }, executor))
+            .orElse(CompletableFuture.completedFuture(Optional.empty()));
+    }
+
+    // A request rejected by a bounded executor fails its future rather than the caller
+    private static <T> CompletableFuture<T> supplyAsync(Supplier<T> supplier, Executor executor) {
+        try {
+            return CompletableFuture.supplyAsync(supplier, executor);
+        } catch (RejectedExecutionException e) {
+            CompletableFuture<T> rejected = new CompletableFuture<>();
+            rejected.completeExceptionally(e);
+            return rejected;
+        }
+    }
 
+    private static HttpExchange execute(HttpPayload payload, HttpConnectionSettings settings) {
+        long startNanos = System.nanoTime();
+        try {
+            HttpExchange[] response = new HttpExchange[1];
+            blocking(() -> {
+                try {
+                    response[0] = HttpExchange.execute(payload, USER_AGENT, settings);
                 } catch (IOException e) {
-                    throw new UncheckedIOException("Connection failed for " + p, e);
-                } catch (InterruptedException e) {
-                    throw new UncheckedIOException("Interrupt", new IOException("Connection failed for " + p));
+                    throw new UncheckedIOException(e);
                 }
-            }, executor))
-            .orElse(CompletableFuture.completedFuture(Optional.empty()));
+            });
+            Instrumentation.get().requestCompleted(
+                    payload, response[0].getStatusCode(), response[0].getContentLength(), System.nanoTime() - startNanos);
+            return response[0];
+
+        } catch (InterruptedException e) {
+            UncheckedIOException failure = new UncheckedIOException("Interrupt", new IOException("Connection failed for " + payload));
+            Instrumentation.get().requestFailed(payload, failure, System.nanoTime() - startNanos);
+            throw failure;
+        } catch (RuntimeException e) {
+            Instrumentation.get().requestFailed(payload, e, System.nanoTime() - startNanos);
+            throw e;
+        }
     }
 }
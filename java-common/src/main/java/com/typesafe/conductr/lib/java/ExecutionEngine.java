@@ -0,0 +1,153 @@
+package com.typesafe.conductr.lib.java;
+
+import com.typesafe.conductr.lib.Instrumentation;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The means of executing the requests made to ConductR by the Java API when no executor is given explicitly.
+ * Requests block their thread while connecting and awaiting the response, and so are best kept away from the
+ * threads performing the application's computations.
+ * <p>
+ * The engine in use is determined by the conductr.lib.java.execution-engine system property, which may be
+ * "io-pool", "virtual-threads" or "common-pool". When the property is not set {@link #IO_POOL} is used. The size of
+ * the I/O pool is determined by the conductr.lib.java.io-pool.threads and conductr.lib.java.io-pool.queue-size
+ * system properties, defaulting to 16 threads and 1024 queued requests.
+ */
+public enum ExecutionEngine {
+
+    /**
+     * A pool of daemon threads dedicated to requests, bounded in both its threads and its queue of requests waiting
+     * for a thread. Requests beyond those are rejected, failing their future, and reported to
+     * {@link Instrumentation#requestRejected(String, int)}.
+     */
+    IO_POOL {
+        @Override
+        public Executor executor() {
+            return IoPool.EXECUTOR;
+        }
+    },
+
+    /**
+     * A new virtual thread for each request, on JDKs that provide virtual threads. Falls back to {@link #IO_POOL}
+     * on those that do not.
+     */
+    VIRTUAL_THREADS {
+        @Override
+        public Executor executor() {
+            return VirtualThreads.EXECUTOR != null ? VirtualThreads.EXECUTOR : IO_POOL.executor();
+        }
+    },
+
+    /**
+     * The common fork join pool, which compensates for each blocked request with an additional thread. Requests
+     * thereby compete with parallel streams and any other user of the common pool.
+     */
+    COMMON_POOL {
+        @Override
+        public Executor executor() {
+            return ForkJoinPool.commonPool();
+        }
+    };
+
+    public static final String PROPERTY = "conductr.lib.java.execution-engine";
+
+    public static final String IO_POOL_NAME = "conductr-lib-io";
+
+    /**
+     * @return the executor that requests are made on when none is given
+     */
+    public abstract Executor executor();
+
+    /**
+     * @return the engine in use, as determined by the conductr.lib.java.execution-engine system property
+     */
+    public static ExecutionEngine get() {
+        return Current.ENGINE;
+    }
+
+    /**
+     * @return the executor of the engine in use
+     */
+    public static Executor defaultExecutor() {
+        return get().executor();
+    }
+
+    /**
+     * @return true if the JDK provides virtual threads
+     */
+    public static boolean isVirtualThreadsSupported() {
+        return VirtualThreads.EXECUTOR != null;
+    }
+
+    /**
+     * Create a pool of daemon threads for making requests on, bounded as per {@link #IO_POOL}. Threads are
+     * retired when idle for a minute.
+     *
+     * @param name the name of the pool, being the prefix of its thread names and reported with its rejections
+     * @param threads the number of threads
+     * @param queueSize the number of requests that may wait for a thread
+     */
+    public static ThreadPoolExecutor ioPool(String name, int threads, int queueSize) {
+        AtomicInteger count = new AtomicInteger();
+        ThreadFactory threadFactory = r -> {
+            Thread thread = new Thread(r, name + "-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(
+                threads, threads, 1L, TimeUnit.MINUTES, new ArrayBlockingQueue<>(queueSize), threadFactory,
+                (r, e) -> {
+                    Instrumentation.get().requestRejected(name, e.getQueue().size());
+                    throw new RejectedExecutionException("The " + name + " pool has " + e.getQueue().size() + " requests waiting");
+                });
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    public static ExecutionEngine parse(String name) {
+        switch (name) {
+            case "io-pool":
+                return IO_POOL;
+            case "virtual-threads":
+                return VIRTUAL_THREADS;
+            case "common-pool":
+                return COMMON_POOL;
+            default:
+                throw new IllegalArgumentException("Unknown execution engine " + name);
+        }
+    }
+
+    // Each executor is created when first used only
+
+    private static final class Current {
+        static final ExecutionEngine ENGINE = parse(System.getProperty(PROPERTY, "io-pool"));
+    }
+
+    private static final class IoPool {
+        static final Executor EXECUTOR = ioPool(
+                IO_POOL_NAME,
+                Integer.getInteger("conductr.lib.java.io-pool.threads", 16),
+                Integer.getInteger("conductr.lib.java.io-pool.queue-size", 1024));
+    }
+
+    private static final class VirtualThreads {
+        static final Executor EXECUTOR = create();
+
+        private static Executor create() {
+            try {
+                return (Executor) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+            } catch (ReflectiveOperationException e) {
+                return null;
+            }
+        }
+    }
+}
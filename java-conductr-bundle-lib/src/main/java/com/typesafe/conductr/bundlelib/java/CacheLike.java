@@ -14,10 +14,18 @@ import java.util.function.Supplier;
  * being able to cope with the thundering herds issue:
  * http://ehcache.org/documentation/2.8/recipes/thunderingherd.
  *
- * Entries that provide a max age duration are scheduled to be removed at that time. The
- * expectation is that this cache is used with such durations. Where there is no duration
- * (this should be rare) then the cache entry is quickly removed after it has been determined.
- * This removal also occurs when the entry cannot be established successfully
+ * Entries that provide a max age duration expire at that time. The expectation is that this cache is used with
+ * such durations. Expiry is checked when an entry is read, so no timer is involved; entries that are no longer read
+ * are dropped by the implementation as it sees fit, {@link LocationCache} doing so from a queue of their deadlines.
+ * Where there is no duration (this should be rare) then the entry is removed as soon as it has been determined.
+ * This removal also occurs when the entry cannot be established successfully, unless the implementation has been
+ * configured to cache such outcomes for a time.
+ * <p>
+ * The stages returned for a service are those of its entry, and so the same instance is returned to every lookup
+ * that the entry serves. This is what allows a cached location to be served without allocating anything, and what
+ * lets an entry be told apart from the one that replaces it. The stages must therefore be treated as read-only:
+ * completing the future obtained from {@code toCompletableFuture()} would change the location seen by every other
+ * lookup of the service. A caller requiring a future of its own should derive one, e.g. with {@code thenApply}.
  */
 public interface CacheLike {
     /**
@@ -26,8 +34,28 @@ public interface CacheLike {
      */
     CompletionStage<Optional<URI>> getOrElseUpdate(String serviceName, Supplier<CompletionStage<Optional<Tuple<URI, Optional<Duration>>>>> op);
 
+    /**
+     * Retrieve a service uri from the cache only if it is held and requires no update. Null is returned rather than
+     * an empty Optional so that serving a location from the cache need allocate nothing.
+     * <p>
+     * The default implementation always returns null, leaving lookups to getOrElseUpdate.
+     */
+    default CompletionStage<Optional<URI>> getIfPresent(String serviceName) {
+        return null;
+    }
+
     /**
      * Remove a service uri from the cache if it exists. The operation is benign if there is no entry.
      */
     Optional<CompletionStage<Optional<URI>>> remove(String serviceName);
+
+    /**
+     * Remove the entry of a service only while it is the entry that provided the given location, returning whether it
+     * was removed.
+     * <p>
+     * The default implementation removes nothing, given that it cannot tell one entry from another.
+     */
+    default boolean remove(String serviceName, CompletionStage<Optional<URI>> location) {
+        return false;
+    }
 }
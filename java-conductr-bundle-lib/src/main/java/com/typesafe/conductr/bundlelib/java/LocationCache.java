@@ -1,59 +1,310 @@
 package com.typesafe.conductr.bundlelib.java;
 
+import com.typesafe.conductr.lib.Instrumentation;
 import com.typesafe.conductr.lib.java.Tuple;
 
 import java.net.URI;
 import java.time.Duration;
-import java.util.NoSuchElementException;
+import java.util.Map;
 import java.util.Optional;
-import java.util.Timer;
-import java.util.TimerTask;
+import java.util.PriorityQueue;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionStage;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.Supplier;
 
 /**
  * A cache like class as a default implementation.
+ *
+ * Expiry is checked when an entry is read. Each resolved entry is also recorded once in a deadline queue which is
+ * drained whenever an entry is added or resolved, so that entries that are no longer read do not accumulate. No threads
+ * are used for expiry. An expired entry of a service that was not found is kept for up to {@code notFoundMaxTtl}
+ * beyond its expiry though, so that the next lookup of the service carries on backing off from where it left off.
+ *
+ * When constructed with refresh-ahead settings, entries are refreshed in the background shortly before they expire
+ * and the last known location is served while the refresh is in flight. When constructed with a maximum number of
+ * entries, the least recently used entry is evicted to make room for a new one. Services that are not found, and
+ * lookups that fail, may also be cached for a time so that repeated lookups do not all reach the service locator.
+ * See {@link LocationCacheSettings}.
  */
 public class LocationCache implements CacheLike {
 
-    private final ConcurrentMap<String, CompletionStage<Optional<Tuple<URI, Optional<Duration>>>>> cache = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Entry> cache = new ConcurrentHashMap<>();
 
-    private final Timer reaperTimer = new Timer("LocationCache-Reaper", true /* daemon thread */);
+    // Guarded by itself
+    private final PriorityQueue<Entry> deadlines = new PriorityQueue<>();
+
+    private final LocationCacheSettings settings;
+
+    private final long staleNanos;
+    private final long notFoundMinNanos;
+    private final long notFoundMaxNanos;
+    private final long errorNanos;
+
+    public LocationCache() {
+        this(LocationCacheSettings.DEFAULT);
+    }
+
+    public LocationCache(LocationCacheSettings settings) {
+        this.settings = settings;
+        this.staleNanos = settings.getStaleWhileRevalidate().toNanos();
+        this.notFoundMinNanos = settings.getNotFoundMinTtl().toNanos();
+        this.notFoundMaxNanos = settings.getNotFoundMaxTtl().toNanos();
+        this.errorNanos = settings.getErrorTtl().toNanos();
+    }
 
     @Override
     public CompletionStage<Optional<URI>> getOrElseUpdate(String serviceName, Supplier<CompletionStage<Optional<Tuple<URI, Optional<Duration>>>>> op) {
-        return cache
-                .computeIfAbsent(serviceName, sn -> op.get())
-                .whenCompleteAsync((result, error) -> {
-                    /*
-                      IMPORTANT: always check the presence of error before result.
-                      If error is present, and result is accessed (e.g. calling `isPresent()`), the whole future will
-                      fail with an exception.
-                     */
-                    if (error != null || !result.isPresent())
-                        cache.remove(serviceName);
-                    else if (result.isPresent()) {
-                        if (result.get()._2.isPresent())
-                            reaperTimer.schedule(new TimerTask() {
-                                @Override
-                                public void run() {
-                                    cache.remove(serviceName);
-                                }
-                            }, result.get()._2.get().toMillis());
-                        else
-                            cache.remove(serviceName);
-                    }
-                })
-                .thenApply(r -> r.map(t -> t._1));
+        long now = System.nanoTime();
+
+        Entry entry = cache.get(serviceName);
+        if (entry == null) {
+            Entry newEntry = new Entry(serviceName, now, 0);
+            entry = cache.putIfAbsent(serviceName, newEntry);
+            if (entry == null) {
+                expire(now);
+                if (settings.getMaxEntries() > 0)
+                    evictLeastRecentlyUsed();
+                Instrumentation.get().cacheMiss(serviceName);
+                load(newEntry, op);
+                return newEntry.location;
+            }
+        }
+
+        if (entry.resolved) {
+            if (now - entry.expiresAt >= 0) {
+                Entry newEntry = new Entry(serviceName, now, entry.notFound ? entry.notFoundCount + 1 : 0);
+                if (cache.replace(serviceName, entry, newEntry)) {
+                    Instrumentation.get().cacheEviction(serviceName);
+                    Instrumentation.get().cacheMiss(serviceName);
+                    load(newEntry, op);
+                    return newEntry.location;
+                }
+                return getOrElseUpdate(serviceName, op);
+            }
+            if (settings.isRefreshAhead() && entry.located && now - entry.refreshAt >= 0)
+                refresh(entry, op);
+            Instrumentation.get().cacheHit(serviceName);
+        } else {
+            Instrumentation.get().cacheCoalesced(serviceName);
+        }
+
+        if (settings.getMaxEntries() > 0)
+            entry.lastAccess = now;
+
+        return entry.location;
+    }
+
+    @Override
+    public CompletionStage<Optional<URI>> getIfPresent(String serviceName) {
+        Entry entry = cache.get(serviceName);
+        if (entry == null || !entry.resolved)
+            return null;
+        long now = System.nanoTime();
+        if (now - entry.expiresAt >= 0 || (settings.isRefreshAhead() && entry.located && now - entry.refreshAt >= 0))
+            return null;
+        if (settings.getMaxEntries() > 0)
+            entry.lastAccess = now;
+        Instrumentation.get().cacheHit(serviceName);
+        return entry.location;
     }
 
     @Override
     public Optional<CompletionStage<Optional<URI>>> remove(String serviceName) {
-        return Optional.ofNullable(
-                cache.remove(serviceName)
-                    .thenApply(r -> r.map(t -> t._1))
-        );
+        return Optional.ofNullable(cache.remove(serviceName)).map(entry -> entry.location);
+    }
+
+    @Override
+    public boolean remove(String serviceName, CompletionStage<Optional<URI>> location) {
+        Entry entry = cache.get(serviceName);
+        return entry != null && entry.location == location && cache.remove(serviceName, entry);
+    }
+
+    /*
+     * The entry is settled before its result is completed, so that a lookup made once the result is known never
+     * finds an entry that is about to be dropped.
+     */
+    private void load(Entry entry, Supplier<CompletionStage<Optional<Tuple<URI, Optional<Duration>>>>> op) {
+        CompletableFuture<Optional<Tuple<URI, Optional<Duration>>>> loaded = new CompletableFuture<>();
+        run(op, loaded);
+        loaded.whenComplete((result, error) -> {
+            /*
+              IMPORTANT: always check the presence of error before result.
+              If error is present, and result is accessed (e.g. calling `isPresent()`), the whole future will
+              fail with an exception.
+             */
+            if (error != null) {
+                if (errorNanos > 0)
+                    resolve(entry, errorNanos);
+                else
+                    cache.remove(entry.serviceName, entry);
+            } else if (!result.isPresent()) {
+                if (notFoundMinNanos > 0)
+                    resolveNotFound(entry);
+                else
+                    cache.remove(entry.serviceName, entry);
+            } else if (result.get()._2.isPresent()) {
+                resolveLocated(entry, result.get()._2.get());
+            } else {
+                cache.remove(entry.serviceName, entry);
+            }
+            if (error != null)
+                entry.result.completeExceptionally(error);
+            else
+                entry.result.complete(result);
+        });
+    }
+
+    /*
+     * Only one refresh per entry is in flight at any time. A successful refresh swaps in a new entry, a refresh
+     * that finds the service no longer exists drops the entry (or replaces it with a not found entry when these are
+     * cached), and a failed refresh leaves the current entry to be served (until its stale deadline) with the next
+     * lookup trying again.
+     */
+    private void refresh(Entry entry, Supplier<CompletionStage<Optional<Tuple<URI, Optional<Duration>>>>> op) {
+        if (entry.refreshing.compareAndSet(false, true)) {
+            Entry refreshed = new Entry(entry.serviceName, entry.lastAccess, 0);
+            run(op, refreshed.result);
+            refreshed.result.whenComplete((result, error) -> {
+                if (error != null)
+                    entry.refreshing.set(false);
+                else if (result.isPresent() && result.get()._2.isPresent()) {
+                    if (cache.replace(entry.serviceName, entry, refreshed))
+                        resolveLocated(refreshed, result.get()._2.get());
+                } else if (!result.isPresent() && notFoundMinNanos > 0) {
+                    if (cache.replace(entry.serviceName, entry, refreshed))
+                        resolveNotFound(refreshed);
+                } else
+                    cache.remove(entry.serviceName, entry);
+            });
+        }
+    }
+
+    private void resolveLocated(Entry entry, Duration maxAge) {
+        long maxAgeNanos = maxAge.toNanos();
+        entry.located = true;
+        entry.refreshAt = System.nanoTime() + (long) (maxAgeNanos * settings.getRefreshFactor());
+        resolve(entry, maxAgeNanos + staleNanos);
+    }
+
+    /*
+     * The time that a service is cached as not found doubles with each consecutive time that it is not found, and
+     * has a random amount added so that the many bundle components waiting on a service do not look it up in step.
+     */
+    private void resolveNotFound(Entry entry) {
+        long ttlNanos = entry.notFoundCount < Long.numberOfLeadingZeros(notFoundMinNanos) - 1 ?
+                Math.min(notFoundMaxNanos, notFoundMinNanos << entry.notFoundCount) :
+                notFoundMaxNanos;
+        double randomFactor = settings.getNotFoundRandomFactor();
+        if (randomFactor > 0.0)
+            ttlNanos += (long) (ttlNanos * randomFactor * ThreadLocalRandom.current().nextDouble());
+        entry.notFound = true;
+        resolve(entry, ttlNanos);
+    }
+
+    /*
+     * Expired deadlines are drained as each one is added, so that a service that is looked up again and again only
+     * ever has the deadlines of its live entries queued.
+     */
+    private void resolve(Entry entry, long ttlNanos) {
+        long now = System.nanoTime();
+        entry.expiresAt = now + ttlNanos;
+        entry.deadline = entry.expiresAt;
+        entry.resolved = true;
+        synchronized (deadlines) {
+            deadlines.add(entry);
+            expire(now);
+        }
+    }
+
+    /*
+     * Drop the entries whose deadline has passed. Entries that have since been replaced or removed are
+     * simply discarded from the queue. An expired entry of a service not found is queued again until notFoundMaxTtl
+     * has passed since its expiry, as it holds the number of consecutive times that the service was not found; a
+     * lookup in the meantime replaces it, being expired, and so backs off further.
+     */
+    private void expire(long now) {
+        synchronized (deadlines) {
+            Entry entry;
+            while ((entry = deadlines.peek()) != null && now - entry.deadline >= 0) {
+                deadlines.poll();
+                if (entry.notFound && now - entry.expiresAt < notFoundMaxNanos) {
+                    if (cache.get(entry.serviceName) == entry) {
+                        entry.deadline = entry.expiresAt + notFoundMaxNanos;
+                        deadlines.add(entry);
+                    }
+                } else if (cache.remove(entry.serviceName, entry))
+                    Instrumentation.get().cacheEviction(entry.serviceName);
+            }
+        }
+    }
+
+    // For testing
+    int deadlineCount() {
+        synchronized (deadlines) {
+            return deadlines.size();
+        }
+    }
+
+    /*
+     * Finding the least recently used entry requires a scan of the entries. This only happens when a new service
+     * name is added to a full cache, and is cheap in comparison to the lookup that adding the entry implies.
+     */
+    private void evictLeastRecentlyUsed() {
+        while (cache.size() > settings.getMaxEntries()) {
+            Entry lru = null;
+            for (Map.Entry<String, Entry> e : cache.entrySet())
+                if (lru == null || e.getValue().lastAccess - lru.lastAccess < 0)
+                    lru = e.getValue();
+            if (lru == null || !cache.remove(lru.serviceName, lru))
+                break;
+            Instrumentation.get().cacheEviction(lru.serviceName);
+        }
+    }
+
+    private static void run(
+            Supplier<CompletionStage<Optional<Tuple<URI, Optional<Duration>>>>> op,
+            CompletableFuture<Optional<Tuple<URI, Optional<Duration>>>> result) {
+        try {
+            op.get().whenComplete((r, e) -> {
+                if (e != null)
+                    result.completeExceptionally(e);
+                else
+                    result.complete(r);
+            });
+        } catch (RuntimeException e) {
+            result.completeExceptionally(e);
+        }
+    }
+
+    private static final class Entry implements Comparable<Entry> {
+        final String serviceName;
+        final CompletableFuture<Optional<Tuple<URI, Optional<Duration>>>> result = new CompletableFuture<>();
+        final CompletionStage<Optional<URI>> location = result.thenApply(r -> r.map(t -> t._1));
+        final AtomicBoolean refreshing = new AtomicBoolean();
+        final int notFoundCount;
+        volatile boolean resolved;
+        volatile boolean located;
+        volatile boolean notFound;
+        volatile long refreshAt;
+        volatile long expiresAt;
+        // When the entry is next looked at by the deadline queue, being its expiry or later
+        volatile long deadline;
+        volatile long lastAccess;
+
+        // notFoundCount is the number of consecutive times that the service was not found before this entry
+        Entry(String serviceName, long lastAccess, int notFoundCount) {
+            this.serviceName = serviceName;
+            this.lastAccess = lastAccess;
+            this.notFoundCount = notFoundCount;
+        }
+
+        @Override
+        public int compareTo(Entry other) {
+            return Long.signum(deadline - other.deadline);
+        }
     }
 }
@@ -0,0 +1,155 @@
+package com.typesafe.conductr.bundlelib.java;
+
+import java.time.Duration;
+
+/**
+ * Describes how a {@link LocationCache} treats its entries. Settings are immutable; each of the "with" methods
+ * returns a new copy.
+ */
+public final class LocationCacheSettings {
+
+    /**
+     * Entries are removed once their max age has elapsed and are not refreshed ahead of time. Services that are not
+     * found and lookups that fail are not cached. The number of entries is unbounded.
+     */
+    public static final LocationCacheSettings DEFAULT =
+            new LocationCacheSettings(false, 1.0, Duration.ZERO, 0, Duration.ZERO, Duration.ZERO, 0.0, Duration.ZERO);
+
+    private final boolean refreshAhead;
+    private final double refreshFactor;
+    private final Duration staleWhileRevalidate;
+    private final int maxEntries;
+    private final Duration notFoundMinTtl;
+    private final Duration notFoundMaxTtl;
+    private final double notFoundRandomFactor;
+    private final Duration errorTtl;
+
+    private LocationCacheSettings(
+            boolean refreshAhead,
+            double refreshFactor,
+            Duration staleWhileRevalidate,
+            int maxEntries,
+            Duration notFoundMinTtl,
+            Duration notFoundMaxTtl,
+            double notFoundRandomFactor,
+            Duration errorTtl) {
+        this.refreshAhead = refreshAhead;
+        this.refreshFactor = refreshFactor;
+        this.staleWhileRevalidate = staleWhileRevalidate;
+        this.maxEntries = maxEntries;
+        this.notFoundMinTtl = notFoundMinTtl;
+        this.notFoundMaxTtl = notFoundMaxTtl;
+        this.notFoundRandomFactor = notFoundRandomFactor;
+        this.errorTtl = errorTtl;
+    }
+
+    /**
+     * Enable refresh-ahead. An entry is refreshed in the background by the first lookup made once
+     * `refreshFactor` of its max age has elapsed. Until the refresh completes the current location continues to be
+     * served. Should the refresh fail then the location also continues to be served for up to `staleWhileRevalidate`
+     * beyond its max age.
+     *
+     * @param refreshFactor the fraction of an entry's max age after which it is refreshed, greater than 0 and at most 1
+     * @param staleWhileRevalidate how long a location may be served beyond its max age while it is being refreshed
+     */
+    public LocationCacheSettings withRefreshAhead(double refreshFactor, Duration staleWhileRevalidate) {
+        if (refreshFactor <= 0.0 || refreshFactor > 1.0)
+            throw new IllegalArgumentException("refreshFactor must be within (0, 1]: " + refreshFactor);
+        if (staleWhileRevalidate.isNegative())
+            throw new IllegalArgumentException("staleWhileRevalidate must not be negative: " + staleWhileRevalidate);
+        return new LocationCacheSettings(
+                true, refreshFactor, staleWhileRevalidate, maxEntries,
+                notFoundMinTtl, notFoundMaxTtl, notFoundRandomFactor, errorTtl);
+    }
+
+    /**
+     * Bound the number of entries held. When a new service name would exceed the bound then the least recently
+     * used entry is evicted.
+     *
+     * @param maxEntries the maximum number of entries, greater than 0
+     */
+    public LocationCacheSettings withMaxEntries(int maxEntries) {
+        if (maxEntries <= 0)
+            throw new IllegalArgumentException("maxEntries must be greater than 0: " + maxEntries);
+        return new LocationCacheSettings(
+                refreshAhead, refreshFactor, staleWhileRevalidate, maxEntries,
+                notFoundMinTtl, notFoundMaxTtl, notFoundRandomFactor, errorTtl);
+    }
+
+    /**
+     * Cache the outcome of a service not being found, so that lookups of a service that is yet to start are not
+     * all made against the service locator. The first time that a service is not found it is cached for
+     * `minTtl`. Each time that it is then still not found the time is doubled, up to `maxTtl`. A random amount of
+     * up to `randomFactor` of the time is added so that the lookups of many bundle components are spread out.
+     *
+     * @param minTtl how long a service is first cached as not found, greater than 0
+     * @param maxTtl the most that a service is cached as not found before the random amount is added
+     * @param randomFactor the fraction of additional time that is randomly added, not negative
+     */
+    public LocationCacheSettings withNotFoundBackoff(Duration minTtl, Duration maxTtl, double randomFactor) {
+        if (minTtl.isNegative() || minTtl.isZero())
+            throw new IllegalArgumentException("minTtl must be greater than 0: " + minTtl);
+        if (maxTtl.compareTo(minTtl) < 0)
+            throw new IllegalArgumentException("maxTtl must not be less than minTtl: " + maxTtl);
+        if (randomFactor < 0.0)
+            throw new IllegalArgumentException("randomFactor must not be negative: " + randomFactor);
+        return new LocationCacheSettings(
+                refreshAhead, refreshFactor, staleWhileRevalidate, maxEntries,
+                minTtl, maxTtl, randomFactor, errorTtl);
+    }
+
+    /**
+     * Cache the failure of a lookup, including the service locator responding with an unexpected status, for a
+     * short time. Lookups made within that time fail without the service locator being contacted.
+     *
+     * @param errorTtl how long a failed lookup is cached, 0 meaning that failures are not cached
+     */
+    public LocationCacheSettings withErrorTtl(Duration errorTtl) {
+        if (errorTtl.isNegative())
+            throw new IllegalArgumentException("errorTtl must not be negative: " + errorTtl);
+        return new LocationCacheSettings(
+                refreshAhead, refreshFactor, staleWhileRevalidate, maxEntries,
+                notFoundMinTtl, notFoundMaxTtl, notFoundRandomFactor, errorTtl);
+    }
+
+    public boolean isRefreshAhead() {
+        return refreshAhead;
+    }
+
+    public double getRefreshFactor() {
+        return refreshFactor;
+    }
+
+    public Duration getStaleWhileRevalidate() {
+        return staleWhileRevalidate;
+    }
+
+    /**
+     * @return the maximum number of entries, or 0 if the number of entries is unbounded
+     */
+    public int getMaxEntries() {
+        return maxEntries;
+    }
+
+    /**
+     * @return how long a service is first cached as not found, or 0 if services that are not found are not cached
+     */
+    public Duration getNotFoundMinTtl() {
+        return notFoundMinTtl;
+    }
+
+    public Duration getNotFoundMaxTtl() {
+        return notFoundMaxTtl;
+    }
+
+    public double getNotFoundRandomFactor() {
+        return notFoundRandomFactor;
+    }
+
+    /**
+     * @return how long a failed lookup is cached, or 0 if failures are not cached
+     */
+    public Duration getErrorTtl() {
+        return errorTtl;
+    }
+}
@@ -6,21 +6,38 @@ import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.URL;
 import java.time.Duration;
-import java.time.temporal.ChronoUnit;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.*;
 import java.util.Optional;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
 
 import com.typesafe.conductr.lib.HttpPayload;
+import com.typesafe.conductr.lib.RequestTimer;
 import com.typesafe.conductr.lib.java.ConnectionHandler;
+import com.typesafe.conductr.lib.java.ExecutionEngine;
 import com.typesafe.conductr.lib.java.Tuple;
 
 /**
  * A Location Service is used to look up services using the Typesafe ConductR Service Locator.
  */
 public class LocationService {
+    /**
+     * The number of lookups that lookupAll performs concurrently by default.
+     */
+    public static final int DEFAULT_LOOKUP_PARALLELISM = 8;
+
+    // The payloads of the services looked up so far, being few in number and asked for repeatedly
+    private static final int MAX_LOOKUP_PAYLOADS = 1024;
+    private static final ConcurrentMap<String, Optional<HttpPayload>> LOOKUP_PAYLOADS = new ConcurrentHashMap<>();
+
     /**
      * Create the HttpPayload necessary to look up a service by name.
      * <p>
@@ -51,58 +68,360 @@ public class LocationService {
      * component's endpoint data structure i.e. within a bundle's bundle.conf. If the bundle component
      * has not been started by ConductR then the fallback will be used.
      * <p>
-     * The executor that the request is performed on is an implementation concern. More control over the executor
-     * can be provided with the other flavour of this method.
+     * The request is performed on the executor of the {@link ExecutionEngine} in use, being a pool dedicated to
+     * requests by default. More control over the executor can be provided with the other flavour of this method.
      * <p>
      * Returns some URI representing the service or None if the service is not found.
      */
     public static CompletionStage<Optional<URI>> lookup(String serviceName, URI fallback, CacheLike cache) throws MalformedURLException {
-        return lookup(serviceName, fallback, cache, ForkJoinPool.commonPool());
+        return lookup(serviceName, fallback, cache, ExecutionEngine.defaultExecutor());
     }
 
     /**
      * As per its other form only that an executor can be provided explicitly.
+     * <p>
+     * A location held by the cache is served without anything being allocated, the stage returned being shared
+     * with the other lookups of the service as described by {@link CacheLike}.
      */
     public static CompletionStage<Optional<URI>> lookup(String serviceName, URI fallback, CacheLike cache, Executor executor) throws MalformedURLException {
-        if (Env.isRunByConductR())
+        if (Env.isRunByConductR()) {
+            CompletionStage<Optional<URI>> location = cache.getIfPresent(serviceName);
+            if (location != null)
+                return location;
             return cache.getOrElseUpdate(serviceName, () -> {
                 try {
-                    return ConnectionHandler.withConnectedRequest(createLookupPayload(serviceName), LocationService::handleLookup, executor);
+                    return ConnectionHandler.withConnectedRequest(lookupPayload(serviceName), LocationService::handleLookup, executor);
                 } catch (MalformedURLException e) {
                     throw new RuntimeException(e);
                 }
             });
-        else
+        } else
             return CompletableFuture.completedFuture(Optional.of(fallback));
     }
 
-    private static final Pattern MAX_AGE_SECS_PATTERN = Pattern.compile(".*max-age=(\\d+).*");
+    /**
+     * As per its other forms only that the lookup must complete within a timeout, completing exceptionally with a
+     * {@link TimeoutException} otherwise. This holds for a lookup that joins a request of the same service already in
+     * flight as much as for one that makes the request. The cache lets go of a request that a lookup gave up on, so
+     * that the next lookup requests the service anew, and the timeout is not cached as a failed lookup. Letting go of
+     * the request requires a cache that overrides {@link CacheLike#remove(String, CompletionStage)}, as
+     * {@link LocationCache} does. With any other cache the request is left in place and the next lookup joins it.
+     */
+    public static CompletionStage<Optional<URI>> lookup(String serviceName, URI fallback, CacheLike cache, Executor executor, Duration timeout) throws MalformedURLException {
+        return lookup(serviceName, fallback, new DeadlineCache(cache, timeout, Optional.empty()), executor);
+    }
 
-    @SuppressWarnings("unchecked")
-    private static Optional<Tuple<URI, Optional<Duration>>> handleLookup(Integer responseCode, Map<String, Optional<String>> headers) {
-        switch (responseCode) {
-            case 307:
-                return headers.get("Location").map(l -> {
-                    try {
-                        URI location = new URI(l);
-                        Optional<Duration> duration = Optional.ofNullable(headers.get("Cache-Control"))
-                            .flatMap(sd -> sd.map(d -> {
-                                Matcher m = MAX_AGE_SECS_PATTERN.matcher(d);
-                                return (Optional<Duration>)(
-                                    m.matches()?
-                                        Optional.of(Duration.of(new Integer(m.group(1)), ChronoUnit.SECONDS)) :
-                                        Optional.empty()
-                                );
-                            })).orElse(Optional.empty());
-                        return new Tuple<>(location, duration);
-                    } catch (URISyntaxException e) {
-                        throw new RuntimeException(e);
+    /**
+     * As per the form with a timeout only that a second request is made should the first not have completed after
+     * the hedge delay, and the location of whichever completes first is taken. The lookup fails only once both
+     * requests have failed or the timeout has passed. No second request is made if the hedge delay is not less than
+     * the timeout.
+     */
+    public static CompletionStage<Optional<URI>> lookup(String serviceName, URI fallback, CacheLike cache, Executor executor, Duration timeout, Duration hedgeDelay) throws MalformedURLException {
+        return lookup(serviceName, fallback, new DeadlineCache(cache, timeout, Optional.of(hedgeDelay)), executor);
+    }
+
+    /**
+     * Look up a number of services at once given their names along with the fallback to use for each of them.
+     * Services held by the cache are served from it directly. The others are looked up concurrently, with no more
+     * than DEFAULT_LOOKUP_PARALLELISM lookups in flight at any one time.
+     * <p>
+     * Returns a map of service names to the URIs of those services that were found. The map is provided once all of
+     * the lookups have completed, and the stage completes exceptionally if any one of the lookups fails.
+     */
+    public static CompletionStage<Map<String, URI>> lookupAll(Map<String, URI> services, CacheLike cache) throws MalformedURLException {
+        return lookupAll(services, cache, ExecutionEngine.defaultExecutor(), DEFAULT_LOOKUP_PARALLELISM);
+    }
+
+    /**
+     * As per its other form only that an executor and the number of concurrent lookups can be provided explicitly.
+     */
+    public static CompletionStage<Map<String, URI>> lookupAll(Map<String, URI> services, CacheLike cache, Executor executor, int parallelism) throws MalformedURLException {
+        if (parallelism <= 0)
+            throw new IllegalArgumentException("parallelism must be positive: " + parallelism);
+        if (services.isEmpty())
+            return CompletableFuture.completedFuture(Collections.emptyMap());
+
+        ThrottledCache throttledCache = new ThrottledCache(cache, parallelism);
+        String[] names = new String[services.size()];
+        @SuppressWarnings("unchecked")
+        Optional<URI>[] locations = new Optional[services.size()];
+        AtomicInteger remaining = new AtomicInteger(services.size());
+        CompletableFuture<Map<String, URI>> result = new CompletableFuture<>();
+
+        int i = 0;
+        for (Map.Entry<String, URI> service : services.entrySet()) {
+            if (result.isDone())
+                break;
+            int index = i++;
+            names[index] = service.getKey();
+            lookup(service.getKey(), service.getValue(), throttledCache, executor).whenComplete((location, error) -> {
+                if (error != null) {
+                    result.completeExceptionally(error);
+                } else {
+                    locations[index] = location;
+                    if (remaining.decrementAndGet() == 0) {
+                        Map<String, URI> found = new HashMap<>();
+                        for (int j = 0; j < names.length; ++j)
+                            if (locations[j].isPresent())
+                                found.put(names[j], locations[j].get());
+                        result.complete(found);
                     }
+                }
+            });
+        }
+        return result;
+    }
+
+    /**
+     * Look up the given services into the cache ahead of their being required, so that the first requests made for
+     * them are served at the latency of a cache hit. This is typically performed as a bundle component starts, and
+     * before it signals ConductR that it has started. The services are looked up concurrently, with no more than
+     * DEFAULT_LOOKUP_PARALLELISM lookups in flight at any one time. Those that cannot be looked up are left to be
+     * looked up when required.
+     * <p>
+     * Returns the names of the services found once all of the lookups have completed or the deadline has passed,
+     * whichever comes first. Lookups still in flight at the deadline go on to fill the cache. Nothing is looked up
+     * when not running within ConductR.
+     */
+    public static CompletionStage<Set<String>> warmUp(Collection<String> serviceNames, CacheLike cache, Duration deadline) {
+        return warmUp(serviceNames, cache, deadline, ExecutionEngine.defaultExecutor(), DEFAULT_LOOKUP_PARALLELISM);
+    }
+
+    /**
+     * As per its other form only that an executor and the number of concurrent lookups can be provided explicitly.
+     */
+    public static CompletionStage<Set<String>> warmUp(Collection<String> serviceNames, CacheLike cache, Duration deadline, Executor executor, int parallelism) {
+        if (parallelism <= 0)
+            throw new IllegalArgumentException("parallelism must be positive: " + parallelism);
+        Set<String> names = new LinkedHashSet<>(serviceNames);
+        if (names.isEmpty() || !Env.isRunByConductR())
+            return CompletableFuture.completedFuture(Collections.emptySet());
+
+        ThrottledCache throttledCache = new ThrottledCache(cache, parallelism);
+        Set<String> found = ConcurrentHashMap.newKeySet();
+        AtomicInteger remaining = new AtomicInteger(names.size());
+        CompletableFuture<Set<String>> result = new CompletableFuture<>();
+
+        ScheduledFuture<?> timer = RequestTimer.get().schedule(
+                () -> result.complete(new HashSet<>(found)),
+                deadline.toNanos(),
+                TimeUnit.NANOSECONDS);
+        result.whenComplete((r, e) -> timer.cancel(false));
+
+        for (String name : names) {
+            Runnable lookedUp = () -> {
+                if (remaining.decrementAndGet() == 0)
+                    result.complete(new HashSet<>(found));
+            };
+            try {
+                // The fallback is of no consequence given that this is running within ConductR
+                lookup(name, URI.create(""), throttledCache, executor).whenComplete((location, error) -> {
+                    if (error == null && location.isPresent())
+                        found.add(name);
+                    lookedUp.run();
                 });
+            } catch (MalformedURLException | RuntimeException e) {
+                lookedUp.run();
+            }
+        }
+        return result;
+    }
+
+    /*
+     * Delegates to a cache while permitting no more than a given number of the cache's update operations to be
+     * in flight at a time. Operations beyond that are queued and started as others complete.
+     */
+    private static final class ThrottledCache implements CacheLike {
+        private final CacheLike cache;
+        private final int parallelism;
+
+        // Guarded by this
+        private int inFlight;
+        private final ArrayDeque<Runnable> pending = new ArrayDeque<>();
+
+        ThrottledCache(CacheLike cache, int parallelism) {
+            this.cache = cache;
+            this.parallelism = parallelism;
+        }
+
+        @Override
+        public CompletionStage<Optional<URI>> getOrElseUpdate(String serviceName, Supplier<CompletionStage<Optional<Tuple<URI, Optional<Duration>>>>> op) {
+            return cache.getOrElseUpdate(serviceName, () -> throttle(op));
+        }
+
+        @Override
+        public CompletionStage<Optional<URI>> getIfPresent(String serviceName) {
+            return cache.getIfPresent(serviceName);
+        }
+
+        @Override
+        public Optional<CompletionStage<Optional<URI>>> remove(String serviceName) {
+            return cache.remove(serviceName);
+        }
+
+        @Override
+        public boolean remove(String serviceName, CompletionStage<Optional<URI>> location) {
+            return cache.remove(serviceName, location);
+        }
+
+        private <T> CompletionStage<T> throttle(Supplier<CompletionStage<T>> op) {
+            CompletableFuture<T> result = new CompletableFuture<>();
+            Runnable run = () -> {
+                try {
+                    op.get().whenComplete((r, e) -> {
+                        if (e != null)
+                            result.completeExceptionally(e);
+                        else
+                            result.complete(r);
+                        release();
+                    });
+                } catch (RuntimeException e) {
+                    result.completeExceptionally(e);
+                    release();
+                }
+            };
+            boolean runNow;
+            synchronized (this) {
+                runNow = inFlight < parallelism;
+                if (runNow)
+                    ++inFlight;
+                else
+                    pending.add(run);
+            }
+            if (runNow)
+                run.run();
+            return result;
+        }
+
+        private void release() {
+            Runnable next;
+            synchronized (this) {
+                next = pending.poll();
+                if (next == null)
+                    --inFlight;
+            }
+            if (next != null)
+                next.run();
+        }
+    }
+
+    /*
+     * Delegates to a cache while bounding the time that a lookup may wait on it, be it the lookup that started the
+     * cache's update operation or one that joined it while in flight. A lookup that has not completed within the
+     * timeout fails with a TimeoutException and has the cache let go of the entry being filled, should the cache
+     * still hold that entry. The update operation itself is left to complete, so the timeout is never recorded by
+     * the cache as the outcome of the lookup. Given a hedge delay, an operation still in flight after that delay is
+     * started once more and whichever of the two succeeds first is taken.
+     */
+    private static final class DeadlineCache implements CacheLike {
+        private final CacheLike cache;
+        private final Duration timeout;
+        private final Optional<Duration> hedgeDelay;
+
+        DeadlineCache(CacheLike cache, Duration timeout, Optional<Duration> hedgeDelay) {
+            this.cache = cache;
+            this.timeout = timeout;
+            this.hedgeDelay = hedgeDelay.filter(delay -> delay.compareTo(timeout) < 0);
+        }
+
+        @Override
+        public CompletionStage<Optional<URI>> getOrElseUpdate(String serviceName, Supplier<CompletionStage<Optional<Tuple<URI, Optional<Duration>>>>> op) {
+            CompletionStage<Optional<URI>> location = cache.getOrElseUpdate(serviceName,
+                    hedgeDelay.isPresent() ? () -> hedged(op, hedgeDelay.get()) : op);
+            CompletableFuture<Optional<URI>> result = new CompletableFuture<>();
+            ScheduledFuture<?> timer = RequestTimer.get().schedule(() -> {
+                if (!result.isDone()) {
+                    cache.remove(serviceName, location);
+                    result.completeExceptionally(new TimeoutException(
+                            "The lookup of service " + serviceName + " did not complete within " + timeout));
+                }
+            }, timeout.toNanos(), TimeUnit.NANOSECONDS);
+            location.whenComplete((l, e) -> {
+                timer.cancel(false);
+                if (e != null)
+                    result.completeExceptionally(e);
+                else
+                    result.complete(l);
+            });
+            return result;
+        }
+
+        @Override
+        public CompletionStage<Optional<URI>> getIfPresent(String serviceName) {
+            return cache.getIfPresent(serviceName);
+        }
+
+        @Override
+        public Optional<CompletionStage<Optional<URI>>> remove(String serviceName) {
+            return cache.remove(serviceName);
+        }
+
+        @Override
+        public boolean remove(String serviceName, CompletionStage<Optional<URI>> location) {
+            return cache.remove(serviceName, location);
+        }
+
+        private <T> CompletionStage<T> hedged(Supplier<CompletionStage<T>> op, Duration delay) {
+            CompletableFuture<T> result = new CompletableFuture<>();
+            // The number of attempts in flight, the last of which to fail fails the lookup
+            AtomicInteger attempts = new AtomicInteger(1);
+            Runnable attempt = () -> {
+                try {
+                    op.get().whenComplete((r, e) -> {
+                        if (e == null)
+                            result.complete(r);
+                        else if (attempts.decrementAndGet() == 0)
+                            result.completeExceptionally(e);
+                    });
+                } catch (RuntimeException e) {
+                    if (attempts.decrementAndGet() == 0)
+                        result.completeExceptionally(e);
+                }
+            };
+
+            ScheduledFuture<?> hedge = RequestTimer.get().schedule(() -> {
+                if (!result.isDone() && attempts.getAndIncrement() > 0)
+                    attempt.run();
+            }, delay.toNanos(), TimeUnit.NANOSECONDS);
+            attempt.run();
+            result.whenComplete((r, e) -> hedge.cancel(false));
+            return result;
+        }
+    }
+
+    private static Optional<HttpPayload> lookupPayload(String serviceName) throws MalformedURLException {
+        Optional<HttpPayload> payload = LOOKUP_PAYLOADS.get(serviceName);
+        if (payload == null) {
+            payload = createLookupPayload(serviceName);
+            if (LOOKUP_PAYLOADS.size() < MAX_LOOKUP_PAYLOADS)
+                LOOKUP_PAYLOADS.putIfAbsent(serviceName, payload);
+        }
+        return payload;
+    }
+
+    // Package private for benchmarking
+    static Optional<Tuple<URI, Optional<Duration>>> handleLookup(Integer responseCode, Map<String, Optional<String>> headers) {
+        switch (responseCode) {
+            case 307:
+                Optional<String> location = headers.get("Location");
+                if (location == null || !location.isPresent())
+                    return Optional.empty();
+                Optional<String> cacheControl = headers.get("Cache-Control");
+                long maxAge = cacheControl != null && cacheControl.isPresent() ?
+                        com.typesafe.conductr.bundlelib.LocationService.parseMaxAge(cacheControl.get()) :
+                        -1L;
+                try {
+                    return Optional.of(new Tuple<>(
+                            new URI(location.get()),
+                            maxAge >= 0 ? Optional.of(Duration.ofSeconds(maxAge)) : Optional.empty()));
+                } catch (URISyntaxException e) {
+                    throw new RuntimeException(e);
+                }
             case 404:
                 return Optional.empty();
             default:
                 throw new RuntimeException(new IOException("Illegal response code " + responseCode));
         }
     }
-}
\ No newline at end of file
+}
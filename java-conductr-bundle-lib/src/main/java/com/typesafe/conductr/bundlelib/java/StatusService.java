@@ -5,9 +5,9 @@ import java.util.Map;
 import java.util.concurrent.Executor;
 import java.util.concurrent.CompletionStage;
 import java.util.Optional;
-import java.util.concurrent.ForkJoinPool;
 
 import com.typesafe.conductr.lib.java.ConnectionHandler;
+import com.typesafe.conductr.lib.java.ExecutionEngine;
 import com.typesafe.conductr.lib.HttpPayload;
 import com.typesafe.conductr.lib.java.Unit;
 
@@ -37,7 +37,7 @@ public class StatusService {
      * A Future of None will be returned if this program is not running in the context of ConductR.
      */
     public static CompletionStage<Optional<Unit>> signalStartedOrExit() throws IOException {
-        return signalStartedOrExit(ForkJoinPool.commonPool());
+        return signalStartedOrExit(ExecutionEngine.defaultExecutor());
     }
 
     /**
@@ -57,9 +57,10 @@ public class StatusService {
      *
      * The returned future will complete successfully if the ConductR acknowledges the start signal.
      * A Future of None will be returned if this program is not running in the context of ConductR.
+     * The signal is sent on the executor of the {@link ExecutionEngine} in use.
      */
     public static CompletionStage<Optional<Unit>> signalStarted() throws IOException {
-        return signalStarted(ForkJoinPool.commonPool());
+        return signalStarted(ExecutionEngine.defaultExecutor());
     }
 
     /**
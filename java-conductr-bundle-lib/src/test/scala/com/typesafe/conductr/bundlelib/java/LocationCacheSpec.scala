@@ -6,7 +6,7 @@ import java.util.Optional
 import java.util.concurrent.{ ExecutionException, CompletableFuture, CompletionStage }
 import java.util.function.Supplier
 
-import com.typesafe.conductr.lib.AkkaUnitTest
+import com.typesafe.conductr.lib.{ AkkaUnitTest, Instrumentation }
 
 import scala.compat.java8.FunctionConverters._
 
@@ -117,5 +117,252 @@ class LocationCacheSpec extends AkkaUnitTest {
       Await.result(getFromCache("/other-service"), timeout.duration) shouldBe Optional.of(new URI("/somelocation"))
     }
 
+    "cache a service that is not found, backing off while it remains not found" in {
+      var updates = 0
+      var reply = Optional.empty[Tuple[URI, Optional[JavaDuration]]]
+      val cache = new LocationCache(
+        LocationCacheSettings.DEFAULT.withNotFoundBackoff(JavaDuration.ofMillis(200), JavaDuration.ofSeconds(1), 0.0)
+      )
+      def getFromCache(serviceName: String): CompletionStage[Optional[URI]] =
+        cache.getOrElseUpdate(serviceName, { () =>
+          updates += 1
+          CompletableFuture.completedFuture(reply): CompletionStage[Optional[Tuple[URI, Optional[JavaDuration]]]]
+        }.asJava)
+
+      Await.result(getFromCache("/someservice"), timeout.duration) shouldBe Optional.empty()
+      Await.result(getFromCache("/someservice"), timeout.duration) shouldBe Optional.empty()
+      updates shouldBe 1
+
+      // Still not found once the first ttl has passed - the next ttl is doubled
+      Thread.sleep(300)
+      Await.result(getFromCache("/someservice"), timeout.duration) shouldBe Optional.empty()
+      updates shouldBe 2
+      Thread.sleep(250)
+      Await.result(getFromCache("/someservice"), timeout.duration) shouldBe Optional.empty()
+      updates shouldBe 2
+
+      reply = Optional.of(new Tuple(new URI("/somelocation"), Optional.of(JavaDuration.ofSeconds(1))))
+      Thread.sleep(250)
+      Await.result(getFromCache("/someservice"), timeout.duration) shouldBe Optional.of(new URI("/somelocation"))
+      updates shouldBe 3
+    }
+
+    "keep backing off a service that is not found while other services are looked up" in {
+      var updates = 0
+      val cache = new LocationCache(
+        LocationCacheSettings.DEFAULT.withNotFoundBackoff(JavaDuration.ofMillis(200), JavaDuration.ofSeconds(10), 0.0)
+      )
+      def getFromCache(serviceName: String): CompletionStage[Optional[URI]] =
+        cache.getOrElseUpdate(serviceName, { () =>
+          if (serviceName == "/someservice") updates += 1
+          CompletableFuture.completedFuture(Optional.empty[Tuple[URI, Optional[JavaDuration]]]): CompletionStage[Optional[Tuple[URI, Optional[JavaDuration]]]]
+        }.asJava)
+
+      Await.result(getFromCache("/someservice"), timeout.duration) shouldBe Optional.empty()
+      updates shouldBe 1
+
+      // Each lookup of another service drains the expired entries
+      Thread.sleep(300)
+      Await.result(getFromCache("/other-1"), timeout.duration) shouldBe Optional.empty()
+      Await.result(getFromCache("/someservice"), timeout.duration) shouldBe Optional.empty()
+      updates shouldBe 2
+
+      // The second ttl is doubled
+      Thread.sleep(250)
+      Await.result(getFromCache("/other-2"), timeout.duration) shouldBe Optional.empty()
+      Await.result(getFromCache("/someservice"), timeout.duration) shouldBe Optional.empty()
+      updates shouldBe 2
+
+      // And the third doubled again
+      Thread.sleep(250)
+      Await.result(getFromCache("/other-3"), timeout.duration) shouldBe Optional.empty()
+      Await.result(getFromCache("/someservice"), timeout.duration) shouldBe Optional.empty()
+      updates shouldBe 3
+      Thread.sleep(500)
+      Await.result(getFromCache("/other-4"), timeout.duration) shouldBe Optional.empty()
+      Await.result(getFromCache("/someservice"), timeout.duration) shouldBe Optional.empty()
+      updates shouldBe 3
+    }
+
+    "cache a failed lookup for the error ttl" in {
+      var updates = 0
+      var reply = new CompletableFuture[Optional[Tuple[URI, Optional[JavaDuration]]]]()
+      reply.completeExceptionally(new RuntimeException("test only"))
+      val cache = new LocationCache(LocationCacheSettings.DEFAULT.withErrorTtl(JavaDuration.ofMillis(200)))
+      def getFromCache(serviceName: String): CompletionStage[Optional[URI]] =
+        cache.getOrElseUpdate(serviceName, { () =>
+          updates += 1
+          reply: CompletionStage[Optional[Tuple[URI, Optional[JavaDuration]]]]
+        }.asJava)
+
+      intercept[ExecutionException](Await.result(getFromCache("/someservice"), timeout.duration))
+      intercept[ExecutionException](Await.result(getFromCache("/someservice"), timeout.duration))
+      updates shouldBe 1
+
+      reply = CompletableFuture.completedFuture(Optional.of(new Tuple(new URI("/somelocation"), Optional.of(JavaDuration.ofSeconds(1)))))
+      Thread.sleep(300)
+      Await.result(getFromCache("/someservice"), timeout.duration) shouldBe Optional.of(new URI("/somelocation"))
+      updates shouldBe 2
+    }
+
+    "refresh an entry ahead of its expiry while serving the current location" in {
+      var updates = 0
+      var reply = new CompletableFuture[Optional[Tuple[URI, Optional[JavaDuration]]]]()
+      val cache = new LocationCache(LocationCacheSettings.DEFAULT.withRefreshAhead(0.5, JavaDuration.ZERO))
+      def getFromCache(serviceName: String): CompletionStage[Optional[URI]] =
+        cache.getOrElseUpdate(serviceName, { () =>
+          updates += 1
+          reply: CompletionStage[Optional[Tuple[URI, Optional[JavaDuration]]]]
+        }.asJava)
+
+      reply.complete(Optional.of(new Tuple(new URI("/somelocation"), Optional.of(JavaDuration.ofSeconds(1)))))
+      Await.result(getFromCache("/someservice"), timeout.duration) shouldBe Optional.of(new URI("/somelocation"))
+      updates shouldBe 1
+
+      // Past the refresh point - a refresh is started and the current location is served while it is in flight
+      Thread.sleep(600)
+      reply = new CompletableFuture()
+      Await.result(getFromCache("/someservice"), timeout.duration) shouldBe Optional.of(new URI("/somelocation"))
+      Await.result(getFromCache("/someservice"), timeout.duration) shouldBe Optional.of(new URI("/somelocation"))
+      updates shouldBe 2
+
+      reply.complete(Optional.of(new Tuple(new URI("/otherlocation"), Optional.of(JavaDuration.ofSeconds(1)))))
+      Await.result(getFromCache("/someservice"), timeout.duration) shouldBe Optional.of(new URI("/otherlocation"))
+      updates shouldBe 2
+    }
+
+    "serve a stale location while the locator fails, up until the staleness window has passed" in {
+      var updates = 0
+      var reply: CompletableFuture[Optional[Tuple[URI, Optional[JavaDuration]]]] =
+        CompletableFuture.completedFuture(Optional.of(new Tuple(new URI("/somelocation"), Optional.of(JavaDuration.ofMillis(200)))))
+      val cache = new LocationCache(LocationCacheSettings.DEFAULT.withRefreshAhead(1.0, JavaDuration.ofMillis(500)))
+      def getFromCache(serviceName: String): CompletionStage[Optional[URI]] =
+        cache.getOrElseUpdate(serviceName, { () =>
+          updates += 1
+          reply: CompletionStage[Optional[Tuple[URI, Optional[JavaDuration]]]]
+        }.asJava)
+
+      Await.result(getFromCache("/someservice"), timeout.duration) shouldBe Optional.of(new URI("/somelocation"))
+      updates shouldBe 1
+
+      Thread.sleep(300)
+      reply = new CompletableFuture()
+      reply.completeExceptionally(new RuntimeException("test only"))
+      Await.result(getFromCache("/someservice"), timeout.duration) shouldBe Optional.of(new URI("/somelocation"))
+      updates shouldBe 2
+
+      Thread.sleep(600)
+      val exception = intercept[ExecutionException] {
+        Await.result(getFromCache("/someservice"), timeout.duration)
+      }
+      exception.getCause shouldBe a[RuntimeException]
+    }
+
+    "drop a refreshed entry when the service is no longer found" in {
+      var reply: Optional[Tuple[URI, Optional[JavaDuration]]] =
+        Optional.of(new Tuple(new URI("/somelocation"), Optional.of(JavaDuration.ofMillis(200))))
+      val cache = new LocationCache(LocationCacheSettings.DEFAULT.withRefreshAhead(0.5, JavaDuration.ofSeconds(1)))
+      def getFromCache(serviceName: String): CompletionStage[Optional[URI]] =
+        cache.getOrElseUpdate(serviceName, { () =>
+          CompletableFuture.completedFuture(reply): CompletionStage[Optional[Tuple[URI, Optional[JavaDuration]]]]
+        }.asJava)
+
+      Await.result(getFromCache("/someservice"), timeout.duration) shouldBe Optional.of(new URI("/somelocation"))
+
+      Thread.sleep(300)
+      reply = Optional.empty()
+      Await.result(getFromCache("/someservice"), timeout.duration) shouldBe Optional.of(new URI("/somelocation"))
+      Await.result(getFromCache("/someservice"), timeout.duration) shouldBe Optional.empty()
+    }
+
+    "drop expired entries when new entries are added" in {
+      val cache = new LocationCache()
+      def getFromCache(serviceName: String): CompletionStage[Optional[URI]] =
+        cache.getOrElseUpdate(serviceName, { () =>
+          CompletableFuture.completedFuture(
+            Optional.of(new Tuple(new URI(s"$serviceName-location"), Optional.of(JavaDuration.ofMillis(200))))
+          ): CompletionStage[Optional[Tuple[URI, Optional[JavaDuration]]]]
+        }.asJava)
+
+      Await.result(getFromCache("/someservice"), timeout.duration) shouldBe Optional.of(new URI("/someservice-location"))
+
+      Thread.sleep(300)
+      Await.result(getFromCache("/otherservice"), timeout.duration) shouldBe Optional.of(new URI("/otherservice-location"))
+      cache.remove("/someservice") shouldBe Optional.empty()
+    }
+
+    "keep one deadline for a service that is looked up again each time it expires" in {
+      var updates = 0
+      val cache = new LocationCache()
+      def getFromCache(serviceName: String): CompletionStage[Optional[URI]] =
+        cache.getOrElseUpdate(serviceName, { () =>
+          updates += 1
+          CompletableFuture.completedFuture(
+            Optional.of(new Tuple(new URI(s"$serviceName-location"), Optional.of(JavaDuration.ofMillis(5))))
+          ): CompletionStage[Optional[Tuple[URI, Optional[JavaDuration]]]]
+        }.asJava)
+
+      for (_ <- 1 to 100) {
+        Await.result(getFromCache("/someservice"), timeout.duration) shouldBe Optional.of(new URI("/someservice-location"))
+        Thread.sleep(10)
+      }
+      updates shouldBe 100
+      cache.deadlineCount shouldBe 1
+    }
+
+    "evict the least recently used entry when the maximum number of entries is exceeded" in {
+      var updates = Map.empty[String, Int].withDefaultValue(0)
+      val cache = new LocationCache(LocationCacheSettings.DEFAULT.withMaxEntries(2))
+      def getFromCache(serviceName: String): CompletionStage[Optional[URI]] =
+        cache.getOrElseUpdate(serviceName, { () =>
+          updates += serviceName -> (updates(serviceName) + 1)
+          CompletableFuture.completedFuture(
+            Optional.of(new Tuple(new URI(s"$serviceName-location"), Optional.of(JavaDuration.ofMinutes(1))))
+          ): CompletionStage[Optional[Tuple[URI, Optional[JavaDuration]]]]
+        }.asJava)
+
+      Await.result(getFromCache("/a"), timeout.duration) shouldBe Optional.of(new URI("/a-location"))
+      Thread.sleep(10)
+      Await.result(getFromCache("/b"), timeout.duration) shouldBe Optional.of(new URI("/b-location"))
+      Thread.sleep(10)
+      Await.result(getFromCache("/a"), timeout.duration) shouldBe Optional.of(new URI("/a-location"))
+      Thread.sleep(10)
+      Await.result(getFromCache("/c"), timeout.duration) shouldBe Optional.of(new URI("/c-location"))
+
+      cache.remove("/b") shouldBe Optional.empty()
+      Await.result(getFromCache("/a"), timeout.duration) shouldBe Optional.of(new URI("/a-location"))
+      Await.result(getFromCache("/c"), timeout.duration) shouldBe Optional.of(new URI("/c-location"))
+      updates shouldBe Map("/a" -> 1, "/b" -> 1, "/c" -> 1)
+    }
+
+
+    "report hits, misses, coalesced lookups and evictions to the instrumentation" in {
+      var events = Vector.empty[String]
+      val instrumentation = new Instrumentation {
+        private def record(event: String, serviceName: String): scala.Unit =
+          if (serviceName == "/instrumented") synchronized(events :+= event)
+        override def cacheHit(serviceName: String): scala.Unit = record("hit", serviceName)
+        override def cacheMiss(serviceName: String): scala.Unit = record("miss", serviceName)
+        override def cacheCoalesced(serviceName: String): scala.Unit = record("coalesced", serviceName)
+        override def cacheEviction(serviceName: String): scala.Unit = record("eviction", serviceName)
+      }
+      Instrumentation.set(instrumentation)
+      try {
+        val cache = new LocationCache()
+        val lookup = new CompletableFuture[Optional[Tuple[URI, Optional[JavaDuration]]]]()
+        val op = { () => lookup: CompletionStage[Optional[Tuple[URI, Optional[JavaDuration]]]] }.asJava
+        val location1 = cache.getOrElseUpdate("/instrumented", op)
+        val location2 = cache.getOrElseUpdate("/instrumented", op)
+        lookup.complete(Optional.of(new Tuple(new URI("/somelocation"), Optional.of(JavaDuration.ofMillis(100)))))
+        Await.result(location1, timeout.duration) shouldBe Optional.of(new URI("/somelocation"))
+        Await.result(location2, timeout.duration) shouldBe Optional.of(new URI("/somelocation"))
+        Await.result(cache.getOrElseUpdate("/instrumented", op), timeout.duration) shouldBe Optional.of(new URI("/somelocation"))
+
+        Thread.sleep(200)
+        Await.result(cache.getOrElseUpdate("/instrumented", op), timeout.duration) shouldBe Optional.of(new URI("/somelocation"))
+        events shouldBe Vector("miss", "coalesced", "hit", "eviction", "miss")
+      } finally
+        Instrumentation.set(null)
+    }
   }
 }
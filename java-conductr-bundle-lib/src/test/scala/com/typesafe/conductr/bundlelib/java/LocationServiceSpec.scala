@@ -6,6 +6,8 @@ import java.util.Optional
 import com.typesafe.conductr.lib.AkkaUnitTest
 import com.typesafe.conductr.lib.java.Await
 
+import scala.collection.JavaConverters._
+
 class LocationServiceSpec extends AkkaUnitTest {
 
   "The LocationService functionality in the library" should {
@@ -15,6 +17,12 @@ class LocationServiceSpec extends AkkaUnitTest {
       Await.result(LocationService.lookup("/whatever", fallback, cache), timeout.duration) shouldBe Optional.of(fallback)
     }
 
+    "return the fallback uris of several services when running in development mode" in {
+      val fallbacks = Map("/one" -> new URI("/fallback1"), "/two" -> new URI("/fallback2"))
+      val cache = new LocationCache()
+      Await.result(LocationService.lookupAll(fallbacks.asJava, cache), timeout.duration).asScala shouldBe fallbacks
+    }
+
     "return the fallback url when running in development mode" in {
       val fallback = new URL("http://127.0.0.1/whatever")
       LocationService.getLookupUrl("/whatever", fallback) shouldBe fallback
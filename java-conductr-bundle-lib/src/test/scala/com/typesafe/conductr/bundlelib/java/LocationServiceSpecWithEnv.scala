@@ -1,7 +1,11 @@
 package com.typesafe.conductr.bundlelib.java
 
+import java.lang.management.ManagementFactory
 import java.net.{ URI, URL, InetSocketAddress }
 import java.util.Optional
+import java.time.{ Duration => JDuration }
+import java.util.concurrent.{ CompletableFuture, CompletionStage, CountDownLatch, ExecutionException, ForkJoinPool, RejectedExecutionException, TimeoutException }
+import java.util.concurrent.atomic.AtomicInteger
 
 import akka.actor.ActorSystem
 import akka.http.scaladsl.Http
@@ -11,8 +15,12 @@ import akka.http.scaladsl.server.Directives._
 import akka.stream.ActorMaterializer
 import akka.testkit.TestProbe
 import com.typesafe.conductr.lib.AkkaUnitTestWithFixture
-import com.typesafe.conductr.lib.java.Await
+import com.typesafe.conductr.lib.java.{ Await, ExecutionEngine, Tuple }
 
+import scala.collection.JavaConverters._
+import scala.compat.java8.FunctionConverters._
+import scala.concurrent.Future
+import scala.concurrent.duration._
 import scala.util.{ Failure, Success }
 
 class LocationServiceSpecWithEnv extends AkkaUnitTestWithFixture("LocationServiceSpecWithEnv") {
@@ -66,6 +74,116 @@ class LocationServiceSpecWithEnv extends AkkaUnitTestWithFixture("LocationServic
       }
     }
 
+    "fail a lookup that its executor has no room for" in { f =>
+      val sys = systemFixture(f)
+      import sys._
+
+      val serviceUri = new URI("http://service_interface:4711/known")
+      withServerWithKnownService(serviceUri) {
+        val executor = ExecutionEngine.ioPool("full", 1, 1)
+        val released = new CountDownLatch(1)
+        val blocked = new Runnable {
+          override def run(): Unit = released.await()
+        }
+        executor.execute(blocked)
+        executor.execute(blocked)
+        try {
+          val service = LocationService.lookup("/known", new URI(""), new LocationCache(), executor)
+          val error = intercept[ExecutionException](Await.result(service, timeout.duration))
+          Iterator.iterate[Throwable](error)(_.getCause).takeWhile(_ != null).exists(_.isInstanceOf[RejectedExecutionException]) shouldBe true
+        } finally
+          released.countDown()
+      }
+    }
+
+    "fail a lookup that does not complete within its deadline without caching it" in { f =>
+      val sys = systemFixture(f)
+      import sys._
+
+      val serviceUri = new URI("http://service_interface:4711/known")
+      val requests = new AtomicInteger(0)
+      withServerWithKnownService(serviceUri, responseDelay = () => if (requests.getAndIncrement() == 0) 2.seconds else Duration.Zero) {
+        val cache = new LocationCache()
+        val executor = ExecutionEngine.defaultExecutor()
+        val service = LocationService.lookup("/known", new URI(""), cache, executor, JDuration.ofMillis(200))
+        val error = intercept[ExecutionException](Await.result(service, timeout.duration))
+        error.getCause shouldBe a[TimeoutException]
+        cache.remove("/known") shouldBe Optional.empty()
+
+        val hedged = LocationService.lookup("/known", new URI(""), cache, executor, JDuration.ofSeconds(10), JDuration.ofMillis(100))
+        Await.result(hedged, timeout.duration) shouldBe Optional.of(serviceUri)
+      }
+    }
+
+    "fail a lookup that joins a request in flight once its own deadline passes" in { f =>
+      val sys = systemFixture(f)
+      import sys._
+
+      val serviceUri = new URI("http://service_interface:4711/known")
+      withServerWithKnownService(serviceUri) {
+        val cache = new LocationCache()
+        val executor = ExecutionEngine.defaultExecutor()
+        val inFlight = cache.getOrElseUpdate("/known", { () =>
+          new CompletableFuture[Optional[Tuple[URI, Optional[JDuration]]]]: CompletionStage[Optional[Tuple[URI, Optional[JDuration]]]]
+        }.asJava)
+        val service = LocationService.lookup("/known", new URI(""), cache, executor, JDuration.ofMillis(200))
+        val error = intercept[ExecutionException](Await.result(service, timeout.duration))
+        error.getCause shouldBe a[TimeoutException]
+        inFlight.toCompletableFuture.isDone shouldBe false
+        cache.remove("/known") shouldBe Optional.empty()
+
+        val retried = LocationService.lookup("/known", new URI(""), cache, executor, JDuration.ofSeconds(1))
+        Await.result(retried, timeout.duration) shouldBe Optional.of(serviceUri)
+      }
+    }
+
+    "not cache a lookup that missed its deadline as a failed lookup" in { f =>
+      val sys = systemFixture(f)
+      import sys._
+
+      val serviceUri = new URI("http://service_interface:4711/known")
+      val requests = new AtomicInteger(0)
+      withServerWithKnownService(serviceUri, responseDelay = () => if (requests.getAndIncrement() == 0) 2.seconds else Duration.Zero) {
+        val cache = new LocationCache(LocationCacheSettings.DEFAULT.withErrorTtl(JDuration.ofMinutes(1)))
+        val executor = ExecutionEngine.defaultExecutor()
+        val service = LocationService.lookup("/known", new URI(""), cache, executor, JDuration.ofMillis(200))
+        val error = intercept[ExecutionException](Await.result(service, timeout.duration))
+        error.getCause shouldBe a[TimeoutException]
+
+        val retried = LocationService.lookup("/known", new URI(""), cache, executor, JDuration.ofSeconds(1))
+        Await.result(retried, timeout.duration) shouldBe Optional.of(serviceUri)
+        requests.get shouldBe 2
+      }
+    }
+
+    "warm up a cache with the services that are found" in { f =>
+      val sys = systemFixture(f)
+      import sys._
+
+      val serviceUri = new URI("http://service_interface:4711/known")
+      withServerWithKnownService(serviceUri, Some(10)) {
+        val cache = new LocationCache()
+        val found = LocationService.warmUp(List("/known", "/unknown", "/known").asJava, cache, JDuration.ofSeconds(10))
+        Await.result(found, timeout.duration).asScala shouldBe Set("/known")
+        cache.remove("/known").isPresent shouldBe true
+      }
+    }
+
+    "stop waiting on a warm up once its deadline has passed while still filling the cache" in { f =>
+      val sys = systemFixture(f)
+      import sys._
+
+      val serviceUri = new URI("http://service_interface:4711/known")
+      withServerWithKnownService(serviceUri, responseDelay = () => 1.second) {
+        val cache = new LocationCache()
+        val found = LocationService.warmUp(List("/known").asJava, cache, JDuration.ofMillis(100))
+        Await.result(found, 500.millis) shouldBe java.util.Collections.emptySet()
+        val service = cache.remove("/known")
+        service.isPresent shouldBe true
+        Await.result(service.get, timeout.duration) shouldBe Optional.of(serviceUri)
+      }
+    }
+
     "be able to look up a named service and return maxAge" in { f =>
       val sys = systemFixture(f)
       import sys._
@@ -78,6 +196,52 @@ class LocationServiceSpecWithEnv extends AkkaUnitTestWithFixture("LocationServic
       }
     }
 
+    "serve a cached location without allocating" in { f =>
+      val sys = systemFixture(f)
+      import sys._
+
+      val serviceUri = new URI("http://service_interface:4711/known")
+      withServerWithKnownService(serviceUri, Some(10)) {
+        val cache = new LocationCache()
+        val fallback = new URI("")
+        val service = LocationService.lookup("/known", fallback, cache)
+        Await.result(service, timeout.duration) shouldBe Optional.of(serviceUri)
+
+        val threads = ManagementFactory.getThreadMXBean.asInstanceOf[com.sun.management.ThreadMXBean]
+        val threadId = Thread.currentThread.getId
+        def lookups(): Unit = {
+          var i = 0
+          while (i < 10000) {
+            LocationService.lookup("/known", fallback, cache) should be theSameInstanceAs service
+            i += 1
+          }
+        }
+        lookups()
+        val allocatedBefore = threads.getThreadAllocatedBytes(threadId)
+        var i = 0
+        while (i < 10000) {
+          LocationService.lookup("/known", fallback, cache)
+          i += 1
+        }
+        val allocated = threads.getThreadAllocatedBytes(threadId) - allocatedBefore
+        allocated should be < 10000L
+      }
+    }
+
+    "be able to look up several services at once" in { f =>
+      val sys = systemFixture(f)
+      import sys._
+
+      val serviceUri = new URI("http://service_interface:4711/known")
+      withServerWithKnownService(serviceUri, Some(10)) {
+        val cache = new LocationCache()
+        val services = Map("/known" -> new URI(""), "/unknown" -> new URI("")).asJava
+        val expected = Map("/known" -> serviceUri).asJava
+        Await.result(LocationService.lookupAll(services, cache, ForkJoinPool.commonPool(), 1), timeout.duration) shouldBe expected
+        Await.result(LocationService.lookupAll(services, cache), timeout.duration) shouldBe expected
+      }
+    }
+
     "get back None for an unknown service" in { f =>
       val sys = systemFixture(f)
       import sys._
@@ -91,7 +255,7 @@ class LocationServiceSpecWithEnv extends AkkaUnitTestWithFixture("LocationServic
     }
   }
 
-  def withServerWithKnownService(serviceUri: java.net.URI, maxAge: Option[Int] = None)(thunk: => Unit)(implicit system: ActorSystem, mat: ActorMaterializer): Unit = {
+  def withServerWithKnownService(serviceUri: java.net.URI, maxAge: Option[Int] = None, responseDelay: () => FiniteDuration = () => Duration.Zero)(thunk: => Unit)(implicit system: ActorSystem, mat: ActorMaterializer): Unit = {
 
     val probe = new TestProbe(system)
 
@@ -99,7 +263,7 @@ class LocationServiceSpecWithEnv extends AkkaUnitTestWithFixture("LocationServic
       path("services" / Remaining) { serviceName =>
         get {
           complete {
-            serviceName match {
+            akka.pattern.after(responseDelay(), system.scheduler)(Future.successful(serviceName)).map {
               case "known" =>
                 val uri = Uri(serviceUri.toString)
                 val headers = Location(uri) :: (maxAge match {
@@ -2,30 +2,64 @@ package com.typesafe.conductr.bundlelib.lagom.javadsl
 
 import java.net.{ URI => JavaURI }
 import java.util.Optional
-import java.util.concurrent.CompletionStage
+import java.util.concurrent.{ CompletableFuture, CompletionException, CompletionStage, ConcurrentHashMap }
+import java.util.function.{ BiConsumer, Function => JFunction }
 import javax.inject.Inject
 
+import akka.pattern.CircuitBreakerOpenException
 import com.lightbend.lagom.internal.client.CircuitBreakers
 import com.lightbend.lagom.javadsl.api.Descriptor
 import com.lightbend.lagom.javadsl.client.CircuitBreakingServiceLocator
 import com.typesafe.conductr.bundlelib.play.api.LocationService
 import com.typesafe.conductr.bundlelib.scala.{ CacheLike, URI }
+import com.typesafe.conductr.lib.scala.CallingThreadExecutionContext
 
 import scala.compat.java8.FutureConverters._
 import scala.compat.java8.OptionConverters._
-import scala.concurrent.Future
 import scala.language.reflectiveCalls
+import scala.util.Success
 
 /**
  * ConductRServiceLocator implements Lagom's ServiceLocator by using the ConductR Service Locator.
  */
 class ConductRServiceLocator @Inject() (locationService: LocationService, cache: CacheLike, circuitBreakers: CircuitBreakers) extends CircuitBreakingServiceLocator(circuitBreakers) {
 
-  import locationService.cc.executionContext
+  // The services whose circuit breaker has been found open since their location was evicted from the cache
+  private val openCircuits = ConcurrentHashMap.newKeySet[String]()
 
-  private def locateAsScala(name: String): Future[Optional[JavaURI]] =
-    locationService.lookup(name, URI(""), cache).map(_.asJava)
+  /**
+   * A location held by the cache is provided by way of a completed stage, without involving an executor.
+   */
+  override def locate(name: String, serviceCall: Descriptor.Call[_, _]): CompletionStage[Optional[JavaURI]] = {
+    val location = locationService.lookup(name, URI(""), cache)
+    location.value match {
+      case Some(Success(l)) => CompletableFuture.completedFuture(l.asJava)
+      case _                => location.map(_.asJava)(CallingThreadExecutionContext).toJava
+    }
+  }
 
-  override def locate(name: String, serviceCall: Descriptor.Call[_, _]): CompletionStage[Optional[JavaURI]] =
-    locateAsScala(name).toJava
+  /**
+   * The location of a service is evicted from the cache as soon as its circuit breaker is found to be open, so
+   * that the service is located anew once the breaker lets calls through again rather than at an instance that
+   * may no longer be there.
+   */
+  override protected def doWithServiceImpl[T](name: String, serviceCall: Descriptor.Call[_, _], block: JFunction[JavaURI, CompletionStage[T]]): CompletionStage[Optional[T]] =
+    super.doWithServiceImpl(name, serviceCall, new JFunction[JavaURI, CompletionStage[T]] {
+      override def apply(uri: JavaURI): CompletionStage[T] =
+        block(uri).whenComplete(new BiConsumer[T, Throwable] {
+          override def accept(result: T, error: Throwable): Unit =
+            onCallCompleted(name, error)
+        })
+    })
+
+  private def onCallCompleted(name: String, error: Throwable): Unit =
+    error match {
+      case null =>
+        if (!openCircuits.isEmpty) openCircuits.remove(name)
+      case e: CompletionException if e.getCause != null =>
+        onCallCompleted(name, e.getCause)
+      case _: CircuitBreakerOpenException =>
+        if (openCircuits.add(name)) cache.remove(name)
+      case _ =>
+    }
 }
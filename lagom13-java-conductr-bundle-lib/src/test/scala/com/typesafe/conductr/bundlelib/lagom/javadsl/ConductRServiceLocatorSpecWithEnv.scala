@@ -1,17 +1,20 @@
 package com.typesafe.conductr.bundlelib.lagom.javadsl
 
 import java.net.{ InetSocketAddress, URI => JavaURI }
+import java.util.concurrent.{ CompletableFuture, CompletionException, CompletionStage }
+import java.util.function.{ Function => JFunction }
 
 import akka.actor._
 import akka.http.scaladsl.Http
 import akka.http.scaladsl.model.headers.{ CacheDirectives, Location, `Cache-Control` }
 import akka.http.scaladsl.model.{ HttpEntity, HttpResponse, StatusCodes }
 import akka.http.scaladsl.server.Directives._
+import akka.pattern.CircuitBreakerOpenException
 import akka.stream.ActorMaterializer
 import akka.testkit.TestProbe
 import com.lightbend.lagom.javadsl.api.Descriptor
 import com.typesafe.conductr.bundlelib.play.api.{ ConductRLifecycleModule, Env => PlayEnv }
-import com.typesafe.conductr.bundlelib.scala.{ URI, URL }
+import com.typesafe.conductr.bundlelib.scala.{ CacheLike, URI, URL }
 import com.typesafe.conductr.lib.AkkaUnitTestWithFixture
 import play.api.inject.guice.GuiceApplicationBuilder
 import play.api.test.Helpers._
@@ -19,6 +22,7 @@ import play.api.test.Helpers._
 import scala.compat.java8.FutureConverters._
 import scala.compat.java8.OptionConverters._
 import scala.concurrent.Await
+import scala.concurrent.duration._
 import scala.util.{ Failure, Success }
 
 class ConductRServiceLocatorSpecWithEnv extends AkkaUnitTestWithFixture("ConductRServiceLocatorSpecWithEnv") {
@@ -67,6 +71,55 @@ class ConductRServiceLocatorSpecWithEnv extends AkkaUnitTestWithFixture("Conduct
         }
       }
     }
+
+    "provide a cached location by way of a completed stage" in { f =>
+      val sys = systemFixture(f)
+      import sys._
+
+      val serviceUri = URI("http://service_interface:4711/known")
+      val app = new GuiceApplicationBuilder()
+        .disable(classOf[ConductRLifecycleModule])
+        .build()
+      withServerWithKnownService(serviceUri, Some(10)) {
+        running(app) {
+          val serviceLocator = app.injector.instanceOf[ConductRServiceLocator]
+          val service = serviceLocator.locate("known", Descriptor.Call.NONE).toScala.map(_.asScala)
+          Await.result(service, timeout.duration) shouldBe Some(serviceUri)
+
+          val cached = serviceLocator.locate("known", Descriptor.Call.NONE).toCompletableFuture
+          cached.isDone shouldBe true
+          cached.get.asScala shouldBe Some(serviceUri)
+        }
+      }
+    }
+
+    "evict the location of a service once its circuit breaker is found to be open" in { f =>
+      val sys = systemFixture(f)
+      import sys._
+
+      val serviceUri = URI("http://service_interface:4711/known")
+      val app = new GuiceApplicationBuilder()
+        .disable(classOf[ConductRLifecycleModule])
+        .build()
+      withServerWithKnownService(serviceUri, Some(10)) {
+        running(app) {
+          val serviceLocator = app.injector.instanceOf[ConductRServiceLocator]
+          val cache = app.injector.instanceOf[CacheLike]
+          val openCircuit = new JFunction[JavaURI, CompletionStage[String]] {
+            override def apply(uri: JavaURI): CompletionStage[String] = {
+              val result = new CompletableFuture[String]
+              result.completeExceptionally(new CircuitBreakerOpenException(1.second))
+              result
+            }
+          }
+
+          Await.result(serviceLocator.locate("known", Descriptor.Call.NONE).toScala, timeout.duration)
+          val call = serviceLocator.doWithService("known", Descriptor.Call.NONE, openCircuit).toScala
+          intercept[CompletionException](Await.result(call, timeout.duration)).getCause shouldBe a[CircuitBreakerOpenException]
+          cache.remove("known") shouldBe None
+        }
+      }
+    }
   }
 
   def withServerWithKnownService(serviceUri: JavaURI, maxAge: Option[Int] = None)(thunk: => Unit)(implicit system: ActorSystem, mat: ActorMaterializer): Unit = {
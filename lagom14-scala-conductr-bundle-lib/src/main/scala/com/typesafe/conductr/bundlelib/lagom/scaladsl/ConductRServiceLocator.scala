@@ -12,6 +12,9 @@ import scala.language.reflectiveCalls
 
 /**
  * ConductRServiceLocator implements Lagom's ServiceLocator by using the ConductR Service Locator.
+ *
+ * Unlike the javadsl locator, a location is not evicted from the cache when the circuit breaker of its service is
+ * found to be open. It is located anew only once its cache entry expires.
  */
 class ConductRServiceLocator(locationService: LocationService, cache: CacheLike, circuitBreakersPanel: CircuitBreakersPanel)(implicit ec: ExecutionContext) extends CircuitBreakingServiceLocator(circuitBreakersPanel) {
 
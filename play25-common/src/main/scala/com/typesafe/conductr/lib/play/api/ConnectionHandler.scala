@@ -1,12 +1,13 @@
 package com.typesafe.conductr.lib.play.api
 
 import com.google.inject.Inject
-import com.typesafe.conductr.lib.HttpPayload
+import com.typesafe.conductr.lib.{ HttpPayload, Instrumentation }
 import com.typesafe.conductr.lib.scala.{ AbstractConnectionContext, AbstractConnectionHandler }
 import _root_.play.api.libs.ws._
 
 import scala.concurrent.{ ExecutionContext, Future }
 import scala.collection.JavaConverters._
+import scala.util.{ Failure, Success }
 
 /**
  * When performing Play.WS connections, this is the connection context to use.
@@ -40,7 +41,14 @@ class ConnectionHandler extends AbstractConnectionHandler {
         .withMethod(p.getRequestMethod)
         .withFollowRedirects(follow = false)
       import cc.executionContext
-      request.execute().map { response =>
+      val startNanos = System.nanoTime()
+      request.execute().andThen {
+        case Success(response) =>
+          val contentLength = response.header("Content-Length").fold(-1L)(_.toLong)
+          Instrumentation.get.requestCompleted(p, response.status, contentLength, System.nanoTime() - startNanos)
+        case Failure(e) =>
+          Instrumentation.get.requestFailed(p, e, System.nanoTime() - startNanos)
+      }.map { response =>
         handler(
           response.status.intValue(),
           response.allHeaders.foldLeft(Map.empty[String, Option[String]]) {
@@ -1,10 +1,16 @@
 package com.typesafe.conductr.bundlelib.play.api
 
+import java.util.concurrent.TimeUnit
 import javax.inject.{ Inject, Singleton }
 
+import com.typesafe.conductr.bundlelib.scala.CacheLike
 import play.api.inject.{ Binding, Module }
 import play.api.{ Configuration, Environment, Logger }
 
+import scala.collection.JavaConverters._
+import scala.concurrent.Future
+import scala.concurrent.duration.FiniteDuration
+
 /**
  * Takes care of managing ConductR lifecycle events. In order to enable
  * ConductR lifecycle events for your application, add the following to
@@ -21,16 +27,31 @@ class ConductRLifecycleModule extends Module {
 }
 
 /**
- * Responsible for signalling ConductR that the application has started.
+ * Responsible for signalling ConductR that the application has started. The services named by
+ * `conductr.lib.warm-up.services` are looked up into the location cache as the application starts, and the start
+ * signal is held back until they have been looked up unless `conductr.lib.warm-up.hold-back-start` is off.
  */
 @Singleton
-class ConductRLifecycle @Inject() (statusService: StatusService) {
+class ConductRLifecycle @Inject() (statusService: StatusService, locationService: LocationService, cache: CacheLike, configuration: Configuration) {
+
+  import statusService.cc.executionContext
+
+  private val warmUpConfig = configuration.underlying.getConfig("conductr.lib.warm-up")
+  private val warmUpServices = warmUpConfig.getStringList("services").asScala.toList
+  private val warmUpTimeout = FiniteDuration(warmUpConfig.getDuration("timeout", TimeUnit.MILLISECONDS), TimeUnit.MILLISECONDS)
+
+  private val warmedUp = locationService.warmUp(warmUpServices, cache, warmUpTimeout)
+
+  warmedUp.foreach { found =>
+    if (Env.isRunByConductR && warmUpServices.nonEmpty)
+      Logger.info(s"Warmed up the location of ${found.size} of ${warmUpServices.size} services")
+  }
 
-  statusService
-    .signalStartedOrExit()
+  (if (warmUpConfig.getBoolean("hold-back-start")) warmedUp else Future.successful(Set.empty))
+    .flatMap(_ => statusService.signalStartedOrExit())
     .foreach { _ =>
       if (Env.isRunByConductR) Logger.info("Signalled start to ConductR")
-    }(statusService.cc.executionContext)
+    }
 }
 
 /**
@@ -40,6 +61,9 @@ class ConductRLifecycle @Inject() (statusService: StatusService) {
  */
 trait ConductRLifecycleComponents {
   def conductRStatusService: StatusService
+  def conductRLocationSevice: LocationService
+  def conductRCacheLike: CacheLike
+  def configuration: Configuration
 
-  new ConductRLifecycle(conductRStatusService)
+  new ConductRLifecycle(conductRStatusService, conductRLocationSevice, conductRCacheLike, configuration)
 }
\ No newline at end of file
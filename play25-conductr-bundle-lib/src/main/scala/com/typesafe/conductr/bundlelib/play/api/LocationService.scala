@@ -7,6 +7,7 @@ import com.typesafe.conductr.bundlelib.scala.{ AbstractLocationService, CacheLik
 import com.typesafe.conductr.lib.play.api.{ ConnectionContext, ConnectionHandler }
 
 import scala.concurrent.Future
+import scala.concurrent.duration.FiniteDuration
 import scala.language.reflectiveCalls
 
 /**
@@ -23,4 +24,12 @@ class LocationService @Inject() (handler: ConnectionHandler, val cc: LocationSer
     else
       Future.successful(Some(fallback))
 
+  override def lookupWithDeadline(serviceName: String, fallback: URI, cache: CacheLike, timeout: FiniteDuration, hedgeDelay: Option[FiniteDuration] = None)(implicit cc: CC = this.cc): Future[Option[URI]] =
+    super.lookupWithDeadline(serviceName, fallback, cache, timeout, hedgeDelay)(cc)
+
+  override def lookupAll(services: Map[String, URI], cache: CacheLike, parallelism: Int = AbstractLocationService.DefaultLookupParallelism)(implicit cc: CC = this.cc): Future[Map[String, URI]] =
+    super.lookupAll(services, cache, parallelism)(cc)
+
+  override def warmUp(serviceNames: Seq[String], cache: CacheLike, deadline: FiniteDuration, parallelism: Int = AbstractLocationService.DefaultLookupParallelism)(implicit cc: CC = this.cc): Future[Set[String]] =
+    super.warmUp(serviceNames, cache, deadline, parallelism)(cc)
 }
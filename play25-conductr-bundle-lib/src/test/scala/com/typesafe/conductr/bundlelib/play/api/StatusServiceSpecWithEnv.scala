@@ -3,7 +3,7 @@ package com.typesafe.conductr.bundlelib.play.api
 import java.net.{ InetSocketAddress, URL }
 
 import akka.http.scaladsl.Http
-import akka.http.scaladsl.model.StatusCodes
+import akka.http.scaladsl.model.{ HttpResponse, StatusCodes }
 import akka.http.scaladsl.server.Directives._
 import akka.stream.ActorMaterializer
 import akka.testkit.TestProbe
@@ -11,7 +11,8 @@ import com.typesafe.conductr.lib.AkkaUnitTestWithFixture
 import play.api.inject.guice.GuiceApplicationBuilder
 import play.api.test.Helpers._
 
-import scala.concurrent.Await
+import scala.concurrent.{ Await, Future }
+import scala.concurrent.duration._
 import scala.util.{ Failure, Success }
 
 class StatusServiceSpecWithEnv extends AkkaUnitTestWithFixture("StatusServiceSpecWithEnv") {
@@ -72,5 +73,58 @@ class StatusServiceSpecWithEnv extends AkkaUnitTestWithFixture("StatusServiceSpe
         server.foreach(_.unbind())
       }
     }
+
+    "hold back signalling that it is up until the services to warm up have been looked up" in { f =>
+      val sys = systemFixture(f)
+      import sys._
+      import system.dispatcher
+
+      val probe = new TestProbe(system)
+
+      val statusHandler =
+        path("bundles" / Segment) { bundleId =>
+          put {
+            complete {
+              probe.ref ! "started"
+              StatusCodes.NoContent
+            }
+          }
+        }
+
+      val locatorHandler =
+        path("services" / Remaining) { serviceName =>
+          get {
+            complete {
+              akka.pattern.after(200.millis, system.scheduler) {
+                probe.ref ! serviceName
+                Future.successful(HttpResponse(StatusCodes.NotFound))
+              }
+            }
+          }
+        }
+
+      val statusUrl = new URL(Env.conductRStatus.get)
+      val locatorUrl = new URL(Env.serviceLocator.get)
+
+      val servers = Future.sequence(Seq(
+        Http(system).bindAndHandle(statusHandler, statusUrl.getHost, statusUrl.getPort),
+        Http(system).bindAndHandle(locatorHandler, locatorUrl.getHost, locatorUrl.getPort)
+      ))
+
+      try {
+        Await.result(servers, timeout.duration)
+
+        val app = new GuiceApplicationBuilder()
+          .bindings(new BundlelibModule)
+          .configure("conductr.lib.warm-up.services" -> Seq("known", "other"))
+          .build()
+        running(app) {
+          probe.expectMsgAllOf("known", "other")
+          probe.expectMsg("started")
+        }
+      } finally {
+        servers.foreach(_.foreach(_.unbind()))
+      }
+    }
   }
 }
@@ -0,0 +1,13 @@
+package com.typesafe.conductr.lib.scala
+
+import scala.concurrent.ExecutionContext
+
+/**
+ * INTERNAL API
+ * Runs callbacks on the thread that completes the future, or on the calling thread when the future has already
+ * completed. Only to be used for callbacks that do very little, such as recording a result.
+ */
+private[conductr] object CallingThreadExecutionContext extends ExecutionContext {
+  override def execute(runnable: Runnable): Unit = runnable.run()
+  override def reportFailure(cause: Throwable): Unit = ()
+}
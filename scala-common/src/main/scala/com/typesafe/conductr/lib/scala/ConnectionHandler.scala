@@ -1,16 +1,17 @@
 package com.typesafe.conductr.lib.scala
 
-import java.io.IOException
-import java.net.HttpURLConnection
-import com.typesafe.conductr.lib.HttpPayload
+import com.typesafe.conductr.lib.{ HttpConnectionSettings, HttpExchange, HttpPayload, Instrumentation }
 import scala.concurrent._
-import scala.util.{ Failure, Success, Try }
 import scala.collection.JavaConverters._
+import scala.util.control.NonFatal
 
 object ConnectionContext {
   def apply(executionContext: ExecutionContext): ConnectionContext =
     new ConnectionContext()(executionContext)
 
+  def apply(executionContext: ExecutionContext, connectionSettings: HttpConnectionSettings): ConnectionContext =
+    new ConnectionContext(connectionSettings)(executionContext)
+
   object Implicits {
     /**
      * An implicit global ConnectionContext.
@@ -23,9 +24,11 @@ object ConnectionContext {
 
 /**
  * When performing pure Scala connections, this is the connection context to use. Pass in the
- * execution context to be used for blocking IO.
+ * execution context to be used for blocking IO, and optionally the timeouts to apply.
  */
-class ConnectionContext()(implicit val executionContext: ExecutionContext) extends AbstractConnectionContext
+class ConnectionContext(
+  val connectionSettings: HttpConnectionSettings = HttpConnectionSettings.DEFAULT
+)(implicit val executionContext: ExecutionContext) extends AbstractConnectionContext
 
 /**
  * INTERNAL API
@@ -47,35 +50,22 @@ class ConnectionHandler extends AbstractConnectionHandler {
     import cc.executionContext
     payload.fold[Future[Option[T]]](Future.successful(None)) { p =>
       Future {
-        Try(p.getUrl.openConnection) match {
-          case Success(connection: HttpURLConnection) =>
-            connection.setRequestMethod(p.getRequestMethod)
-            connection.setInstanceFollowRedirects(p.getFollowRedirects)
-            connection.setRequestProperty("User-Agent", UserAgent)
-            p.getRequestHeaders.asScala.foreach { v =>
-              val (header, headerValue) = v
-              connection.setRequestProperty(header, headerValue)
-            }
-            blocking {
-              connection.connect()
-              import scala.collection.JavaConverters._
-              try {
-                handler(
-                  connection.getResponseCode,
-                  connection.getHeaderFields.asScala.foldLeft(Map.empty[String, Option[String]]) {
-                    case (m, (k, v)) => m.updated(k, v.asScala.lastOption)
-                  }
-                )
-
-              } finally {
-                connection.disconnect()
-              }
-            }
-          case Success(connection) =>
-            throw new IOException(s"Unexpected type of connection $connection for $p")
-          case Failure(e) =>
-            throw new IOException(s"Connection failed for $p", e)
-        }
+        val startNanos = System.nanoTime()
+        val response =
+          try
+            blocking(HttpExchange.execute(p, UserAgent, cc.connectionSettings))
+          catch {
+            case NonFatal(e) =>
+              Instrumentation.get.requestFailed(p, e, System.nanoTime() - startNanos)
+              throw e
+          }
+        Instrumentation.get.requestCompleted(p, response.getStatusCode, response.getContentLength, System.nanoTime() - startNanos)
+        handler(
+          response.getStatusCode,
+          response.getHeaders.asScala.foldLeft(Map.empty[String, Option[String]]) {
+            case (m, (k, v)) => m.updated(k, Some(v))
+          }
+        )
       }
     }
   }
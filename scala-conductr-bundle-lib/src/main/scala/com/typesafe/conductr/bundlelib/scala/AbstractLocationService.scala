@@ -2,20 +2,149 @@ package com.typesafe.conductr.bundlelib.scala
 
 import java.io.IOException
 import java.net.{ URL => JavaURL, URI => JavaURI }
-import java.util.concurrent.TimeUnit
+import java.util.ArrayDeque
+import java.util.concurrent.ConcurrentLinkedQueue
+import java.util.concurrent.{ ScheduledFuture, TimeUnit, TimeoutException }
+import java.util.concurrent.atomic.AtomicInteger
 
-import com.typesafe.conductr.lib.HttpPayload
-import com.typesafe.conductr.lib.scala.{ AbstractConnectionHandler, AbstractConnectionContext }
+import com.typesafe.conductr.lib.{ HttpPayload, RequestTimer }
+import com.typesafe.conductr.lib.scala.{ AbstractConnectionHandler, AbstractConnectionContext, CallingThreadExecutionContext }
 import com.typesafe.conductr.bundlelib.{ LocationService => JavaLocationService }
 
+import scala.collection.JavaConverters._
 import scala.concurrent._
 import scala.concurrent.duration._
+import scala.util.{ Failure, Success, Try }
+import scala.util.control.NonFatal
+
+object AbstractLocationService {
+  /**
+   * The number of lookups that [[AbstractLocationService.lookupAll]] performs concurrently by default.
+   */
+  final val DefaultLookupParallelism = 8
+
+  /*
+   * Delegates to a cache while permitting no more than a given number of the cache's update operations to be
+   * in flight at a time. Operations beyond that are queued and started as others complete.
+   */
+  private final class ThrottledCache(cache: CacheLike, parallelism: Int) extends CacheLike {
+
+    // Guarded by this
+    private var inFlight = 0
+    private val pending = new ArrayDeque[() => Unit]
+
+    override def getOrElseUpdate(serviceName: String)(op: => Future[Option[(JavaURI, Option[FiniteDuration])]]): Future[Option[JavaURI]] =
+      cache.getOrElseUpdate(serviceName)(throttle(op))
+
+    override def remove(serviceName: String): Option[Future[Option[JavaURI]]] =
+      cache.remove(serviceName)
+
+    override def remove(serviceName: String, location: Future[Option[JavaURI]]): Boolean =
+      cache.remove(serviceName, location)
+
+    private def throttle[T](op: => Future[T]): Future[T] = {
+      val promise = Promise[T]()
+      val run = () => {
+        val result = try op catch { case NonFatal(e) => Future.failed(e) }
+        result.onComplete { r =>
+          promise.complete(r)
+          release()
+        }(CallingThreadExecutionContext)
+      }
+      val runNow = synchronized {
+        if (inFlight < parallelism) {
+          inFlight += 1
+          true
+        } else {
+          pending.add(run)
+          false
+        }
+      }
+      if (runNow) run()
+      promise.future
+    }
+
+    private def release(): Unit = {
+      val next = synchronized {
+        val next = pending.poll()
+        if (next == null) inFlight -= 1
+        next
+      }
+      if (next != null) next()
+    }
+  }
+
+  /*
+   * Delegates to a cache while bounding the time that a lookup may wait on it, be it the lookup that started the
+   * cache's update operation or one that joined it while in flight. A lookup that has not completed within the
+   * timeout fails with a TimeoutException and has the cache let go of the entry being filled, should the cache
+   * still hold that entry. The update operation itself is left to complete, so the timeout is never recorded by
+   * the cache as the outcome of the lookup. Given a hedge delay, an operation still in flight after that delay is
+   * started once more and whichever of the two succeeds first is taken.
+   */
+  private final class DeadlineCache(cache: CacheLike, timeout: FiniteDuration, hedgeDelay: Option[FiniteDuration]) extends CacheLike {
+
+    override def getOrElseUpdate(serviceName: String)(op: => Future[Option[(JavaURI, Option[FiniteDuration])]]): Future[Option[JavaURI]] = {
+      val location = cache.getOrElseUpdate(serviceName)(hedgeDelay.fold(op)(hedged(op, _)))
+      if (location.isCompleted)
+        location
+      else {
+        val promise = Promise[Option[JavaURI]]()
+        val timer = schedule(timeout) {
+          if (!location.isCompleted) {
+            cache.remove(serviceName, location)
+            promise.tryFailure(new TimeoutException(s"The lookup of service $serviceName did not complete within $timeout"))
+          }
+        }
+        location.onComplete { l =>
+          timer.cancel(false)
+          promise.tryComplete(l)
+        }(CallingThreadExecutionContext)
+        promise.future
+      }
+    }
+
+    override def remove(serviceName: String): Option[Future[Option[JavaURI]]] =
+      cache.remove(serviceName)
+
+    override def remove(serviceName: String, location: Future[Option[JavaURI]]): Boolean =
+      cache.remove(serviceName, location)
+
+    private def hedged[T](op: => Future[T], delay: FiniteDuration): Future[T] = {
+      val promise = Promise[T]()
+      // The number of attempts in flight, the last of which to fail fails the lookup
+      val attempts = new AtomicInteger(1)
+
+      def attempt(): Unit = {
+        val result = try op catch { case NonFatal(e) => Future.failed(e) }
+        result.onComplete {
+          case Success(r) => promise.trySuccess(r)
+          case Failure(e) => if (attempts.decrementAndGet() == 0) promise.tryFailure(e)
+        }(CallingThreadExecutionContext)
+      }
+
+      val hedge = schedule(delay) {
+        if (!promise.isCompleted && attempts.getAndIncrement() > 0) attempt()
+      }
+      attempt()
+      promise.future.onComplete(_ => hedge.cancel(false))(CallingThreadExecutionContext)
+      promise.future
+    }
+
+    private def schedule(delay: FiniteDuration)(action: => Unit): ScheduledFuture[_] =
+      RequestTimer.get.schedule(new Runnable {
+        override def run(): Unit = action
+      }, delay.toNanos, TimeUnit.NANOSECONDS)
+  }
+}
 
 /**
  * A Location Service is used to look up services using the Typesafe ConductR Service Locator.
  */
 abstract class AbstractLocationService(handler: AbstractConnectionHandler) {
 
+  import AbstractLocationService._
+
   protected type CC <: AbstractConnectionContext
 
   /**
@@ -50,16 +179,125 @@ abstract class AbstractLocationService(handler: AbstractConnectionHandler) {
    */
   def lookup(serviceName: String, fallback: JavaURI, cache: CacheLike)(implicit cc: CC): Future[Option[JavaURI]]
 
+  /**
+   * As per [[lookup]] only that the lookup must complete within a timeout, failing with a
+   * `java.util.concurrent.TimeoutException` otherwise. This holds for a lookup that joins a request of the same
+   * service already in flight as much as for one that makes the request. The cache lets go of a request that a
+   * lookup gave up on, so that the next lookup requests the service anew, and the timeout is not cached as a
+   * failed lookup. Letting go of the request requires a cache that overrides the two argument form of
+   * `CacheLike.remove`, as [[LocationCache]] does. With any other cache the request is left in place and the next
+   * lookup joins it.
+   *
+   * Given a hedge delay that is less than the timeout, a second request is made should the first not have completed
+   * after that delay, and the location of whichever completes first is taken. The lookup fails only once both
+   * requests have failed or the timeout has passed.
+   */
+  def lookupWithDeadline(serviceName: String, fallback: JavaURI, cache: CacheLike, timeout: FiniteDuration, hedgeDelay: Option[FiniteDuration] = None)(implicit cc: CC): Future[Option[JavaURI]] =
+    lookup(serviceName, fallback, new DeadlineCache(cache, timeout, hedgeDelay.filter(_ < timeout)))
+
+  /**
+   * Look up a number of services at once given their names along with the fallback to use for each of them.
+   * Services held by the cache are served from it directly. The others are looked up concurrently, with no more
+   * than `parallelism` lookups in flight at any one time.
+   *
+   * Returns a map of service names to the URIs of those services that were found. The map is provided once all of
+   * the lookups have completed, and the future fails if any one of the lookups fails.
+   */
+  def lookupAll(services: Map[String, JavaURI], cache: CacheLike, parallelism: Int = DefaultLookupParallelism)(implicit cc: CC): Future[Map[String, JavaURI]] = {
+    require(parallelism > 0, s"parallelism must be positive: $parallelism")
+    if (services.isEmpty)
+      Future.successful(Map.empty)
+    else {
+      val throttledCache = new ThrottledCache(cache, parallelism)
+      val names = new Array[String](services.size)
+      val locations = new Array[Option[JavaURI]](services.size)
+      val remaining = new AtomicInteger(services.size)
+      val result = Promise[Map[String, JavaURI]]()
+
+      def record(i: Int, location: Try[Option[JavaURI]]): Unit =
+        location match {
+          case Success(l) =>
+            locations(i) = l
+            if (remaining.decrementAndGet() == 0) {
+              val found = Map.newBuilder[String, JavaURI]
+              for (j <- names.indices; l <- locations(j)) found += names(j) -> l
+              result.success(found.result())
+            }
+          case Failure(e) =>
+            result.tryFailure(e)
+        }
+
+      var i = 0
+      val iterator = services.iterator
+      while (iterator.hasNext && !result.isCompleted) {
+        val (name, fallback) = iterator.next()
+        val index = i
+        names(index) = name
+        try {
+          val location = lookup(name, fallback, throttledCache)
+          location.value match {
+            case Some(l) => record(index, l)
+            case None    => location.onComplete(record(index, _))(CallingThreadExecutionContext)
+          }
+        } catch {
+          case NonFatal(e) => result.tryFailure(e)
+        }
+        i += 1
+      }
+      result.future
+    }
+  }
+
+  /**
+   * Look up the given services into the cache ahead of their being required, so that the first requests made for
+   * them are served at the latency of a cache hit. This is typically performed as a bundle component starts, and
+   * before it signals ConductR that it has started. The services are looked up concurrently, with no more than
+   * `parallelism` lookups in flight at any one time. Those that cannot be looked up are left to be looked up
+   * when required.
+   *
+   * Returns the names of the services found once all of the lookups have completed or the deadline has passed,
+   * whichever comes first. Lookups still in flight at the deadline go on to fill the cache. Nothing is looked up
+   * when not running within ConductR.
+   */
+  def warmUp(serviceNames: Seq[String], cache: CacheLike, deadline: FiniteDuration, parallelism: Int = DefaultLookupParallelism)(implicit cc: CC): Future[Set[String]] = {
+    require(parallelism > 0, s"parallelism must be positive: $parallelism")
+    val names = serviceNames.distinct
+    if (names.isEmpty || !Env.isRunByConductR)
+      Future.successful(Set.empty)
+    else {
+      val throttledCache = new ThrottledCache(cache, parallelism)
+      val found = new ConcurrentLinkedQueue[String]
+      val remaining = new AtomicInteger(names.size)
+      val result = Promise[Set[String]]()
+
+      val timer = RequestTimer.get.schedule(new Runnable {
+        override def run(): Unit = result.trySuccess(found.asScala.toSet)
+      }, deadline.toNanos, TimeUnit.NANOSECONDS)
+      result.future.onComplete(_ => timer.cancel(false))(CallingThreadExecutionContext)
+
+      names.foreach { name =>
+        // The fallback is of no consequence given that this is running within ConductR
+        val location = try lookup(name, URI(""), throttledCache) catch { case NonFatal(e) => Future.failed(e) }
+        location.onComplete { l =>
+          if (l.toOption.flatten.isDefined) found.add(name)
+          if (remaining.decrementAndGet() == 0) result.trySuccess(found.asScala.toSet)
+        }(CallingThreadExecutionContext)
+      }
+      result.future
+    }
+  }
+
   protected def toUri(service: Option[(JavaURI, Option[FiniteDuration])]): Option[JavaURI] =
     service.map(_._1)
 
-  private val MaxAgePattern = """.*max-age=(\d+).*""".r
-
   protected def handleLookup(responseCode: Int, headers: Map[String, Option[String]]): Option[(JavaURI, Option[FiniteDuration])] =
     responseCode match {
       case 307 =>
         val locationAndMaxAge = for (Some(location) <- headers.get("Location")) yield {
-          val maxAge = for (Some(MaxAgePattern(maxAgeSecs)) <- headers.get("Cache-Control")) yield FiniteDuration(maxAgeSecs.toInt, TimeUnit.SECONDS)
+          val maxAge = for {
+            Some(cacheControl) <- headers.get("Cache-Control")
+            maxAgeSecs = JavaLocationService.parseMaxAge(cacheControl) if maxAgeSecs >= 0
+          } yield FiniteDuration(maxAgeSecs, TimeUnit.SECONDS)
           URI(location) -> maxAge
         }
         locationAndMaxAge.orElse(throw new IOException("Missing Location header"))
@@ -1,13 +1,18 @@
 package com.typesafe.conductr.bundlelib.scala
 
 import java.net.{ URI => JavaURI }
-import java.util.{ TimerTask, Timer }
+import java.util.PriorityQueue
+import java.util.concurrent.{ ConcurrentHashMap, ThreadLocalRandom }
+import java.util.concurrent.atomic.AtomicBoolean
 
-import scala.collection.concurrent.TrieMap
+import com.typesafe.conductr.lib.Instrumentation
+
+import scala.collection.JavaConverters._
 import scala.concurrent.ExecutionContext.Implicits
-import scala.concurrent.Future
+import scala.concurrent.{ Future, Promise }
 import scala.concurrent.duration.FiniteDuration
-import scala.util.Success
+import scala.util.{ Failure, Success }
+import scala.util.control.NonFatal
 
 /**
  * A structure that describes what we require from a cache specifically for locations in relation to service names.
@@ -15,50 +20,267 @@ import scala.util.Success
  * being able to cope with the thundering herds issue:
  * http://ehcache.org/documentation/2.8/recipes/thunderingherd.
  *
- * Entries that provide a max age duration are scheduled to be removed at that time. The
- * expectation is that this cache is used with such durations. Where there is no duration
- * (this should be rare) then the cache entry is quickly removed after it has been determined.
- * This removal also occurs when the entry cannot be established successfully
+ * Entries that provide a max age duration expire at that time. The expectation is that this cache is used with
+ * such durations. Expiry is checked when an entry is read, so no timer is involved; entries that are no longer read
+ * are dropped by the implementation as it sees fit, [[LocationCache]] doing so from a queue of their deadlines.
+ * Where there is no duration (this should be rare) then the entry is removed as soon as it has been determined.
+ * This removal also occurs when the entry cannot be established successfully, unless the implementation has been
+ * configured to cache such outcomes for a time.
  */
 trait CacheLike {
   def getOrElseUpdate(serviceName: String)(op: => Future[Option[(JavaURI, Option[FiniteDuration])]]): Future[Option[JavaURI]]
   def remove(serviceName: String): Option[Future[Option[JavaURI]]]
+
+  /**
+   * Remove the entry of a service only while it is the entry that provided the given location, returning whether it
+   * was removed. The default implementation removes nothing, given that it cannot tell one entry from another.
+   */
+  def remove(serviceName: String, location: Future[Option[JavaURI]]): Boolean =
+    false
 }
 
 object LocationCache {
   def apply() = new LocationCache
+
+  def apply(settings: LocationCacheSettings) = new LocationCache(settings)
+
+  // notFoundCount is the number of consecutive times that the service was not found before this entry
+  private final class Entry(val serviceName: String, @volatile var lastAccess: Long, val notFoundCount: Int) extends Comparable[Entry] {
+    val result = Promise[Option[(JavaURI, Option[FiniteDuration])]]()
+    val location = result.future.map(_.map(_._1))(Implicits.global)
+    val refreshing = new AtomicBoolean(false)
+    @volatile var resolved = false
+    @volatile var located = false
+    @volatile var notFound = false
+    @volatile var refreshAt = 0L
+    @volatile var expiresAt = 0L
+    // When the entry is next looked at by the deadline queue, being its expiry or later
+    @volatile var deadline = 0L
+
+    override def compareTo(other: Entry): Int =
+      java.lang.Long.signum(deadline - other.deadline)
+  }
 }
 
 /**
  * A cache like class as a default implementation.
+ *
+ * Expiry is checked when an entry is read. Each resolved entry is also recorded once in a deadline queue which is
+ * drained whenever an entry is added or resolved, so that entries that are no longer read do not accumulate. No threads
+ * are used for expiry. An expired entry of a service that was not found is kept for up to `notFoundMaxTtl` beyond
+ * its expiry though, so that the next lookup of the service carries on backing off from where it left off.
+ *
+ * Lookups of a service made while it is being looked up share that lookup, so that no more than one lookup of a
+ * service is in flight at a time. Entries are only ever replaced or removed on the condition that they are still
+ * the entry that was read, so that the expiry of one entry never drops another that has since taken its place.
+ * Reading an entry takes no lock.
+ *
+ * When constructed with refresh-ahead settings, entries are refreshed in the background shortly before they expire
+ * and the last known location is served while the refresh is in flight. When constructed with a maximum number of
+ * entries, the least recently used entry is evicted to make room for a new one. Services that are not found, and
+ * lookups that fail, may also be cached for a time so that repeated lookups do not all reach the service locator.
+ * See [[LocationCacheSettings]].
  */
-class LocationCache extends CacheLike {
+class LocationCache(settings: LocationCacheSettings) extends CacheLike {
+
+  import LocationCache._
 
-  private val cache = TrieMap.empty[String, Future[Option[(JavaURI, Option[FiniteDuration])]]]
+  def this() = this(LocationCacheSettings())
 
-  val reaperTimer = new Timer("LocationCache-Reaper", true /* daemon thread */ )
+  private val cache = new ConcurrentHashMap[String, Entry]
+
+  // Guarded by itself
+  private val deadlines = new PriorityQueue[Entry]
+
+  private val staleNanos = settings.staleWhileRevalidate.toNanos
+  private val notFoundMinNanos = settings.notFoundMinTtl.toNanos
+  private val notFoundMaxNanos = settings.notFoundMaxTtl.toNanos
+  private val errorNanos = settings.errorTtl.toNanos
 
   override def getOrElseUpdate(serviceName: String)(op: => Future[Option[(JavaURI, Option[FiniteDuration])]]): Future[Option[JavaURI]] = {
+    val now = System.nanoTime()
+    cache.get(serviceName) match {
+      case null =>
+        val newEntry = new Entry(serviceName, now, 0)
+        cache.putIfAbsent(serviceName, newEntry) match {
+          case null =>
+            expire(now)
+            settings.maxEntries.foreach(evictLeastRecentlyUsed)
+            Instrumentation.get.cacheMiss(serviceName)
+            load(newEntry, () => op)
+            newEntry.location
+          case _ =>
+            getOrElseUpdate(serviceName)(op)
+        }
+
+      case entry if entry.resolved && now - entry.expiresAt >= 0 =>
+        val newEntry = new Entry(serviceName, now, if (entry.notFound) entry.notFoundCount + 1 else 0)
+        if (cache.replace(serviceName, entry, newEntry)) {
+          Instrumentation.get.cacheEviction(serviceName)
+          Instrumentation.get.cacheMiss(serviceName)
+          load(newEntry, () => op)
+          newEntry.location
+        } else
+          getOrElseUpdate(serviceName)(op)
+
+      case entry =>
+        if (settings.refreshAhead && entry.located && now - entry.refreshAt >= 0)
+          refresh(entry, () => op)
+        if (settings.maxEntries.isDefined)
+          entry.lastAccess = now
+        if (entry.resolved)
+          Instrumentation.get.cacheHit(serviceName)
+        else
+          Instrumentation.get.cacheCoalesced(serviceName)
+        entry.location
+    }
+  }
+
+  override def remove(serviceName: String): Option[Future[Option[JavaURI]]] =
+    Option(cache.remove(serviceName)).map(_.location)
+
+  override def remove(serviceName: String, location: Future[Option[JavaURI]]): Boolean = {
+    val entry = cache.get(serviceName)
+    entry != null && (entry.location eq location) && cache.remove(serviceName, entry)
+  }
+
+  /*
+   * The entry is settled before its result is completed, so that a lookup made once the result is known never
+   * finds an entry that is about to be dropped.
+   */
+  private def load(entry: Entry, op: () => Future[Option[(JavaURI, Option[FiniteDuration])]]): Unit = {
     import Implicits.global
-    cache.getOrElseUpdate(serviceName, op)
-      .andThen {
-        case Success(Some((location, Some(maxAge)))) =>
-          reaperTimer.schedule(new TimerTask {
-            override def run(): Unit = {
-              cache.remove(serviceName)
-            }
-          }, maxAge.toMillis)
+    run(op).onComplete { result =>
+      result match {
+        case Success(Some((_, Some(maxAge)))) =>
+          resolveLocated(entry, maxAge)
+
+        case Success(None) if notFoundMinNanos > 0 =>
+          resolveNotFound(entry)
+
+        case Failure(_) if errorNanos > 0 =>
+          resolve(entry, errorNanos)
 
         case _ =>
-          cache.remove(serviceName)
+          cache.remove(entry.serviceName, entry)
       }
-      .map(_.map(_._1))
+      entry.result.complete(result)
+    }
+  }
+
+  /*
+   * Only one refresh per entry is in flight at any time. A successful refresh swaps in a new entry, a refresh
+   * that finds the service no longer exists drops the entry (or replaces it with a not found entry when these are
+   * cached), and a failed refresh leaves the current entry to be served (until its stale deadline) with the next
+   * lookup trying again.
+   */
+  private def refresh(entry: Entry, op: () => Future[Option[(JavaURI, Option[FiniteDuration])]]): Unit =
+    if (entry.refreshing.compareAndSet(false, true)) {
+      import Implicits.global
+      val refreshed = new Entry(entry.serviceName, entry.lastAccess, 0)
+      refreshed.result.completeWith(run(op))
+      refreshed.result.future.onComplete {
+        case Success(Some((_, Some(maxAge)))) =>
+          if (cache.replace(entry.serviceName, entry, refreshed))
+            resolveLocated(refreshed, maxAge)
+
+        case Success(None) if notFoundMinNanos > 0 =>
+          if (cache.replace(entry.serviceName, entry, refreshed))
+            resolveNotFound(refreshed)
 
+        case Success(_) =>
+          cache.remove(entry.serviceName, entry)
+
+        case Failure(_) =>
+          entry.refreshing.set(false)
+      }
+    }
+
+  private def resolveLocated(entry: Entry, maxAge: FiniteDuration): Unit = {
+    val maxAgeNanos = maxAge.toNanos
+    entry.located = true
+    entry.refreshAt = System.nanoTime() + (maxAgeNanos * settings.refreshFactor).toLong
+    resolve(entry, maxAgeNanos + staleNanos)
   }
 
-  override def remove(serviceName: String): Option[Future[Option[JavaURI]]] = {
-    import Implicits.global
-    cache.remove(serviceName)
-      .map(_.map(_.map(_._1)))
+  /*
+   * The time that a service is cached as not found doubles with each consecutive time that it is not found, and
+   * has a random amount added so that the many bundle components waiting on a service do not look it up in step.
+   */
+  private def resolveNotFound(entry: Entry): Unit = {
+    val ttlNanos =
+      if (entry.notFoundCount < java.lang.Long.numberOfLeadingZeros(notFoundMinNanos) - 1)
+        math.min(notFoundMaxNanos, notFoundMinNanos << entry.notFoundCount)
+      else
+        notFoundMaxNanos
+    val randomNanos =
+      if (settings.notFoundRandomFactor > 0.0)
+        (ttlNanos * settings.notFoundRandomFactor * ThreadLocalRandom.current.nextDouble()).toLong
+      else
+        0L
+    entry.notFound = true
+    resolve(entry, ttlNanos + randomNanos)
   }
+
+  /*
+   * Expired deadlines are drained as each one is added, so that a service that is looked up again and again only
+   * ever has the deadlines of its live entries queued.
+   */
+  private def resolve(entry: Entry, ttlNanos: Long): Unit = {
+    val now = System.nanoTime()
+    entry.expiresAt = now + ttlNanos
+    entry.deadline = entry.expiresAt
+    entry.resolved = true
+    deadlines.synchronized {
+      deadlines.add(entry)
+      expire(now)
+    }
+  }
+
+  /*
+   * Drop the entries whose deadline has passed. Entries that have since been replaced or removed are
+   * simply discarded from the queue. An expired entry of a service not found is queued again until notFoundMaxTtl
+   * has passed since its expiry, as it holds the number of consecutive times that the service was not found; a
+   * lookup in the meantime replaces it, being expired, and so backs off further.
+   */
+  private def expire(now: Long): Unit =
+    deadlines.synchronized {
+      while (!deadlines.isEmpty && now - deadlines.peek.deadline >= 0) {
+        val entry = deadlines.poll()
+        if (entry.notFound && now - entry.expiresAt < notFoundMaxNanos) {
+          if (cache.get(entry.serviceName) eq entry) {
+            entry.deadline = entry.expiresAt + notFoundMaxNanos
+            deadlines.add(entry)
+          }
+        } else if (cache.remove(entry.serviceName, entry))
+          Instrumentation.get.cacheEviction(entry.serviceName)
+      }
+    }
+
+  // For testing
+  private[bundlelib] def deadlineCount: Int =
+    deadlines.synchronized(deadlines.size)
+
+  /*
+   * Finding the least recently used entry requires a scan of the entries. This only happens when a new service
+   * name is added to a full cache, and is cheap in comparison to the lookup that adding the entry implies.
+   */
+  private def evictLeastRecentlyUsed(maxEntries: Int): Unit = {
+    var evicting = true
+    while (evicting && cache.size > maxEntries) {
+      val entries = cache.values.asScala
+      evicting = entries.nonEmpty && {
+        val lru = entries.reduceLeft((a, b) => if (b.lastAccess - a.lastAccess < 0) b else a)
+        cache.remove(lru.serviceName, lru) && {
+          Instrumentation.get.cacheEviction(lru.serviceName)
+          true
+        }
+      }
+    }
+  }
+
+  private def run(op: () => Future[Option[(JavaURI, Option[FiniteDuration])]]): Future[Option[(JavaURI, Option[FiniteDuration])]] =
+    try op() catch {
+      case NonFatal(e) => Future.failed(e)
+    }
 }
@@ -0,0 +1,69 @@
+package com.typesafe.conductr.bundlelib.scala
+
+import scala.concurrent.duration._
+
+/**
+ * Describes how a [[LocationCache]] treats its entries. By default entries are removed once their max age has
+ * elapsed and are not refreshed ahead of time, services that are not found and lookups that fail are not cached,
+ * and the number of entries is unbounded.
+ *
+ * @param refreshAhead when true, an entry is refreshed in the background by the first lookup made once
+ *                     `refreshFactor` of its max age has elapsed. Until the refresh completes the current location
+ *                     continues to be served.
+ * @param refreshFactor the fraction of an entry's max age after which it is refreshed, greater than 0 and at most 1
+ * @param staleWhileRevalidate how long a location may be served beyond its max age while it is being refreshed
+ * @param maxEntries the maximum number of entries held. When a new service name would exceed the bound then the
+ *                   least recently used entry is evicted.
+ * @param notFoundMinTtl how long a service is first cached as not found, zero meaning that services that are not
+ *                       found are not cached. Each time that the service is then still not found the time is
+ *                       doubled, up to `notFoundMaxTtl`.
+ * @param notFoundMaxTtl the most that a service is cached as not found before the random amount is added
+ * @param notFoundRandomFactor the fraction of additional time that is randomly added to the time that a service is
+ *                             cached as not found, so that the lookups of many bundle components are spread out
+ * @param errorTtl how long a failed lookup is cached, including the service locator responding with an unexpected
+ *                 status, zero meaning that failures are not cached
+ */
+final case class LocationCacheSettings(
+    refreshAhead: Boolean = false,
+    refreshFactor: Double = 1.0,
+    staleWhileRevalidate: FiniteDuration = Duration.Zero,
+    maxEntries: Option[Int] = None,
+    notFoundMinTtl: FiniteDuration = Duration.Zero,
+    notFoundMaxTtl: FiniteDuration = Duration.Zero,
+    notFoundRandomFactor: Double = 0.0,
+    errorTtl: FiniteDuration = Duration.Zero
+) {
+  require(refreshFactor > 0.0 && refreshFactor <= 1.0, s"refreshFactor must be within (0, 1]: $refreshFactor")
+  require(staleWhileRevalidate >= Duration.Zero, s"staleWhileRevalidate must not be negative: $staleWhileRevalidate")
+  require(maxEntries.forall(_ > 0), s"maxEntries must be greater than 0: ${maxEntries.get}")
+  require(notFoundMinTtl >= Duration.Zero, s"notFoundMinTtl must not be negative: $notFoundMinTtl")
+  require(notFoundMaxTtl >= notFoundMinTtl, s"notFoundMaxTtl must not be less than notFoundMinTtl: $notFoundMaxTtl")
+  require(notFoundRandomFactor >= 0.0, s"notFoundRandomFactor must not be negative: $notFoundRandomFactor")
+  require(errorTtl >= Duration.Zero, s"errorTtl must not be negative: $errorTtl")
+
+  /**
+   * Enable refresh-ahead with the given refresh factor and staleness window.
+   */
+  def withRefreshAhead(refreshFactor: Double, staleWhileRevalidate: FiniteDuration): LocationCacheSettings =
+    copy(refreshAhead = true, refreshFactor = refreshFactor, staleWhileRevalidate = staleWhileRevalidate)
+
+  /**
+   * Bound the number of entries held.
+   */
+  def withMaxEntries(maxEntries: Int): LocationCacheSettings =
+    copy(maxEntries = Some(maxEntries))
+
+  /**
+   * Cache services that are not found, backing off from `minTtl` to `maxTtl` while they remain not found.
+   */
+  def withNotFoundBackoff(minTtl: FiniteDuration, maxTtl: FiniteDuration, randomFactor: Double): LocationCacheSettings = {
+    require(minTtl > Duration.Zero, s"minTtl must be greater than 0: $minTtl")
+    copy(notFoundMinTtl = minTtl, notFoundMaxTtl = maxTtl, notFoundRandomFactor = randomFactor)
+  }
+
+  /**
+   * Cache failed lookups for the given time.
+   */
+  def withErrorTtl(errorTtl: FiniteDuration): LocationCacheSettings =
+    copy(errorTtl = errorTtl)
+}
@@ -1,10 +1,10 @@
 package com.typesafe.conductr.bundlelib.scala
 
-import com.typesafe.conductr.lib.AkkaUnitTest
+import com.typesafe.conductr.lib.{ AkkaUnitTest, Instrumentation }
 import org.scalatest.concurrent.ScalaFutures
 
 import scala.concurrent.duration._
-import scala.concurrent.{ Await, Future }
+import scala.concurrent.{ Await, Future, Promise }
 
 class LocationCacheSpec extends AkkaUnitTest with ScalaFutures {
 
@@ -99,5 +99,233 @@ class LocationCacheSpec extends AkkaUnitTest with ScalaFutures {
       Await.result(getFromCache("/other-service"), timeout.duration) shouldBe Some(URI("/somelocation"))
 
     }
+
+    "cache a service that is not found, backing off while it remains not found" in {
+      var updates = 0
+      var reply = Option.empty[(java.net.URI, Option[FiniteDuration])]
+      val cache = LocationCache(LocationCacheSettings().withNotFoundBackoff(200.millis, 1.second, 0.0))
+      def getFromCache(serviceName: String): Future[Option[java.net.URI]] =
+        cache.getOrElseUpdate(serviceName) {
+          updates += 1
+          Future.successful(reply)
+        }
+
+      Await.result(getFromCache("/someservice"), timeout.duration) shouldBe None
+      Await.result(getFromCache("/someservice"), timeout.duration) shouldBe None
+      updates shouldBe 1
+
+      // Still not found once the first ttl has passed - the next ttl is doubled
+      Thread.sleep(300)
+      Await.result(getFromCache("/someservice"), timeout.duration) shouldBe None
+      updates shouldBe 2
+      Thread.sleep(250)
+      Await.result(getFromCache("/someservice"), timeout.duration) shouldBe None
+      updates shouldBe 2
+
+      reply = Some(URI("/somelocation") -> Some(1.second))
+      Thread.sleep(250)
+      Await.result(getFromCache("/someservice"), timeout.duration) shouldBe Some(URI("/somelocation"))
+      updates shouldBe 3
+    }
+
+    "keep backing off a service that is not found while other services are looked up" in {
+      var updates = 0
+      val cache = LocationCache(LocationCacheSettings().withNotFoundBackoff(200.millis, 10.seconds, 0.0))
+      def getFromCache(serviceName: String): Future[Option[java.net.URI]] =
+        cache.getOrElseUpdate(serviceName) {
+          if (serviceName == "/someservice") updates += 1
+          Future.successful(None)
+        }
+
+      Await.result(getFromCache("/someservice"), timeout.duration) shouldBe None
+      updates shouldBe 1
+
+      // Each lookup of another service drains the expired entries
+      Thread.sleep(300)
+      Await.result(getFromCache("/other-1"), timeout.duration) shouldBe None
+      Await.result(getFromCache("/someservice"), timeout.duration) shouldBe None
+      updates shouldBe 2
+
+      // The second ttl is doubled
+      Thread.sleep(250)
+      Await.result(getFromCache("/other-2"), timeout.duration) shouldBe None
+      Await.result(getFromCache("/someservice"), timeout.duration) shouldBe None
+      updates shouldBe 2
+
+      // And the third doubled again
+      Thread.sleep(250)
+      Await.result(getFromCache("/other-3"), timeout.duration) shouldBe None
+      Await.result(getFromCache("/someservice"), timeout.duration) shouldBe None
+      updates shouldBe 3
+      Thread.sleep(500)
+      Await.result(getFromCache("/other-4"), timeout.duration) shouldBe None
+      Await.result(getFromCache("/someservice"), timeout.duration) shouldBe None
+      updates shouldBe 3
+    }
+
+    "cache a failed lookup for the error ttl" in {
+      var updates = 0
+      var reply: Future[Option[(java.net.URI, Option[FiniteDuration])]] = Future.failed(new RuntimeException("test only"))
+      val cache = LocationCache(LocationCacheSettings().withErrorTtl(200.millis))
+      def getFromCache(serviceName: String): Future[Option[java.net.URI]] =
+        cache.getOrElseUpdate(serviceName) {
+          updates += 1
+          reply
+        }
+
+      intercept[RuntimeException](Await.result(getFromCache("/someservice"), timeout.duration))
+      intercept[RuntimeException](Await.result(getFromCache("/someservice"), timeout.duration))
+      updates shouldBe 1
+
+      reply = Future.successful(Some(URI("/somelocation") -> Some(1.second)))
+      Thread.sleep(300)
+      Await.result(getFromCache("/someservice"), timeout.duration) shouldBe Some(URI("/somelocation"))
+      updates shouldBe 2
+    }
+
+    "refresh an entry ahead of its expiry while serving the current location" in {
+      var updates = 0
+      var reply = Promise[Option[(java.net.URI, Option[FiniteDuration])]]()
+      val cache = LocationCache(LocationCacheSettings().withRefreshAhead(0.5, Duration.Zero))
+      def getFromCache(serviceName: String): Future[Option[java.net.URI]] =
+        cache.getOrElseUpdate(serviceName) {
+          updates += 1
+          reply.future
+        }
+
+      reply.success(Some(URI("/somelocation") -> Some(1.second)))
+      Await.result(getFromCache("/someservice"), timeout.duration) shouldBe Some(URI("/somelocation"))
+      updates shouldBe 1
+
+      // Past the refresh point - a refresh is started and the current location is served while it is in flight
+      Thread.sleep(600)
+      reply = Promise()
+      Await.result(getFromCache("/someservice"), timeout.duration) shouldBe Some(URI("/somelocation"))
+      Await.result(getFromCache("/someservice"), timeout.duration) shouldBe Some(URI("/somelocation"))
+      updates shouldBe 2
+
+      reply.success(Some(URI("/otherlocation") -> Some(1.second)))
+      Thread.sleep(100)
+      Await.result(getFromCache("/someservice"), timeout.duration) shouldBe Some(URI("/otherlocation"))
+      updates shouldBe 2
+    }
+
+    "serve a stale location while the locator fails, up until the staleness window has passed" in {
+      var updates = 0
+      var reply: Future[Option[(java.net.URI, Option[FiniteDuration])]] = Future.successful(Some(URI("/somelocation") -> Some(200.millis)))
+      val cache = LocationCache(LocationCacheSettings().withRefreshAhead(1.0, 500.millis))
+      def getFromCache(serviceName: String): Future[Option[java.net.URI]] =
+        cache.getOrElseUpdate(serviceName) {
+          updates += 1
+          reply
+        }
+
+      Await.result(getFromCache("/someservice"), timeout.duration) shouldBe Some(URI("/somelocation"))
+      updates shouldBe 1
+
+      Thread.sleep(300)
+      reply = Future.failed(new RuntimeException("test only"))
+      Await.result(getFromCache("/someservice"), timeout.duration) shouldBe Some(URI("/somelocation"))
+      updates shouldBe 2
+
+      Thread.sleep(600)
+      getFromCache("/someservice").failed.futureValue shouldBe a[RuntimeException]
+    }
+
+    "drop a refreshed entry when the service is no longer found" in {
+      var reply: Option[(java.net.URI, Option[FiniteDuration])] = Some(URI("/somelocation") -> Some(200.millis))
+      val cache = LocationCache(LocationCacheSettings().withRefreshAhead(0.5, 1.second))
+      def getFromCache(serviceName: String): Future[Option[java.net.URI]] =
+        cache.getOrElseUpdate(serviceName)(Future.successful(reply))
+
+      Await.result(getFromCache("/someservice"), timeout.duration) shouldBe Some(URI("/somelocation"))
+
+      Thread.sleep(300)
+      reply = None
+      Await.result(getFromCache("/someservice"), timeout.duration) shouldBe Some(URI("/somelocation"))
+      Thread.sleep(100)
+      Await.result(getFromCache("/someservice"), timeout.duration) shouldBe None
+    }
+
+    "drop expired entries when new entries are added" in {
+      val cache = LocationCache()
+      def getFromCache(serviceName: String): Future[Option[java.net.URI]] =
+        cache.getOrElseUpdate(serviceName)(Future.successful(Some(URI(s"$serviceName-location") -> Some(200.millis))))
+
+      Await.result(getFromCache("/someservice"), timeout.duration) shouldBe Some(URI("/someservice-location"))
+
+      Thread.sleep(300)
+      Await.result(getFromCache("/otherservice"), timeout.duration) shouldBe Some(URI("/otherservice-location"))
+      cache.remove("/someservice") shouldBe None
+    }
+
+    "keep one deadline for a service that is looked up again each time it expires" in {
+      var updates = 0
+      val cache = LocationCache()
+      def getFromCache(serviceName: String): Future[Option[java.net.URI]] =
+        cache.getOrElseUpdate(serviceName) {
+          updates += 1
+          Future.successful(Some(URI(s"$serviceName-location") -> Some(5.millis)))
+        }
+
+      for (_ <- 1 to 100) {
+        Await.result(getFromCache("/someservice"), timeout.duration) shouldBe Some(URI("/someservice-location"))
+        Thread.sleep(10)
+      }
+      updates shouldBe 100
+      cache.deadlineCount shouldBe 1
+    }
+
+    "evict the least recently used entry when the maximum number of entries is exceeded" in {
+      var updates = Map.empty[String, Int].withDefaultValue(0)
+      val cache = LocationCache(LocationCacheSettings().withMaxEntries(2))
+      def getFromCache(serviceName: String): Future[Option[java.net.URI]] =
+        cache.getOrElseUpdate(serviceName) {
+          updates += serviceName -> (updates(serviceName) + 1)
+          Future.successful(Some(URI(s"$serviceName-location") -> Some(1.minute)))
+        }
+
+      Await.result(getFromCache("/a"), timeout.duration) shouldBe Some(URI("/a-location"))
+      Thread.sleep(10)
+      Await.result(getFromCache("/b"), timeout.duration) shouldBe Some(URI("/b-location"))
+      Thread.sleep(10)
+      Await.result(getFromCache("/a"), timeout.duration) shouldBe Some(URI("/a-location"))
+      Thread.sleep(10)
+      Await.result(getFromCache("/c"), timeout.duration) shouldBe Some(URI("/c-location"))
+
+      cache.remove("/b") shouldBe None
+      Await.result(getFromCache("/a"), timeout.duration) shouldBe Some(URI("/a-location"))
+      Await.result(getFromCache("/c"), timeout.duration) shouldBe Some(URI("/c-location"))
+      updates shouldBe Map("/a" -> 1, "/b" -> 1, "/c" -> 1)
+    }
+
+    "report hits, misses, coalesced lookups and evictions to the instrumentation" in {
+      var events = Vector.empty[String]
+      val instrumentation = new Instrumentation {
+        private def record(event: String, serviceName: String): Unit =
+          if (serviceName == "/instrumented") synchronized(events :+= event)
+        override def cacheHit(serviceName: String): Unit = record("hit", serviceName)
+        override def cacheMiss(serviceName: String): Unit = record("miss", serviceName)
+        override def cacheCoalesced(serviceName: String): Unit = record("coalesced", serviceName)
+        override def cacheEviction(serviceName: String): Unit = record("eviction", serviceName)
+      }
+      Instrumentation.set(instrumentation)
+      try {
+        val cache = LocationCache()
+        val lookup = Promise[Option[(java.net.URI, Option[FiniteDuration])]]()
+        val location1 = cache.getOrElseUpdate("/instrumented")(lookup.future)
+        val location2 = cache.getOrElseUpdate("/instrumented")(lookup.future)
+        lookup.success(Some(URI("/somelocation") -> Some(100.millis)))
+        Await.result(location1, timeout.duration) shouldBe Some(URI("/somelocation"))
+        Await.result(location2, timeout.duration) shouldBe Some(URI("/somelocation"))
+        Thread.sleep(20) // Let the entry be resolved
+        Await.result(cache.getOrElseUpdate("/instrumented")(lookup.future), timeout.duration) shouldBe Some(URI("/somelocation"))
+
+        Thread.sleep(200)
+        Await.result(cache.getOrElseUpdate("/instrumented")(lookup.future), timeout.duration) shouldBe Some(URI("/somelocation"))
+        events shouldBe Vector("miss", "coalesced", "hit", "eviction", "miss")
+      } finally
+        Instrumentation.set(null)
+    }
   }
 }
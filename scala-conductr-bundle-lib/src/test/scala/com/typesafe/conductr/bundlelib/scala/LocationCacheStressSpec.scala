@@ -0,0 +1,130 @@
+package com.typesafe.conductr.bundlelib.scala
+
+import java.util.concurrent.{ ConcurrentLinkedQueue, CountDownLatch, CyclicBarrier, TimeUnit }
+import java.util.concurrent.atomic.{ AtomicBoolean, AtomicInteger, AtomicLong }
+
+import com.typesafe.conductr.lib.{ AkkaUnitTest, RequestTimer }
+
+import scala.collection.JavaConverters._
+import scala.concurrent.duration._
+import scala.concurrent.{ Await, Future, Promise }
+
+/**
+ * Hammers a location cache from many threads at once, checking that each service is looked up by no more than
+ * one lookup at a time and no more than once per max age, and that the locations served are never older than
+ * a location that had been looked up before the lookup was made.
+ */
+class LocationCacheStressSpec extends AkkaUnitTest {
+
+  val Threads = 16
+  val ServiceNames = (1 to 8).map(n => s"/service-$n")
+
+  /*
+   * Stands in for the service locator, recording each of its lookups. A lookup completes on another thread a
+   * little while after it has been made, so that others contend for the entry while it is in flight.
+   */
+  class Locator(serviceNames: Seq[String], maxAge: FiniteDuration) {
+    val lookups = serviceNames.map(_ -> new ConcurrentLinkedQueue[Long]).toMap
+    val generations = serviceNames.map(_ -> new AtomicInteger(0)).toMap
+    val resolved = serviceNames.map(_ -> new AtomicLong(0)).toMap
+    val inFlight = serviceNames.map(_ -> new AtomicInteger(0)).toMap
+    val overlapped = new AtomicBoolean(false)
+
+    def lookup(serviceName: String): Future[Option[(java.net.URI, Option[FiniteDuration])]] = {
+      lookups(serviceName).add(System.nanoTime())
+      if (inFlight(serviceName).incrementAndGet() > 1) overlapped.set(true)
+      val generation = generations(serviceName).incrementAndGet()
+      val location = Promise[Option[(java.net.URI, Option[FiniteDuration])]]()
+      RequestTimer.get.schedule(new Runnable {
+        override def run(): Unit = {
+          inFlight(serviceName).decrementAndGet()
+          resolved(serviceName).set(generation)
+          location.success(Some(URI(s"$serviceName/$generation") -> Some(maxAge)))
+        }
+      }, 1, TimeUnit.MILLISECONDS)
+      location.future
+    }
+  }
+
+  def generationOf(location: Option[java.net.URI]): Long =
+    location.get.getPath.split('/').last.toLong
+
+  def inParallel(threads: Int)(body: Int => Unit): Unit = {
+    val start = new CountDownLatch(1)
+    val errors = new ConcurrentLinkedQueue[Throwable]
+    val workers = (0 until threads).map { n =>
+      new Thread(new Runnable {
+        override def run(): Unit =
+          try {
+            start.await()
+            body(n)
+          } catch {
+            case e: Throwable => errors.add(e)
+          }
+      }, s"LocationCacheStressSpec-$n")
+    }
+    workers.foreach(_.start())
+    start.countDown()
+    workers.foreach(_.join(timeout.duration.toMillis))
+    workers.exists(_.isAlive) shouldBe false
+    errors.asScala.headOption.foreach(e => throw e)
+  }
+
+  "A location cache under contention" should {
+    "look up each service once however many lookups are made for it at the same time" in {
+      // Each service is first looked up by all of the threads at once
+      val serviceNames = (1 to 1000).map(n => s"/service-$n")
+      val locator = new Locator(serviceNames, 1.hour)
+      val cache = LocationCache()
+      val barrier = new CyclicBarrier(Threads)
+
+      inParallel(Threads) { n =>
+        val locations = for (serviceName <- serviceNames) yield {
+          barrier.await()
+          serviceName -> (0 until 4).map(_ => cache.getOrElseUpdate(serviceName)(locator.lookup(serviceName)))
+        }
+        for ((serviceName, location) <- locations; l <- location)
+          Await.result(l, timeout.duration) shouldBe Some(URI(s"$serviceName/1"))
+      }
+
+      for (serviceName <- serviceNames) withClue(s"$serviceName: ") {
+        locator.lookups(serviceName).size shouldBe 1
+      }
+      locator.overlapped.get shouldBe false
+    }
+
+    "look up each service no more than once per max age, serving locations no older than those already looked up" in {
+      val maxAge = 20.millis
+      val locator = new Locator(ServiceNames, maxAge)
+      val cache = LocationCache()
+      val deadline = 1.second.fromNow
+
+      inParallel(Threads) { n =>
+        val lastSeen = Array.fill(ServiceNames.size)(0L)
+        var i = n
+        while (deadline.hasTimeLeft()) {
+          val index = i % ServiceNames.size
+          val serviceName = ServiceNames(index)
+          val alreadyResolved = locator.resolved(serviceName).get
+          val generation = generationOf(Await.result(cache.getOrElseUpdate(serviceName)(locator.lookup(serviceName)), timeout.duration))
+          withClue(s"$serviceName: ") {
+            generation should be >= alreadyResolved
+            generation should be >= lastSeen(index)
+          }
+          lastSeen(index) = generation
+          i += 1
+        }
+      }
+
+      locator.overlapped.get shouldBe false
+      for (serviceName <- ServiceNames) {
+        val lookups = locator.lookups(serviceName).asScala.toVector
+        lookups.size should be > 1
+        for ((previous, next) <- lookups.zip(lookups.tail))
+          withClue(s"$serviceName: ") {
+            (next - previous) should be >= maxAge.toNanos
+          }
+      }
+    }
+  }
+}
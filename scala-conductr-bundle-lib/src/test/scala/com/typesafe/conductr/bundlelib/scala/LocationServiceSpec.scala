@@ -15,6 +15,12 @@ class LocationServiceSpec extends AkkaUnitTest {
       Await.result(LocationService.lookup("/whatever", fallback, cache), timeout.duration) shouldBe Some(fallback)
     }
 
+    "return the fallback uris of several services when running in development mode" in {
+      val fallbacks = Map("/one" -> URI("/fallback1"), "/two" -> URI("/fallback2"))
+      val cache = LocationCache()
+      Await.result(LocationService.lookupAll(fallbacks, cache), timeout.duration) shouldBe fallbacks
+    }
+
     "return the fallback url when running in development mode" in {
       val fallback = URL("http://127.0.0.1/whatever")
       LocationService.getLookupUrl("/whatever", fallback) shouldBe fallback
@@ -9,10 +9,13 @@ import akka.stream.ActorMaterializer
 import akka.testkit.TestProbe
 import com.typesafe.conductr.lib.AkkaUnitTestWithFixture
 import java.net.InetSocketAddress
+import java.util.concurrent.TimeoutException
+import java.util.concurrent.atomic.AtomicInteger
 
 import com.typesafe.conductr.lib.scala.ConnectionContext.Implicits
 
-import scala.concurrent.Await
+import scala.concurrent.{ Await, Future, Promise }
+import scala.concurrent.duration._
 import scala.util.{ Failure, Success }
 
 class LocationServiceSpecWithEnv extends AkkaUnitTestWithFixture("LocationServiceSpecWithEnv") {
@@ -75,6 +78,113 @@ class LocationServiceSpecWithEnv extends AkkaUnitTestWithFixture("LocationServic
       }
     }
 
+    "be able to look up several services at once" in { f =>
+      val sys = systemFixture(f)
+      import sys._
+
+      val serviceUri = URI("http://service_interface:4715/known")
+      withServerWithKnownService(serviceUri, Some(10)) {
+        val cache = LocationCache()
+        val services = Map("/known" -> URI(""), "/unknown" -> URI(""))
+        Await.result(LocationService.lookupAll(services, cache, parallelism = 1), timeout.duration) shouldBe Map("/known" -> serviceUri)
+        Await.result(LocationService.lookupAll(services, cache), timeout.duration) shouldBe Map("/known" -> serviceUri)
+      }
+    }
+
+    "fail a lookup that does not complete within its deadline without caching it" in { f =>
+      val sys = systemFixture(f)
+      import sys._
+
+      val serviceUri = URI("http://service_interface:4716/known")
+      val requests = new AtomicInteger(0)
+      withServerWithKnownService(serviceUri, responseDelay = () => if (requests.getAndIncrement() == 0) 2.seconds else Duration.Zero) {
+        val cache = LocationCache()
+        val service = LocationService.lookupWithDeadline("/known", URI(""), cache, 200.millis)
+        intercept[TimeoutException](Await.result(service, timeout.duration))
+        cache.remove("/known") shouldBe None
+
+        val retried = LocationService.lookupWithDeadline("/known", URI(""), cache, 1.second)
+        Await.result(retried, timeout.duration) shouldBe Some(serviceUri)
+      }
+    }
+
+    "fail a lookup that joins a request in flight once its own deadline passes" in { f =>
+      val sys = systemFixture(f)
+      import sys._
+
+      val serviceUri = URI("http://service_interface:4720/known")
+      withServerWithKnownService(serviceUri) {
+        val cache = LocationCache()
+        val inFlight = cache.getOrElseUpdate("/known")(Promise[Option[(java.net.URI, Option[FiniteDuration])]]().future)
+        val service = LocationService.lookupWithDeadline("/known", URI(""), cache, 200.millis)
+        intercept[TimeoutException](Await.result(service, timeout.duration))
+        inFlight.isCompleted shouldBe false
+        cache.remove("/known") shouldBe None
+
+        val retried = LocationService.lookupWithDeadline("/known", URI(""), cache, 1.second)
+        Await.result(retried, timeout.duration) shouldBe Some(serviceUri)
+      }
+    }
+
+    "not cache a lookup that missed its deadline as a failed lookup" in { f =>
+      val sys = systemFixture(f)
+      import sys._
+
+      val serviceUri = URI("http://service_interface:4721/known")
+      val requests = new AtomicInteger(0)
+      withServerWithKnownService(serviceUri, responseDelay = () => if (requests.getAndIncrement() == 0) 2.seconds else Duration.Zero) {
+        val cache = LocationCache(LocationCacheSettings(errorTtl = 1.minute))
+        val service = LocationService.lookupWithDeadline("/known", URI(""), cache, 200.millis)
+        intercept[TimeoutException](Await.result(service, timeout.duration))
+
+        val retried = LocationService.lookupWithDeadline("/known", URI(""), cache, 1.second)
+        Await.result(retried, timeout.duration) shouldBe Some(serviceUri)
+        requests.get shouldBe 2
+      }
+    }
+
+    "take the location of a hedged request should the first request be slow" in { f =>
+      val sys = systemFixture(f)
+      import sys._
+
+      val serviceUri = URI("http://service_interface:4717/known")
+      val requests = new AtomicInteger(0)
+      withServerWithKnownService(serviceUri, responseDelay = () => if (requests.getAndIncrement() == 0) 5.seconds else Duration.Zero) {
+        val cache = LocationCache()
+        val service = LocationService.lookupWithDeadline("/known", URI(""), cache, 10.seconds, hedgeDelay = Some(100.millis))
+        Await.result(service, 2.seconds) shouldBe Some(serviceUri)
+        requests.get shouldBe 2
+      }
+    }
+
+    "warm up a cache with the services that are found" in { f =>
+      val sys = systemFixture(f)
+      import sys._
+
+      val serviceUri = URI("http://service_interface:4718/known")
+      withServerWithKnownService(serviceUri, Some(10)) {
+        val cache = LocationCache()
+        val found = LocationService.warmUp(Seq("/known", "/unknown", "/known"), cache, timeout.duration)
+        Await.result(found, timeout.duration) shouldBe Set("/known")
+        cache.remove("/known").isDefined shouldBe true
+      }
+    }
+
+    "stop waiting on a warm up once its deadline has passed while still filling the cache" in { f =>
+      val sys = systemFixture(f)
+      import sys._
+
+      val serviceUri = URI("http://service_interface:4719/known")
+      withServerWithKnownService(serviceUri, responseDelay = () => 1.second) {
+        val cache = LocationCache()
+        val found = LocationService.warmUp(Seq("/known"), cache, 100.millis)
+        Await.result(found, 500.millis) shouldBe Set.empty
+        val service = cache.remove("/known")
+        service.isDefined shouldBe true
+        Await.result(service.get, timeout.duration) shouldBe Some(serviceUri)
+      }
+    }
+
     "get back None for an unknown service" in { f =>
       val sys = systemFixture(f)
       import sys._
@@ -88,7 +198,7 @@ class LocationServiceSpecWithEnv extends AkkaUnitTestWithFixture("LocationServic
     }
   }
 
-  def withServerWithKnownService(serviceUri: java.net.URI, maxAge: Option[Int] = None)(thunk: => Unit)(implicit system: ActorSystem, mat: ActorMaterializer): Unit = {
+  def withServerWithKnownService(serviceUri: java.net.URI, maxAge: Option[Int] = None, responseDelay: () => FiniteDuration = () => Duration.Zero)(thunk: => Unit)(implicit system: ActorSystem, mat: ActorMaterializer): Unit = {
     import system.dispatcher
 
     val probe = new TestProbe(system)
@@ -97,7 +207,7 @@ class LocationServiceSpecWithEnv extends AkkaUnitTestWithFixture("LocationServic
       path("services" / Remaining) { serviceName =>
         get {
           complete {
-            serviceName match {
+            akka.pattern.after(responseDelay(), system.scheduler)(Future.successful(serviceName)).map {
               case "known" =>
                 val uri = Uri(serviceUri.toString)
                 val headers = Location(uri) :: (maxAge match {
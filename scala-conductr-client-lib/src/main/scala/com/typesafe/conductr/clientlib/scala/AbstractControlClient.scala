@@ -1,14 +1,16 @@
 package com.typesafe.conductr.clientlib.scala
 
 import java.net.{ URLEncoder, URI, URL }
-import com.typesafe.conductr.lib.HttpPayload
+import com.typesafe.conductr.lib.{ HttpPayload, Instrumentation }
 import com.typesafe.conductr.clientlib.scala.models._
-import com.typesafe.conductr.lib.scala.AbstractConnectionContext
+import com.typesafe.conductr.lib.scala.{ AbstractConnectionContext, CallingThreadExecutionContext }
 import com.typesafe.config.ConfigObject
 import org.reactivestreams.{ Subscriber, Publisher }
 
 import scala.concurrent.Future
 import scala.concurrent.duration._
+import scala.util.{ Success, Try }
+import scala.util.control.NonFatal
 
 /**
  * Abstract ConductR control client for all projects based on Scala.
@@ -114,6 +116,52 @@ abstract class AbstractControlClient(conductrAddress: URL) {
    */
   def stopBundle(bundleId: BundleId)(implicit cc: CC): Future[BundleRequestResult]
 
+  /**
+   * Scale a number of loaded bundles, having at most `parallelism` of the requests in flight at any one time.
+   *
+   * @param bundles The bundles to scale, each along with its number of instances to start. Defaults to 1.
+   * @param parallelism The maximum number of requests in flight at any one time.
+   * @param cc implicit connection context
+   * @return The result of each request in the order of the bundles given. The result of a request that could not be
+   *         made is a `Failure`.
+   */
+  def runBundles(bundles: Seq[(BundleId, Option[Int])], parallelism: Int = 4)(implicit cc: CC): Future[Seq[Try[BundleRequestResult]]]
+
+  /**
+   * Scale a number of loaded bundles and returns a future being completed once each bundle has either achieved its
+   * scale or timed out doing so. The scale of every bundle is observed by way of a single connection to ConductR.
+   *
+   * @param bundles The bundles to scale, each along with its number of instances to start. Defaults to 1.
+   * @param parallelism The maximum number of requests in flight at any one time.
+   * @param cc implicit connection context
+   * @return The result of each request in the order of the bundles given. The result of a request that could not be
+   *         made is a `Failure`, as is the result of a bundle that has not achieved its scale within the timeout.
+   */
+  def runBundlesComplete(bundles: Seq[(BundleId, Option[Int])], parallelism: Int = 4, completeTimeout: FiniteDuration = 30.seconds)(implicit cc: CC): Future[Seq[Try[BundleRequestResult]]]
+
+  /**
+   * Stop a number of running bundles, having at most `parallelism` of the requests in flight at any one time.
+   *
+   * @param bundleIds The bundles to stop.
+   * @param parallelism The maximum number of requests in flight at any one time.
+   * @param cc implicit connection context
+   * @return The result of each request in the order of the bundles given. The result of a request that could not be
+   *         made is a `Failure`.
+   */
+  def stopBundles(bundleIds: Seq[BundleId], parallelism: Int = 4)(implicit cc: CC): Future[Seq[Try[BundleRequestResult]]]
+
+  /**
+   * Stop a number of running bundles and returns a future being completed once each bundle has either stopped or
+   * timed out doing so. The executions of every bundle are observed by way of a single connection to ConductR.
+   *
+   * @param bundleIds The bundles to stop.
+   * @param parallelism The maximum number of requests in flight at any one time.
+   * @param cc implicit connection context
+   * @return The result of each request in the order of the bundles given. The result of a request that could not be
+   *         made is a `Failure`, as is the result of a bundle that has not stopped within the timeout.
+   */
+  def stopBundlesComplete(bundleIds: Seq[BundleId], parallelism: Int = 4, completeTimeout: FiniteDuration = 30.seconds)(implicit cc: CC): Future[Seq[Try[BundleRequestResult]]]
+
   /**
    * Load a bundle with optional configuration.
    *
@@ -181,6 +229,30 @@ abstract class AbstractControlClient(conductrAddress: URL) {
    */
   def unloadBundle(bundleId: BundleId)(implicit cc: CC): Future[BundleRequestResult]
 
+  /**
+   * Unload a number of bundles from all ConductR instances, having at most `parallelism` of the requests in flight at
+   * any one time.
+   *
+   * @param bundleIds The bundles to unload.
+   * @param parallelism The maximum number of requests in flight at any one time.
+   * @param cc implicit connection context
+   * @return The result of each request in the order of the bundles given. The result of a request that could not be
+   *         made is a `Failure`.
+   */
+  def unloadBundles(bundleIds: Seq[BundleId], parallelism: Int = 4)(implicit cc: CC): Future[Seq[Try[BundleRequestResult]]]
+
+  /**
+   * Unload a number of bundles from all ConductR instances and returns a future being completed once each bundle has
+   * either been removed or timed out doing so. The bundles are observed by way of a single connection to ConductR.
+   *
+   * @param bundleIds The bundles to unload.
+   * @param parallelism The maximum number of requests in flight at any one time.
+   * @param cc implicit connection context
+   * @return The result of each request in the order of the bundles given. The result of a request that could not be
+   *         made is a `Failure`, as is the result of a bundle that has not been removed within the timeout.
+   */
+  def unloadBundlesComplete(bundleIds: Seq[BundleId], parallelism: Int = 4, completeTimeout: FiniteDuration = 30.seconds)(implicit cc: CC): Future[Seq[Try[BundleRequestResult]]]
+
   /**
    * Retrieve the events of a given bundle. Events with the latest timestamp are going to be returned in a 'tail' like fashion.
    *
@@ -260,6 +332,32 @@ abstract class AbstractControlClient(conductrAddress: URL) {
    */
   def leaveMember(address: URI)(implicit cc: CC): Future[Boolean]
 
+  /**
+   * Records the time taken by an operation with the [[com.typesafe.conductr.lib.Instrumentation]] in use.
+   * The operation is regarded as having failed if its future fails, or if ConductR responds with a [[HttpFailure]] or
+   * by declining a member request.
+   *
+   * @param operation the name of the operation
+   * @param f the operation
+   */
+  protected def timed[T](operation: String)(f: => Future[T]): Future[T] = {
+    val startNanos = System.nanoTime()
+    val result =
+      try f catch {
+        case NonFatal(e) => Future.failed(e)
+      }
+    result.onComplete { r =>
+      val success = r match {
+        case Success(_: HttpFailure) => false
+        case Success(false)          => false
+        case Success(_)              => true
+        case _                       => false
+      }
+      Instrumentation.get.controlOperationCompleted(operation, success, System.nanoTime() - startNanos)
+    }(CallingThreadExecutionContext)
+    result
+  }
+
   /**
    * The BasePayload containing helper methods
    * to create [[com.typesafe.conductr.HttpPayload]] objects for all given ControlClient endpoints.
@@ -28,6 +28,15 @@ final case class BundleConfigurationFile(fileName: String, data: Publisher[Array
  */
 final case class BundleGetSuccess(bundleId: BundleId, bundleFileName: String, configFileName: Option[String]) extends BundleGetResult
 
+/**
+ * Represents the result of retrieving bundle along with the digests of the files as they were retrieved.
+ *
+ * @param result the result of retrieving bundle.
+ * @param bundleDigest the SHA-256 digest of the bundle file, if it has been retrieved.
+ * @param configurationDigest the SHA-256 digest of the config file, if the bundle has one and it has been retrieved.
+ */
+final case class BundleGetResultWithDigests(result: BundleGetResult, bundleDigest: Option[Digest], configurationDigest: Option[Digest])
+
 /**
  * Represents a HTTP failure result for retrieving bundle.
  *
@@ -41,4 +50,14 @@ final case class BundleGetFailure(code: Int, error: String) extends HttpFailure
  *
  * @param message The error message
  */
-final case class InvalidBundleGetResponseBody(message: String) extends RuntimeException(message)
\ No newline at end of file
+final case class InvalidBundleGetResponseBody(message: String) extends RuntimeException(message)
+
+/**
+ * Thrown when the SHA-256 digest of a bundle or config file differs from the digest within its file name.
+ *
+ * @param fileName The name of the file
+ * @param expected The digest within the file name
+ * @param actual The digest of the contents of the file
+ */
+final case class BundleDigestMismatch(fileName: String, expected: Digest, actual: Digest)
+  extends RuntimeException(s"The digest of file $fileName is $actual rather than $expected")
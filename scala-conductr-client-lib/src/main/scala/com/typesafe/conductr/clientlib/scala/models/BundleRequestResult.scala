@@ -25,6 +25,13 @@ final case class BundleRequestSuccess(requestId: UUID, bundleId: BundleId) exten
  */
 final case class BundleRequestFailure(code: Int, error: String) extends HttpFailure with BundleRequestResult
 
+/**
+ * Represents the result of loading a bundle along with the digest of the bundle file as it was sent
+ * @param result The result of the load request
+ * @param bundleDigest The SHA-256 digest of the bundle file as sent, if the request succeeded
+ */
+final case class BundleRequestResultWithDigest(result: BundleRequestResult, bundleDigest: Option[Digest])
+
 /**
  * Thrown when timed out waiting for bundle to be installed during loading, or waiting for number of scale to be
  * reached during scaling.
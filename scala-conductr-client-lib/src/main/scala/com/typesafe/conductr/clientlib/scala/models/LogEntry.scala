@@ -5,7 +5,9 @@ import java.util.Date
 /**
  * All logs and events representation must implement this trait.
  */
-sealed trait LogEntry
+sealed trait LogEntry {
+  def timestamp: Date
+}
 
 /**
  * Represents events to be sent to clients.